@@ -44,12 +44,45 @@ public final class Errors extends Messages {
     public static final String ORG_HCJF_IO_NET_HTTP_7 = "org.hcjf.io.net.http@7";
     public static final String ORG_HCJF_IO_NET_HTTP_8 = "org.hcjf.io.net.http@8";
     public static final String ORG_HCJF_IO_NET_HTTP_9 = "org.hcjf.io.net.http@9";
+    public static final String ORG_HCJF_IO_NET_HTTP_10 = "org.hcjf.io.net.http@10";
+    public static final String ORG_HCJF_IO_NET_HTTP_11 = "org.hcjf.io.net.http@11";
+    public static final String ORG_HCJF_IO_NET_HTTP_12 = "org.hcjf.io.net.http@12";
+    public static final String ORG_HCJF_IO_NET_HTTP_13 = "org.hcjf.io.net.http@13";
+    public static final String ORG_HCJF_IO_NET_HTTP_14 = "org.hcjf.io.net.http@14";
+    public static final String ORG_HCJF_IO_NET_HTTP_15 = "org.hcjf.io.net.http@15";
+    public static final String ORG_HCJF_IO_NET_HTTP_16 = "org.hcjf.io.net.http@16";
+    public static final String ORG_HCJF_IO_NET_HTTP_17 = "org.hcjf.io.net.http@17";
+    public static final String ORG_HCJF_IO_NET_HTTP_18 = "org.hcjf.io.net.http@18";
+    public static final String ORG_HCJF_IO_NET_HTTP_19 = "org.hcjf.io.net.http@19";
+    public static final String ORG_HCJF_IO_NET_HTTP_20 = "org.hcjf.io.net.http@20";
+    public static final String ORG_HCJF_IO_NET_HTTP_21 = "org.hcjf.io.net.http@21";
+    public static final String ORG_HCJF_IO_NET_HTTP_22 = "org.hcjf.io.net.http@22";
+    public static final String ORG_HCJF_IO_NET_HTTP_23 = "org.hcjf.io.net.http@23";
     public static final String ORG_HCJF_IO_NET_HTTP_END_POINT_NOT_FOUND = "org.hcjf.io.net.http.resource.not.found";
 
     public static final String ORG_HCJF_IO_NET_HTTP_LAYERED_1 = "org.hcjf.io.net.http.layered@1";
 
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_1 = "org.hcjf.io.net.http.http2@1";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_2 = "org.hcjf.io.net.http.http2@2";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_3 = "org.hcjf.io.net.http.http2@3";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_4 = "org.hcjf.io.net.http.http2@4";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_5 = "org.hcjf.io.net.http.http2@5";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_6 = "org.hcjf.io.net.http.http2@6";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_7 = "org.hcjf.io.net.http.http2@7";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_8 = "org.hcjf.io.net.http.http2@8";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_9 = "org.hcjf.io.net.http.http2@9";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_10 = "org.hcjf.io.net.http.http2@10";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_11 = "org.hcjf.io.net.http.http2@11";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_12 = "org.hcjf.io.net.http.http2@12";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_13 = "org.hcjf.io.net.http.http2@13";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_14 = "org.hcjf.io.net.http.http2@14";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_15 = "org.hcjf.io.net.http.http2@15";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_16 = "org.hcjf.io.net.http.http2@16";
+    public static final String ORG_HCJF_IO_NET_HTTP_HTTP2_17 = "org.hcjf.io.net.http.http2@17";
+
     public static final String ORG_HCJF_IO_NET_HTTP_PROXY_1 = "org.hcjf.io.net.http.proxy@1";
     public static final String ORG_HCJF_IO_NET_HTTP_PROXY_2 = "org.hcjf.io.net.http.proxy@2";
+    public static final String ORG_HCJF_IO_NET_HTTP_PROXY_3 = "org.hcjf.io.net.http.proxy@3";
 
     public static final String ORG_HCJF_IO_NET_HTTP_REST_1 = "org.hcjf.io.net.http.rest@1";
     public static final String ORG_HCJF_IO_NET_HTTP_REST_2 = "org.hcjf.io.net.http.rest@2";
@@ -95,12 +128,45 @@ public final class Errors extends Messages {
         addDefault(ORG_HCJF_IO_NET_HTTP_7, "Parameter 'groupName' can't be null");
         addDefault(ORG_HCJF_IO_NET_HTTP_8, "Parameter 'parameterName' can't be null");
         addDefault(ORG_HCJF_IO_NET_HTTP_9, "File checksum algorithm not found");
+        addDefault(ORG_HCJF_IO_NET_HTTP_10, "Malformed http first line: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_11, "Http first line too large, max %d bytes");
+        addDefault(ORG_HCJF_IO_NET_HTTP_12, "Http headers too large, max %d bytes");
+        addDefault(ORG_HCJF_IO_NET_HTTP_13, "Too many http headers, max %d headers");
+        addDefault(ORG_HCJF_IO_NET_HTTP_14, "Malformed http header: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_15, "Invalid content length: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_16, "Unsupported http method: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_17, "Unable to consume the http body");
+        addDefault(ORG_HCJF_IO_NET_HTTP_18, "Http connection closed before the response: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_19, "Http connect timeout: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_20, "Http read timeout: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_21, "Too many pending http requests for %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_22, "Http body pipe aborted");
+        addDefault(ORG_HCJF_IO_NET_HTTP_23, "Http body pipe timeout (%d ms)");
         addDefault(ORG_HCJF_IO_NET_HTTP_END_POINT_NOT_FOUND, "End point not found: %s");
 
         addDefault(ORG_HCJF_IO_NET_HTTP_LAYERED_1, "Resource name can't be null");
 
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_1, "Invalid http/2 connection preface");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_2, "Invalid http/2 frame size, type %d length %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_3, "Invalid http/2 stream id %d for frame type %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_4, "Hpack index out of range: %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_5, "Hpack integer overflow");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_6, "Invalid hpack huffman string");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_7, "Invalid hpack dynamic table size: %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_8, "Http/2 flow control window overflow, stream %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_9, "Continuation frame expected for the http/2 stream %d, received frame type %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_10, "Malformed http/2 request, stream %d: %s");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_11, "Http/2 stream %d closed");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_12, "Http/2 flow control window timeout, stream %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_13, "Invalid http/2 setting %d: %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_14, "Too many concurrent http/2 streams, max %d");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_15, "Http/2 header block too large, max %d bytes");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_16, "Http/2 request body too large, stream %d, max %d bytes");
+        addDefault(ORG_HCJF_IO_NET_HTTP_HTTP2_17, "Http/2 connection output timeout");
+
         addDefault(ORG_HCJF_IO_NET_HTTP_PROXY_1, "Null http proxy rule");
         addDefault(ORG_HCJF_IO_NET_HTTP_PROXY_2, "This kind of http server not support add custom context");
+        addDefault(ORG_HCJF_IO_NET_HTTP_PROXY_3, "The load balancer needs at least one upstream url");
 
         addDefault(ORG_HCJF_IO_NET_HTTP_REST_1, "Resource name parameter not found");
         addDefault(ORG_HCJF_IO_NET_HTTP_REST_2, "Resource query parameter not found.");
@@ -140,9 +140,16 @@ public final class FileSystemWatcherService extends Service<FileSystemWatcherCon
                         break;
                     }
 
+                    //The events of the key are polled only once and delivered to all the consumers of the key.
+                    List<WatchEvent<?>> events = key.pollEvents();
+                    List<FileSystemWatcherConsumer> keyConsumers;
+                    synchronized (FileSystemWatcherService.this) {
+                        keyConsumers = new ArrayList<>(consumers.getOrDefault(key, new ArrayList<>()));
+                    }
+
                     //Find the consumer by key.
-                    for(FileSystemWatcherConsumer consumer : consumers.get(key)) {
-                        key.pollEvents().stream().filter(event -> {
+                    for(FileSystemWatcherConsumer consumer : keyConsumers) {
+                        events.stream().filter(event -> {
                             boolean result = false;
                             try {
                                 result = event.count() <= 1 && (
@@ -171,12 +178,12 @@ public final class FileSystemWatcherService extends Service<FileSystemWatcherCon
                                 }
                             });
                         });
+                    }
 
-                        boolean valid = key.reset();
-                        if (!valid) {
-                            Log.d(SystemProperties.get(SystemProperties.FileSystem.LOG_TAG),
-                                    "Inaccessible path '$1', consumer unregistered", consumer.getBasePath());
-                        }
+                    boolean valid = key.reset();
+                    if (!valid) {
+                        Log.d(SystemProperties.get(SystemProperties.FileSystem.LOG_TAG),
+                                "Inaccessible path '$1', consumer unregistered", key.watchable());
                     }
                 }
 
@@ -0,0 +1,96 @@
+package org.hcjf.io.net;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Write package that contains a region of a file instead of a byte array. The region
+ * is transferred from the file to the socket by the net service without copy the data
+ * into the heap, the file channel is owned by the package and it's closed when
+ * the region was written or when the package is discarded.
+ * @author javaito
+ */
+public class FileRegionNetPackage extends DefaultNetPackage {
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private final FileChannel fileChannel;
+    private final long end;
+    private long position;
+
+    public FileRegionNetPackage(String remoteHost, String remoteAddress,
+                                int remotePort, int localPort, FileChannel fileChannel,
+                                long position, long count) {
+        super(remoteHost, remoteAddress, remotePort, localPort, EMPTY_PAYLOAD, ActionEvent.WRITE);
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.end = position + count;
+    }
+
+    /**
+     * Return the number of bytes of the region that was not written yet.
+     * @return Remaining bytes.
+     */
+    public final long getRemaining() {
+        return end - position;
+    }
+
+    /**
+     * Verify if all the region was written.
+     * @return True if the region was written.
+     */
+    public final boolean isDone() {
+        return position >= end;
+    }
+
+    /**
+     * Transfers the rest of the region to the target channel, if the target is not
+     * blocking then only a part of the region could be transferred.
+     * @param target Target channel.
+     * @return Number of bytes transferred.
+     * @throws IOException Exception of the transfer operation.
+     */
+    public final long transferTo(WritableByteChannel target) throws IOException {
+        long result = fileChannel.transferTo(position, getRemaining(), target);
+        if(result == 0 && position >= fileChannel.size()) {
+            throw new IOException("The file is shorter than the region");
+        }
+        position += result;
+        return result;
+    }
+
+    /**
+     * Reads the next fragment of the region into the buffer, this method is used when
+     * the data must be processed before write it over the channel.
+     * @param buffer Buffer to put the data.
+     * @return Number of bytes read.
+     * @throws IOException Exception of the read operation.
+     */
+    public final int read(ByteBuffer buffer) throws IOException {
+        if(buffer.remaining() > getRemaining()) {
+            buffer.limit(buffer.position() + (int) getRemaining());
+        }
+        int result = fileChannel.read(buffer, position);
+        if(result < 0) {
+            throw new IOException("The file is shorter than the region");
+        }
+        position += result;
+        return result;
+    }
+
+    /**
+     * Closes the file channel of the region.
+     */
+    public final void close() {
+        try {
+            fileChannel.close();
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to close file region", ex);
+        }
+    }
+}
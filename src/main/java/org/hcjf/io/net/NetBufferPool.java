@@ -0,0 +1,168 @@
+package org.hcjf.io.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is an arena of fixed size byte buffers that can be reused between
+ * read operations in order to avoid the creation of byte arrays for each package.
+ * Each buffer acquired from the pool is reference counted, the buffer returns to
+ * the pool when the last reference is released.
+ * @author javaito
+ */
+public final class NetBufferPool {
+
+    private final int chunkSize;
+    private final int maxSize;
+    private final boolean direct;
+    private final ConcurrentLinkedQueue<PooledBuffer> buffers;
+    private final AtomicInteger pooledSize;
+    private final AtomicInteger createdSize;
+
+    /**
+     * Constructor.
+     * @param chunkSize Size of each buffer of the pool.
+     * @param maxSize Max number of idle buffers stored into the pool.
+     * @param direct If this value is true then the buffers are allocated out of the heap.
+     */
+    public NetBufferPool(int chunkSize, int maxSize, boolean direct) {
+        if(chunkSize <= 0) {
+            throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+        this.direct = direct;
+        this.buffers = new ConcurrentLinkedQueue<>();
+        this.pooledSize = new AtomicInteger();
+        this.createdSize = new AtomicInteger();
+    }
+
+    /**
+     * Return the size of each buffer of the pool.
+     * @return Chunk size.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Return true if the buffers of the pool are allocated out of the heap.
+     * @return Direct allocation flag.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Return the number of idle buffers into the pool.
+     * @return Idle buffers.
+     */
+    public int getPooledSize() {
+        return pooledSize.get();
+    }
+
+    /**
+     * Return the number of buffers created by the pool since it was created.
+     * @return Created buffers.
+     */
+    public int getCreatedSize() {
+        return createdSize.get();
+    }
+
+    /**
+     * Takes an idle buffer from the pool or creates a new one if the pool is empty.
+     * The returned buffer is cleared and has one reference.
+     * @return Pooled buffer.
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer result = buffers.poll();
+        if(result == null) {
+            createdSize.incrementAndGet();
+            result = new PooledBuffer(this, direct ?
+                    ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize));
+        } else {
+            pooledSize.decrementAndGet();
+        }
+        result.buffer.clear();
+        result.references.set(1);
+        return result;
+    }
+
+    /**
+     * Returns the buffer into the pool, if the pool is full then the buffer is discarded.
+     * @param pooledBuffer Buffer to return.
+     */
+    private void recycle(PooledBuffer pooledBuffer) {
+        if(pooledSize.incrementAndGet() <= maxSize) {
+            buffers.offer(pooledBuffer);
+        } else {
+            pooledSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reference counted buffer of the pool.
+     */
+    public static final class PooledBuffer {
+
+        private final NetBufferPool pool;
+        private final ByteBuffer buffer;
+        private final AtomicInteger references;
+
+        private PooledBuffer(NetBufferPool pool, ByteBuffer buffer) {
+            this.pool = pool;
+            this.buffer = buffer;
+            this.references = new AtomicInteger();
+        }
+
+        /**
+         * Return the internal buffer, this buffer only is valid while the
+         * caller has a reference of the pooled buffer.
+         * @return Internal buffer.
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Return the number of active references.
+         * @return Number of references.
+         */
+        public int getReferences() {
+            return references.get();
+        }
+
+        /**
+         * Adds a reference to the buffer, the buffer don't return to the pool until
+         * this reference is released.
+         * @return Same instance.
+         * @throws IllegalStateException If the buffer was already released.
+         */
+        public PooledBuffer retain() {
+            int current;
+            do {
+                current = references.get();
+                if(current <= 0) {
+                    throw new IllegalStateException("The buffer was already released");
+                }
+            } while(!references.compareAndSet(current, current + 1));
+            return this;
+        }
+
+        /**
+         * Removes a reference of the buffer, when there are no more references
+         * the buffer returns to the pool.
+         * @throws IllegalStateException If the buffer was already released.
+         */
+        public void release() {
+            int current = references.decrementAndGet();
+            if(current == 0) {
+                pool.recycle(this);
+            } else if(current < 0) {
+                references.incrementAndGet();
+                throw new IllegalStateException("The buffer was already released");
+            }
+        }
+    }
+}
@@ -21,6 +21,12 @@ public abstract class NetClient<S extends NetSession, D extends Object> extends
         NetService.getInstance().registerConsumer(this);
     }
 
+    /**
+     * This method is called when the connection with the remote host can't be established.
+     * @param cause Cause of the failure.
+     */
+    protected void onConnectionFailed(Throwable cause) {}
+
     /**
      * Returns the host where it will connect the client
      * @return Remote host.
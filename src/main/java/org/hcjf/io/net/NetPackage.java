@@ -9,18 +9,27 @@ import java.util.UUID;
  */
 public abstract class NetPackage {
 
-    private final UUID id;
+    private volatile UUID id;
 
     public NetPackage() {
-        this.id = UUID.randomUUID();
     }
 
     /**
-     * Return the package id.
+     * Return the package id, the id is created the first time that this method
+     * is called because the most of the packages never use it.
      * @return Package id.
      */
     public final UUID getId() {
-        return id;
+        UUID result = id;
+        if(result == null) {
+            synchronized (this) {
+                result = id;
+                if(result == null) {
+                    id = result = UUID.randomUUID();
+                }
+            }
+        }
+        return result;
     }
 
     /**
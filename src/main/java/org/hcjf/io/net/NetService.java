@@ -3,6 +3,7 @@ package org.hcjf.io.net;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 import org.hcjf.service.Service;
+import org.hcjf.service.ServiceSession;
 import org.hcjf.service.ServiceThread;
 
 import javax.net.ssl.SSLEngine;
@@ -15,10 +16,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.*;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class implements a service that provide an
@@ -48,10 +53,21 @@ public final class NetService extends Service<NetServiceConsumer> {
 
     private final Set<NetSession> sessions;
     private final Map<NetSession, SSLHelper> sslHelpers;
+    private final ThreadPoolExecutor sslEngineTaskExecutor;
 
     private Selector selector;
     private final Object selectorMonitor;
 
+    private final boolean multiReactorEnabled;
+    private final List<NetReactor> reactors;
+    private final Map<SelectableChannel, NetReactor> reactorsByChannel;
+    private final AtomicInteger reactorIndex;
+    private final NetBufferPool bufferPool;
+    private final Map<SelectableChannel, ByteBuffer> partialWrites;
+    private final int gatheringMaxBuffers;
+    private final long ioRejectionBackoff;
+    private final LongAdder ioRejections;
+
     private final Timer timer;
     private boolean creationTimeoutAvailable;
     private long creationTimeout;
@@ -64,6 +80,22 @@ public final class NetService extends Service<NetServiceConsumer> {
 
         this.timer = new Timer();
         this.selectorMonitor = new Object();
+        this.multiReactorEnabled = SystemProperties.getBoolean(SystemProperties.Net.MULTI_REACTOR_ENABLED);
+        this.reactors = new ArrayList<>();
+        this.reactorsByChannel = Collections.synchronizedMap(new HashMap<>());
+        this.reactorIndex = new AtomicInteger();
+        this.partialWrites = Collections.synchronizedMap(new HashMap<>());
+        this.gatheringMaxBuffers = SystemProperties.getInteger(SystemProperties.Net.GATHERING_WRITE_MAX_BUFFERS);
+        this.ioRejectionBackoff = TimeUnit.MILLISECONDS.toNanos(SystemProperties.getLong(SystemProperties.Net.IO_REJECTION_BACKOFF));
+        this.ioRejections = new LongAdder();
+        if (SystemProperties.getBoolean(SystemProperties.Net.BUFFER_POOL_ENABLED)) {
+            this.bufferPool = new NetBufferPool(
+                    SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_CHUNK_SIZE),
+                    SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_MAX_SIZE),
+                    SystemProperties.getBoolean(SystemProperties.Net.BUFFER_POOL_DIRECT_ALLOCATE_MEMORY));
+        } else {
+            this.bufferPool = null;
+        }
 
         this.creationTimeoutAvailable = SystemProperties.getBoolean(SystemProperties.Net.CONNECTION_TIMEOUT_AVAILABLE);
         this.creationTimeout = SystemProperties.getLong(SystemProperties.Net.CONNECTION_TIMEOUT);
@@ -79,7 +111,41 @@ public final class NetService extends Service<NetServiceConsumer> {
         sessionsByAddress = Collections.synchronizedMap(new HashMap<>());
         sessions = Collections.synchronizedSet(new TreeSet<>());
         sslHelpers = Collections.synchronizedMap(new HashMap<>());
+        sslEngineTaskExecutor = new ThreadPoolExecutor(
+                SystemProperties.getInteger(SystemProperties.Net.SSL_MAX_IO_THREAD_POOL_SIZE),
+                SystemProperties.getInteger(SystemProperties.Net.SSL_MAX_IO_THREAD_POOL_SIZE),
+                SystemProperties.getInteger(SystemProperties.Net.IO_THREAD_POOL_KEEP_ALIVE_TIME), TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(SystemProperties.getInteger(SystemProperties.Net.Ssl.ENGINE_TASK_QUEUE_SIZE)),
+                R -> new ServiceThread(R, SystemProperties.get(SystemProperties.Net.Ssl.ENGINE_THREAD_NAME)),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        sslEngineTaskExecutor.allowCoreThreadTimeOut(true);
         addresses = Collections.synchronizedMap(new HashMap<>());
+
+        if (multiReactorEnabled) {
+            startReactors();
+        }
+    }
+
+    /**
+     * Creates and starts all the worker reactors, this method is called from the constructor
+     * because the init method is called before that the fields of the service are created.
+     */
+    private void startReactors() {
+        int workersSize = SystemProperties.getInteger(SystemProperties.Net.REACTOR_WORKERS_SIZE);
+        if (workersSize <= 0) {
+            workersSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        try {
+            for (int i = 0; i < workersSize; i++) {
+                NetReactor reactor = new NetReactor(i, SelectorProvider.provider().openSelector());
+                reactors.add(reactor);
+                fork(reactor);
+            }
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Multi-reactor enabled with %d workers", workersSize);
+        } catch (IOException ex) {
+            Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to start the net reactors", ex);
+        }
     }
 
     /**
@@ -119,6 +185,9 @@ public final class NetService extends Service<NetServiceConsumer> {
             case START: {
                 shuttingDown = true;
                 getSelector().wakeup();
+                for (NetReactor reactor : reactors) {
+                    reactor.getSelector().wakeup();
+                }
                 break;
             }
             case END: {
@@ -128,6 +197,9 @@ public final class NetService extends Service<NetServiceConsumer> {
 
                 running = false;
                 getSelector().wakeup();
+                for (NetReactor reactor : reactors) {
+                    reactor.getSelector().wakeup();
+                }
                 break;
             }
         }
@@ -180,6 +252,9 @@ public final class NetService extends Service<NetServiceConsumer> {
             throw new NullPointerException("Net consumer null");
         }
 
+        //The service is set before register the channel because the events of the
+        //channel could be processed before this method ends.
+        consumer.setService(this);
         boolean illegal = false;
         try {
             switch (consumer.getProtocol()) {
@@ -212,8 +287,6 @@ public final class NetService extends Service<NetServiceConsumer> {
         if (illegal) {
             throw new IllegalArgumentException("Is not a legal consumer.");
         }
-
-        consumer.setService(this);
     }
 
     @Override
@@ -287,6 +360,16 @@ public final class NetService extends Service<NetServiceConsumer> {
         return Collections.unmodifiableSet(sessions);
     }
 
+    /**
+     * Return the number of times that the io thread pool of a consumer rejected the
+     * processing of a selected key.
+     *
+     * @return Number of io rejections.
+     */
+    public final long getIoRejectionCount() {
+        return ioRejections.sum();
+    }
+
     /**
      * Return the net selector.
      *
@@ -305,6 +388,64 @@ public final class NetService extends Service<NetServiceConsumer> {
         this.selector = selector;
     }
 
+    /**
+     * Return the selector where the channel is registered, if the channel is pinned to
+     * a worker reactor then the selector of the reactor is returned, in the otherwise
+     * the main selector is returned.
+     *
+     * @param channel Selectable channel.
+     * @return Channel's selector.
+     */
+    private Selector getSelector(SelectableChannel channel) {
+        Selector result = getSelector();
+        NetReactor reactor = reactorsByChannel.get(channel);
+        if (reactor != null) {
+            result = reactor.getSelector();
+        }
+        return result;
+    }
+
+    /**
+     * Changes the interest operation of the channel's key and wakes up the selector
+     * that owns the key.
+     *
+     * @param channel   Selectable channel.
+     * @param operation New interest operation.
+     */
+    private void setInterestOps(SelectableChannel channel, int operation) {
+        Selector channelSelector = getSelector(channel);
+        SelectionKey key = channel.keyFor(channelSelector);
+        if (key != null) {
+            key.interestOps(operation);
+            channelSelector.wakeup();
+        }
+    }
+
+    /**
+     * Return the next worker reactor using a round robin policy.
+     *
+     * @return Worker reactor.
+     */
+    private NetReactor nextReactor() {
+        return reactors.get(Math.abs(reactorIndex.getAndIncrement() % reactors.size()));
+    }
+
+    /**
+     * Return the worker reactor that is running over the current thread.
+     *
+     * @return Worker reactor or null if the current thread is not a reactor thread.
+     */
+    private NetReactor getCurrentReactor() {
+        NetReactor result = null;
+        for (NetReactor reactor : reactors) {
+            if (reactor.isReactorThread()) {
+                result = reactor;
+                break;
+            }
+        }
+        return result;
+    }
+
     /**
      * Return a value to indicate if the session creation timeout is available ot not.
      *
@@ -422,15 +563,71 @@ public final class NetService extends Service<NetServiceConsumer> {
             netPackage = createPackage(channel, data, NetPackage.ActionEvent.WRITE);
             netPackage.setSession(session);
             outputQueue.get(channel).add(netPackage);
-            channel.keyFor(getSelector()).interestOps(SelectionKey.OP_WRITE);
-            getSelector().wakeup();
+            if (session.addOutput(data.length)) {
+                //The output queue exceeds the high watermark, the read operations of the
+                //session are suspended until the queue is under the low watermark.
+                session.getConsumer().onWritabilityChanged(session);
+            }
+            setInterestOps(channel, SelectionKey.OP_WRITE);
+        } else {
+            throw new IOException("Unknown session");
+        }
+
+        return netPackage;
+    }
+
+    /**
+     * This method put a region of a file on the output queue of the session. The region
+     * is transferred from the file to the socket without copy the data into the heap, for
+     * tls sessions the region is read in fragments of the size of the output buffer.
+     * The file channel is closed by the service when the region was written or discarded.
+     *
+     * @param session     Net session.
+     * @param fileChannel File channel.
+     * @param position    Position of the first byte of the region.
+     * @param count       Number of bytes of the region.
+     * @return Return the created package.
+     * @throws IOException Exception of the write operation.
+     */
+    public final NetPackage writeFile(NetSession session, FileChannel fileChannel, long position, long count) throws IOException {
+        NetPackage netPackage;
+        SelectableChannel channel = channels.get(session);
+        if (channel instanceof SocketChannel) {
+            Socket socket = ((SocketChannel) channel).socket();
+            netPackage = new FileRegionNetPackage("", "", socket.getPort(), socket.getLocalPort(),
+                    fileChannel, position, count);
+            netPackage.setSession(session);
+            outputQueue.get(channel).add(netPackage);
+            if (session.addOutput(0)) {
+                session.getConsumer().onWritabilityChanged(session);
+            }
+            setInterestOps(channel, SelectionKey.OP_WRITE);
         } else {
+            fileChannel.close();
             throw new IOException("Unknown session");
         }
 
         return netPackage;
     }
 
+    /**
+     * Verify if the current thread can wait for the write operations of the session. The
+     * packages are written by the reactor or by the io threads holding the lock of the channel,
+     * then a thread that owns the lock or a reactor thread only could wait until the timeout.
+     *
+     * @param session Net session.
+     * @return True if the current thread can wait for the write operations.
+     */
+    final boolean isWaitForAvailable(NetSession session) {
+        boolean result = true;
+        SelectableChannel channel = channels.get(session);
+        if (channel != null) {
+            NetReactor reactor = reactorsByChannel.get(channel);
+            result = !Thread.holdsLock(channel) && (reactor == null || !reactor.isReactorThread());
+        }
+        return result;
+    }
+
     /**
      * Disconnect a specific session.
      *
@@ -445,27 +642,65 @@ public final class NetService extends Service<NetServiceConsumer> {
                     NetPackage netPackage = createPackage(channel, message.getBytes(), NetPackage.ActionEvent.DISCONNECT);
                     netPackage.setSession(session);
                     outputQueue.get(channel).add(netPackage);
-                    channel.keyFor(getSelector()).interestOps(SelectionKey.OP_WRITE);
-                    getSelector().wakeup();
+                    setInterestOps(channel, SelectionKey.OP_WRITE);
                 }
             }
         }
     }
 
+    /**
+     * This method destroys a channel closed by the remote host or by an io error and
+     * notifies the disconnection to the consumer of the session, the plain and the secure
+     * sessions are notified only here.
+     *
+     * @param channel Channel that will destroy.
+     */
+    private void closeChannel(SocketChannel channel) {
+        NetSession session = destroyChannel(channel);
+        if (session != null) {
+            DefaultNetPackage disconnectionPackage = new DefaultNetPackage("", "",
+                    0, session.getConsumer().getPort(), new byte[0], NetPackage.ActionEvent.DISCONNECT);
+            disconnectionPackage.setSession(session);
+            onAction(disconnectionPackage, session.getConsumer());
+        }
+    }
+
     /**
      * This method must destroy the channel and remove all the
      * netPackage related.
      *
      * @param channel Channel that will destroy.
+     * @return Returns the session of the channel if the session must be notified, the session is
+     * null if the channel was destroyed before.
      */
-    private void destroyChannel(SocketChannel channel) {
+    private NetSession destroyChannel(SocketChannel channel) {
+        NetSession result = null;
         synchronized (channel) {
             NetSession session = sessionsByChannel.remove(channel);
+            if (session != null) {
+                session.resetOutput();
+            }
             lastWrite.remove(channel);
-            outputQueue.remove(channel);
-            if (sslHelpers.containsKey(sessions)) {
-                sslHelpers.remove(sessions).close();
+            Queue<NetPackage> queue = outputQueue.remove(channel);
+            if (queue != null) {
+                for (NetPackage netPackage : queue) {
+                    if (netPackage instanceof FileRegionNetPackage) {
+                        ((FileRegionNetPackage) netPackage).close();
+                    }
+                }
+            }
+            NetReactor reactor = reactorsByChannel.remove(channel);
+            if (reactor != null) {
+                reactor.removeActions(channel);
             }
+            partialWrites.remove(channel);
+            if (session != null) {
+                SSLHelper sslHelper = sslHelpers.remove(session);
+                if (sslHelper != null) {
+                    sslHelper.close();
+                }
+            }
+            result = session;
             List<NetSession> removedSessions = new ArrayList<>();
 
             try {
@@ -477,17 +712,21 @@ public final class NetService extends Service<NetServiceConsumer> {
                             sessions.remove(session);
                             destroySession(session);
                         }
+                    } else {
+                        //The client sessions are not reused after the channel is closed.
+                        sessions.remove(session);
                     }
                     removedSessions.add(session);
                 }
 
-                if (channel.isConnected()) {
+                if (channel.isOpen()) {
                     channel.close();
                 }
             } catch (Exception ex) {
                 Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Destroy method exception", ex);
             }
         }
+        return result;
     }
 
     /**
@@ -510,6 +749,11 @@ public final class NetService extends Service<NetServiceConsumer> {
         }
 
         sessionsByChannel.put(newChannel, session);
+        reactorsByChannel.remove(oldChannel);
+        ByteBuffer partialWrite = partialWrites.remove(oldChannel);
+        if (partialWrite != null) {
+            partialWrites.put(newChannel, partialWrite);
+        }
         outputQueue.put(newChannel, outputQueue.remove(oldChannel));
         lastWrite.put(newChannel, lastWrite.remove(oldChannel));
     }
@@ -568,10 +812,12 @@ public final class NetService extends Service<NetServiceConsumer> {
             }
 
             boolean removeKey;
+            boolean rejected;
             while (running) {
                 //Select the next schedule key or sleep if the aren't any key
                 //to select.
                 getSelector().select();
+                rejected = false;
 
                 Iterator selectedKeys;
                 synchronized (selectorMonitor) {
@@ -603,12 +849,14 @@ public final class NetService extends Service<NetServiceConsumer> {
                                                 synchronized (keyChannel) {
                                                     try {
                                                         if (key.isValid()) {
+                                                            NetServiceConsumer.NetIOThread ioThread =
+                                                                    (NetServiceConsumer.NetIOThread) Thread.currentThread();
                                                             if (key.isReadable()) {
-                                                                read(keyChannel, consumer);
+                                                                read(keyChannel, consumer, ioThread.getInputBuffer());
                                                             } else if (key.isWritable()) {
-                                                                write(keyChannel, consumer);
+                                                                write(keyChannel, consumer, ioThread.getOutputBuffer());
                                                                 if (consumer instanceof NetClient) {
-                                                                    read(keyChannel, consumer);
+                                                                    read(keyChannel, consumer, ioThread.getInputBuffer());
                                                                 }
                                                             }
                                                         }
@@ -624,6 +872,8 @@ public final class NetService extends Service<NetServiceConsumer> {
                                             if (key.isValid() && sessionsByChannel.containsKey(keyChannel)) {
                                                 removeKey = false;
                                             }
+                                            ioRejections.increment();
+                                            rejected = true;
                                         } catch (Exception ex) {
                                             key.cancel();
                                             Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to for key");
@@ -642,6 +892,12 @@ public final class NetService extends Service<NetServiceConsumer> {
                         selectedKeys.remove();
                     }
                 }
+
+                if (rejected && ioRejectionBackoff > 0) {
+                    //The io pool is saturated, the pending keys are selected again after
+                    //the backoff instead of spinning over the selector.
+                    LockSupport.parkNanos(ioRejectionBackoff);
+                }
             }
 
             try {
@@ -696,12 +952,18 @@ public final class NetService extends Service<NetServiceConsumer> {
                 if (client.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
                     SSLHelper sslHelper = new SSLHelper(client.getSSLEngine(), channel, client, session);
                     sslHelpers.put(session, sslHelper);
+                    //The client starts the handshaking
+                    if (!sslHelper.flush()) {
+                        setInterestOps(channel, SelectionKey.OP_WRITE);
+                    }
                 } else {
                     NetPackage connectionPackage = createPackage(keyChannel, new byte[]{}, NetPackage.ActionEvent.CONNECT);
                     onAction(connectionPackage, client);
                 }
             } catch (Exception ex) {
                 Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Error creating new client connection.", ex);
+                destroyChannel((SocketChannel) keyChannel);
+                client.onConnectionFailed(ex);
             }
         }
     }
@@ -744,8 +1006,15 @@ public final class NetService extends Service<NetServiceConsumer> {
                     sslHelpers.put(session, sslHelper);
                 }
 
-                //A new readable key is created associated to the channel.
-                socketChannel.register(getSelector(), SelectionKey.OP_READ, server);
+                //A new readable key is created associated to the channel, if the multi-reactor
+                //mode is enabled then the channel is pinned to one worker reactor for all its life.
+                if (!reactors.isEmpty()) {
+                    NetReactor reactor = nextReactor();
+                    reactorsByChannel.put(socketChannel, reactor);
+                    reactor.register(socketChannel, SelectionKey.OP_READ, server);
+                } else {
+                    socketChannel.register(getSelector(), SelectionKey.OP_READ, server);
+                }
 
                 if (isCreationTimeoutAvailable()) {
                     getTimer().schedule(new ConnectionTimeout(socketChannel), getCreationTimeout());
@@ -760,36 +1029,38 @@ public final class NetService extends Service<NetServiceConsumer> {
      * This method is called from the main thread in order to read data
      * from a particular key.
      *
-     * @param keyChannel Readable key from selector.
+     * @param keyChannel  Readable key from selector.
+     * @param consumer    Net service consumer.
+     * @param inputBuffer Input buffer of the current thread.
      */
-    private void read(SelectableChannel keyChannel, NetServiceConsumer consumer) {
+    private void read(SelectableChannel keyChannel, NetServiceConsumer consumer, ByteBuffer inputBuffer) {
         if (!isShuttingDown()) {
-            if (keyChannel instanceof SocketChannel) {
+            if (keyChannel instanceof SocketChannel && bufferPool != null &&
+                    !consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                readPooled((SocketChannel) keyChannel, consumer);
+            } else if (keyChannel instanceof SocketChannel) {
                 SocketChannel channel = (SocketChannel) keyChannel;
 
-                //Ger the instance of the current IO thread.
-                NetServiceConsumer.NetIOThread ioThread = (NetServiceConsumer.NetIOThread) Thread.currentThread();
-
                 try (ByteArrayOutputStream readData = new ByteArrayOutputStream()) {
                     int readSize;
                     int totalSize = 0;
 
                     try {
                         //Put all the bytes into the buffer of the IO thread.
-                        ioThread.getInputBuffer().rewind();
-                        totalSize += readSize = channel.read(ioThread.getInputBuffer());
+                        inputBuffer.rewind();
+                        totalSize += readSize = channel.read(inputBuffer);
                         while (readSize > 0) {
-                            readData.write(ioThread.getInputBuffer().array(), 0, readSize);
+                            readData.write(inputBuffer.array(), 0, readSize);
                             readData.flush();
-                            ioThread.getInputBuffer().rewind();
-                            totalSize += readSize = channel.read(ioThread.getInputBuffer());
+                            inputBuffer.rewind();
+                            totalSize += readSize = channel.read(inputBuffer);
                         }
                     } catch (IOException ex) {
-                        destroyChannel(channel);
+                        closeChannel(channel);
                     }
 
                     if (totalSize == -1) {
-                        destroyChannel(channel);
+                        closeChannel(channel);
                     } else if (readData.size() > 0) {
                         NetPackage netPackage = new DefaultNetPackage(
                                 "",
@@ -803,29 +1074,36 @@ public final class NetService extends Service<NetServiceConsumer> {
 
                         netPackage.setSession(session);
 
+                        SSLHelper sslHelper = null;
                         if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
-                            netPackage = sslHelpers.get(session).read(netPackage);
+                            sslHelper = sslHelpers.get(session);
+                            netPackage = sslHelper.read(netPackage);
+                            if (!sslHelper.isFlushed()) {
+                                //The handshaking data will be written when the channel is writable.
+                                setInterestOps(channel, SelectionKey.OP_WRITE);
+                            }
                         }
 
                         onAction(netPackage, consumer);
+                        if (sslHelper != null && sslHelper.getStatus() == SSLHelper.SSLHelperStatus.CLOSED) {
+                            //The remote host sent the close notify message.
+                            closeChannel(channel);
+                        }
                     }
                 } catch (Exception ex) {
                     Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net service read exception, on TCP context", ex);
-                    destroyChannel(channel);
+                    closeChannel(channel);
                 }
             } else if (keyChannel instanceof DatagramChannel) {
                 DatagramChannel channel = (DatagramChannel) keyChannel;
 
-                //Ger the instance of the current IO thread.
-                NetServiceConsumer.NetIOThread ioThread = (NetServiceConsumer.NetIOThread) Thread.currentThread();
-
                 try {
                     ByteArrayOutputStream readData = new ByteArrayOutputStream();
-                    ioThread.getInputBuffer().clear();
-                    ioThread.getInputBuffer().rewind();
+                    inputBuffer.clear();
+                    inputBuffer.rewind();
 
-                    InetSocketAddress address = (InetSocketAddress) channel.receive(ioThread.getInputBuffer());
-                    readData.write(ioThread.getInputBuffer().array(), 0, ioThread.getInputBuffer().position());
+                    InetSocketAddress address = (InetSocketAddress) channel.receive(inputBuffer);
+                    readData.write(inputBuffer.array(), 0, inputBuffer.position());
 
                     if (address != null) {
                         NetPackage netPackage = new DefaultNetPackage(
@@ -865,68 +1143,164 @@ public final class NetService extends Service<NetServiceConsumer> {
         }
     }
 
+    /**
+     * This method reads the data of the channel directly into buffers taken from the pool,
+     * each buffer is dispatched to the consumer like a pooled package without copy the data,
+     * and returns to the pool when the consumer ends.
+     *
+     * @param channel  Readable channel.
+     * @param consumer Net service consumer.
+     */
+    private void readPooled(SocketChannel channel, NetServiceConsumer<?, ?> consumer) {
+        try {
+            boolean full = true;
+            while (full) {
+                NetBufferPool.PooledBuffer pooledBuffer = bufferPool.acquire();
+                try {
+                    ByteBuffer buffer = pooledBuffer.getBuffer();
+                    int readSize = channel.read(buffer);
+                    full = !buffer.hasRemaining();
+                    if (readSize > 0) {
+                        NetSession session = sessionsByChannel.get(channel);
+                        NetPackage netPackage = new PooledNetPackage("", "",
+                                channel.socket().getPort(), channel.socket().getLocalPort(),
+                                pooledBuffer, 0, buffer.position(), NetPackage.ActionEvent.READ);
+
+                        //Here the session is linked with the current thread
+                        ((ServiceThread) Thread.currentThread()).setSession(session);
+                        netPackage.setSession(session);
+
+                        onAction(netPackage, consumer);
+                        if (session != null && !session.isWritable()) {
+                            //Stops reading while the output of the session is over the high watermark.
+                            full = false;
+                        }
+                    } else {
+                        full = false;
+                        if (readSize == -1) {
+                            closeChannel(channel);
+                        }
+                    }
+                } finally {
+                    pooledBuffer.release();
+                }
+            }
+        } catch (IOException ex) {
+            closeChannel(channel);
+        } catch (Exception ex) {
+            Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net service read exception, on TCP context", ex);
+            closeChannel(channel);
+        }
+    }
+
     /**
      * This method take the output queue associated to the consumer and write over the
      * session channel all the packages.
      * If one of the packages is a disconnection package then the channel is closed and
      * the rest of the packages are discarded.
      *
-     * @param channel  Session channel.
-     * @param consumer Net service consumer.
+     * @param channel      Session channel.
+     * @param consumer     Net service consumer.
+     * @param outputBuffer Output buffer of the current thread.
      */
-    private void write(SelectableChannel channel, NetServiceConsumer consumer) {
-        NetServiceConsumer.NetIOThread ioThread = (NetServiceConsumer.NetIOThread) Thread.currentThread();
+    private void write(SelectableChannel channel, NetServiceConsumer consumer, ByteBuffer outputBuffer) {
         try {
             Queue<NetPackage> queue = outputQueue.get(channel);
 
             if (queue != null) {
                 lastWrite.put(channel, System.currentTimeMillis());
                 boolean stop = false;
+                boolean pending = false;
+
+                if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                    //Continues the tls stage before write new packages
+                    SSLHelper sslHelper = sslHelpers.get(sessionsByChannel.get(channel));
+                    if (sslHelper != null) {
+                        try {
+                            pending = !sslHelper.flush();
+                        } catch (IOException ex) {
+                            closeChannel((SocketChannel) channel);
+                            return;
+                        }
+                        releaseOutput(sslHelper);
+                        onAction(sslHelper.takeInput(), consumer);
+                    }
+                }
 
                 int count = 0;
-                while (!queue.isEmpty() && !stop) {
-                    NetPackage netPackage = queue.poll();
+                while (!queue.isEmpty() && !stop && !pending) {
+                    NetPackage netPackage = queue.peek();
                     if (netPackage == null) {
                         break;
                     }
 
+                    if (netPackage instanceof FileRegionNetPackage) {
+                        if (!writeFileRegion((SocketChannel) channel, (FileRegionNetPackage) netPackage, consumer, outputBuffer)) {
+                            pending = true;
+                            break;
+                        }
+                        queue.poll();
+                        releaseOutput(netPackage);
+                        netPackage.setPackageStatus(NetPackage.PackageStatus.OK);
+                        onAction(netPackage, consumer);
+                        if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                            pending = !sslHelpers.get(netPackage.getSession()).isFlushed();
+                        }
+                        continue;
+                    }
+
+                    if (netPackage.getActionEvent().equals(NetPackage.ActionEvent.WRITE) &&
+                            channel instanceof SocketChannel &&
+                            !consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                        //All the consecutive write packages are written with only one operation.
+                        if (!gatheringWrite((SocketChannel) channel, queue, consumer)) {
+                            pending = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    queue.poll();
+                    if (netPackage.getActionEvent().equals(NetPackage.ActionEvent.WRITE) &&
+                            !consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                        //The tls packages are released when the ssl helper writes all its encrypted data.
+                        releaseOutput(netPackage);
+                    }
+
                     NetSession session = netPackage.getSession();
 
                     switch (netPackage.getActionEvent()) {
                         case WRITE: {
                             try {
                                 if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
-                                    netPackage = sslHelpers.get(session).write(netPackage);
+                                    SSLHelper sslHelper = sslHelpers.get(session);
+                                    sslHelper.write(netPackage);
+                                    pending = !sslHelper.isFlushed();
+                                    releaseOutput(sslHelper);
                                 } else {
                                     byte[] byteData = netPackage.getPayload();
                                     if (byteData.length == 0) {
                                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Empty write data");
                                     }
                                     int begin = 0;
-                                    int length = (byteData.length - begin) > session.getConsumer().getOutputBufferSize() ?
-                                            session.getConsumer().getOutputBufferSize() : byteData.length - begin;
+                                    int length = (byteData.length - begin) > outputBuffer.capacity() ?
+                                            outputBuffer.capacity() : byteData.length - begin;
 
                                     while (begin < byteData.length) {
-                                        ioThread.getOutputBuffer().limit(length);
-                                        ioThread.getOutputBuffer().put(byteData, begin, length);
-                                        ioThread.getOutputBuffer().rewind();
-
-                                        if (channel instanceof SocketChannel) {
-                                            int writtenData = 0;
-                                            while (writtenData < length) {
-                                                writtenData += ((SocketChannel) channel).write(ioThread.getOutputBuffer());
-                                            }
-                                        } else if (channel instanceof DatagramChannel) {
+                                        outputBuffer.limit(length);
+                                        outputBuffer.put(byteData, begin, length);
+                                        outputBuffer.rewind();
+
+                                        if (channel instanceof DatagramChannel) {
                                             SocketAddress address = addresses.get(netPackage.getSession());
                                             if (sessionsByAddress.get(address).equals(netPackage.getSession())) {
-                                                ((DatagramChannel) channel).send(ioThread.getOutputBuffer(), address);
+                                                ((DatagramChannel) channel).send(outputBuffer, address);
                                             }
                                         }
 
-                                        ioThread.getOutputBuffer().rewind();
+                                        outputBuffer.rewind();
                                         begin += length;
-                                        length = (byteData.length - begin) > session.getConsumer().getOutputBufferSize() ?
-                                                session.getConsumer().getOutputBufferSize() : byteData.length - begin;
+                                        length = (byteData.length - begin) > outputBuffer.capacity() ?
+                                                outputBuffer.capacity() : byteData.length - begin;
                                     }
                                 }
 
@@ -940,9 +1314,6 @@ public final class NetService extends Service<NetServiceConsumer> {
                                 onAction(netPackage, consumer);
                             }
 
-                            //Change the key operation to finish write loop
-                            channel.keyFor(getSelector()).interestOps(SelectionKey.OP_READ);
-
                             break;
                         }
                         case DISCONNECT: {
@@ -967,24 +1338,190 @@ public final class NetService extends Service<NetServiceConsumer> {
                     }
                     count++;
                 }
+
+                if (!stop) {
+                    NetSession session = sessionsByChannel.get(channel);
+                    SelectionKey key = channel.keyFor(getSelector(channel));
+                    if (key != null && key.isValid()) {
+                        if (pending) {
+                            //The socket buffer is full, the write loop continues when the channel is writable again.
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        } else if (session != null && !session.isWritable()) {
+                            //The read operations keep suspended while the session is not writable.
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        } else {
+                            //Change the key operation to finish write loop
+                            key.interestOps(SelectionKey.OP_READ);
+                            if (!queue.isEmpty()) {
+                                //Some package was added after the end of the loop.
+                                key.interestOps(SelectionKey.OP_WRITE);
+                                key.selector().wakeup();
+                            }
+                        }
+                    }
+                }
             }
         } catch (Exception ex) {
-            ex.printStackTrace();
             Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write global thread exception", ex);
         } finally {
-            ioThread.getOutputBuffer().clear();
-            ioThread.getOutputBuffer().rewind();
+            outputBuffer.clear();
+            outputBuffer.rewind();
+        }
+    }
+
+    /**
+     * Writes the region of the file over the channel. For plain sockets the region is
+     * transferred directly from the file to the socket, for tls sessions the region is read
+     * in fragments that are wrapped by the ssl engine, a new fragment is read only when the
+     * encrypted data of the previous fragment was written.
+     * If the operation fails then the package is removed of the queue and the file is closed.
+     *
+     * @param channel      Socket channel.
+     * @param netPackage   File region package at the head of the queue.
+     * @param consumer     Net service consumer.
+     * @param outputBuffer Output buffer of the current thread.
+     * @return Returns true if all the region was written and false if there are pending data.
+     * @throws IOException Exception of the write operation.
+     */
+    private boolean writeFileRegion(SocketChannel channel, FileRegionNetPackage netPackage,
+                                    NetServiceConsumer<?, ?> consumer, ByteBuffer outputBuffer) throws IOException {
+        try {
+            if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                SSLHelper sslHelper = sslHelpers.get(netPackage.getSession());
+                while (!netPackage.isDone() && sslHelper.isDrained()) {
+                    outputBuffer.clear();
+                    netPackage.read(outputBuffer);
+                    outputBuffer.flip();
+                    sslHelper.write(outputBuffer);
+                }
+            } else {
+                long transferred = 1;
+                while (!netPackage.isDone() && transferred > 0) {
+                    //If the socket buffer is full the transfer returns zero.
+                    transferred = netPackage.transferTo(channel);
+                }
+            }
+        } catch (IOException ex) {
+            outputQueue.get(channel).remove(netPackage);
+            releaseOutput(netPackage);
+            netPackage.setPackageStatus(NetPackage.PackageStatus.IO_ERROR);
+            netPackage.close();
+            onAction(netPackage, consumer);
+            throw ex;
+        }
+
+        boolean result = netPackage.isDone();
+        if (result) {
+            netPackage.close();
         }
+        return result;
+    }
+
+    /**
+     * Writes all the consecutive write packages at the head of the queue using only one
+     * gathering operation over the channel. The packages are removed from the queue only when
+     * all its data was written, if the socket accepts only a part of the data then the rest
+     * of the buffer is stored to continue the next time that the channel is writable.
+     *
+     * @param channel  Socket channel.
+     * @param queue    Output queue of the channel.
+     * @param consumer Net service consumer.
+     * @return Returns true if all the packages was written and false if there are pending data.
+     * @throws IOException Exception of the write operation.
+     */
+    private boolean gatheringWrite(SocketChannel channel, Queue<NetPackage> queue, NetServiceConsumer<?, ?> consumer) throws IOException {
+        NetPackage[] packages = new NetPackage[gatheringMaxBuffers];
+        ByteBuffer[] buffers = new ByteBuffer[gatheringMaxBuffers];
+        int count = 0;
+        for (NetPackage netPackage : queue) {
+            if (count == gatheringMaxBuffers || !netPackage.getActionEvent().equals(NetPackage.ActionEvent.WRITE) ||
+                    netPackage instanceof FileRegionNetPackage) {
+                break;
+            }
+            packages[count] = netPackage;
+            if (count == 0 && partialWrites.containsKey(channel)) {
+                buffers[count] = partialWrites.remove(channel);
+            } else {
+                buffers[count] = ByteBuffer.wrap(netPackage.getPayload());
+            }
+            count++;
+        }
+
+        try {
+            channel.write(buffers, 0, count);
+        } catch (IOException ex) {
+            for (int i = 0; i < count; i++) {
+                queue.poll();
+                releaseOutput(packages[i]);
+                packages[i].setPackageStatus(NetPackage.PackageStatus.IO_ERROR);
+                onAction(packages[i], consumer);
+            }
+            throw ex;
+        }
+
+        boolean result = true;
+        for (int i = 0; i < count; i++) {
+            if (buffers[i].hasRemaining()) {
+                partialWrites.put(channel, buffers[i]);
+                result = false;
+                break;
+            }
+            queue.poll();
+            releaseOutput(packages[i]);
+            packages[i].setPackageStatus(NetPackage.PackageStatus.OK);
+            onAction(packages[i], consumer);
+        }
+        return result;
     }
 
     /**
-     * This method put all the action events in a queue by session and then start a
-     * new thread to notify all the consumers
+     * Removes the written package of the output accounting of the session, if the
+     * session returns under the low watermark then the consumer is notified.
+     *
+     * @param netPackage Package removed of the output queue.
+     */
+    private void releaseOutput(NetPackage netPackage) {
+        NetSession session = netPackage.getSession();
+        if (session != null && session.removeOutput(netPackage.getPayload().length)) {
+            session.getConsumer().onWritabilityChanged(session);
+        }
+    }
+
+    /**
+     * Removes from the output accounting of the session the packages of the ssl helper
+     * whose encrypted data was written over the channel.
+     *
+     * @param sslHelper Ssl helper of the session.
+     */
+    private void releaseOutput(SSLHelper sslHelper) {
+        for (NetPackage netPackage : sslHelper.takeWrittenPackages()) {
+            releaseOutput(netPackage);
+        }
+    }
+
+    /**
+     * This method notifies the action event to the consumer, if the current thread is a worker
+     * reactor then the event is queued and the consumer is notified over its io threads.
      *
      * @param netPackage Received data.
      * @param consumer   Consumer associated to the session.
      */
     private void onAction(final NetPackage netPackage, final NetServiceConsumer consumer) {
+        if (netPackage != null) {
+            NetReactor reactor = getCurrentReactor();
+            if (reactor == null || !reactor.deliver(netPackage)) {
+                notifyAction(netPackage, consumer);
+            }
+        }
+    }
+
+    /**
+     * This method calls the consumer's method associated to the action event of the package.
+     *
+     * @param netPackage Net package.
+     * @param consumer   Consumer associated to the session.
+     */
+    private void notifyAction(final NetPackage netPackage, final NetServiceConsumer<?, ?> consumer) {
         if (netPackage != null) {
             try {
                 switch (netPackage.getActionEvent()) {
@@ -1047,351 +1584,739 @@ public final class NetService extends Service<NetServiceConsumer> {
         UDP
     }
 
-    private static class SSLHelper implements Runnable {
-
-        private SSLEngine sslEngine;
-        private final SelectableChannel selectableChannel;
-        private final NetServiceConsumer consumer;
-        private final NetSession session;
-
-        private final ThreadPoolExecutor ioExecutor;
-        private final ThreadPoolExecutor engineTaskExecutor;
-        private final ByteBuffer srcWrap;
-        private final ByteBuffer destWrap;
-        private final ByteBuffer srcUnwrap;
-        private final ByteBuffer destUnwrap;
-
-        private SSLHelper.SSLHelperStatus status;
-
-        private final Object writeSemaphore;
-        private final Object readSemaphore;
-        private ByteBuffer decryptedPlace;
-        private boolean read;
-        private boolean written;
+    /**
+     * This class is a worker reactor of the multi-reactor mode, each reactor has its own
+     * selector and all the channels registered in the reactor are read and written
+     * from the same thread for all its life, the main selector only accepts the new connections.
+     * The action events produced by the io operations are notified to the consumers over
+     * its io threads, then the consumers never run over the reactor thread.
+     */
+    private class NetReactor implements Runnable {
+
+        private final int id;
+        private final Selector selector;
+        private final Object monitor;
+        private final ByteBuffer inputBuffer;
+        private final ByteBuffer outputBuffer;
+        private final Map<SelectableChannel, NetActions> actionsByChannel;
+        private final List<NetActions> rejectedActions;
+        private NetActions currentActions;
+        private Thread reactorThread;
+
+        public NetReactor(int id, Selector selector) {
+            this.id = id;
+            this.selector = selector;
+            this.monitor = new Object();
+            this.inputBuffer = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.DEFAULT_INPUT_BUFFER_SIZE));
+            this.outputBuffer = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.DEFAULT_OUTPUT_BUFFER_SIZE));
+            this.actionsByChannel = Collections.synchronizedMap(new HashMap<>());
+            this.rejectedActions = new ArrayList<>();
+        }
 
         /**
-         * SSL Helper default constructor.
+         * Return the selector of the reactor.
          *
-         * @param sslEngine         SSL Engine.
-         * @param selectableChannel Selectable channel.
+         * @return Reactor's selector.
          */
-        public SSLHelper(SSLEngine sslEngine, SelectableChannel selectableChannel, NetServiceConsumer consumer, NetSession session) {
-            this.sslEngine = sslEngine;
-            this.selectableChannel = selectableChannel;
-            this.consumer = consumer;
-            this.session = session;
-            this.ioExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
-            this.ioExecutor.setThreadFactory(R -> (new ServiceThread(R, SystemProperties.get(SystemProperties.Net.Ssl.IO_THREAD_NAME))));
-            this.engineTaskExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(
-                    SystemProperties.getInteger(SystemProperties.Net.SSL_MAX_IO_THREAD_POOL_SIZE));
-            this.engineTaskExecutor.setThreadFactory(R -> (new ServiceThread(R, SystemProperties.get(SystemProperties.Net.Ssl.ENGINE_THREAD_NAME))));
-            srcWrap = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.OUTPUT_BUFFER_SIZE));
-            destWrap = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.OUTPUT_BUFFER_SIZE));
-            srcUnwrap = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.INPUT_BUFFER_SIZE));
-            destUnwrap = ByteBuffer.allocate(SystemProperties.getInteger(SystemProperties.Net.INPUT_BUFFER_SIZE));
-            srcUnwrap.limit(0);
+        public Selector getSelector() {
+            return selector;
+        }
 
-            //SSL Helper first status
-            status = SSLHelper.SSLHelperStatus.WAITING;
+        /**
+         * Verify if the current thread is the thread of the reactor.
+         *
+         * @return True if the current thread is the reactor thread and false in the otherwise.
+         */
+        public boolean isReactorThread() {
+            return Thread.currentThread() == reactorThread;
+        }
 
-            //IO Semaphores
-            readSemaphore = new Object();
-            writeSemaphore = new Object();
+        /**
+         * Register the channel into the reactor's selector.
+         *
+         * @param channel   Channel to register.
+         * @param operation The first channel operation.
+         * @param attach    Object to be attached into the registered key.
+         * @throws ClosedChannelException
+         */
+        public void register(SelectableChannel channel, int operation, Object attach) throws ClosedChannelException {
+            synchronized (monitor) {
+                selector.wakeup();
+                channel.register(selector, operation, attach);
+            }
+        }
 
-            //Start handshaking
-            instance.fork(this, ioExecutor);
+        /**
+         * Removes the action queue of the destroyed channel, the actions already queued
+         * are notified anyway.
+         *
+         * @param channel Destroyed channel.
+         */
+        public void removeActions(SelectableChannel channel) {
+            actionsByChannel.remove(channel);
         }
 
         /**
-         * This method is called when there are data into the read buffer.
+         * Queues the action event produced by the io operation in progress. The threads waiting
+         * for the package are notified here because the consumer could be waiting into a
+         * previous action of the same channel.
          *
-         * @param decrypted Read buffer.
+         * @param netPackage Net package.
+         * @return False if the reactor is not doing an io operation.
          */
-        private void onRead(ByteBuffer decrypted) {
-            byte[] decryptedArray = new byte[decrypted.limit()];
-            decrypted.get(decryptedArray);
-            if (status.equals(SSLHelper.SSLHelperStatus.READY)) {
-                synchronized (readSemaphore) {
-                    read = true;
-                    decryptedPlace = ByteBuffer.wrap(decryptedArray);
-                    readSemaphore.notifyAll();
+        public boolean deliver(NetPackage netPackage) {
+            boolean result = false;
+            if (currentActions != null) {
+                if (netPackage instanceof PooledNetPackage) {
+                    //The pooled buffer is released when the consumer ends.
+                    ((PooledNetPackage) netPackage).retain();
+                }
+                synchronized (netPackage) {
+                    netPackage.notify();
                 }
+                currentActions.add(netPackage);
+                result = true;
             }
+            return result;
         }
 
         /**
-         * This method is called when there are data into the write buffer.
+         * Reads or writes the channel of the key over the reactor thread and then sends the
+         * action events to the io executor of the consumer. The read operations of the channel
+         * are suspended until the consumer ends with the events, then the channel is not read
+         * faster than the consumer.
          *
-         * @param encrypted Write buffer.
+         * @param key      Selected key.
+         * @param consumer Net service consumer.
          */
-        private void onWrite(ByteBuffer encrypted) {
-            try {
-                long size = encrypted.limit();
-                long total = 0;
-                while (total < size) {
-                    total += ((SocketChannel) selectableChannel).write(encrypted);
-                }
-            } catch (IOException ex) {
-                throw new RuntimeException("", ex);
-            }
-            if (status.equals(SSLHelper.SSLHelperStatus.READY)) {
-                synchronized (writeSemaphore) {
-                    written = true;
-                    writeSemaphore.notifyAll();
+        private void dispatch(SelectionKey key, NetServiceConsumer<?, ?> consumer) {
+            SelectableChannel channel = key.channel();
+            synchronized (channel) {
+                if (key.isValid()) {
+                    NetActions actions = actionsByChannel.computeIfAbsent(channel, C -> new NetActions(key, consumer));
+                    ServiceThread thread = (ServiceThread) Thread.currentThread();
+                    ServiceSession reactorSession = thread.getSession();
+                    currentActions = actions;
+                    try {
+                        if (key.isReadable()) {
+                            read(channel, consumer, inputBuffer);
+                        } else {
+                            write(channel, consumer, outputBuffer);
+                        }
+                    } finally {
+                        //The session of the reactor is restored because the actions are forked from this thread.
+                        currentActions = null;
+                        thread.setSession(reactorSession);
+                    }
+
+                    if (!actions.scheduled && !actions.isEmpty()) {
+                        actions.scheduled = true;
+                        if (!schedule(actions)) {
+                            rejectedActions.add(actions);
+                        }
+                    }
+
+                    if (actions.scheduled && key.isValid() && key.interestOps() == SelectionKey.OP_READ) {
+                        key.interestOps(0);
+                    }
                 }
             }
         }
 
         /**
-         * This method is called when the operation fail.
+         * Sends the actions of the channel to the io executor of the consumer.
          *
-         * @param ex Fail exception.
+         * @param actions Actions of the channel.
+         * @return False if the io executor rejects the actions.
          */
-        private void onFailure(Exception ex) {
-            status = SSLHelper.SSLHelperStatus.FAIL;
+        private boolean schedule(NetActions actions) {
+            boolean result = true;
+            try {
+                fork(actions, actions.consumer.getIoExecutor());
+            } catch (RejectedExecutionException ex) {
+                ioRejections.increment();
+                result = false;
+            }
+            return result;
         }
 
         /**
-         * This method is called when the operation is success.
+         * Sends again the actions rejected by the io executors.
          */
-        private void onSuccess() {
-            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "SSL handshaking success");
-            status = SSLHelper.SSLHelperStatus.READY;
-            DefaultNetPackage defaultNetPackage = new DefaultNetPackage("", "",
-                    0, consumer.getPort(), new byte[0], NetPackage.ActionEvent.CONNECT);
-            defaultNetPackage.setSession(session);
-            if (consumer instanceof NetClient) {
-                consumer.onConnect(defaultNetPackage);
+        private void scheduleRejected() {
+            Iterator<NetActions> iterator = rejectedActions.iterator();
+            while (iterator.hasNext()) {
+                NetActions actions = iterator.next();
+                synchronized (actions.key.channel()) {
+                    if (schedule(actions)) {
+                        iterator.remove();
+                    }
+                }
             }
         }
 
         /**
-         * This method is called when the helper is closed.
+         * Restores the interest operation of the key after the actions of the channel, if some
+         * thread changed the operation while the actions was in flight then the key is not changed.
+         *
+         * @param key Selected key.
          */
-        private void onClosed() {
-            DefaultNetPackage defaultNetPackage = new DefaultNetPackage("", "",
-                    0, consumer.getPort(), new byte[0], NetPackage.ActionEvent.DISCONNECT);
-            consumer.onDisconnect(session, defaultNetPackage);
+        private void resume(SelectionKey key) {
+            if (key.isValid() && key.interestOps() == 0) {
+                SelectableChannel channel = key.channel();
+                Queue<NetPackage> queue = outputQueue.get(channel);
+                NetSession session = sessionsByChannel.get(channel);
+                if ((queue != null && !queue.isEmpty()) || (session != null && !session.isWritable())) {
+                    //The read operations keep suspended while the session is not writable.
+                    key.interestOps(SelectionKey.OP_WRITE);
+                } else {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                selector.wakeup();
+            }
         }
 
         /**
-         * Run method of the helper.
+         * Main loop of the reactor, the reactor does all the io operations of its channels
+         * and only the action events are processed over the io threads of the consumers.
          */
         @Override
         public void run() {
-            while (this.isHandShaking()) {
-                continue;
+            reactorThread = Thread.currentThread();
+            try {
+                reactorThread.setName(SystemProperties.get(SystemProperties.Net.REACTOR_THREAD_NAME) + id);
+            } catch (SecurityException ex) {
+            }
+
+            try {
+                while (running) {
+                    if (rejectedActions.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+
+                    Iterator<SelectionKey> selectedKeys;
+                    synchronized (monitor) {
+                        selectedKeys = selector.selectedKeys().iterator();
+                    }
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+
+                        try {
+                            if (key.isValid() && key.channel().isOpen()) {
+                                NetServiceConsumer<?, ?> consumer = (NetServiceConsumer<?, ?>) key.attachment();
+                                if (key.isReadable() || key.isWritable()) {
+                                    dispatch(key, consumer);
+                                }
+                            }
+                        } catch (CancelledKeyException ex) {
+                            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Cancelled key");
+                        } catch (Exception ex) {
+                            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Internal reactor exception", ex);
+                        }
+                    }
+
+                    if (!rejectedActions.isEmpty()) {
+                        scheduleRejected();
+                        if (!rejectedActions.isEmpty() && ioRejectionBackoff > 0) {
+                            //The io pool is saturated, the channels with rejected actions keep
+                            //suspended and the actions are sent again after the backoff.
+                            LockSupport.parkNanos(ioRejectionBackoff);
+                        }
+                    }
+                }
+
+                try {
+                    selector.close();
+                } catch (IOException ex) {
+                    Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Closing reactor selector...", ex);
+                }
+            } catch (Exception ex) {
+                Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unexpected reactor error", ex);
             }
+
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net reactor %d stopped", id);
         }
 
         /**
-         * Write data into the associated channel.
-         *
-         * @param netPackage Net package.
-         * @return Net package.
+         * Ordered queue of the action events of a channel, the events are notified to the
+         * consumer by only one io thread at the same time.
          */
-        public synchronized NetPackage write(NetPackage netPackage) {
-            instance.fork(() -> {
-                srcWrap.put(netPackage.getPayload());
-                SSLHelper.this.run();
-            }, ioExecutor);
+        private class NetActions implements Runnable {
 
-            DefaultNetPackage defaultNetPackage = null;
-            if (status.equals(SSLHelper.SSLHelperStatus.READY)) {
-                synchronized (writeSemaphore) {
-                    try {
-                        if (!written) {
-                            readSemaphore.wait();
-                            defaultNetPackage = new DefaultNetPackage("", "",
-                                    0, consumer.getPort(), netPackage.getPayload(), NetPackage.ActionEvent.READ);
-                            defaultNetPackage.setSession(netPackage.getSession());
+            private final SelectionKey key;
+            private final NetServiceConsumer<?, ?> consumer;
+            private final Queue<NetPackage> packages;
+            private boolean scheduled;
+
+            public NetActions(SelectionKey key, NetServiceConsumer<?, ?> consumer) {
+                this.key = key;
+                this.consumer = consumer;
+                this.packages = new ConcurrentLinkedQueue<>();
+            }
+
+            /**
+             * Adds an action event at the end of the queue.
+             *
+             * @param netPackage Net package.
+             */
+            public void add(NetPackage netPackage) {
+                packages.add(netPackage);
+            }
+
+            /**
+             * Verify if the queue has not action events.
+             *
+             * @return True if the queue is empty.
+             */
+            public boolean isEmpty() {
+                return packages.isEmpty();
+            }
+
+            /**
+             * Notifies all the queued events to the consumer and resumes the key when
+             * the queue is empty.
+             */
+            @Override
+            public void run() {
+                boolean done = false;
+                while (!done) {
+                    NetPackage netPackage;
+                    while ((netPackage = packages.poll()) != null) {
+                        //Here the session is linked with the current thread
+                        ((ServiceThread) Thread.currentThread()).setSession(netPackage.getSession());
+                        try {
+                            notifyAction(netPackage, consumer);
+                        } finally {
+                            ((ServiceThread) Thread.currentThread()).setSession(null);
+                            if (netPackage instanceof PooledNetPackage) {
+                                ((PooledNetPackage) netPackage).release();
+                            }
+                        }
+                    }
+
+                    synchronized (key.channel()) {
+                        if (packages.isEmpty()) {
+                            scheduled = false;
+                            resume(key);
+                            done = true;
                         }
-                    } catch (Exception ex) {
-                    } finally {
-                        written = false;
                     }
                 }
             }
+        }
+    }
+
+    /**
+     * This class is the tls stage of the channels with protocol TCP_SSL. All the wrap and unwrap
+     * operations are done inline over the io thread or the reactor of the channel, and the encrypted data is
+     * written over the channel without blocking, if the socket is full then the data is stored
+     * until the next writable event and the rest of the plain data is not wrapped until then. The delegated tasks of the engine are executed over
+     * a shared executor and when the task ends the handshaking continues into the io thread.
+     */
+    private static class SSLHelper {
 
-            return defaultNetPackage;
+        private final SSLEngine sslEngine;
+        private final SocketChannel channel;
+        private final NetServiceConsumer consumer;
+        private final NetSession session;
+        private final ByteArrayOutputStream decrypted;
+        private ByteBuffer netInput;
+        private ByteBuffer appInput;
+        private ByteBuffer netOutput;
+        private ByteBuffer appOutput;
+        private final List<NetPackage> wrappedPackages;
+        private SSLHelperStatus status;
+        private boolean taskRunning;
+
+        /**
+         * SSL Helper default constructor.
+         *
+         * @param sslEngine SSL Engine.
+         * @param channel   Socket channel.
+         * @param consumer  Consumer of the channel.
+         * @param session   Session of the channel.
+         */
+        public SSLHelper(SSLEngine sslEngine, SocketChannel channel, NetServiceConsumer consumer, NetSession session) {
+            this.sslEngine = sslEngine;
+            this.channel = channel;
+            this.consumer = consumer;
+            this.session = session;
+            this.decrypted = new ByteArrayOutputStream();
+            this.netInput = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+            this.appInput = ByteBuffer.allocate(sslEngine.getSession().getApplicationBufferSize());
+            this.netOutput = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+            this.appOutput = ByteBuffer.allocate(0);
+            this.wrappedPackages = new ArrayList<>();
+
+            //SSL Helper first status
+            status = SSLHelperStatus.WAITING;
         }
 
         /**
-         * Read data from the associated channel.
+         * Return the status of the helper.
          *
-         * @param netPackage Net package.
-         * @return Input data.
+         * @return Helper status.
          */
-        public synchronized NetPackage read(NetPackage netPackage) {
-            instance.fork(() -> {
-                srcUnwrap.put(netPackage.getPayload());
-                SSLHelper.this.run();
-            }, ioExecutor);
+        public synchronized SSLHelperStatus getStatus() {
+            return status;
+        }
 
-            DefaultNetPackage defaultNetPackage = null;
-            if (status.equals(SSLHelper.SSLHelperStatus.READY)) {
-                synchronized (readSemaphore) {
-                    try {
-                        if (!read) {
-                            readSemaphore.wait();
-                        }
-                        defaultNetPackage = new DefaultNetPackage("", "",
-                                0, consumer.getPort(), decryptedPlace.array(), NetPackage.ActionEvent.READ);
-                        defaultNetPackage.setSession(netPackage.getSession());
-                    } catch (InterruptedException e) {
-                    } finally {
-                        read = false;
-                    }
-                }
+        /**
+         * Unwraps the encrypted data of the package.
+         *
+         * @param netPackage Net package with the encrypted data.
+         * @return Returns a package with the decrypted data or null if there are not
+         * decrypted data yet.
+         * @throws IOException Tls or io exception.
+         */
+        public synchronized NetPackage read(NetPackage netPackage) throws IOException {
+            byte[] payload = netPackage.getPayload();
+            netInput = ensureRemaining(netInput, payload.length);
+            netInput.put(payload);
+            process();
+            return takeInput();
+        }
+
+        /**
+         * Wraps the data of the package and tries to write the encrypted data over the channel.
+         * If the handshaking is not finished then the data is stored until the end of the handshaking.
+         * The package is kept by the helper until all its encrypted data is written.
+         *
+         * @param netPackage Net package with the plain data.
+         * @return Returns the same package.
+         * @throws IOException Tls or io exception.
+         */
+        public synchronized NetPackage write(NetPackage netPackage) throws IOException {
+            wrappedPackages.add(netPackage);
+            write(ByteBuffer.wrap(netPackage.getPayload()));
+            return netPackage;
+        }
+
+        /**
+         * Wraps the remaining data of the buffer and tries to write the encrypted data over the channel.
+         *
+         * @param data Buffer with the plain data.
+         * @throws IOException Tls or io exception.
+         */
+        public synchronized void write(ByteBuffer data) throws IOException {
+            appOutput = ensureRemaining(appOutput, data.remaining());
+            appOutput.put(data);
+            process();
+        }
+
+        /**
+         * Continues the pending operations of the helper and writes the stored encrypted data.
+         *
+         * @return Returns true if all the encrypted data was written.
+         * @throws IOException Tls or io exception.
+         */
+        public synchronized boolean flush() throws IOException {
+            process();
+            return isFlushed();
+        }
+
+        /**
+         * Return true if there are not encrypted data waiting to be written.
+         *
+         * @return Flushed value.
+         */
+        public synchronized boolean isFlushed() {
+            return netOutput.position() == 0;
+        }
+
+        /**
+         * Return true if there are not plain data waiting to be wrapped and there are not
+         * encrypted data waiting to be written.
+         *
+         * @return Drained value.
+         */
+        public synchronized boolean isDrained() {
+            return appOutput.position() == 0 && netOutput.position() == 0;
+        }
+
+        /**
+         * Returns the packages written with the helper if all its data was wrapped and written
+         * over the channel.
+         *
+         * @return Written packages or empty list if there are pending data.
+         */
+        public synchronized List<NetPackage> takeWrittenPackages() {
+            List<NetPackage> result = Collections.emptyList();
+            if (!wrappedPackages.isEmpty() && isDrained()) {
+                result = new ArrayList<>(wrappedPackages);
+                wrappedPackages.clear();
             }
+            return result;
+        }
 
-            return defaultNetPackage;
+        /**
+         * Returns a package with the data decrypted after the last call.
+         *
+         * @return Package with decrypted data or null if there are not data.
+         */
+        public synchronized NetPackage takeInput() {
+            NetPackage result = null;
+            if (decrypted.size() > 0) {
+                result = new DefaultNetPackage("", "", channel.socket().getPort(),
+                        channel.socket().getLocalPort(), decrypted.toByteArray(), NetPackage.ActionEvent.READ);
+                result.setSession(session);
+                decrypted.reset();
+            }
+            return result;
         }
 
         /**
          * Close the ssl engine instance.
          */
-        public void close() {
+        public synchronized void close() {
             try {
                 sslEngine.closeInbound();
             } catch (SSLException e) {
             }
             sslEngine.closeOutbound();
+            try {
+                //Best effort to send the close notify message.
+                wrap();
+                writeOutput();
+            } catch (Exception ex) {
+            }
+            status = SSLHelperStatus.CLOSED;
         }
 
         /**
-         * Return boolean to indicate if the hand shaking process is running.
+         * Runs the engine until there are no more progress.
          *
-         * @return True if the process is running and false in otherwise.
+         * @throws IOException Tls or io exception.
          */
-        private boolean isHandShaking() {
-            switch (sslEngine.getHandshakeStatus()) {
-                case NOT_HANDSHAKING:
-                    boolean occupied = false;
-                {
-                    if (srcWrap.position() > 0)
-                        occupied |= this.wrap();
-                    if (srcUnwrap.position() > 0)
-                        occupied |= this.unwrap();
+        private void process() throws IOException {
+            try {
+                boolean progress = true;
+                while (progress && !taskRunning && status != SSLHelperStatus.FAIL) {
+                    switch (sslEngine.getHandshakeStatus()) {
+                        case NEED_TASK: {
+                            runDelegatedTasks();
+                            progress = false;
+                            break;
+                        }
+                        case NEED_WRAP: {
+                            progress = wrap();
+                            break;
+                        }
+                        case NEED_UNWRAP: {
+                            progress = unwrap();
+                            break;
+                        }
+                        default: {
+                            progress = false;
+                            if (netInput.position() > 0) {
+                                progress |= unwrap();
+                            }
+                            if (appOutput.position() > 0) {
+                                //The data is wrapped only when the previous records were written,
+                                //then the encrypted data stored by the helper is never more than a record.
+                                writeOutput();
+                                if (netOutput.position() == 0) {
+                                    progress |= wrap();
+                                }
+                            }
+                        }
+                    }
                 }
-                return occupied;
-
-                case NEED_WRAP:
-                    if (!this.wrap())
-                        return false;
-                    break;
-
-                case NEED_UNWRAP:
-                    if (!this.unwrap())
-                        return false;
-                    break;
+                if (!taskRunning) {
+                    //The records of the same handshaking flight are written together.
+                    writeOutput();
+                }
+            } catch (SSLException ex) {
+                onFailure(ex);
+                throw ex;
+            }
+        }
 
-                case NEED_TASK:
-                    final Runnable sslTask = sslEngine.getDelegatedTask();
-                    instance.fork(() -> {
-                        sslTask.run();
-                        instance.fork(SSLHelper.this, ioExecutor);
-                    }, engineTaskExecutor);
-                    return false;
+        /**
+         * Executes the delegated tasks of the engine over the shared executor, when all the
+         * tasks ends the channel is marked as writable to continue with the handshaking.
+         */
+        private void runDelegatedTasks() {
+            taskRunning = true;
+            instance.fork(() -> {
+                Runnable task;
+                while ((task = sslEngine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                synchronized (SSLHelper.this) {
+                    taskRunning = false;
+                }
+                instance.setInterestOps(channel, SelectionKey.OP_WRITE);
+            }, instance.sslEngineTaskExecutor);
+        }
 
-                case FINISHED:
-                    throw new IllegalStateException("SSL handshaking fail");
+        /**
+         * Writes the encrypted data over the channel without blocking.
+         *
+         * @throws IOException Io exception.
+         */
+        private void writeOutput() throws IOException {
+            if (netOutput.position() > 0) {
+                netOutput.flip();
+                try {
+                    channel.write(netOutput);
+                } finally {
+                    netOutput.compact();
+                }
             }
-
-            return true;
         }
 
         /**
          * Wrap the output data.
          *
-         * @return Return true if the process was success.
+         * @return Return true if the engine produced or consumed data.
+         * @throws SSLException Tls exception.
          */
-        private boolean wrap() {
+        private boolean wrap() throws SSLException {
             SSLEngineResult wrapResult;
-
+            netOutput = ensureRemaining(netOutput, sslEngine.getSession().getPacketBufferSize());
+            appOutput.flip();
             try {
-                srcWrap.flip();
-                wrapResult = sslEngine.wrap(srcWrap, destWrap);
-                srcWrap.compact();
-            } catch (SSLException exc) {
-                this.onFailure(exc);
-                return false;
+                wrapResult = sslEngine.wrap(appOutput, netOutput);
+            } finally {
+                appOutput.compact();
             }
 
+            boolean result;
             switch (wrapResult.getStatus()) {
-                case OK:
-                    if (destWrap.position() > 0) {
-                        destWrap.flip();
-                        this.onWrite(destWrap);
-                        destWrap.compact();
-                    }
+                case OK: {
+                    result = wrapResult.bytesConsumed() > 0 || wrapResult.bytesProduced() > 0;
                     break;
-
-                case BUFFER_UNDERFLOW:
-                    // try again later
+                }
+                case BUFFER_OVERFLOW: {
+                    netOutput = ensureRemaining(netOutput, netOutput.capacity());
+                    result = true;
                     break;
-
-                case BUFFER_OVERFLOW:
-                    throw new IllegalStateException("SSL failed to wrap");
-
-                case CLOSED:
-                    this.onClosed();
-                    return false;
+                }
+                case CLOSED: {
+                    onClosed();
+                    result = false;
+                    break;
+                }
+                default: {
+                    result = false;
+                }
             }
 
-            if (consumer instanceof NetServer &&
-                    wrapResult.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
-                this.onSuccess();
-                return false;
+            if (wrapResult.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                onSuccess();
             }
 
-            return true;
+            return result;
         }
 
         /**
          * Unwrap the input data.
          *
-         * @return Return true if the process was success.
+         * @return Return true if the engine produced or consumed data.
+         * @throws SSLException Tls exception.
          */
-        private boolean unwrap() {
+        private boolean unwrap() throws SSLException {
             SSLEngineResult unwrapResult;
-
+            netInput.flip();
             try {
-                srcUnwrap.flip();
-                unwrapResult = sslEngine.unwrap(srcUnwrap, destUnwrap);
-                srcUnwrap.compact();
-            } catch (SSLException ex) {
-                this.onFailure(ex);
-                return false;
+                unwrapResult = sslEngine.unwrap(netInput, appInput);
+            } finally {
+                netInput.compact();
+            }
+
+            if (appInput.position() > 0) {
+                decrypted.write(appInput.array(), 0, appInput.position());
+                appInput.clear();
             }
 
+            boolean result;
             switch (unwrapResult.getStatus()) {
-                case OK:
-                    if (destUnwrap.position() > 0) {
-                        destUnwrap.flip();
-                        this.onRead(destUnwrap);
-                        destUnwrap.compact();
-                    }
+                case OK: {
+                    result = unwrapResult.bytesConsumed() > 0 || unwrapResult.bytesProduced() > 0;
                     break;
+                }
+                case BUFFER_OVERFLOW: {
+                    appInput = ensureRemaining(appInput, sslEngine.getSession().getApplicationBufferSize());
+                    result = true;
+                    break;
+                }
+                case BUFFER_UNDERFLOW: {
+                    //More data is needed to complete the record.
+                    netInput = ensureRemaining(netInput, sslEngine.getSession().getPacketBufferSize());
+                    result = false;
+                    break;
+                }
+                case CLOSED: {
+                    onClosed();
+                    result = false;
+                    break;
+                }
+                default: {
+                    result = false;
+                }
+            }
 
-                case CLOSED:
-                    this.onClosed();
-                    return false;
+            if (unwrapResult.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                onSuccess();
+            }
 
-                case BUFFER_OVERFLOW:
-                    throw new IllegalStateException("SSL failed to unwrap");
+            return result;
+        }
 
-                case BUFFER_UNDERFLOW:
-                    return false;
+        /**
+         * Returns a buffer with at least the specific remaining size, if the buffer
+         * has not enough space then a new buffer is created with the same content.
+         *
+         * @param buffer Buffer in write mode.
+         * @param size   Remaining size needed.
+         * @return Buffer with enough space.
+         */
+        private ByteBuffer ensureRemaining(ByteBuffer buffer, int size) {
+            ByteBuffer result = buffer;
+            if (buffer.remaining() < size) {
+                result = ByteBuffer.allocate(buffer.position() + size);
+                buffer.flip();
+                result.put(buffer);
             }
+            return result;
+        }
 
-            if (consumer instanceof NetClient &&
-                    unwrapResult.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
-                this.onSuccess();
-                return false;
+        /**
+         * This method is called when the operation fail.
+         *
+         * @param ex Fail exception.
+         */
+        private void onFailure(Exception ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "SSL operation fail", ex);
+            status = SSLHelperStatus.FAIL;
+        }
+
+        /**
+         * This method is called when the handshaking is success.
+         */
+        private void onSuccess() {
+            if (status == SSLHelperStatus.WAITING) {
+                Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "SSL handshaking success");
+                status = SSLHelperStatus.READY;
+                if (consumer instanceof NetClient) {
+                    DefaultNetPackage defaultNetPackage = new DefaultNetPackage("", "",
+                            0, consumer.getPort(), new byte[0], NetPackage.ActionEvent.CONNECT);
+                    defaultNetPackage.setSession(session);
+                    consumer.onConnect(defaultNetPackage);
+                }
             }
+        }
 
-            return true;
+        /**
+         * This method is called when the engine is closed, the disconnection of the session
+         * is notified by the net service when the channel is destroyed.
+         */
+        private void onClosed() {
+            status = SSLHelperStatus.CLOSED;
         }
 
         /**
@@ -1403,6 +2328,8 @@ public final class NetService extends Service<NetServiceConsumer> {
 
             READY,
 
+            CLOSED,
+
             FAIL
 
         }
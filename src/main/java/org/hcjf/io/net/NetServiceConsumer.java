@@ -9,6 +9,7 @@ import javax.net.ssl.SSLEngine;
 import java.io.IOException;
 import java.net.SocketOption;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executors;
@@ -161,11 +162,28 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      * @throws IOException Exception for io operations
      */
     protected final void write(S session, D payLoad, boolean waitFor) throws IOException {
-        if(waitFor) {
-            NetPackage netPackage = service.writeData(session, encode(payLoad));
+        writeEncoded(session, encode(payLoad), waitFor);
+    }
+
+    /**
+     * This method writes data already encoded over the session indicated.
+     * @param session Net session.
+     * @param data Encoded data.
+     * @param waitFor If this parameter is true then the operation generate
+     *                a blocking over the communication channel, the blocking is
+     *                ignored if the current thread is the owner of the session channel
+     *                because the package can't be written until the thread releases it.
+     * @throws IOException Exception for io operations
+     */
+    protected final void writeEncoded(S session, byte[] data, boolean waitFor) throws IOException {
+        if(waitFor && service.isWaitForAvailable(session)) {
+            NetPackage netPackage = service.writeData(session, data);
             synchronized (netPackage) {
                 try {
-                    netPackage.wait(getWriteWaitForTimeout());
+                    //The package could be written by the reactor or by some io thread before this point.
+                    if(netPackage.getPackageStatus().equals(NetPackage.PackageStatus.WAITING)) {
+                        netPackage.wait(getWriteWaitForTimeout());
+                    }
                 } catch (InterruptedException e) {
                     Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write wait for interrupted", e);
                 }
@@ -186,8 +204,39 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
                 }
             }
         } else {
-            NetPackage netPackage = service.writeData(session, encode(payLoad));
+            service.writeData(session, data);
+        }
+    }
+
+    /**
+     * This method writes a region of a file over the session, the data is transferred from
+     * the file to the socket without copies into the heap. This operation never blocks the caller
+     * and the file channel is closed by the service when the region was written.
+     * @param session Net session.
+     * @param fileChannel File channel.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     * @throws IOException Exception for io operations
+     */
+    protected final void writeFile(S session, FileChannel fileChannel, long position, long count) throws IOException {
+        service.writeFile(session, fileChannel, position, count);
+    }
+
+    /**
+     * This method writes some data over the session only if the output queue of the session
+     * is under the watermarks, this operation never blocks the caller.
+     * @param session Net session.
+     * @param payLoad Data to be written.
+     * @return Returns true if the data was queued and false if the session is not writable.
+     * @throws IOException Exception for io operations
+     */
+    protected final boolean tryWrite(S session, D payLoad) throws IOException {
+        boolean result = false;
+        if(session.isWritable()) {
+            service.writeData(session, encode(payLoad));
+            result = true;
         }
+        return result;
     }
 
     /**
@@ -231,7 +280,12 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      */
     public final void onRead(NetPackage netPackage) {
         S session = (S) netPackage.getSession();
-        D decodedPackage = decode(netPackage);
+        D decodedPackage;
+        if(netPackage instanceof PooledNetPackage) {
+            decodedPackage = decode(netPackage, ((PooledNetPackage) netPackage).getBuffer());
+        } else {
+            decodedPackage = decode(netPackage);
+        }
         try {
             session = checkSession(session, decodedPackage, netPackage);
             session.setChecked(true);
@@ -280,6 +334,29 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      */
     protected void onWrite(S session, NetPackage netPackage){}
 
+    /**
+     * When the output queue of the session crosses the high or the low watermark
+     * the net service calls this method to notify the new state of the session.
+     * @param session Net session.
+     */
+    @SuppressWarnings("unchecked")
+    public final void onWritabilityChanged(NetSession session) {
+        try {
+            onWritabilityChanged((S) session, session.isWritable());
+        } catch (Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Writability changed callback fail", ex);
+        }
+    }
+
+    /**
+     * Method that could be implemented by the custom implementation to know when the session
+     * stops accepting data because its output queue is over the high watermark, and when
+     * the session is writable again because the queue is under the low watermark.
+     * @param session Net session.
+     * @param writable True if the session is writable and false in the otherwise.
+     */
+    protected void onWritabilityChanged(S session, boolean writable) {}
+
     /**
      * This method decode the implementation data.
      * @param payLoad Implementation data.
@@ -294,6 +371,18 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      */
     protected abstract D decode(NetPackage netPackage);
 
+    /**
+     * This method decode the data of the net package reading it directly from the pooled buffer.
+     * The buffer is only valid during this call, the default implementation copies the
+     * data and calls the method {@link NetServiceConsumer#decode(NetPackage)}.
+     * @param netPackage Net package.
+     * @param buffer Buffer with the package data, between the position and the limit.
+     * @return Return the implementation data.
+     */
+    protected D decode(NetPackage netPackage, ByteBuffer buffer) {
+        return decode(netPackage);
+    }
+
     /**
      * Destroy the session.
      * @param session Net session to be destroyed
@@ -1,5 +1,6 @@
 package org.hcjf.io.net;
 
+import org.hcjf.properties.SystemProperties;
 import org.hcjf.service.ServiceSession;
 
 import java.util.UUID;
@@ -12,10 +13,22 @@ public abstract class NetSession extends ServiceSession {
 
     private final NetServiceConsumer consumer;
     private boolean checked;
+    private long highWatermarkBytes;
+    private long lowWatermarkBytes;
+    private int highWatermarkPackages;
+    private int lowWatermarkPackages;
+    private long outputQueueBytes;
+    private int outputQueueSize;
+    private volatile boolean writable;
 
     public NetSession(UUID id, NetServiceConsumer consumer) {
         super(id);
         this.consumer = consumer;
+        this.highWatermarkBytes = SystemProperties.getLong(SystemProperties.Net.OUTPUT_QUEUE_HIGH_WATERMARK_BYTES);
+        this.lowWatermarkBytes = SystemProperties.getLong(SystemProperties.Net.OUTPUT_QUEUE_LOW_WATERMARK_BYTES);
+        this.highWatermarkPackages = SystemProperties.getInteger(SystemProperties.Net.OUTPUT_QUEUE_HIGH_WATERMARK_PACKAGES);
+        this.lowWatermarkPackages = SystemProperties.getInteger(SystemProperties.Net.OUTPUT_QUEUE_LOW_WATERMARK_PACKAGES);
+        this.writable = true;
     }
 
     /**
@@ -41,4 +54,121 @@ public abstract class NetSession extends ServiceSession {
     public final void setChecked(boolean checked) {
         this.checked = checked;
     }
+
+    /**
+     * Set the watermarks of the output queue of the session. When the queued data exceeds
+     * some of the high watermarks the session is not writable until the queued data is
+     * under both low watermarks.
+     * @param highWatermarkBytes High watermark in bytes.
+     * @param lowWatermarkBytes Low watermark in bytes.
+     * @param highWatermarkPackages High watermark in number of packages.
+     * @param lowWatermarkPackages Low watermark in number of packages.
+     */
+    public final synchronized void setWriteWatermarks(long highWatermarkBytes, long lowWatermarkBytes,
+                                                      int highWatermarkPackages, int lowWatermarkPackages) {
+        if(lowWatermarkBytes > highWatermarkBytes || lowWatermarkPackages > highWatermarkPackages) {
+            throw new IllegalArgumentException("The low watermark can't be greater than the high watermark");
+        }
+        this.highWatermarkBytes = highWatermarkBytes;
+        this.lowWatermarkBytes = lowWatermarkBytes;
+        this.highWatermarkPackages = highWatermarkPackages;
+        this.lowWatermarkPackages = lowWatermarkPackages;
+    }
+
+    /**
+     * Return the high watermark of the output queue in bytes.
+     * @return High watermark in bytes.
+     */
+    public final synchronized long getHighWatermarkBytes() {
+        return highWatermarkBytes;
+    }
+
+    /**
+     * Return the low watermark of the output queue in bytes.
+     * @return Low watermark in bytes.
+     */
+    public final synchronized long getLowWatermarkBytes() {
+        return lowWatermarkBytes;
+    }
+
+    /**
+     * Return the high watermark of the output queue in number of packages.
+     * @return High watermark in packages.
+     */
+    public final synchronized int getHighWatermarkPackages() {
+        return highWatermarkPackages;
+    }
+
+    /**
+     * Return the low watermark of the output queue in number of packages.
+     * @return Low watermark in packages.
+     */
+    public final synchronized int getLowWatermarkPackages() {
+        return lowWatermarkPackages;
+    }
+
+    /**
+     * Return the number of bytes queued to be written over the session channel.
+     * @return Queued bytes.
+     */
+    public final synchronized long getOutputQueueBytes() {
+        return outputQueueBytes;
+    }
+
+    /**
+     * Return the number of packages queued to be written over the session channel.
+     * @return Queued packages.
+     */
+    public final synchronized int getOutputQueueSize() {
+        return outputQueueSize;
+    }
+
+    /**
+     * Return true if the output queue of the session is under the watermarks.
+     * @return True if the session is writable and false in the otherwise.
+     */
+    public final boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Adds a package to the output accounting of the session.
+     * @param bytes Size of the package.
+     * @return Returns true if the session changes to not writable.
+     */
+    final synchronized boolean addOutput(int bytes) {
+        outputQueueBytes += bytes;
+        outputQueueSize++;
+        boolean result = false;
+        if(writable && (outputQueueBytes > highWatermarkBytes || outputQueueSize > highWatermarkPackages)) {
+            writable = false;
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Removes a package of the output accounting of the session.
+     * @param bytes Size of the package.
+     * @return Returns true if the session changes to writable.
+     */
+    final synchronized boolean removeOutput(int bytes) {
+        outputQueueBytes = Math.max(0, outputQueueBytes - bytes);
+        outputQueueSize = Math.max(0, outputQueueSize - 1);
+        boolean result = false;
+        if(!writable && outputQueueBytes <= lowWatermarkBytes && outputQueueSize <= lowWatermarkPackages) {
+            writable = true;
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Discards all the output accounting of the session.
+     */
+    final synchronized void resetOutput() {
+        outputQueueBytes = 0;
+        outputQueueSize = 0;
+        writable = true;
+    }
 }
@@ -0,0 +1,142 @@
+package org.hcjf.io.net;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Net package that contains a reference to a pooled buffer instead of a byte array,
+ * the payload is only copied into a byte array if some consumer calls the method
+ * {@link PooledNetPackage#getPayload()}.
+ * The pooled buffer is only valid while the package is dispatched, if the consumer
+ * needs the buffer after that then it must call {@link PooledNetPackage#retain()} and
+ * {@link PooledNetPackage#release()} when the buffer is no longer needed.
+ * @author javaito
+ */
+public class PooledNetPackage extends NetPackage {
+
+    private NetSession session;
+    private final String remoteHost;
+    private final String remoteAddress;
+    private final int remotePort;
+    private final int localPort;
+    private final NetBufferPool.PooledBuffer pooledBuffer;
+    private final int offset;
+    private final int length;
+    private final long date;
+    private final ActionEvent actionEvent;
+    private PackageStatus packageStatus;
+    private byte[] payload;
+
+    public PooledNetPackage(String remoteHost, String remoteAddress,
+                            int remotePort, int localPort, NetBufferPool.PooledBuffer pooledBuffer,
+                            int offset, int length, ActionEvent actionEvent) {
+        this.remoteHost = remoteHost;
+        this.remoteAddress = remoteAddress;
+        this.remotePort = remotePort;
+        this.localPort = localPort;
+        this.pooledBuffer = pooledBuffer;
+        this.offset = offset;
+        this.length = length;
+        this.date = System.currentTimeMillis();
+        this.actionEvent = actionEvent;
+        this.packageStatus = PackageStatus.WAITING;
+    }
+
+    @Override
+    public NetSession getSession() {
+        return session;
+    }
+
+    @Override
+    public void setSession(NetSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Return a view of the pooled buffer with the position and the limit
+     * of the data of the package.
+     * @return Buffer view.
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer result = pooledBuffer.getBuffer().duplicate();
+        result.limit(offset + length);
+        result.position(offset);
+        return result;
+    }
+
+    /**
+     * Return the size of the package data.
+     * @return Data size.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Adds a reference to the pooled buffer.
+     */
+    public void retain() {
+        pooledBuffer.retain();
+    }
+
+    /**
+     * Removes a reference to the pooled buffer.
+     */
+    public void release() {
+        pooledBuffer.release();
+    }
+
+    /**
+     * Return the payload as byte array, the first call of this method
+     * copies the data of the pooled buffer.
+     * @return Payload.
+     */
+    @Override
+    public synchronized byte[] getPayload() {
+        if(payload == null) {
+            payload = new byte[length];
+            getBuffer().get(payload);
+        }
+        return payload;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return remoteHost;
+    }
+
+    @Override
+    public int getRemotePort() {
+        return remotePort;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    @Override
+    public Date getDate() {
+        return new Date(date);
+    }
+
+    @Override
+    public ActionEvent getActionEvent() {
+        return actionEvent;
+    }
+
+    @Override
+    public PackageStatus getPackageStatus() {
+        return packageStatus;
+    }
+
+    @Override
+    public void setPackageStatus(PackageStatus packageStatus) {
+        this.packageStatus = packageStatus;
+    }
+}
@@ -0,0 +1,692 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This context decorates other context storing the responses of the 'GET' and 'HEAD' requests
+ * into a bounded lru cache, the size of the cache is the sum of the sizes of the bodies and the
+ * headers of the stored responses.
+ * The responses are stored only if the 'Cache-Control' header allows it, the time to live of each
+ * response is the value of the 's-maxage' or 'max-age' directives or the default max age if the
+ * response doesn't have any of them. The key of each response is the method, the path with the
+ * parameters and the values of the request headers listed into the 'Vary' header of the response.
+ * When some key is not into the cache only one thread executes the decorated context and the other
+ * requests with the same key wait for the response.
+ * The requests with 'If-None-Match' header are responded with 304 if the entity tag of the
+ * stored response matches, if the response doesn't have 'ETag' header then the tag is created
+ * using the digest of the body.
+ * The requests with other methods invalidate the stored responses of the same context.
+ * The requests with credentials ('Authorization' or 'Cookie' headers) are responded only with stored
+ * responses marked as shared by the 'public' or 's-maxage' directives, and their responses are stored
+ * only if they have some of these directives.
+ * @author javaito
+ */
+public class CachedContext extends Context {
+
+    private static final String ENTITY_TAG_ALGORITHM = "MD5";
+    private static final String ENTITY_TAG_QUOTE = "\"";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+    private static final String ANY_ENTITY_TAG = "*";
+    private static final String LIST_SEPARATOR = ",";
+    private static final String DIRECTIVE_ASSIGNATION = "=";
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String PRIVATE = "private";
+    private static final String PUBLIC = "public";
+    private static final String MAX_AGE = "max-age";
+    private static final String S_MAXAGE = "s-maxage";
+    private static final String ANY_VARY = "*";
+    private static final String KEY_SEPARATOR = "\n";
+    private static final String KEY_VALUE_SEPARATOR = ":";
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int HTTP_ERROR_CODES = 400;
+    private static final long SECOND = 1000;
+    private static final Set<Integer> CACHEABLE_CODES;
+    private static final Set<String> NOT_STORED_HEADERS;
+    private static final Set<String> NOT_MODIFIED_HEADERS;
+
+    static {
+        CACHEABLE_CODES = new HashSet<>(Arrays.asList(
+                HttpResponseCode.OK, HttpResponseCode.NON_AUTHORITATIVE_INFOTMATION, HttpResponseCode.NO_CONTENT,
+                HttpResponseCode.MULTIPLE_CHOICES, HttpResponseCode.MOVED_PERMANENTLY, HttpResponseCode.NOT_FOUND,
+                HttpResponseCode.METHOD_NOT_ALLOWED, HttpResponseCode.GONE, HttpResponseCode.REQUEST_URI_TOO_LARGE,
+                HttpResponseCode.NOT_IMPLEMENTED));
+
+        NOT_STORED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        NOT_STORED_HEADERS.add(HttpHeader.DATE);
+        NOT_STORED_HEADERS.add(HttpHeader.SERVER);
+        NOT_STORED_HEADERS.add(HttpHeader.AGE);
+        NOT_STORED_HEADERS.add(HttpHeader.CONNECTION);
+        NOT_STORED_HEADERS.add(HttpHeader.KEEP_ALIVE);
+        NOT_STORED_HEADERS.add(HttpHeader.TRANSFER_ENCODING);
+
+        //Headers of the stored response that are sent into the 304 responses.
+        NOT_MODIFIED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        NOT_MODIFIED_HEADERS.add(HttpHeader.CACHE_CONTROL);
+        NOT_MODIFIED_HEADERS.add(HttpHeader.E_TAG);
+        NOT_MODIFIED_HEADERS.add(HttpHeader.VARY);
+        NOT_MODIFIED_HEADERS.add(HttpHeader.LAST_MODIFIED);
+    }
+
+    private final Context context;
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final long defaultMaxAge;
+    private final long lockTimeout;
+    private final LinkedHashMap<String, CacheEntry> cache;
+    private long size;
+    private final Map<String, String[]> varyNames;
+    private final Map<String, CompletableFuture<CacheEntry>> loads;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder coalesced;
+    private final LongAdder notModified;
+    private final LongAdder stores;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    public CachedContext(Context context) {
+        this(context, SystemProperties.getLong(SystemProperties.Net.Http.Cache.MAX_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.Http.Cache.MAX_ENTRY_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.Http.Cache.DEFAULT_MAX_AGE),
+                SystemProperties.getLong(SystemProperties.Net.Http.Cache.LOCK_TIMEOUT));
+    }
+
+    /**
+     * Constructor.
+     * @param context Decorated context.
+     * @param maxSize Max number of bytes stored into the cache.
+     * @param maxEntrySize Max number of bytes of each stored response.
+     * @param defaultMaxAge Time to live in seconds of the responses without max age, zero means
+     *                      that only the responses with max age are stored.
+     * @param lockTimeout Max time in milliseconds that a request waits for the response of other request
+     *                    with the same key, after that time the request executes the decorated context.
+     */
+    public CachedContext(Context context, long maxSize, long maxEntrySize, long defaultMaxAge, long lockTimeout) {
+        super(context.getContextRegex());
+        this.context = context;
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+        this.defaultMaxAge = defaultMaxAge * SECOND;
+        this.lockTimeout = lockTimeout;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.varyNames = new ConcurrentHashMap<>();
+        this.loads = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.coalesced = new LongAdder();
+        this.notModified = new LongAdder();
+        this.stores = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    /**
+     * Return the decorated context.
+     * @return Decorated context.
+     */
+    public final Context getContext() {
+        return context;
+    }
+
+    /**
+     * Return the number of requests responded with a stored response.
+     * @return Cache hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of requests that were not into the cache, including the requests
+     * that waited for the response of other request with the same key.
+     * @return Cache misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the number of missed requests responded with the response of other request
+     * with the same key, without execute the decorated context.
+     * @return Coalesced requests.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Return the number of requests responded with 304.
+     * @return Not modified responses.
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * Return the number of responses stored into the cache.
+     * @return Stored responses.
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Return the number of responses removed from the cache to respect the max size.
+     * @return Evicted responses.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Return the number of responses removed by invalidation.
+     * @return Invalidated responses.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Return the number of bytes stored into the cache.
+     * @return Cache size.
+     */
+    public long getSize() {
+        synchronized (cache) {
+            return size;
+        }
+    }
+
+    /**
+     * Return the number of responses into the cache.
+     * @return Number of entries.
+     */
+    public int getEntries() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes all the stored responses of the context.
+     * @param requestContext Request context without parameters.
+     */
+    public void invalidate(String requestContext) {
+        synchronized (cache) {
+            Iterator<CacheEntry> iterator = cache.values().iterator();
+            while(iterator.hasNext()) {
+                CacheEntry entry = iterator.next();
+                if(Objects.equals(entry.context, requestContext)) {
+                    size -= entry.size;
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the stored responses.
+     */
+    public void clear() {
+        synchronized (cache) {
+            invalidations.add(cache.size());
+            cache.clear();
+            size = 0;
+        }
+    }
+
+    @Override
+    public Priority getPriority() {
+        return context.getPriority();
+    }
+
+    @Override
+    protected Set<HttpHeader> getCrossOriginHeaders(HttpRequest request) {
+        return context.getCrossOriginHeaders(request);
+    }
+
+    @Override
+    protected HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+        return context.createBodyConsumer(request);
+    }
+
+    @Override
+    protected HttpResponse onError(HttpRequest request, Throwable throwable) {
+        return context.onError(request, throwable);
+    }
+
+    /**
+     * Returns the stored response of the request or executes the decorated context if the response
+     * is not into the cache.
+     * @param request All the request information.
+     * @return Stored response, response of the decorated context or 304 response.
+     */
+    @Override
+    public HttpResponse onContext(HttpRequest request) {
+        HttpResponse response;
+        if(HttpMethod.GET.equals(request.getMethod()) || HttpMethod.HEAD.equals(request.getMethod())) {
+            Map<String, String> directives = getDirectives(request.getHeader(HttpHeader.CACHE_CONTROL));
+            if(directives.containsKey(NO_STORE)) {
+                response = context.onContext(request);
+            } else {
+                String baseKey = request.getMethod() + KEY_SEPARATOR + request.getPath();
+                String key = createKey(baseKey, varyNames.get(baseKey), request);
+                boolean credentials = hasCredentials(request);
+
+                //The client could ask for a response validated by the origin.
+                CacheEntry entry = null;
+                if(!directives.containsKey(NO_CACHE) && !Long.valueOf(0).equals(getSeconds(directives, MAX_AGE))) {
+                    entry = get(key);
+                    if(entry != null && credentials && !entry.shared) {
+                        entry = null;
+                    }
+                }
+
+                if(entry != null) {
+                    hits.increment();
+                    response = entry.createResponse(request);
+                } else {
+                    misses.increment();
+                    response = load(request, baseKey, key, credentials);
+                }
+            }
+        } else {
+            response = context.onContext(request);
+            if(response == null || response.getResponseCode() < HTTP_ERROR_CODES) {
+                invalidate(request.getContext());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Executes the decorated context only if there are not other request executing the same key,
+     * in the otherwise waits for the response of the other request.
+     * @param request Http request.
+     * @param baseKey Method and path of the request.
+     * @param key Key of the request.
+     * @param credentials True if the request has credentials.
+     * @return Response of the request.
+     */
+    private HttpResponse load(HttpRequest request, String baseKey, String key, boolean credentials) {
+        HttpResponse response = null;
+        CompletableFuture<CacheEntry> future = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> currentLoad = loads.putIfAbsent(key, future);
+        if(currentLoad != null) {
+            CacheEntry entry = null;
+            try {
+                entry = currentLoad.get(lockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                        "Cache load of '%s' not available: %s", request.getPath(), ex.getMessage());
+            }
+
+            if(entry != null && entry.matches(request) && (!credentials || entry.shared)) {
+                coalesced.increment();
+                response = entry.createResponse(request);
+            } else {
+                //The response of the other request is not cacheable, is other variant or is not shared.
+                response = context.onContext(request);
+            }
+        } else {
+            CacheEntry entry = null;
+            try {
+                response = context.onContext(request);
+                entry = store(request, baseKey, response);
+                if(entry != null) {
+                    response = entry.createResponse(request);
+                }
+            } finally {
+                loads.remove(key, future);
+                future.complete(entry);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Stores the response if the response and the request allows it.
+     * @param request Http request.
+     * @param baseKey Method and path of the request.
+     * @param response Response of the decorated context.
+     * @return Stored entry or null if the response is not cacheable.
+     */
+    private CacheEntry store(HttpRequest request, String baseKey, HttpResponse response) {
+        CacheEntry result = null;
+        if(response != null && response.getBody() != null &&
+                !(response instanceof HttpPipelineResponse) && !(response instanceof HttpFileResponse) &&
+                CACHEABLE_CODES.contains(response.getResponseCode()) &&
+                !response.containsHeader(HttpHeader.SET_COOKIE)) {
+            Map<String, String> directives = getDirectives(response.getHeader(HttpHeader.CACHE_CONTROL));
+            if(!directives.containsKey(NO_STORE) && !directives.containsKey(NO_CACHE) &&
+                    !directives.containsKey(PRIVATE) &&
+                    (!hasCredentials(request) || isShared(directives))) {
+                Long maxAge = getSeconds(directives, S_MAXAGE);
+                if(maxAge == null) {
+                    maxAge = getSeconds(directives, MAX_AGE);
+                }
+                long timeToLive = maxAge == null ? defaultMaxAge : maxAge * SECOND;
+
+                String[] names = getVaryNames(response.getHeader(HttpHeader.VARY));
+                if(timeToLive > 0 && names != null) {
+                    String key = createKey(baseKey, names, request);
+                    CacheEntry entry = new CacheEntry(key, request, response, names, timeToLive, isShared(directives));
+                    if(entry.size <= maxEntrySize) {
+                        varyNames.put(baseKey, names);
+                        put(key, entry);
+                        stores.increment();
+                        result = entry;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the fresh entry of the key.
+     * @param key Request key.
+     * @return Fresh entry or null if the key is not into the cache.
+     */
+    private CacheEntry get(String key) {
+        synchronized (cache) {
+            CacheEntry result = cache.get(key);
+            if(result != null && result.expires <= System.currentTimeMillis()) {
+                cache.remove(key);
+                size -= result.size;
+                result = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Put the entry into the cache and removes the least recently used entries
+     * while the size of the cache is over the max size.
+     * @param key Request key.
+     * @param entry Cache entry.
+     */
+    private void put(String key, CacheEntry entry) {
+        synchronized (cache) {
+            CacheEntry oldEntry = cache.put(key, entry);
+            size += entry.size - (oldEntry == null ? 0 : oldEntry.size);
+            Iterator<CacheEntry> iterator = cache.values().iterator();
+            while(size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().size;
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Creates the key of the request adding the values of the vary headers.
+     * @param baseKey Method and path of the request.
+     * @param names Names of the vary headers, could be null.
+     * @param request Http request.
+     * @return Request key.
+     */
+    private static String createKey(String baseKey, String[] names, HttpRequest request) {
+        String result = baseKey;
+        if(names != null && names.length > 0) {
+            StringBuilder builder = new StringBuilder(baseKey);
+            for(String name : names) {
+                builder.append(KEY_SEPARATOR).append(name).append(KEY_VALUE_SEPARATOR).append(getHeaderValue(request, name));
+            }
+            result = builder.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Return the value of the header or empty string if the request doesn't have the header.
+     * @param request Http request.
+     * @param name Header name.
+     * @return Header value.
+     */
+    private static String getHeaderValue(HttpRequest request, String name) {
+        HttpHeader header = request.getHeader(name);
+        return header == null ? "" : header.getHeaderValue();
+    }
+
+    /**
+     * Return the names of the vary header in lower case.
+     * @param varyHeader Vary header, could be null.
+     * @return Names of the headers or null if the header contains '*'.
+     */
+    private static String[] getVaryNames(HttpHeader varyHeader) {
+        String[] result = new String[0];
+        if(varyHeader != null) {
+            List<String> names = new ArrayList<>();
+            for(String name : varyHeader.getHeaderValue().split(LIST_SEPARATOR)) {
+                name = name.trim().toLowerCase();
+                if(name.equals(ANY_VARY)) {
+                    names = null;
+                    break;
+                } else if(!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+            result = names == null ? null : names.toArray(result);
+        }
+        return result;
+    }
+
+    /**
+     * Verify if the request has credentials of the user, the responses of this requests
+     * could be different for each user.
+     * @param request Http request.
+     * @return True if the request has 'Authorization' or 'Cookie' header.
+     */
+    private static boolean hasCredentials(HttpRequest request) {
+        return request.containsHeader(HttpHeader.AUTHORIZATION) || request.containsHeader(HttpHeader.COOKIE);
+    }
+
+    /**
+     * Verify if the response could be shared between the requests with credentials.
+     * @param directives Cache control directives of the response.
+     * @return True if the response has 'public' or 's-maxage' directives.
+     */
+    private static boolean isShared(Map<String, String> directives) {
+        return directives.containsKey(PUBLIC) || directives.containsKey(S_MAXAGE);
+    }
+
+    /**
+     * Return the directives of the cache control header.
+     * @param cacheControlHeader Cache control header, could be null.
+     * @return Map with the directive names in lower case and the values.
+     */
+    private static Map<String, String> getDirectives(HttpHeader cacheControlHeader) {
+        Map<String, String> result = new HashMap<>();
+        if(cacheControlHeader != null) {
+            for(String directive : cacheControlHeader.getHeaderValue().split(LIST_SEPARATOR)) {
+                int index = directive.indexOf(DIRECTIVE_ASSIGNATION);
+                if(index < 0) {
+                    result.put(directive.trim().toLowerCase(), null);
+                } else {
+                    result.put(directive.substring(0, index).trim().toLowerCase(),
+                            directive.substring(index + 1).trim().replace(ENTITY_TAG_QUOTE, ""));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the value of a directive with seconds.
+     * @param directives Cache control directives.
+     * @param name Directive name.
+     * @return Number of seconds or null if the directive is not present or is not a number.
+     */
+    private static Long getSeconds(Map<String, String> directives, String name) {
+        Long result = null;
+        String value = directives.get(name);
+        if(value != null) {
+            try {
+                result = Math.max(0, Long.parseLong(value));
+            } catch (NumberFormatException ex) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the quotes and the weak prefix of the entity tag.
+     * @param entityTag Entity tag.
+     * @return Opaque tag.
+     */
+    private static String getOpaqueTag(String entityTag) {
+        String result = entityTag.trim();
+        if(result.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+            result = result.substring(WEAK_ENTITY_TAG_PREFIX.length());
+        }
+        if(result.length() > 1 && result.startsWith(ENTITY_TAG_QUOTE) && result.endsWith(ENTITY_TAG_QUOTE)) {
+            result = result.substring(1, result.length() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a strong entity tag using the digest of the body.
+     * @param body Response body.
+     * @return Entity tag.
+     */
+    private static String createEntityTag(byte[] body) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(ENTITY_TAG_ALGORITHM);
+            return ENTITY_TAG_QUOTE + Base64.getEncoder().encodeToString(messageDigest.digest(body)) + ENTITY_TAG_QUOTE;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Stored response, the headers are the same instances for all the hits then the encoded
+     * form of each header is reused.
+     */
+    private final class CacheEntry {
+
+        private final String context;
+        private final String[] varyNames;
+        private final String[] varyValues;
+        private final Integer responseCode;
+        private final String reasonPhrase;
+        private final List<HttpHeader> headers;
+        private final byte[] body;
+        private final String opaqueTag;
+        private final long created;
+        private final long expires;
+        private final long size;
+        private final boolean shared;
+
+        private CacheEntry(String key, HttpRequest request, HttpResponse response, String[] varyNames,
+                           long timeToLive, boolean shared) {
+            this.context = request.getContext();
+            this.varyNames = varyNames;
+            this.varyValues = new String[varyNames.length];
+            for (int i = 0; i < varyNames.length; i++) {
+                varyValues[i] = getHeaderValue(request, varyNames[i]);
+            }
+            this.responseCode = response.getResponseCode();
+            this.reasonPhrase = response.getReasonPhrase();
+            this.body = response.getBody();
+
+            long size = ENTRY_OVERHEAD + key.length() * 2 + body.length;
+            this.headers = new ArrayList<>();
+            for(HttpHeader header : response.getHeaders()) {
+                if(!NOT_STORED_HEADERS.contains(header.getHeaderName())) {
+                    headers.add(header);
+                    size += (header.getHeaderName().length() + header.getHeaderValue().length()) * 2;
+                }
+            }
+            HttpHeader eTagHeader = response.getHeader(HttpHeader.E_TAG);
+            if(eTagHeader == null) {
+                eTagHeader = new HttpHeader(HttpHeader.E_TAG, createEntityTag(body));
+                headers.add(eTagHeader);
+            }
+            this.opaqueTag = getOpaqueTag(eTagHeader.getHeaderValue());
+            this.created = System.currentTimeMillis();
+            this.expires = created + timeToLive;
+            this.size = size;
+            this.shared = shared;
+        }
+
+        /**
+         * Verify if the values of the vary headers of the request are the same values of the entry.
+         * @param request Http request.
+         * @return True if the entry is a valid response for the request.
+         */
+        private boolean matches(HttpRequest request) {
+            boolean result = true;
+            for (int i = 0; i < varyNames.length && result; i++) {
+                result = varyValues[i].equals(getHeaderValue(request, varyNames[i]));
+            }
+            return result;
+        }
+
+        /**
+         * Verify if some of the tags of the 'If-None-Match' header matches with the tag of the entry.
+         * @param request Http request.
+         * @return True if the client has the same representation.
+         */
+        private boolean isNotModified(HttpRequest request) {
+            boolean result = false;
+            HttpHeader ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+            if(ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.getHeaderValue().split(LIST_SEPARATOR)) {
+                    //The tags of the compressed representations are validated like the stored representation.
+                    tag = HttpResponseCompressor.getIdentityTag(getOpaqueTag(tag));
+                    if (tag.equals(ANY_ENTITY_TAG) || tag.equals(opaqueTag)) {
+                        result = true;
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Creates a new response instance for the request, the server could change the headers
+         * of the response then each request has its own instance.
+         * @param request Http request.
+         * @return Stored response or 304 response.
+         */
+        private HttpResponse createResponse(HttpRequest request) {
+            HttpResponse response = new HttpResponse();
+            if(isNotModified(request)) {
+                notModified.increment();
+                response.setResponseCode(HttpResponseCode.NOT_MODIFIED);
+                for(HttpHeader header : headers) {
+                    if(NOT_MODIFIED_HEADERS.contains(header.getHeaderName())) {
+                        response.addHeader(header);
+                    }
+                }
+                response.setBody(new byte[0]);
+            } else {
+                response.setResponseCode(responseCode);
+                response.setReasonPhrase(reasonPhrase);
+                for(HttpHeader header : headers) {
+                    response.addHeader(header);
+                }
+                response.setBody(body);
+            }
+            response.addHeader(new HttpHeader(HttpHeader.AGE,
+                    Long.toString((System.currentTimeMillis() - created) / SECOND)));
+            return response;
+        }
+    }
+}
@@ -53,6 +53,31 @@ public abstract class Context {
         return Collections.EMPTY_SET;
     }
 
+    /**
+     * Return the priority of the context for the admission control of the server, the
+     * critical contexts (health checks, administration) are never rejected and the
+     * low priority contexts are rejected first when the server is overloaded.
+     * @return Context priority.
+     */
+    public Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
+    /**
+     * This method is called when all the headers of a request addressed to this context
+     * was received and the request has body. Overwrite this method to receive the body
+     * as a sequence of chunks instead of accumulating the whole body into memory, the
+     * chunks are delivered by the io threads of the server. When the body is consumed
+     * the body of the request is empty and the consumer is available using
+     * {@link HttpRequest#getBodyConsumer()}, the consumer is closed after the execution
+     * of the context.
+     * @param request Request with the first line and the headers.
+     * @return Body consumer or null to accumulate the body into memory.
+     */
+    protected HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+        return null;
+    }
+
     /**
      * This method is called when there comes a http package addressed to this
      * context.
@@ -86,4 +111,26 @@ public abstract class Context {
 
         return response;
     }
+
+    /**
+     * Priority classes of the contexts.
+     */
+    public enum Priority {
+
+        /**
+         * The requests are always admitted.
+         */
+        CRITICAL,
+
+        /**
+         * The requests are admitted while the concurrency of the context is under the limit.
+         */
+        NORMAL,
+
+        /**
+         * The requests are admitted while the concurrency of the context is under a
+         * fraction of the limit.
+         */
+        LOW
+    }
 }
@@ -0,0 +1,239 @@
+package org.hcjf.io.net.http;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable index of the contexts of a server. The regular expression of each context
+ * is compiled only once. The expressions that represent a literal path or a literal path
+ * prefix (like '^/name.*') are indexed into a trie of path segments and the rest of
+ * the expressions are evaluated with the compiled patterns only when they was registered
+ * before the best literal match.
+ * The result is always the same that evaluating the expressions in the registration order
+ * and selecting the first match.
+ * @author javaito
+ */
+final class ContextRouter {
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String START_ANCHOR = "^";
+    private static final String END_ANCHOR = "$";
+    private static final String ANY_SUFFIX = ".*";
+    private static final char PATH_SEPARATOR = '/';
+
+    private final Node root;
+    private final List<Route> regexRoutes;
+
+    ContextRouter(List<Context> contexts) {
+        root = new Node();
+        regexRoutes = new ArrayList<>();
+        for (int i = 0; i < contexts.size(); i++) {
+            Route route = new Route(i, contexts.get(i));
+            if(route.literal == null) {
+                regexRoutes.add(route);
+            } else {
+                root.add(route, 0);
+            }
+        }
+    }
+
+    /**
+     * Find the first context, in registration order, whose expression matches with the context name.
+     * @param contextName Request's context name.
+     * @return Founded context or null if there are not any context for the name.
+     */
+    Context find(String contextName) {
+        Route result = null;
+        Node node = root;
+        int start = 0;
+        while(node != null) {
+            int end = contextName.indexOf(PATH_SEPARATOR, start);
+            int segmentEnd = end < 0 ? contextName.length() : end;
+            Tail tail = node.tails;
+            int index = start;
+            while(tail != null) {
+                for (Route route : tail.routes) {
+                    if ((result == null || route.index < result.index) && route.matches(contextName, start)) {
+                        result = route;
+                    }
+                }
+                tail = index < segmentEnd ? tail.children.get(contextName.charAt(index++)) : null;
+            }
+
+            if(end < 0 || node.children.isEmpty()) {
+                break;
+            }
+            node = node.children.get(contextName.substring(start, end));
+            start = end + 1;
+        }
+
+        for(Route route : regexRoutes) {
+            if(result != null && route.index > result.index) {
+                break;
+            }
+            if(route.pattern.matcher(contextName).matches()) {
+                result = route;
+                break;
+            }
+        }
+
+        return result == null ? null : result.context;
+    }
+
+    /**
+     * Returns the literal path represented by the expression without the anchors and the
+     * escape characters, or null if the expression contains some regular expression construction.
+     * @param regex Regular expression.
+     * @param start Start index of the literal.
+     * @param end End index of the literal.
+     * @return Literal path or null.
+     */
+    private static String toLiteral(String regex, int start, int end) {
+        StringBuilder result = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            char character = regex.charAt(i);
+            if(character == '\\') {
+                if(i + 1 >= end || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    //Character classes and quotations are not literals.
+                    return null;
+                }
+                result.append(regex.charAt(++i));
+            } else if(REGEX_META_CHARACTERS.indexOf(character) >= 0) {
+                return null;
+            } else {
+                result.append(character);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Verify if the character at the index is escaped with a backslash.
+     * @param regex Regular expression.
+     * @param index Character index.
+     * @return True if the character is escaped.
+     */
+    private static boolean isEscaped(String regex, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static int indexOfLineTerminator(String value, int start) {
+        for (int i = start; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if(character == '\n' || character == '\r' || character == '\u0085' ||
+                    character == '\u2028' || character == '\u2029') {
+                return i;
+            }
+        }
+        return value.length();
+    }
+
+    /**
+     * Node of the trie, each node represents a complete path segment.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children;
+        private final Tail tails;
+
+        private Node() {
+            children = new HashMap<>();
+            tails = new Tail();
+        }
+
+        /**
+         * Adds the route into the node that contains all the complete segments of the literal,
+         * the last segment of the literal is indexed by character into the tails of the node.
+         * @param route Literal route.
+         * @param start Start index of the current segment.
+         */
+        private void add(Route route, int start) {
+            int end = route.literal.indexOf(PATH_SEPARATOR, start);
+            if(end < 0) {
+                route.lastSegmentStart = start;
+                Tail tail = tails;
+                for (int i = start; i < route.literal.length(); i++) {
+                    tail = tail.children.computeIfAbsent(route.literal.charAt(i), key -> new Tail());
+                }
+                tail.routes.add(route);
+            } else {
+                children.computeIfAbsent(route.literal.substring(start, end), key -> new Node()).add(route, end + 1);
+            }
+        }
+    }
+
+    /**
+     * Character node for the last segment of the literals, the literals could
+     * be a prefix of the segment.
+     */
+    private static final class Tail {
+
+        private final Map<Character, Tail> children;
+        private final List<Route> routes;
+
+        private Tail() {
+            children = new HashMap<>();
+            routes = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Context with the compiled expression.
+     */
+    private static final class Route {
+
+        private final int index;
+        private final Context context;
+        private final Pattern pattern;
+        private final String literal;
+        private final boolean prefix;
+        private int lastSegmentStart;
+
+        private Route(int index, Context context) {
+            this.index = index;
+            this.context = context;
+
+            String regex = context.getContextRegex();
+            this.pattern = Pattern.compile(regex);
+
+            int start = regex.startsWith(START_ANCHOR) ? START_ANCHOR.length() : 0;
+            int end = regex.length();
+            if(end > start && regex.endsWith(END_ANCHOR) && !isEscaped(regex, end - 1)) {
+                end -= END_ANCHOR.length();
+            }
+            boolean prefix = false;
+            if(end - start >= ANY_SUFFIX.length() && regex.startsWith(ANY_SUFFIX, end - ANY_SUFFIX.length()) &&
+                    !isEscaped(regex, end - ANY_SUFFIX.length())) {
+                end -= ANY_SUFFIX.length();
+                prefix = true;
+            }
+            this.prefix = prefix;
+            this.literal = toLiteral(regex, start, end);
+        }
+
+        /**
+         * Verify if the last segment of the literal matches with the context name,
+         * all the previous segments was matched by the trie.
+         * @param contextName Request's context name.
+         * @param start Start index of the current segment of the context name.
+         * @return True if the route matches.
+         */
+        private boolean matches(String contextName, int start) {
+            int length = literal.length() - lastSegmentStart;
+            boolean result = contextName.regionMatches(start, literal, lastSegmentStart, length);
+            if(result) {
+                if(prefix) {
+                    //The wildcard '.*' doesn't match with line terminators.
+                    result = indexOfLineTerminator(contextName, start + length) == contextName.length();
+                } else {
+                    result = contextName.length() == start + length;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -2,19 +2,22 @@ package org.hcjf.io.net.http;
 
 import org.hcjf.encoding.MimeType;
 import org.hcjf.errors.Errors;
+import org.hcjf.io.fs.FileSystemWatcherConsumer;
+import org.hcjf.io.fs.FileSystemWatcherService;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.attribute.FileAttribute;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -24,11 +27,20 @@ import java.util.zip.ZipFile;
  */
 public class FolderContext extends Context {
 
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    private static final String ENTITY_TAG_SEPARATOR = ",";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+    private static final String ENTITY_TAG_QUOTE = "\"";
+    private static final String ANY_ENTITY_TAG = "*";
+    private static final String GZIP_SUFFIX = ".gz";
+
     private final Path baseFolder;
     private final String name;
     private String defaultFile;
     private final String[] names;
-    private final MessageDigest messageDigest;
+    private final String checksumAlgorithm;
+    private final Map<Path, FileMetadata> metadataCache;
+    private final Set<Path> watchedFolders;
 
     public FolderContext(String name, Path baseFolder, String defaultFile) {
         super(START_CONTEXT + URI_FOLDER_SEPARATOR + name + END_CONTEXT);
@@ -71,12 +83,14 @@ public class FolderContext extends Context {
         this.name = name;
         this.baseFolder = baseFolder;
         this.names = name.split(URI_FOLDER_SEPARATOR);
+        this.checksumAlgorithm = SystemProperties.get(SystemProperties.Net.Http.DEFAULT_FILE_CHECKSUM_ALGORITHM);
         try {
-            this.messageDigest = MessageDigest.getInstance(
-                    SystemProperties.get(SystemProperties.Net.Http.DEFAULT_FILE_CHECKSUM_ALGORITHM));
+            MessageDigest.getInstance(checksumAlgorithm);
         } catch (Exception ex) {
             throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_9), ex);
         }
+        this.metadataCache = new ConcurrentHashMap<>();
+        this.watchedFolders = ConcurrentHashMap.newKeySet();
     }
 
     public FolderContext(String name, Path baseFolder) {
@@ -236,9 +250,16 @@ public class FolderContext extends Context {
 
         HttpResponse response = new HttpResponse();
 
-        File file = path.toFile();
-        if(file.exists()) {
-            if (file.isDirectory()) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            attributes = null;
+        }
+
+        if(attributes != null) {
+            if (attributes.isDirectory()) {
+                File file = path.toFile();
                 StringBuilder list = new StringBuilder();
                 for(File subFile : file.listFiles()) {
                     list.append(String.format(SystemProperties.get(SystemProperties.Net.Http.Folder.DEFAULT_HTML_ROW),
@@ -253,70 +274,26 @@ public class FolderContext extends Context {
                 response.setResponseCode(HttpResponseCode.OK);
                 response.setBody(body);
             } else {
-                byte[] body;
-                String checksum;
-                try {
-                    body = Files.readAllBytes(file.toPath());
-                    synchronized (this) {
-                        checksum = new String(Base64.getEncoder().encode(messageDigest.digest(body)));
-                        messageDigest.reset();
-                    }
-                } catch (IOException ex) {
-                    throw new RuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_4, Paths.get(request.getContext(), file.getName())), ex);
-                }
+                FileMetadata metadata = getMetadata(request, path, attributes);
 
-                Integer responseCode = HttpResponseCode.OK;
                 HttpHeader ifNonMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
-                if(ifNonMatch != null) {
-                    if(checksum.equals(ifNonMatch.getHeaderValue())) {
-                        responseCode = HttpResponseCode.NOT_MODIFIED;
+                if(ifNonMatch != null && metadata.matches(ifNonMatch.getHeaderValue())) {
+                    //The content of the file is not necessary to response a cache hit.
+                    response.setResponseCode(HttpResponseCode.NOT_MODIFIED);
+                } else {
+                    //The file is transferred from the disk to the socket by the server and the
+                    //content coding is negotiated by the compression stage of the server.
+                    HttpFileResponse fileResponse = new HttpFileResponse(path, metadata.length);
+                    if(metadata.gzipPath != null) {
+                        fileResponse.addEncodedVariant(HttpHeader.GZIP, metadata.gzipPath);
                     }
+                    response = fileResponse;
+                    response.setResponseCode(HttpResponseCode.OK);
                 }
 
-                String[] nameExtension = file.getName().split(SystemProperties.get(SystemProperties.Net.Http.Folder.FILE_EXTENSION_REGEX));
-                String extension = nameExtension.length == 2 ? nameExtension[1] : MimeType.BIN;
-                response.setResponseCode(responseCode);
-                MimeType mimeType = MimeType.fromSuffix(extension);
-                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, mimeType == null ? MimeType.BIN : mimeType.toString()));
-                response.addHeader(new HttpHeader(HttpHeader.E_TAG, checksum));
-                response.addHeader(new HttpHeader(HttpHeader.LAST_MODIFIED,
-                        SystemProperties.getDateFormat(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).
-                                format(new Date(file.lastModified()))));
-
-                if(responseCode.equals(HttpResponseCode.OK)) {
-                    HttpHeader acceptEncodingHeader = request.getHeader(HttpHeader.ACCEPT_ENCODING);
-                    if(acceptEncodingHeader != null) {
-                        boolean notAcceptable = true;
-                        for(String group : acceptEncodingHeader.getGroups()) {
-                            if (group.equalsIgnoreCase(HttpHeader.GZIP) || group.equalsIgnoreCase(HttpHeader.DEFLATE)) {
-                                try (ByteArrayOutputStream out = new ByteArrayOutputStream(); GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out)) {
-                                    gzipOutputStream.write(body);
-                                    gzipOutputStream.flush();
-                                    gzipOutputStream.finish();
-                                    body = out.toByteArray();
-                                    response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.GZIP));
-                                    notAcceptable = false;
-                                    break;
-                                } catch (Exception ex) {
-                                    Log.w(SystemProperties.get(SystemProperties.Net.Http.Folder.LOG_TAG), "Zip file process fail", ex);
-                                }
-                            } else if (group.equalsIgnoreCase(HttpHeader.IDENTITY)) {
-                                response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.IDENTITY));
-                                notAcceptable = false;
-                                break;
-                            }
-                        }
-
-                        if (notAcceptable) {
-                            response.setResponseCode(HttpResponseCode.NOT_ACCEPTABLE);
-                        }
-                    }
-
-                    if(responseCode.equals(HttpResponseCode.OK)) {
-                        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
-                        response.setBody(body);
-                    }
-                }
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, metadata.contentType));
+                response.addHeader(new HttpHeader(HttpHeader.E_TAG, metadata.checksum));
+                response.addHeader(new HttpHeader(HttpHeader.LAST_MODIFIED, metadata.lastModifiedValue));
             }
         } else {
             throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_5, request.getContext()));
@@ -325,4 +302,175 @@ public class FolderContext extends Context {
         return response;
     }
 
+    /**
+     * Returns the metadata of the file, the metadata is calculated only once for each version
+     * of the file. The cached metadata is removed when the file system watcher notifies some change
+     * over the file and it's verified using the size and the last modification time of the file.
+     * @param request Request that needs the metadata.
+     * @param path Path of the file.
+     * @param attributes Current attributes of the file.
+     * @return Metadata of the file.
+     */
+    private FileMetadata getMetadata(HttpRequest request, Path path, BasicFileAttributes attributes) {
+        FileMetadata result = metadataCache.get(path);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if(result == null || result.lastModified != lastModified || result.length != attributes.size()) {
+            watch(path.getParent());
+            try {
+                result = new FileMetadata(path, attributes.size(), lastModified, createChecksum(path));
+            } catch (IOException ex) {
+                throw new RuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_4,
+                        Paths.get(request.getContext(), path.getFileName().toString())), ex);
+            }
+            metadataCache.put(path, result);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the checksum of the file reading the content in fragments.
+     * @param path Path of the file.
+     * @return Checksum encoded as base 64.
+     * @throws IOException If the file can't be read.
+     */
+    private String createChecksum(Path path) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_9), ex);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (fileChannel.read(buffer) >= 0) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return new String(Base64.getEncoder().encode(messageDigest.digest()));
+    }
+
+    /**
+     * Register a file system watcher over the folder to invalidate the cached metadata
+     * of the files of the folder, each folder is registered only once.
+     * @param folder Folder to watch.
+     */
+    private void watch(Path folder) {
+        if(watchedFolders.add(folder)) {
+            try {
+                FileSystemWatcherService.getInstance().registerConsumer(new MetadataWatcher(folder));
+            } catch (Exception ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.Folder.LOG_TAG),
+                        "Unable to watch the folder %s", ex, folder);
+            }
+        }
+    }
+
+    /**
+     * Metadata of a file, the metadata is used to response without read the file.
+     */
+    private static final class FileMetadata {
+
+        private final long length;
+        private final long lastModified;
+        private final String lastModifiedValue;
+        private final String contentType;
+        private final String checksum;
+        private final Path gzipPath;
+
+        private FileMetadata(Path path, long length, long lastModified, String checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.lastModifiedValue = HttpHeaderEncoder.formatDate(new Date(lastModified));
+            this.checksum = checksum;
+
+            String[] nameExtension = path.getFileName().toString().split(
+                    SystemProperties.get(SystemProperties.Net.Http.Folder.FILE_EXTENSION_REGEX));
+            String extension = nameExtension.length == 2 ? nameExtension[1] : MimeType.BIN;
+            MimeType mimeType = MimeType.fromSuffix(extension);
+            this.contentType = mimeType == null ? MimeType.BIN : mimeType.toString();
+
+            //The precompressed sibling is ignored if it's older than the file.
+            Path gzipPath = path.resolveSibling(path.getFileName().toString() + GZIP_SUFFIX);
+            try {
+                if(!Files.isRegularFile(gzipPath) || Files.getLastModifiedTime(gzipPath).toMillis() < lastModified) {
+                    gzipPath = null;
+                }
+            } catch (IOException ex) {
+                gzipPath = null;
+            }
+            this.gzipPath = gzipPath;
+        }
+
+        /**
+         * Verify if some of the entity tags of the 'If-None-Match' header value matches
+         * with the checksum of the file.
+         * @param ifNoneMatch Header value.
+         * @return True if some tag matches.
+         */
+        private boolean matches(String ifNoneMatch) {
+            boolean result = false;
+            for(String tag : ifNoneMatch.split(ENTITY_TAG_SEPARATOR)) {
+                tag = tag.trim();
+                if(tag.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+                    tag = tag.substring(WEAK_ENTITY_TAG_PREFIX.length());
+                }
+                if(tag.length() > 1 && tag.startsWith(ENTITY_TAG_QUOTE) && tag.endsWith(ENTITY_TAG_QUOTE)) {
+                    tag = tag.substring(1, tag.length() - 1);
+                }
+                //The tags of the compressed representations are validated like the file.
+                if(tag.equals(ANY_ENTITY_TAG) || HttpResponseCompressor.getIdentityTag(tag).equals(checksum)) {
+                    result = true;
+                    break;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * File system consumer that removes the cached metadata of the modified files.
+     */
+    private final class MetadataWatcher extends FileSystemWatcherConsumer {
+
+        private MetadataWatcher(Path folder) {
+            super(folder, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        @Override
+        protected void create(WatchEvent<Path> event) {
+            invalidate(event);
+        }
+
+        @Override
+        protected void update(WatchEvent<Path> event) {
+            invalidate(event);
+        }
+
+        @Override
+        protected void delete(WatchEvent<Path> event) {
+            invalidate(event);
+        }
+
+        /**
+         * Removes the metadata of the file of the event, if the file is a precompressed
+         * variant then the metadata of the original file is removed.
+         * @param event File system event.
+         */
+        private void invalidate(WatchEvent<Path> event) {
+            String fileName = event.context().toString();
+            metadataCache.remove(getBasePath().resolve(fileName));
+            if(fileName.endsWith(GZIP_SUFFIX)) {
+                metadataCache.remove(getBasePath().resolve(fileName.substring(0, fileName.length() - GZIP_SUFFIX.length())));
+            }
+        }
+
+        @Override
+        protected void overflow(WatchEvent<Path> event) {
+            metadataCache.keySet().removeIf(path -> getBasePath().equals(path.getParent()));
+        }
+    }
 }
@@ -0,0 +1,305 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+import org.hcjf.service.ServiceSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * This class is the access log of the http server. Each request produces a record with
+ * a fixed set of fields (date, method, context, status, bytes, latency and session id),
+ * the records are preallocated and reused, then to register a request doesn't create
+ * objects into the heap. The records are formatted and printed in batches by a
+ * background thread.
+ * The requests are sampled using the sample rate, the responses with server errors are
+ * always registered. The full messages (headers and body) are formatted only for the
+ * requests that match with the debug filter.
+ * @author javaito
+ */
+public class HttpAccessLog {
+
+    private static final String THREAD_NAME = "HttpAccessLog";
+    private static final char FIELD_SEPARATOR = ' ';
+    private static final String LINE_SEPARATOR = "\r\n";
+    private static final String NO_VALUE = "-";
+    private static final int SERVER_ERROR = 500;
+
+    private final boolean enabled;
+    private final String logTag;
+    private final double sampleRate;
+    private final int batchSize;
+    private final long flushPeriod;
+    private final BlockingQueue<AccessRecord> freeRecords;
+    private final BlockingQueue<AccessRecord> pendingRecords;
+    private final LongAdder recorded;
+    private final LongAdder dropped;
+    private Predicate<HttpRequest> debugFilter;
+    private Printer printer;
+    private volatile Thread writer;
+
+    public HttpAccessLog() {
+        this(SystemProperties.getBoolean(SystemProperties.Net.Http.AccessLog.ENABLED),
+                SystemProperties.get(SystemProperties.Net.Http.AccessLog.LOG_TAG),
+                SystemProperties.getDouble(SystemProperties.Net.Http.AccessLog.SAMPLE_RATE),
+                SystemProperties.getInteger(SystemProperties.Net.Http.AccessLog.BUFFER_SIZE),
+                SystemProperties.getInteger(SystemProperties.Net.Http.AccessLog.BATCH_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.Http.AccessLog.FLUSH_PERIOD));
+        String debugContextRegex = SystemProperties.get(SystemProperties.Net.Http.AccessLog.DEBUG_CONTEXT_REGEX);
+        if(debugContextRegex != null && !debugContextRegex.isEmpty()) {
+            Pattern pattern = Pattern.compile(debugContextRegex);
+            setDebugFilter(request -> request.getContext() != null && pattern.matcher(request.getContext()).matches());
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param enabled If the value is false then the log doesn't register any request.
+     * @param logTag Tag of the log records that contains the access records.
+     * @param sampleRate Rate of requests registered, between 0 and 1.
+     * @param bufferSize Number of records preallocated, when all the records are pending
+     *                   to print the new requests are discarded.
+     * @param batchSize Max number of records printed together.
+     * @param flushPeriod Max time in milliseconds that a record waits to be printed.
+     */
+    public HttpAccessLog(boolean enabled, String logTag, double sampleRate,
+                         int bufferSize, int batchSize, long flushPeriod) {
+        this.enabled = enabled;
+        this.logTag = logTag;
+        this.sampleRate = sampleRate;
+        this.batchSize = batchSize;
+        this.flushPeriod = flushPeriod;
+        this.freeRecords = new ArrayBlockingQueue<>(bufferSize);
+        this.pendingRecords = new ArrayBlockingQueue<>(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            freeRecords.add(new AccessRecord());
+        }
+        this.recorded = new LongAdder();
+        this.dropped = new LongAdder();
+        this.debugFilter = null;
+        this.printer = lines -> Log.i(this.logTag, "%s", lines);
+    }
+
+    /**
+     * Set the filter to select the requests whose full messages are logged.
+     * @param debugFilter Debug filter, null to disable the full messages.
+     */
+    public void setDebugFilter(Predicate<HttpRequest> debugFilter) {
+        this.debugFilter = debugFilter;
+    }
+
+    /**
+     * Set the printer of the record batches, by default the batches are printed using the
+     * log service.
+     * @param printer Printer instance.
+     * @throws NullPointerException If the printer is null.
+     */
+    public void setPrinter(Printer printer) {
+        if(printer == null) {
+            throw new NullPointerException("Access log printer null");
+        }
+        this.printer = printer;
+    }
+
+    /**
+     * Verify if the full messages of the request must be logged.
+     * @param request Http request.
+     * @return True if the request matches with the debug filter.
+     */
+    public boolean isDebug(HttpRequest request) {
+        Predicate<HttpRequest> debugFilter = this.debugFilter;
+        return debugFilter != null && debugFilter.test(request);
+    }
+
+    /**
+     * Return the number of requests registered.
+     * @return Registered requests.
+     */
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    /**
+     * Return the number of requests discarded because there are not free records.
+     * @return Discarded requests.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Register a request into the log if the request is selected by the sample.
+     * @param session Session of the request.
+     * @param request Http request.
+     * @param response Http response.
+     * @param responseBytes Number of bytes of the response body.
+     * @param latency Time in nanoseconds to attend the request.
+     */
+    public void record(ServiceSession session, HttpRequest request, HttpResponse response,
+                       long responseBytes, long latency) {
+        if(enabled) {
+            int status = response == null || response.getResponseCode() == null ? 0 : response.getResponseCode();
+            if(status >= SERVER_ERROR || sampleRate >= 1.0 ||
+                    (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+                AccessRecord record = freeRecords.poll();
+                if(record == null) {
+                    dropped.increment();
+                } else {
+                    record.date = System.currentTimeMillis();
+                    record.method = request.getMethod();
+                    record.context = request.getContext();
+                    record.status = status;
+                    record.requestBytes = request.getBodySize();
+                    record.responseBytes = responseBytes;
+                    record.latency = latency;
+                    record.sessionId = session == null ? null : session.getId();
+                    pendingRecords.add(record);
+                    recorded.increment();
+                    startWriter();
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints all the pending records.
+     */
+    public void flush() {
+        List<AccessRecord> batch = new ArrayList<>(batchSize);
+        StringBuilder builder = new StringBuilder();
+        synchronized (this) {
+            while(pendingRecords.drainTo(batch, batchSize) > 0) {
+                print(batch, builder);
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread, the method waits until the thread prints the batch
+     * in progress and then prints the pending records.
+     */
+    public void stop() {
+        Thread writer;
+        synchronized (this) {
+            writer = this.writer;
+            this.writer = null;
+        }
+        if(writer != null) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Starts the background thread if it is not running.
+     */
+    private void startWriter() {
+        if(writer == null) {
+            synchronized (this) {
+                if(writer == null) {
+                    writer = new Thread(this::write, THREAD_NAME);
+                    writer.setDaemon(true);
+                    writer.start();
+                }
+            }
+        }
+    }
+
+    /**
+     * Body of the background thread, waits for the records and prints them in batches.
+     */
+    private void write() {
+        List<AccessRecord> batch = new ArrayList<>(batchSize);
+        StringBuilder builder = new StringBuilder();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                AccessRecord record = pendingRecords.poll(flushPeriod, TimeUnit.MILLISECONDS);
+                if(record != null) {
+                    synchronized (this) {
+                        batch.add(record);
+                        pendingRecords.drainTo(batch, batchSize - 1);
+                        print(batch, builder);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+        }
+    }
+
+    /**
+     * Formats the records of the batch, returns the records to the pool and prints the lines.
+     * @param batch Batch of records, the list is empty after the call.
+     * @param builder Builder to format the lines.
+     */
+    private void print(List<AccessRecord> batch, StringBuilder builder) {
+        builder.setLength(0);
+        for(AccessRecord record : batch) {
+            if(builder.length() > 0) {
+                builder.append(LINE_SEPARATOR);
+            }
+            builder.append(record.date).append(FIELD_SEPARATOR);
+            builder.append(record.method == null ? NO_VALUE : record.method.toString()).append(FIELD_SEPARATOR);
+            builder.append(record.context == null ? NO_VALUE : record.context).append(FIELD_SEPARATOR);
+            builder.append(record.status).append(FIELD_SEPARATOR);
+            builder.append(record.requestBytes).append(FIELD_SEPARATOR);
+            builder.append(record.responseBytes).append(FIELD_SEPARATOR);
+            builder.append(TimeUnit.NANOSECONDS.toMicros(record.latency)).append(FIELD_SEPARATOR);
+            builder.append(record.sessionId == null ? NO_VALUE : record.sessionId.toString());
+            record.method = null;
+            record.context = null;
+            record.sessionId = null;
+            freeRecords.add(record);
+        }
+        batch.clear();
+        try {
+            printer.print(builder.toString());
+        } catch (Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to print the access log", ex);
+        }
+    }
+
+    /**
+     * This interface prints the batches of access records, each line of the batch
+     * contains the fields of a record separated by spaces:
+     * date method context status requestBytes responseBytes latencyMicros sessionId
+     */
+    public interface Printer {
+
+        /**
+         * Prints a batch of records.
+         * @param lines Formatted records, one record for each line.
+         */
+        void print(String lines);
+
+    }
+
+    /**
+     * Reusable access record.
+     */
+    private static final class AccessRecord {
+
+        private long date;
+        private HttpMethod method;
+        private String context;
+        private int status;
+        private long requestBytes;
+        private long responseBytes;
+        private long latency;
+        private UUID sessionId;
+
+    }
+}
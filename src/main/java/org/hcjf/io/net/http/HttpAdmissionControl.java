@@ -0,0 +1,313 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * This class is the admission control of the http server. Each context has a limit of
+ * concurrent requests, the requests over the limit are rejected before the execution of
+ * the context and the server responds them immediately with the status 503.
+ * If the control is adaptive the limit of each context is estimated using the latency of
+ * the requests, in the style of tcp vegas: the limit grows while the latency is near to
+ * the latency without load and decreases when the requests are queued into the context.
+ * The critical contexts are never rejected and the low priority contexts are admitted only
+ * while the concurrency is under a fraction of the limit.
+ * @author javaito
+ */
+public class HttpAdmissionControl {
+
+    //Thresholds of the estimated queue size, multiplied by log10 of the limit.
+    private static final double ALPHA = 3.0;
+    private static final double BETA = 6.0;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final boolean enabled;
+    private final boolean adaptive;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double lowPriorityRatio;
+    private final int latencyProbeSamples;
+    private final int retryAfter;
+    private final Pattern criticalContextPattern;
+    private final Map<Context, Limiter> limiters;
+    private final LongAdder rejections;
+
+    public HttpAdmissionControl() {
+        this(SystemProperties.getBoolean(SystemProperties.Net.Http.Admission.ENABLED),
+                SystemProperties.getBoolean(SystemProperties.Net.Http.Admission.ADAPTIVE),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.INITIAL_LIMIT),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.MIN_LIMIT),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.MAX_LIMIT),
+                SystemProperties.getDouble(SystemProperties.Net.Http.Admission.LOW_PRIORITY_RATIO),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.LATENCY_PROBE_SAMPLES),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.RETRY_AFTER),
+                SystemProperties.get(SystemProperties.Net.Http.Admission.CRITICAL_CONTEXT_REGEX));
+    }
+
+    /**
+     * Constructor.
+     * @param enabled If the value is false then all the requests are admitted.
+     * @param adaptive If the value is false then the limit of each context is the initial limit.
+     * @param initialLimit Initial limit of concurrent requests of each context.
+     * @param minLimit Min limit of the adaptive control.
+     * @param maxLimit Max limit of the adaptive control.
+     * @param lowPriorityRatio Fraction of the limit available for the low priority contexts.
+     * @param latencyProbeSamples Number of samples after which the latency without load
+     *                            is measured again.
+     * @param retryAfter Seconds that the rejected clients should wait before retry.
+     * @param criticalContextRegex Regular expression of the contexts that are never
+     *                             rejected, null or empty to use only the context priority.
+     */
+    public HttpAdmissionControl(boolean enabled, boolean adaptive, int initialLimit, int minLimit, int maxLimit,
+                                double lowPriorityRatio, int latencyProbeSamples, int retryAfter,
+                                String criticalContextRegex) {
+        if(minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid admission limits: " + minLimit + ", " + maxLimit);
+        }
+        this.enabled = enabled;
+        this.adaptive = adaptive;
+        this.initialLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.lowPriorityRatio = lowPriorityRatio;
+        this.latencyProbeSamples = latencyProbeSamples;
+        this.retryAfter = retryAfter;
+        this.criticalContextPattern = criticalContextRegex == null || criticalContextRegex.isEmpty() ?
+                null : Pattern.compile(criticalContextRegex);
+        this.limiters = new ConcurrentHashMap<>();
+        this.rejections = new LongAdder();
+    }
+
+    /**
+     * Verify if the admission control is enabled.
+     * @return Enabled value.
+     */
+    public final boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the seconds that the rejected clients should wait before retry.
+     * @return Retry after value in seconds.
+     */
+    public final int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Try to admit a request addressed to the context.
+     * @param context Context of the request.
+     * @return Limiter of the context that must be released when the context finishes
+     * the execution, or null if the request is rejected.
+     */
+    public Limiter acquire(Context context) {
+        Limiter result = null;
+        if(enabled) {
+            result = limiters.computeIfAbsent(context, this::createLimiter);
+            if(!result.tryAcquire()) {
+                rejections.increment();
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the limiter of the context.
+     * @param context Context instance.
+     * @return Limiter of the context or null if the context never received requests.
+     */
+    public Limiter getLimiter(Context context) {
+        return limiters.get(context);
+    }
+
+    /**
+     * Return the limiters of all the contexts that received requests.
+     * @return Collection of limiters.
+     */
+    public Collection<Limiter> getLimiters() {
+        return Collections.unmodifiableCollection(new ArrayList<>(limiters.values()));
+    }
+
+    /**
+     * Return the number of requests rejected by all the contexts.
+     * @return Number of rejections.
+     */
+    public final long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Creates the limiter of the context, the priority is critical if the context
+     * matches with the regex of the critical contexts.
+     * @param context Context instance.
+     * @return Limiter instance.
+     */
+    private Limiter createLimiter(Context context) {
+        Context.Priority priority = context.getPriority();
+        if(criticalContextPattern != null && criticalContextPattern.matcher(context.getContextRegex()).matches()) {
+            priority = Context.Priority.CRITICAL;
+        }
+        return new Limiter(context.getContextRegex(), priority);
+    }
+
+    /**
+     * Concurrency limit of a context.
+     */
+    public final class Limiter {
+
+        private final String contextRegex;
+        private final Context.Priority priority;
+        private final AtomicInteger inFlight;
+        private final LongAdder admissions;
+        private final LongAdder rejections;
+        private volatile int limit;
+        private double estimatedLimit;
+        private long minLatency;
+        private int samples;
+
+        private Limiter(String contextRegex, Context.Priority priority) {
+            this.contextRegex = contextRegex;
+            this.priority = priority;
+            this.inFlight = new AtomicInteger();
+            this.admissions = new LongAdder();
+            this.rejections = new LongAdder();
+            this.limit = initialLimit;
+            this.estimatedLimit = initialLimit;
+        }
+
+        /**
+         * Return the regular expression of the context.
+         * @return Context regex.
+         */
+        public String getContextRegex() {
+            return contextRegex;
+        }
+
+        /**
+         * Return the priority of the context.
+         * @return Context priority.
+         */
+        public Context.Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Return the current limit of concurrent requests.
+         * @return Concurrency limit.
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Return the number of requests in execution.
+         * @return In flight requests.
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * Return the number of admitted requests.
+         * @return Number of admissions.
+         */
+        public long getAdmissionCount() {
+            return admissions.sum();
+        }
+
+        /**
+         * Return the number of rejected requests.
+         * @return Number of rejections.
+         */
+        public long getRejectionCount() {
+            return rejections.sum();
+        }
+
+        /**
+         * Return the latency in nanoseconds used as the latency without load.
+         * @return Min latency.
+         */
+        public synchronized long getMinLatency() {
+            return minLatency;
+        }
+
+        /**
+         * Try to increment the number of requests in flight without exceed the limit.
+         * @return Returns true if the request is admitted.
+         */
+        private boolean tryAcquire() {
+            boolean result = true;
+            if(priority == Context.Priority.CRITICAL) {
+                inFlight.incrementAndGet();
+            } else {
+                int max = priority == Context.Priority.LOW ? Math.max(1, (int) (limit * lowPriorityRatio)) : limit;
+                int current;
+                do {
+                    current = inFlight.get();
+                    if(current >= max) {
+                        result = false;
+                        break;
+                    }
+                } while(!inFlight.compareAndSet(current, current + 1));
+            }
+            if(result) {
+                admissions.increment();
+            } else {
+                rejections.increment();
+            }
+            return result;
+        }
+
+        /**
+         * Releases an admitted request and updates the limit with the latency of the request.
+         * @param latency Execution time of the context in nanoseconds.
+         * @param dropped True if the context could not process the request because it is
+         *                overloaded too, then the limit is reduced.
+         */
+        public void release(long latency, boolean dropped) {
+            int current = inFlight.getAndDecrement();
+            if(adaptive && priority != Context.Priority.CRITICAL) {
+                update(latency, current, dropped);
+            }
+        }
+
+        /**
+         * Estimates the number of requests queued into the context comparing the latency with
+         * the latency without load, the limit grows if the queue is short and decreases if the
+         * queue is long. The limit doesn't grow if the context is not using it.
+         * @param latency Latency of the request.
+         * @param inFlight Requests in flight when the request finished.
+         * @param dropped If the request was dropped.
+         */
+        private synchronized void update(long latency, int inFlight, boolean dropped) {
+            if(dropped) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF_RATIO);
+            } else if(latency > 0) {
+                if(minLatency == 0 || latency < minLatency || ++samples >= latencyProbeSamples) {
+                    minLatency = latency;
+                    samples = 0;
+                }
+                if(inFlight * 2 >= estimatedLimit) {
+                    double log = Math.max(1.0, Math.log10(estimatedLimit));
+                    double queue = estimatedLimit * (1.0 - (double) minLatency / latency);
+                    if(queue < ALPHA * log) {
+                        estimatedLimit = Math.min(maxLimit, estimatedLimit + log);
+                    } else if(queue > BETA * log) {
+                        estimatedLimit = Math.max(minLimit, estimatedLimit - log);
+                    }
+                }
+            }
+            limit = (int) estimatedLimit;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Body consumer that stores the body into memory until the size of the body exceeds
+ * a threshold, then all the body is moved to a temporal file and the rest of the chunks
+ * are written directly to the file. The stored body can be read as a channel
+ * when the package is complete. The temporal file is deleted when the consumer is closed.
+ * @author javaito
+ */
+public class HttpBodyBuffer implements HttpBodyConsumer {
+
+    private final long threshold;
+    private byte[] memory;
+    private long size;
+    private Path file;
+    private FileChannel fileChannel;
+    private boolean closed;
+
+    public HttpBodyBuffer() {
+        this(SystemProperties.getLong(SystemProperties.Net.Http.BODY_SPILL_THRESHOLD));
+    }
+
+    /**
+     * Constructor.
+     * @param threshold Max number of bytes stored into memory.
+     */
+    public HttpBodyBuffer(long threshold) {
+        this.threshold = threshold;
+        this.memory = new byte[0];
+    }
+
+    /**
+     * Return the number of bytes of the body.
+     * @return Body size.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Return true if the body was moved to a temporal file.
+     * @return Spilled flag.
+     */
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Stores the chunk into memory or into the temporal file.
+     * @param chunk Fragment of the body.
+     * @throws IOException If the chunk can't be written into the temporal file.
+     */
+    @Override
+    public synchronized void onChunk(ByteBuffer chunk) throws IOException {
+        if(closed) {
+            throw new IOException("Closed http body buffer");
+        }
+
+        int length = chunk.remaining();
+        if(fileChannel == null && size + length > threshold) {
+            file = Files.createTempFile(SystemProperties.get(SystemProperties.Net.Http.BODY_SPILL_PREFIX), null);
+            fileChannel = FileChannel.open(file, StandardOpenOption.WRITE);
+            write(ByteBuffer.wrap(memory, 0, (int) size));
+            memory = null;
+        }
+
+        if(fileChannel == null) {
+            if(memory.length < size + length) {
+                memory = Arrays.copyOf(memory, (int) Math.min(threshold, Math.max(memory.length * 2, size + length)));
+            }
+            chunk.get(memory, (int) size, length);
+        } else {
+            write(chunk);
+        }
+        size += length;
+    }
+
+    /**
+     * Closes the temporal file for writing, the file is kept until the consumer is closed.
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public synchronized void onEnd() throws IOException {
+        if(fileChannel != null) {
+            fileChannel.close();
+            fileChannel = null;
+        }
+    }
+
+    /**
+     * Creates a new channel to read the stored body from the beginning.
+     * @return Readable channel.
+     * @throws IOException If the temporal file can't be opened.
+     */
+    public synchronized ReadableByteChannel getChannel() throws IOException {
+        if(closed) {
+            throw new IOException("Closed http body buffer");
+        }
+
+        ReadableByteChannel result;
+        if(file == null) {
+            result = Channels.newChannel(new ByteArrayInputStream(memory, 0, (int) size));
+        } else {
+            result = FileChannel.open(file, StandardOpenOption.READ);
+        }
+        return result;
+    }
+
+    /**
+     * Releases the memory and deletes the temporal file.
+     */
+    @Override
+    public synchronized void close() {
+        if(!closed) {
+            closed = true;
+            memory = null;
+            try {
+                if(fileChannel != null) {
+                    fileChannel.close();
+                }
+                if(file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                        "Unable to delete the http body file %s", ex, file);
+            }
+        }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while(data.hasRemaining()) {
+            fileChannel.write(data);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.hcjf.io.net.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer of the body of a http package, the body is delivered as a sequence of
+ * chunks in the same moment that the data arrives, without accumulating the whole
+ * body into memory. The chunks are consumed by the io threads of the server, then
+ * the implementations should not block the thread.
+ * The consumer is closed when the package was processed or when the connection is
+ * lost before the end of the body.
+ * @author javaito
+ */
+public interface HttpBodyConsumer extends Closeable {
+
+    /**
+     * This method is called for each fragment of the body, the data of the chunk is
+     * between the position and the limit of the buffer and the buffer is only valid
+     * during this call.
+     * @param chunk Fragment of the body.
+     * @throws IOException If the chunk can't be consumed.
+     */
+    void onChunk(ByteBuffer chunk) throws IOException;
+
+    /**
+     * This method is called when the body is complete.
+     * @throws IOException If the body can't be completed.
+     */
+    void onEnd() throws IOException;
+
+}
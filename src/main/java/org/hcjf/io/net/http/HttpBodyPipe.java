@@ -0,0 +1,192 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.Errors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pipe of body chunks between two connections. The producer side is a body consumer
+ * fed by the io thread that receives the body, and the consumer side is read by the thread
+ * that writes the body over the other connection. When the pipe is full the producer is
+ * blocked, then the data of the socket is not read until the other side consumes the chunks.
+ * @author javaito
+ */
+public class HttpBodyPipe implements HttpBodyConsumer {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final long timeout;
+    private byte[] current;
+    private int currentPosition;
+    private volatile boolean ended;
+    private volatile boolean aborted;
+    private volatile Runnable abortHandler;
+    private long transferred;
+
+    /**
+     * Constructor.
+     * @param capacity Max number of chunks into the pipe.
+     * @param timeout Max time in milliseconds that each side waits for the other one.
+     */
+    public HttpBodyPipe(int capacity, long timeout) {
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Set the handler called when the pipe is aborted.
+     * @param abortHandler Abort handler.
+     */
+    public void setAbortHandler(Runnable abortHandler) {
+        this.abortHandler = abortHandler;
+        if(aborted && abortHandler != null) {
+            abortHandler.run();
+        }
+    }
+
+    /**
+     * Verify if the whole body was written into the pipe.
+     * @return True if the end of the body was received.
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Verify if the pipe was aborted by some of the sides.
+     * @return True if the pipe was aborted.
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Return the number of bytes read from the pipe.
+     * @return Number of bytes.
+     */
+    public synchronized long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Copies the chunk into the pipe, if the pipe is full then the caller is blocked until
+     * the reader consumes some chunk.
+     * @param chunk Fragment of the body.
+     * @throws IOException If the pipe was aborted or if the reader doesn't consume the chunks
+     * before the timeout.
+     */
+    @Override
+    public void onChunk(ByteBuffer chunk) throws IOException {
+        if(chunk.hasRemaining()) {
+            byte[] data = new byte[chunk.remaining()];
+            chunk.get(data);
+            put(data);
+        }
+    }
+
+    /**
+     * Writes the end mark into the pipe.
+     * @throws IOException If the pipe was aborted.
+     */
+    @Override
+    public void onEnd() throws IOException {
+        put(END);
+        ended = true;
+    }
+
+    /**
+     * If the pipe is closed before the end of the body then the pipe is aborted.
+     */
+    @Override
+    public void close() {
+        if(!ended) {
+            abort();
+        }
+    }
+
+    /**
+     * Aborts the pipe, the blocked sides are released and the next operations fail.
+     */
+    public void abort() {
+        Runnable handler = null;
+        synchronized (this) {
+            if(!aborted) {
+                aborted = true;
+                handler = abortHandler;
+            }
+        }
+        chunks.clear();
+        chunks.offer(END);
+        if(handler != null) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Reads the next bytes of the body, if the pipe is empty the caller is blocked
+     * until the writer puts some chunk.
+     * @param buffer Buffer to put the data.
+     * @return Number of bytes read or -1 if the body is complete.
+     * @throws IOException If the pipe was aborted or if there are no data since the timeout.
+     */
+    public int read(byte[] buffer) throws IOException {
+        if(current == null || currentPosition == current.length) {
+            try {
+                current = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                abort();
+                throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_22), ex);
+            }
+            currentPosition = 0;
+            if(current == null) {
+                abort();
+                throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_23, timeout));
+            }
+        }
+        if(aborted) {
+            throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_22));
+        }
+
+        int result;
+        if(current == END) {
+            chunks.offer(END);
+            result = -1;
+        } else {
+            result = Math.min(buffer.length, current.length - currentPosition);
+            System.arraycopy(current, currentPosition, buffer, 0, result);
+            currentPosition += result;
+            synchronized (this) {
+                transferred += result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts the data into the queue.
+     * @param data Data to put.
+     * @throws IOException If the pipe was aborted or the timeout was reached.
+     */
+    private void put(byte[] data) throws IOException {
+        if(aborted) {
+            throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_22));
+        }
+        try {
+            if(!chunks.offer(data, timeout, TimeUnit.MILLISECONDS)) {
+                abort();
+                throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_23, timeout));
+            }
+        } catch (InterruptedException ex) {
+            abort();
+            throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_22), ex);
+        }
+        if(aborted) {
+            throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_22));
+        }
+    }
+}
@@ -1,51 +1,40 @@
 package org.hcjf.io.net.http;
 
-import org.hcjf.errors.Errors;
-import org.hcjf.io.net.NetClient;
-import org.hcjf.io.net.NetPackage;
-import org.hcjf.io.net.NetService;
-import org.hcjf.io.net.NetSession;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
-import java.io.ByteArrayOutputStream;
 import java.net.URL;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Client to invoke some http server.
+ * Client to invoke some http server. The requests are sent using the persistent
+ * connections of a {@link HttpClientPool}, by default the pool shared by all the clients.
  * @author javaito
  */
-public class HttpClient extends NetClient<HttpSession, HttpPackage> {
+public class HttpClient {
 
     public static final String HTTP_CLIENT_LOG_TAG = "HTTP_CLIENT";
 
-    private static final String CONNECTION_TIMEOUT_MESSAGE = "Connection timeout";
-    private static final String READ_TIMEOUT_MESSAGE = "Read timeout";
-    private static final String DISCONNECTION_MESSAGE = "Http client request end";
-    private static final String SESSION_NAME = "Http client session";
-
     private final URL url;
-    private Status status;
-    private HttpResponse response;
+    private final String host;
+    private final Integer port;
     private HttpRequest request;
     private Long connectTimeout;
     private Long writeTimeout;
     private Long readTimeout;
-    private HttpSession session;
     private HttpPackage.HttpProtocol httpProtocol;
+    private HttpClientPool pool;
 
     public HttpClient(URL url) {
-        super(url.getHost(), url.getPort() != -1 ? url.getPort() :
-                    url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
-                            SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
-                            SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT),
-                    url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
-                            NetService.TransportLayerProtocol.TCP_SSL :
-                            NetService.TransportLayerProtocol.TCP);
         this.url = url;
+        this.host = url.getHost();
+        this.port = url.getPort() != -1 ? url.getPort() :
+                url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
+                        SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
+                        SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT);
+        this.pool = HttpClientPool.getInstance();
         this.connectTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_CONNECT_TIMEOUT);
         this.writeTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_WRITE_TIMEOUT);
         this.readTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_READ_TIMEOUT);
@@ -55,10 +44,6 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
     }
 
     private void init() {
-        //Init defaults
-        this.response = null;
-        this.status = Status.INACTIVE;
-
         //Create default request
         request = new HttpRequest();
         request.setProtocol(httpProtocol);
@@ -68,6 +53,42 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
         request.setBody(new byte[0]);
         request.addHeader(new HttpHeader(HttpHeader.HOST, url.getHost()));
         request.addHeader(new HttpHeader(HttpHeader.USER_AGENT, HttpHeader.DEFAULT_USER_AGENT));
+        request.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.KEEP_ALIVE));
+    }
+
+    /**
+     * Returns the host where it will connect the client
+     * @return Remote host.
+     */
+    public final String getHost() {
+        return host;
+    }
+
+    /**
+     * Return the port where it will connect the client.
+     * @return Remote port.
+     */
+    public final Integer getPort() {
+        return port;
+    }
+
+    /**
+     * Return the pool of connections used by the client.
+     * @return Connection pool.
+     */
+    public final HttpClientPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Set the pool of connections used by the client.
+     * @param pool Connection pool.
+     */
+    public final void setPool(HttpClientPool pool) {
+        if(pool == null) {
+            throw new NullPointerException("Null http client pool");
+        }
+        this.pool = pool;
     }
 
     /**
@@ -175,197 +196,41 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
     }
 
     /**
-     * Creates the SSL engine.
-     * @return SSL engine instance.
+     * Sends the request without blocking the caller, the request is sent using some
+     * persistent connection of the pool.
+     * @return Future with the response, the future fails with a {@link TimeoutException}
+     * if the connection or the response exceed the timeouts.
      */
-    @Override
-    protected SSLEngine getSSLEngine() {
-        try {
-            SSLEngine engine = SSLContext.getDefault().createSSLEngine();
-            engine.setUseClientMode(true);
-            engine.beginHandshake();
-            return engine;
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_6), ex);
+    public final CompletableFuture<HttpResponse> requestAsync() {
+        HttpRequest request = this.request;
+        if(request.getBody() != null && request.getBody().length > 0 && !request.containsHeader(HttpHeader.CONTENT_LENGTH)) {
+            request.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(request.getBody().length)));
         }
+        return pool.request(httpProtocol, host, port, request, getConnectTimeout(), getReadTimeout());
     }
 
     /**
-     * This method return the object that represent the
-     * client's session.
-     * @return Client's session.
-     */
-    @Override
-    public HttpSession getSession() {
-        return session;
-    }
-
-    @Override
-    public HttpSession checkSession(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        return session;
-    }
-
-    /**
-     * This method decode the implementation data.
-     * @param payLoad Implementation data.
-     * @return Implementation data encoded.
-     */
-    @Override
-    protected byte[] encode(HttpPackage payLoad) {
-        byte[] result = null;
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            out.write(payLoad.getProtocolHeader());
-            if(payLoad.getBody() != null) {
-                out.write(payLoad.getBody());
-            }
-            out.flush();
-            result = out.toByteArray();
-        } catch (Exception ex){}
-        return result;
-    }
-
-    /**
-     * This method decode the net package to obtain the implementation data
-     * @param netPackage Net package.
-     * @return Return the implementation data.
-     */
-    @Override
-    protected HttpPackage decode(NetPackage netPackage) {
-        if(response == null) {
-            response = new HttpResponse();
-            response.setProtocol(httpProtocol);
-        }
-        response.addData(netPackage.getPayload());
-        return response;
-    }
-
-    /**
-     * Destroy the session.
-     * @param session Net session to be destroyed
-     */
-    @Override
-    public void destroySession(NetSession session) {
-        session = null;
-    }
-
-    /**
-     *
-     * @param session Connected session.
-     * @param payLoad Decoded package payload.
-     * @param netPackage Original package.
-     */
-    @Override
-    protected void onConnect(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        synchronized (this) {
-            status = Status.CONNECTED;
-            notifyAll();
-        }
-    }
-
-    /**
-     *
-     * @param session Net session.
-     * @param payLoad Net package decoded
-     * @param netPackage Net package.
-     */
-    @Override
-    protected final void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        if(response.isComplete()) {
-            synchronized (this) {
-                status = Status.DONE;
-                notifyAll();
-            }
-        }
-    }
-
-    /**
-     * This method execute all the steps to do a http request. Creates the connection,
+     * This method execute all the steps to do a http request. Takes a connection,
      * sends the request package and reads the response, then this response
      * is returned as a method response.
      * @return Http response package.
      */
     public final HttpResponse request() {
         long time = System.currentTimeMillis();
-        session = new HttpSession(UUID.randomUUID(), this);
-        session.setRequest(request);
-        session.setSessionName(SESSION_NAME);
-        Integer errorCode = null;
-
-        //Connection block
-        status = Status.CONNECTING;
-        synchronized (this) {
-            connect();
-            if (status == Status.CONNECTING) {
-                try {
-                    wait(getConnectTimeout());
-                } catch (InterruptedException e) {}
-            }
-
-            if (status == Status.CONNECTING) {
-                status = Status.ERROR;
-                errorCode = HttpResponseCode.REQUEST_TIMEOUT;
-            }
-        }
-
-        //Request writing request and read response block
-        if(status != Status.ERROR) {
-            status = Status.WRITING;
-
-            synchronized (this) {
-                Log.out(HTTP_CLIENT_LOG_TAG, "Request\r\n%s", request.toString());
-                try {
-                    write(getSession(), request, false);
-                } catch (Exception ex) {
-                    status = Status.ERROR;
-                    errorCode = HttpResponseCode.BAD_REQUEST;
-                }
-
-                if (status == Status.WRITING) {
-                    try {
-                        wait(getReadTimeout());
-                    } catch (InterruptedException e) {
-                    }
-                }
-
-                if (status == Status.WRITING) {
-                    status = Status.ERROR;
-                    errorCode = HttpResponseCode.REQUEST_TIMEOUT;
-                }
-            }
-        }
-
         HttpResponse response;
-        if(status == Status.ERROR) {
+        try {
+            response = requestAsync().get();
+        } catch (Exception ex) {
+            Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+            Log.d(HTTP_CLIENT_LOG_TAG, "Http client request fail: %s", cause.getMessage());
             response = new HttpResponse();
             response.setHttpVersion(HttpVersion.VERSION_1_1);
-            response.setResponseCode(errorCode);
-        } else {
-            response = this.response;
+            response.setResponseCode(cause instanceof TimeoutException ?
+                    HttpResponseCode.REQUEST_TIMEOUT : HttpResponseCode.BAD_REQUEST);
         }
 
-        disconnect(getSession(), DISCONNECTION_MESSAGE);
-
-        Log.in(HTTP_CLIENT_LOG_TAG, "Response -> [Time: %d ms]\r\n%s",
-                (System.currentTimeMillis() - time), response.toString());
+        Log.d(HTTP_CLIENT_LOG_TAG, "Response %s %s -> %d [Time: %d ms]", request.getMethod(), url,
+                response.getResponseCode(), (System.currentTimeMillis() - time));
         return response;
     }
-
-    /**
-     * Clietn request status.
-     */
-    private enum Status {
-
-        INACTIVE,
-
-        CONNECTING,
-
-        CONNECTED,
-
-        WRITING,
-
-        DONE,
-
-        ERROR;
-
-    }
 }
@@ -0,0 +1,418 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.Errors;
+import org.hcjf.io.net.NetClient;
+import org.hcjf.io.net.NetPackage;
+import org.hcjf.io.net.NetService;
+import org.hcjf.io.net.NetSession;
+import org.hcjf.log.Log;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * This class is a persistent connection of the http client pool. The connection sends
+ * one request at time and it's returned to the pool after each response while the
+ * server keeps the connection alive.
+ * @author javaito
+ */
+final class HttpClientConnection extends NetClient<HttpSession, HttpPackage> {
+
+    private static final String SESSION_NAME = "Http client session";
+    private static final String DISCONNECTION_MESSAGE = "Http client connection closed";
+    private static final byte[] CHUNK_SEPARATOR = HttpPackage.STRING_LINE_SEPARATOR.getBytes();
+    private static final byte[] LAST_CHUNK = ("0" + HttpPackage.STRING_LINE_SEPARATOR + HttpPackage.STRING_LINE_SEPARATOR).getBytes();
+
+    private final HttpClientPool pool;
+    private final HttpClientPool.HostPool hostPool;
+    private final HttpPackage.HttpProtocol httpProtocol;
+    private final HttpSession session;
+    private HttpResponse response;
+    private HttpClientPool.PendingRequest pendingRequest;
+    private boolean receiving;
+    private boolean connected;
+    private boolean closed;
+    private long lastUsed;
+    private int requests;
+
+    HttpClientConnection(HttpClientPool pool, HttpClientPool.HostPool hostPool) {
+        super(hostPool.getHost(), hostPool.getPort(),
+                hostPool.getProtocol().equals(HttpPackage.HttpProtocol.HTTPS) ?
+                        NetService.TransportLayerProtocol.TCP_SSL : NetService.TransportLayerProtocol.TCP);
+        this.pool = pool;
+        this.hostPool = hostPool;
+        this.httpProtocol = hostPool.getProtocol();
+        this.session = new HttpSession(UUID.randomUUID(), this);
+        this.session.setSessionName(SESSION_NAME);
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Return the pool of the host of the connection.
+     * @return Host pool.
+     */
+    HttpClientPool.HostPool getHostPool() {
+        return hostPool;
+    }
+
+    /**
+     * Starts the connection with the remote host.
+     */
+    void open() {
+        connect();
+    }
+
+    /**
+     * Verify if the connection can be used to send a new request.
+     * @param idleTimeout Max time in milliseconds without use.
+     * @return True if the connection is open and it was used recently.
+     */
+    synchronized boolean isHealthy(long idleTimeout) {
+        return connected && !closed && pendingRequest == null &&
+                System.currentTimeMillis() - lastUsed < idleTimeout;
+    }
+
+    /**
+     * Verify if the connection was used to send some request before.
+     * @return True if the connection was reused.
+     */
+    synchronized boolean isReused() {
+        return requests > 1;
+    }
+
+    /**
+     * Sends the request, the response is delivered to the pool.
+     * @param pendingRequest Request to send.
+     * @return Returns false if the connection is closed.
+     */
+    boolean send(HttpClientPool.PendingRequest pendingRequest) {
+        synchronized (this) {
+            if(closed) {
+                return false;
+            }
+            this.pendingRequest = pendingRequest;
+            this.response = new ClientResponse(pendingRequest);
+            this.response.setProtocol(httpProtocol);
+            this.receiving = false;
+            this.requests++;
+            this.lastUsed = System.currentTimeMillis();
+        }
+        session.setRequest(pendingRequest.getRequest());
+        try {
+            write(session, pendingRequest.getRequest(), false);
+            if(pendingRequest.getRequestBody() != null) {
+                pool.writeBody(() -> writeBody(pendingRequest));
+            }
+        } catch (Exception ex) {
+            fail(ex, false);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the body of the request reading the chunks from the pipe, if the request
+     * uses the chunked transfer encoding then each chunk is framed before write it.
+     * The write operation waits only when the output queue of the connection is over the watermarks.
+     * @param pendingRequest Request with the body pipe.
+     */
+    private void writeBody(HttpClientPool.PendingRequest pendingRequest) {
+        HttpBodyPipe pipe = pendingRequest.getRequestBody();
+        HttpHeader transferEncodingHeader = pendingRequest.getRequest().getHeader(HttpHeader.TRANSFER_ENCODING);
+        boolean chunked = transferEncodingHeader != null &&
+                transferEncodingHeader.getHeaderValue().equalsIgnoreCase(HttpHeader.CHUNKED);
+        byte[] buffer = new byte[getOutputBufferSize()];
+        try {
+            int size;
+            while((size = pipe.read(buffer)) >= 0) {
+                if(size > 0) {
+                    writeEncoded(session, chunked ? frameChunk(buffer, size) : Arrays.copyOf(buffer, size), !session.isWritable());
+                }
+            }
+            if(chunked) {
+                writeEncoded(session, LAST_CHUNK, false);
+            }
+            pool.onBodyWritten(this, pendingRequest);
+        } catch (Exception ex) {
+            pipe.abort();
+            fail(ex, false);
+            close();
+        }
+    }
+
+    /**
+     * Creates a chunk of the chunked transfer encoding.
+     * @param data Chunk data.
+     * @param size Size of the data.
+     * @return Framed chunk.
+     */
+    private static byte[] frameChunk(byte[] data, int size) {
+        byte[] header = (Integer.toHexString(size) + HttpPackage.STRING_LINE_SEPARATOR).getBytes();
+        byte[] result = new byte[header.length + size + CHUNK_SEPARATOR.length];
+        System.arraycopy(header, 0, result, 0, header.length);
+        System.arraycopy(data, 0, result, header.length, size);
+        System.arraycopy(CHUNK_SEPARATOR, 0, result, header.length + size, CHUNK_SEPARATOR.length);
+        return result;
+    }
+
+    /**
+     * Closes the connection.
+     */
+    void close() {
+        boolean wasConnected;
+        synchronized (this) {
+            wasConnected = connected;
+        }
+        if(wasConnected) {
+            disconnect(session, DISCONNECTION_MESSAGE);
+        }
+        onClosed(null);
+    }
+
+    /**
+     * Creates the SSL engine.
+     * @return SSL engine instance.
+     */
+    @Override
+    protected SSLEngine getSSLEngine() {
+        try {
+            SSLEngine engine = SSLContext.getDefault().createSSLEngine(getHost(), getPort());
+            engine.setUseClientMode(true);
+            engine.beginHandshake();
+            return engine;
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_6), ex);
+        }
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return session;
+    }
+
+    @Override
+    public HttpSession checkSession(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        return session;
+    }
+
+    @Override
+    public void destroySession(NetSession session) {
+    }
+
+    /**
+     * Encodes the request, the header block and the body are copied into the same array.
+     * @param payLoad Http request.
+     * @return Encoded request.
+     */
+    @Override
+    protected byte[] encode(HttpPackage payLoad) {
+        byte[] header = payLoad.getProtocolHeader();
+        byte[] body = payLoad.getBody() == null ? new byte[0] : payLoad.getBody();
+        byte[] result = new byte[header.length + body.length];
+        System.arraycopy(header, 0, result, 0, header.length);
+        System.arraycopy(body, 0, result, header.length, body.length);
+        return result;
+    }
+
+    @Override
+    protected HttpPackage decode(NetPackage netPackage) {
+        return decode(netPackage, ByteBuffer.wrap(netPackage.getPayload()));
+    }
+
+    /**
+     * Adds the received data to the current response.
+     * @param netPackage Net package.
+     * @param buffer Buffer with the package data.
+     * @return Current response.
+     */
+    @Override
+    protected HttpPackage decode(NetPackage netPackage, ByteBuffer buffer) {
+        HttpResponse response;
+        synchronized (this) {
+            response = this.response;
+            receiving = true;
+        }
+        if(response != null) {
+            try {
+                response.addData(buffer);
+            } catch (Exception ex) {
+                fail(ex, false);
+                close();
+            }
+        }
+        return response;
+    }
+
+    @Override
+    protected void onConnect(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        synchronized (this) {
+            connected = true;
+            lastUsed = System.currentTimeMillis();
+        }
+        pool.onConnected(this);
+    }
+
+    @Override
+    protected void onConnectionFailed(Throwable cause) {
+        onClosed(cause);
+    }
+
+    /**
+     * Delivers the response to the pool when the response is complete.
+     * @param session Net session.
+     * @param payLoad Net package decoded
+     * @param netPackage Net package.
+     */
+    @Override
+    protected void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        HttpClientPool.PendingRequest pendingRequest = null;
+        HttpResponse response = null;
+        boolean reusable = false;
+        synchronized (this) {
+            if(this.response != null && this.response.isComplete() && this.pendingRequest != null) {
+                pendingRequest = this.pendingRequest;
+                response = this.response;
+                this.pendingRequest = null;
+                this.response = null;
+                lastUsed = System.currentTimeMillis();
+                reusable = !closed && isKeepAlive(response);
+            }
+        }
+        if(pendingRequest != null) {
+            pool.onResponse(this, pendingRequest, response, reusable);
+        }
+    }
+
+    @Override
+    protected void onDisconnect(HttpSession session, NetPackage netPackage) {
+        onClosed(null);
+    }
+
+    /**
+     * Marks the connection as closed and notifies the failure of the current request.
+     * @param cause Cause of the close, could be null.
+     */
+    private void onClosed(Throwable cause) {
+        boolean notify;
+        synchronized (this) {
+            notify = !closed;
+            closed = true;
+        }
+        if(notify) {
+            fail(cause == null ? new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_18, hostPool)) : cause, true);
+            pool.onClosed(this, cause);
+        }
+    }
+
+    /**
+     * Notifies the failure of the current request to the pool.
+     * @param cause Cause of the failure.
+     * @param closing True if the failure is because the connection was closed.
+     */
+    private void fail(Throwable cause, boolean closing) {
+        HttpClientPool.PendingRequest pendingRequest;
+        boolean retryable;
+        synchronized (this) {
+            pendingRequest = this.pendingRequest;
+            //A request sent over a reused connection is retried if the server closed the
+            //connection without send any byte of the response and its method is idempotent.
+            retryable = closing && !receiving && requests > 1;
+            this.pendingRequest = null;
+            this.response = null;
+        }
+        if(pendingRequest != null) {
+            Log.d(HttpClient.HTTP_CLIENT_LOG_TAG, "Http client request fail: %s", cause.getMessage());
+            if(pendingRequest.getRequestBody() != null) {
+                pendingRequest.getRequestBody().abort();
+            }
+            if(pendingRequest.getResponseBody() != null && !pendingRequest.getResponseBody().isEnded()) {
+                pendingRequest.getResponseBody().abort();
+            }
+            pool.onFailure(this, pendingRequest, cause, retryable);
+        }
+    }
+
+    /**
+     * Closes the connection if the request is still in progress.
+     * @param pendingRequest Request in progress.
+     */
+    private void abort(HttpClientPool.PendingRequest pendingRequest) {
+        boolean current;
+        synchronized (this) {
+            current = this.pendingRequest == pendingRequest;
+        }
+        if(current) {
+            close();
+        }
+    }
+
+    /**
+     * Verify if the server keeps alive the connection after the response.
+     * @param response Http response.
+     * @return True if the connection could be reused.
+     */
+    private boolean isKeepAlive(HttpResponse response) {
+        boolean result;
+        HttpHeader connectionHeader = response.getHeader(HttpHeader.CONNECTION);
+        if(connectionHeader != null) {
+            result = !connectionHeader.getHeaderValue().equalsIgnoreCase(HttpHeader.CLOSE);
+        } else {
+            result = HttpVersion.VERSION_1_1.equals(response.getHttpVersion());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return hostPool + " " + session.getId();
+    }
+
+    /**
+     * Response of the connection, if the request has a response pipe then the body is
+     * delivered to the pipe and the pool is notified when the headers are complete.
+     */
+    private class ClientResponse extends HttpResponse {
+
+        private final HttpClientPool.PendingRequest pendingRequest;
+        private final boolean withoutBody;
+        private volatile boolean streaming;
+
+        private ClientResponse(HttpClientPool.PendingRequest pendingRequest) {
+            this.pendingRequest = pendingRequest;
+            this.withoutBody = HttpMethod.HEAD.equals(pendingRequest.getRequest().getMethod());
+        }
+
+        @Override
+        protected HttpBodyConsumer createBodyConsumer() {
+            HttpBodyPipe pipe = pendingRequest.getResponseBody();
+            if(pipe != null) {
+                pipe.setAbortHandler(() -> abort(pendingRequest));
+                streaming = true;
+                pool.onHeaders(pendingRequest, this);
+            }
+            return pipe;
+        }
+
+        /**
+         * The pool is notified before the package stores the consumer, then the pipe
+         * is returned as soon as the headers were delivered.
+         * @return Body consumer or null if the body was accumulated into memory.
+         */
+        @Override
+        public HttpBodyConsumer getBodyConsumer() {
+            return streaming ? pendingRequest.getResponseBody() : super.getBodyConsumer();
+        }
+
+        /**
+         * The responses of the head requests never has body.
+         * @return True if the body is complete.
+         */
+        @Override
+        protected boolean bodyDone() {
+            return withoutBody || super.bodyDone();
+        }
+    }
+}
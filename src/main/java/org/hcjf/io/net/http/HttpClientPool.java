@@ -0,0 +1,570 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.Errors;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class manages the persistent connections of the http clients. The connections are
+ * grouped by protocol, host and port, each group has a limit of open connections and the
+ * requests that exceed the limit wait until some connection is released.
+ * The idle connections are reused using the http/1.1 keep alive, they are verified before
+ * each use and a background task closes the connections without use since the idle timeout.
+ * @author javaito
+ */
+public class HttpClientPool {
+
+    private static final String TIMER_NAME = "HttpClientPool";
+    private static final String BODY_WRITER_NAME = "HttpClientPool body writer";
+    private static final String KEY_SEPARATOR = ":";
+    private static final String PROTOCOL_SEPARATOR = "://";
+
+    private static HttpClientPool instance;
+
+    private final int maxConnectionsPerHost;
+    private final int maxPendingRequests;
+    private final long idleTimeout;
+    private final Map<String, HostPool> hostPools;
+    private final Timer timer;
+    private final ExecutorService bodyWriters;
+    private final LongAdder createdConnections;
+    private final LongAdder reusedConnections;
+    private final LongAdder retriedRequests;
+
+    public HttpClientPool() {
+        this(SystemProperties.getInteger(SystemProperties.Net.Http.ClientPool.MAX_CONNECTIONS_PER_HOST),
+                SystemProperties.getInteger(SystemProperties.Net.Http.ClientPool.MAX_PENDING_REQUESTS),
+                SystemProperties.getLong(SystemProperties.Net.Http.ClientPool.IDLE_TIMEOUT),
+                SystemProperties.getLong(SystemProperties.Net.Http.ClientPool.EVICTION_PERIOD));
+    }
+
+    /**
+     * Constructor.
+     * @param maxConnectionsPerHost Max number of open connections for each host.
+     * @param maxPendingRequests Max number of requests waiting a connection for each host.
+     * @param idleTimeout Time in milliseconds that a connection could be idle before close it.
+     * @param evictionPeriod Period in milliseconds of the task that closes the idle connections.
+     */
+    public HttpClientPool(int maxConnectionsPerHost, int maxPendingRequests, long idleTimeout, long evictionPeriod) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxPendingRequests = maxPendingRequests;
+        this.idleTimeout = idleTimeout;
+        this.hostPools = new ConcurrentHashMap<>();
+        this.timer = new Timer(TIMER_NAME, true);
+        this.timer.schedule(new EvictionTask(), evictionPeriod, evictionPeriod);
+        this.bodyWriters = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, BODY_WRITER_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.createdConnections = new LongAdder();
+        this.reusedConnections = new LongAdder();
+        this.retriedRequests = new LongAdder();
+    }
+
+    /**
+     * Return the pool shared by all the http clients.
+     * @return Shared pool.
+     */
+    public static synchronized HttpClientPool getInstance() {
+        if(instance == null) {
+            instance = new HttpClientPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Return the number of connections created by the pool.
+     * @return Created connections.
+     */
+    public long getCreatedConnections() {
+        return createdConnections.sum();
+    }
+
+    /**
+     * Return the number of requests sent over a connection used before.
+     * @return Reused connections.
+     */
+    public long getReusedConnections() {
+        return reusedConnections.sum();
+    }
+
+    /**
+     * Return the number of requests sent again because the server closed the idle connection.
+     * @return Retried requests.
+     */
+    public long getRetriedRequests() {
+        return retriedRequests.sum();
+    }
+
+    /**
+     * Return the number of open connections with the host.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @return Number of connections.
+     */
+    public int getConnections(HttpPackage.HttpProtocol protocol, String host, int port) {
+        HostPool hostPool = hostPools.get(createKey(protocol, host, port));
+        int result = 0;
+        if(hostPool != null) {
+            synchronized (hostPool) {
+                result = hostPool.connections;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends the request using some connection of the pool.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @param request Http request.
+     * @param connectTimeout Max time in milliseconds to establish a new connection.
+     * @param readTimeout Max time in milliseconds to receive the response.
+     * @return Future with the response.
+     */
+    public CompletableFuture<HttpResponse> request(HttpPackage.HttpProtocol protocol, String host, int port,
+                                                   HttpRequest request, long connectTimeout, long readTimeout) {
+        return stream(protocol, host, port, request, null, null, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Sends the request using some connection of the pool, the bodies of the request and the response
+     * are transferred as chunks through the pipes without accumulate them into memory.
+     * If the response has body then the future is completed when the headers of the response
+     * arrives and the body is delivered through the response pipe.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @param request Http request, the headers must describe the length or the transfer encoding of the body.
+     * @param requestBody Pipe with the body of the request, could be null.
+     * @param responseBody Pipe to deliver the body of the response, could be null.
+     * @param connectTimeout Max time in milliseconds to establish a new connection.
+     * @param readTimeout Max time in milliseconds to receive the response headers.
+     * @return Future with the response.
+     */
+    public CompletableFuture<HttpResponse> stream(HttpPackage.HttpProtocol protocol, String host, int port,
+                                                  HttpRequest request, HttpBodyPipe requestBody, HttpBodyPipe responseBody,
+                                                  long connectTimeout, long readTimeout) {
+        HostPool hostPool = hostPools.computeIfAbsent(createKey(protocol, host, port),
+                K -> new HostPool(protocol, host, port));
+        PendingRequest pendingRequest = new PendingRequest(request, requestBody, responseBody, connectTimeout, readTimeout);
+        dispatch(hostPool, pendingRequest);
+        return pendingRequest.future;
+    }
+
+    /**
+     * Closes all the connections of the pool.
+     */
+    public void close() {
+        for(HostPool hostPool : hostPools.values()) {
+            List<HttpClientConnection> idleConnections;
+            synchronized (hostPool) {
+                idleConnections = new ArrayList<>(hostPool.idleConnections);
+                hostPool.idleConnections.clear();
+            }
+            idleConnections.forEach(HttpClientConnection::close);
+        }
+    }
+
+    /**
+     * Sends the request using an idle connection, a new connection or puts the request
+     * into the queue of the host.
+     * @param hostPool Host pool.
+     * @param pendingRequest Request to send.
+     */
+    private void dispatch(HostPool hostPool, PendingRequest pendingRequest) {
+        HttpClientConnection connection = null;
+        boolean create = false;
+        List<HttpClientConnection> unhealthyConnections = null;
+        synchronized (hostPool) {
+            while(connection == null && !hostPool.idleConnections.isEmpty()) {
+                connection = hostPool.idleConnections.pollFirst();
+                if(!connection.isHealthy(idleTimeout)) {
+                    if(unhealthyConnections == null) {
+                        unhealthyConnections = new ArrayList<>();
+                    }
+                    unhealthyConnections.add(connection);
+                    connection = null;
+                }
+            }
+            if(connection == null) {
+                if(hostPool.connections < maxConnectionsPerHost) {
+                    hostPool.connections++;
+                    create = true;
+                } else if(hostPool.pendingRequests.size() < maxPendingRequests) {
+                    hostPool.pendingRequests.add(pendingRequest);
+                    pendingRequest.timeout = new TimerTask() {
+                        @Override
+                        public void run() {
+                            boolean timeout;
+                            synchronized (hostPool) {
+                                timeout = hostPool.pendingRequests.remove(pendingRequest);
+                            }
+                            if(timeout) {
+                                pendingRequest.future.completeExceptionally(new TimeoutException(
+                                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_19, hostPool)));
+                            }
+                        }
+                    };
+                    timer.schedule(pendingRequest.timeout, pendingRequest.connectTimeout);
+                } else {
+                    pendingRequest.future.completeExceptionally(new RejectedExecutionException(
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_21, hostPool)));
+                }
+            }
+        }
+
+        if(unhealthyConnections != null) {
+            unhealthyConnections.forEach(HttpClientConnection::close);
+        }
+
+        if(connection != null) {
+            reusedConnections.increment();
+            send(connection, pendingRequest);
+        } else if(create) {
+            connect(hostPool, pendingRequest);
+        }
+    }
+
+    /**
+     * Creates a new connection for the request.
+     * @param hostPool Host pool.
+     * @param pendingRequest Request to send when the connection is established.
+     */
+    private void connect(HostPool hostPool, PendingRequest pendingRequest) {
+        HttpClientConnection connection = new HttpClientConnection(this, hostPool);
+        synchronized (hostPool) {
+            hostPool.connectingRequests.put(connection, pendingRequest);
+        }
+        createdConnections.increment();
+        pendingRequest.timeout = new TimerTask() {
+            @Override
+            public void run() {
+                boolean timeout;
+                synchronized (hostPool) {
+                    timeout = hostPool.connectingRequests.remove(connection) != null;
+                }
+                if(timeout) {
+                    pendingRequest.future.completeExceptionally(new TimeoutException(
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_19, hostPool)));
+                    connection.close();
+                }
+            }
+        };
+        timer.schedule(pendingRequest.timeout, pendingRequest.connectTimeout);
+        try {
+            connection.open();
+        } catch (Exception ex) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Sends the request over the connection and schedules the read timeout.
+     * @param connection Http connection.
+     * @param pendingRequest Request to send.
+     */
+    private void send(HttpClientConnection connection, PendingRequest pendingRequest) {
+        if(pendingRequest.timeout != null) {
+            pendingRequest.timeout.cancel();
+        }
+        if(pendingRequest.future.isDone()) {
+            release(connection, true);
+        } else {
+            if(pendingRequest.requestBody == null) {
+                scheduleReadTimeout(connection, pendingRequest);
+            } else {
+                //The read timeout starts when the body is written.
+                pendingRequest.timeout = null;
+            }
+            if(!connection.send(pendingRequest)) {
+                if(pendingRequest.timeout != null) {
+                    pendingRequest.timeout.cancel();
+                }
+                dispatch(connection.getHostPool(), pendingRequest);
+            }
+        }
+    }
+
+    /**
+     * Schedules the task that fails the request if the response doesn't arrive before the read timeout.
+     * @param connection Http connection.
+     * @param pendingRequest Request sent.
+     */
+    private void scheduleReadTimeout(HttpClientConnection connection, PendingRequest pendingRequest) {
+        pendingRequest.timeout = new TimerTask() {
+            @Override
+            public void run() {
+                if(pendingRequest.future.completeExceptionally(new TimeoutException(
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_20, connection.getHostPool())))) {
+                    connection.close();
+                }
+            }
+        };
+        timer.schedule(pendingRequest.timeout, pendingRequest.readTimeout);
+    }
+
+    /**
+     * This method is called by the connection when the whole body of the request was written.
+     * @param connection Http connection.
+     * @param pendingRequest Request sent.
+     */
+    void onBodyWritten(HttpClientConnection connection, PendingRequest pendingRequest) {
+        if(!pendingRequest.future.isDone()) {
+            scheduleReadTimeout(connection, pendingRequest);
+        }
+    }
+
+    /**
+     * Returns the connection to the pool, if there are requests waiting for a connection
+     * then the connection is used immediately.
+     * @param connection Http connection.
+     * @param reusable If the value is false the connection is closed.
+     */
+    private void release(HttpClientConnection connection, boolean reusable) {
+        HostPool hostPool = connection.getHostPool();
+        PendingRequest next = null;
+        if(reusable) {
+            synchronized (hostPool) {
+                next = hostPool.pendingRequests.poll();
+                if(next == null) {
+                    hostPool.idleConnections.addFirst(connection);
+                }
+            }
+            if(next != null) {
+                reusedConnections.increment();
+                send(connection, next);
+            }
+        } else {
+            connection.close();
+        }
+    }
+
+    /**
+     * This method is called by the connection when it's established.
+     * @param connection Http connection.
+     */
+    void onConnected(HttpClientConnection connection) {
+        HostPool hostPool = connection.getHostPool();
+        PendingRequest pendingRequest;
+        synchronized (hostPool) {
+            pendingRequest = hostPool.connectingRequests.remove(connection);
+        }
+        if(pendingRequest != null) {
+            send(connection, pendingRequest);
+        } else {
+            release(connection, true);
+        }
+    }
+
+    /**
+     * Writes the body of the request in background, the thread is blocked while the
+     * pipe is empty or the connection is not writable.
+     * @param bodyWriter Task that writes the body.
+     */
+    void writeBody(Runnable bodyWriter) {
+        bodyWriters.execute(bodyWriter);
+    }
+
+    /**
+     * This method is called by the connection when the headers of a streamed response are complete.
+     * @param pendingRequest Request of the response.
+     * @param response Http response with the headers.
+     */
+    void onHeaders(PendingRequest pendingRequest, HttpResponse response) {
+        if(pendingRequest.timeout != null) {
+            pendingRequest.timeout.cancel();
+        }
+        pendingRequest.future.complete(response);
+    }
+
+    /**
+     * This method is called by the connection when the response is complete.
+     * @param connection Http connection.
+     * @param pendingRequest Request of the response.
+     * @param response Http response.
+     * @param reusable True if the connection could be used again.
+     */
+    void onResponse(HttpClientConnection connection, PendingRequest pendingRequest, HttpResponse response, boolean reusable) {
+        if(pendingRequest.timeout != null) {
+            pendingRequest.timeout.cancel();
+        }
+        release(connection, reusable);
+        pendingRequest.future.complete(response);
+    }
+
+    /**
+     * This method is called by the connection when the request fails.
+     * @param connection Http connection.
+     * @param pendingRequest Request that fails.
+     * @param cause Cause of the failure.
+     * @param retryable True if the request could be sent again using other connection,
+     *                  only the requests with idempotent methods are sent again.
+     */
+    void onFailure(HttpClientConnection connection, PendingRequest pendingRequest, Throwable cause, boolean retryable) {
+        if(pendingRequest.timeout != null) {
+            pendingRequest.timeout.cancel();
+        }
+        if(retryable && !pendingRequest.retried && !pendingRequest.future.isDone() &&
+                pendingRequest.requestBody == null && pendingRequest.request.getMethod().isIdempotent()) {
+            pendingRequest.retried = true;
+            retriedRequests.increment();
+            dispatch(connection.getHostPool(), pendingRequest);
+        } else {
+            pendingRequest.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * This method is called by the connection when it's closed.
+     * @param connection Http connection.
+     * @param cause Cause of the close, could be null.
+     */
+    void onClosed(HttpClientConnection connection, Throwable cause) {
+        HostPool hostPool = connection.getHostPool();
+        PendingRequest connectingRequest;
+        PendingRequest next = null;
+        synchronized (hostPool) {
+            hostPool.connections--;
+            hostPool.idleConnections.remove(connection);
+            connectingRequest = hostPool.connectingRequests.remove(connection);
+            if(connectingRequest == null && !hostPool.pendingRequests.isEmpty()) {
+                next = hostPool.pendingRequests.poll();
+            }
+        }
+        if(connectingRequest != null) {
+            connectingRequest.timeout.cancel();
+            Log.d(HttpClient.HTTP_CLIENT_LOG_TAG, "Unable to connect with %s", hostPool);
+            connectingRequest.future.completeExceptionally(cause != null ? cause :
+                    new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_18, hostPool)));
+        }
+        if(next != null) {
+            dispatch(hostPool, next);
+        }
+    }
+
+    /**
+     * Creates the key of the host.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @return Host key.
+     */
+    private static String createKey(HttpPackage.HttpProtocol protocol, String host, int port) {
+        return protocol.toString().toLowerCase() + PROTOCOL_SEPARATOR + host.toLowerCase() + KEY_SEPARATOR + port;
+    }
+
+    /**
+     * Contains the connections and the waiting requests of a host.
+     */
+    static final class HostPool {
+
+        private final HttpPackage.HttpProtocol protocol;
+        private final String host;
+        private final int port;
+        private final Deque<HttpClientConnection> idleConnections;
+        private final Queue<PendingRequest> pendingRequests;
+        private final Map<HttpClientConnection, PendingRequest> connectingRequests;
+        private int connections;
+
+        private HostPool(HttpPackage.HttpProtocol protocol, String host, int port) {
+            this.protocol = protocol;
+            this.host = host;
+            this.port = port;
+            this.idleConnections = new ArrayDeque<>();
+            this.pendingRequests = new ArrayDeque<>();
+            this.connectingRequests = new HashMap<>();
+        }
+
+        HttpPackage.HttpProtocol getProtocol() {
+            return protocol;
+        }
+
+        String getHost() {
+            return host;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        @Override
+        public String toString() {
+            return createKey(protocol, host, port);
+        }
+    }
+
+    /**
+     * Request waiting for the response.
+     */
+    static final class PendingRequest {
+
+        private final HttpRequest request;
+        private final HttpBodyPipe requestBody;
+        private final HttpBodyPipe responseBody;
+        private final long connectTimeout;
+        private final long readTimeout;
+        private final CompletableFuture<HttpResponse> future;
+        private TimerTask timeout;
+        private boolean retried;
+
+        private PendingRequest(HttpRequest request, HttpBodyPipe requestBody, HttpBodyPipe responseBody,
+                               long connectTimeout, long readTimeout) {
+            this.request = request;
+            this.requestBody = requestBody;
+            this.responseBody = responseBody;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.future = new CompletableFuture<>();
+        }
+
+        HttpRequest getRequest() {
+            return request;
+        }
+
+        HttpBodyPipe getRequestBody() {
+            return requestBody;
+        }
+
+        HttpBodyPipe getResponseBody() {
+            return responseBody;
+        }
+    }
+
+    /**
+     * This task closes the connections without use since the idle timeout.
+     */
+    private class EvictionTask extends TimerTask {
+
+        @Override
+        public void run() {
+            for(HostPool hostPool : hostPools.values()) {
+                List<HttpClientConnection> expiredConnections = new ArrayList<>();
+                synchronized (hostPool) {
+                    Iterator<HttpClientConnection> iterator = hostPool.idleConnections.iterator();
+                    while(iterator.hasNext()) {
+                        HttpClientConnection connection = iterator.next();
+                        if(!connection.isHealthy(idleTimeout)) {
+                            iterator.remove();
+                            expiredConnections.add(connection);
+                        }
+                    }
+                }
+                expiredConnections.forEach(HttpClientConnection::close);
+            }
+        }
+    }
+}
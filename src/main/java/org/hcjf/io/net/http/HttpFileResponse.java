@@ -0,0 +1,130 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents a http response whose body is a file. The server writes the
+ * headers of the response and then the file is transferred directly to the socket,
+ * the content of the file is never loaded into the heap.
+ * The body could be a region of an open file channel, in this case the channel is owned
+ * by the response and it's closed by the server when the region was written.
+ * @author javaito
+ */
+public class HttpFileResponse extends HttpResponse {
+
+    private final Path path;
+    private final FileChannel fileChannel;
+    private final long position;
+    private final long length;
+    private final Map<String, Path> encodedVariants;
+
+    /**
+     * Constructor.
+     * @param path Path of the file.
+     * @param length Number of bytes of the file.
+     */
+    public HttpFileResponse(Path path, long length) {
+        this(path, null, 0, length);
+    }
+
+    /**
+     * Creates a response whose body is a region of the file channel.
+     * @param fileChannel Open file channel.
+     * @param position Position of the first byte of the region.
+     * @param length Number of bytes of the region.
+     */
+    public HttpFileResponse(FileChannel fileChannel, long position, long length) {
+        this(null, fileChannel, position, length);
+    }
+
+    private HttpFileResponse(Path path, FileChannel fileChannel, long position, long length) {
+        this.path = path;
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.length = length;
+        this.encodedVariants = new HashMap<>();
+        addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Long.toString(length)));
+    }
+
+    /**
+     * Return the path of the file.
+     * @return Path of the file or null if the body is a region of a file channel.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Return the position of the first byte of the body into the file.
+     * @return Position of the body.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Return the channel to read the body, if the response was created with a path then
+     * the file is opened.
+     * @return File channel.
+     * @throws IOException If the file can't be opened.
+     */
+    public FileChannel openChannel() throws IOException {
+        return fileChannel != null ? fileChannel : FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Closes the file channel of the response if the body is not going to be written.
+     */
+    public void close() {
+        if(fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to close file channel", ex);
+            }
+        }
+    }
+
+    /**
+     * Return the number of bytes of the file that are written as body.
+     * @return Body length.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Add a file that contains the same body encoded with a specific content coding, the
+     * server uses this file instead of compress the body when the client accepts the coding.
+     * @param coding Content coding, for example 'gzip'.
+     * @param path Path of the encoded file.
+     */
+    public void addEncodedVariant(String coding, Path path) {
+        encodedVariants.put(coding, path);
+    }
+
+    /**
+     * Return the file that contains the body encoded with the content coding.
+     * @param coding Content coding.
+     * @return Path of the encoded file or null if there are not any file for the coding.
+     */
+    public Path getEncodedVariant(String coding) {
+        return encodedVariants.get(coding);
+    }
+
+    /**
+     * Verify if the response has some encoded file.
+     * @return True if there are encoded files.
+     */
+    public boolean hasEncodedVariants() {
+        return !encodedVariants.isEmpty();
+    }
+}
@@ -2,6 +2,7 @@ package org.hcjf.io.net.http;
 
 import org.hcjf.errors.Errors;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -34,12 +35,15 @@ public class HttpHeader {
     public static final String REFERER = "Referer";
     public static final String TE = "TE";
     public static final String USER_AGENT = "User-Agent";
+    public static final String CACHE_CONTROL = "Cache-Control";
+    public static final String AGE = "Age";
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String CONTENT_LENGTH = "Content-Length";
     public static final String CONTENT_ENCODING = "Content-Encoding";
     public static final String SERVER = "Server";
     public static final String DATE = "Date";
     public static final String LAST_MODIFIED = "Last-Modified";
+    public static final String RETRY_AFTER = "Retry-After";
     public static final String CONNECTION = "Connection";
     public static final String E_TAG = "ETag";
     public static final String COOKIE = "Cookie";
@@ -55,6 +59,9 @@ public class HttpHeader {
     public static final String ACCESS_CONTROL_REQUEST_ORIGIN = "Access-Control-Request-Origin";
     public static final String ACCESS_CONTROL_REQUEST_METHODS = "Access-Control-Request-Methods";
     public static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    public static final String TRAILER = "Trailer";
+    public static final String UPGRADE = "Upgrade";
+    public static final String VARY = "Vary";
 
     //non-standard header names
     public static final String DNT = "DNT";
@@ -75,6 +82,7 @@ public class HttpHeader {
     //Header values
     public static final String APPLICATION_X_WWW_FORM_URLENCODED = "application/x-www-form-urlencoded";
     public static final String CLOSED = "Closed";
+    public static final String CLOSE = "close";
     public static final String KEEP_ALIVE = "Keep-Alive";
     public static final String DEFAULT_USER_AGENT = "HCJF";
     public static final String DEFLATE = "deflate";
@@ -90,10 +98,12 @@ public class HttpHeader {
     //Header parameter names
     public static final String PARAM_CHARSET = "charset";
     public static final String PARAM_IMPL = "impl";
+    public static final String PARAM_QUALITY = "q";
 
     private final String headerName;
     private final String headerValue;
     private final Map<String, Map<String, String>> headerGroups;
+    private byte[] encoded;
 
     public HttpHeader(String header) {
         this(header.substring(0, header.indexOf(HEADER_ASSIGNATION)).trim(),
@@ -147,6 +157,28 @@ public class HttpHeader {
         return result.toString();
     }
 
+    /**
+     * Return the bytes of the header line ('name: value') without the line separator,
+     * the bytes are encoded only once for each header instance.
+     * @return Encoded header.
+     */
+    public final byte[] getEncoded() {
+        byte[] result = encoded;
+        if(result == null) {
+            result = toString().getBytes(StandardCharsets.UTF_8);
+            encoded = result;
+        }
+        return result;
+    }
+
+    /**
+     * Return the encoded bytes of the header only if the header was encoded before.
+     * @return Encoded header or null.
+     */
+    final byte[] getEncodedIfPresent() {
+        return encoded;
+    }
+
     /**
      * Return the header groups.
      * @return Header groups.
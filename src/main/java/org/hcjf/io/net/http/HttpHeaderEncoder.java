@@ -0,0 +1,234 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class encodes the status line and the headers of the http responses.
+ * The header block is written directly into a reusable direct buffer for each thread
+ * without intermediate strings, the status lines of the default phrases and the headers
+ * created by the server ('Date' and 'Server') are encoded only once, the 'Date' header
+ * is rendered once per second.
+ * @author javaito
+ */
+public final class HttpHeaderEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final byte SPACE = ' ';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] HEADER_ASSIGNATION = {':', ' '};
+    private static final int MAX_ASCII = 0x7F;
+    private static final long SECOND = 1000;
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE));
+    private static final Map<Integer, byte[]> statusLines = new ConcurrentHashMap<>();
+    private static final Object dateMonitor = new Object();
+    private static volatile CachedHeader dateHeader;
+    private static volatile CachedHeader serverHeader;
+    private static SimpleDateFormat dateFormat;
+    private static String dateFormatPattern;
+
+    private HttpHeaderEncoder() {
+    }
+
+    /**
+     * Return the 'Date' header for the current second, the header instance is shared by
+     * all the responses of the same second.
+     * @return Date header.
+     */
+    public static HttpHeader getDateHeader() {
+        long second = System.currentTimeMillis() / SECOND;
+        CachedHeader cachedHeader = dateHeader;
+        if(cachedHeader == null || cachedHeader.key != second) {
+            cachedHeader = new CachedHeader(second, null,
+                    createPreEncoded(HttpHeader.DATE, formatDate(new Date(second * SECOND))));
+            dateHeader = cachedHeader;
+        }
+        return cachedHeader.header;
+    }
+
+    /**
+     * Return the 'Server' header with the name configured into the system properties.
+     * @return Server header.
+     */
+    public static HttpHeader getServerHeader() {
+        String serverName = SystemProperties.get(SystemProperties.Net.Http.SERVER_NAME);
+        CachedHeader cachedHeader = serverHeader;
+        if(cachedHeader == null || !cachedHeader.value.equals(serverName)) {
+            cachedHeader = new CachedHeader(0, serverName, createPreEncoded(HttpHeader.SERVER, serverName));
+            serverHeader = cachedHeader;
+        }
+        return cachedHeader.header;
+    }
+
+    /**
+     * Formats the date using the format of the 'Date' header, this method is thread safe.
+     * @param date Date to format.
+     * @return Formatted date.
+     */
+    public static String formatDate(Date date) {
+        String pattern = SystemProperties.get(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE);
+        synchronized (dateMonitor) {
+            if(dateFormat == null || !pattern.equals(dateFormatPattern)) {
+                dateFormat = new SimpleDateFormat(pattern);
+                dateFormatPattern = pattern;
+            }
+            return dateFormat.format(date);
+        }
+    }
+
+    /**
+     * Creates a header whose bytes are encoded immediately, this kind of headers
+     * are copied into the header block without encode them again.
+     * @param name Header name.
+     * @param value Header value.
+     * @return Header instance.
+     */
+    public static HttpHeader createPreEncoded(String name, String value) {
+        HttpHeader header = new HttpHeader(name, value);
+        header.getEncoded();
+        return header;
+    }
+
+    /**
+     * Encodes the status line and the headers of the response. The result is a buffer
+     * reused by the current thread, then the content must be consumed before the next call.
+     * @param response Http response.
+     * @return Buffer ready to read with the header block.
+     */
+    public static ByteBuffer encode(HttpResponse response) {
+        ByteBuffer buffer = buffers.get();
+        while(true) {
+            buffer.clear();
+            try {
+                writeStatusLine(buffer, response);
+                for (HttpHeader header : response.getHeaders()) {
+                    writeHeader(buffer, header);
+                }
+                buffer.put(CR).put(LF);
+                break;
+            } catch (BufferOverflowException ex) {
+                buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffers.set(buffer);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the status line of the response.
+     * @param buffer Destination buffer.
+     * @param response Http response.
+     */
+    private static void writeStatusLine(ByteBuffer buffer, HttpResponse response) {
+        writeAscii(buffer, response.getHttpVersion());
+        Integer responseCode = response.getResponseCode();
+        String reasonPhrase = response.getReasonPhrase();
+        if(responseCode != null && reasonPhrase != null &&
+                reasonPhrase.equals(HttpResponseCode.DefaultPhrase.getDefaultPhrase(responseCode))) {
+            byte[] statusLine = statusLines.get(responseCode);
+            if(statusLine == null) {
+                statusLine = (HttpPackage.LINE_FIELD_SEPARATOR + responseCode + HttpPackage.LINE_FIELD_SEPARATOR +
+                        reasonPhrase + HttpPackage.STRING_LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+                statusLines.put(responseCode, statusLine);
+            }
+            buffer.put(statusLine);
+        } else {
+            buffer.put(SPACE);
+            if(responseCode != null) {
+                writeNumber(buffer, responseCode);
+            } else {
+                writeAscii(buffer, null);
+            }
+            buffer.put(SPACE);
+            if(reasonPhrase != null) {
+                writeAscii(buffer, reasonPhrase);
+            }
+            buffer.put(CR).put(LF);
+        }
+    }
+
+    /**
+     * Writes a header line.
+     * @param buffer Destination buffer.
+     * @param header Http header.
+     */
+    private static void writeHeader(ByteBuffer buffer, HttpHeader header) {
+        byte[] encoded = header.getEncodedIfPresent();
+        if(encoded != null) {
+            buffer.put(encoded);
+        } else {
+            writeAscii(buffer, header.getHeaderName());
+            buffer.put(HEADER_ASSIGNATION);
+            writeAscii(buffer, header.getHeaderValue());
+        }
+        buffer.put(CR).put(LF);
+    }
+
+    /**
+     * Writes the characters of the value, the ascii characters are written one by one and
+     * if the value contains some other character then the value is encoded as utf-8.
+     * @param buffer Destination buffer.
+     * @param value Value to write, the null value is written as 'null'.
+     */
+    static void writeAscii(ByteBuffer buffer, String value) {
+        if(value == null) {
+            value = "null";
+        }
+        int start = buffer.position();
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if(character > MAX_ASCII) {
+                buffer.position(start);
+                buffer.put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer.put((byte) character);
+        }
+    }
+
+    /**
+     * Writes the decimal representation of a non negative number.
+     * @param buffer Destination buffer.
+     * @param number Number to write.
+     */
+    private static void writeNumber(ByteBuffer buffer, int number) {
+        if(number < 0) {
+            writeAscii(buffer, Integer.toString(number));
+        } else {
+            int divisor = 1;
+            while(number / divisor >= 10) {
+                divisor *= 10;
+            }
+            while(divisor > 0) {
+                buffer.put((byte) ('0' + (number / divisor) % 10));
+                divisor /= 10;
+            }
+        }
+    }
+
+    /**
+     * Header stored with the key used to create it.
+     */
+    private static final class CachedHeader {
+
+        private final long key;
+        private final String value;
+        private final HttpHeader header;
+
+        private CachedHeader(long key, String value, HttpHeader header) {
+            this.key = key;
+            this.value = value;
+            this.header = header;
+        }
+    }
+}
@@ -157,4 +157,13 @@ public enum HttpMethod {
      */
     CONNECT;
 
+    /**
+     * Verify if the method is idempotent, the side-effects of many identical requests
+     * with an idempotent method are the same than the side-effects of a single request.
+     * @return True if the method is idempotent and false in the otherwise.
+     */
+    public boolean isIdempotent() {
+        return this != POST && this != CONNECT;
+    }
+
 }
@@ -1,13 +1,19 @@
 package org.hcjf.io.net.http;
 
+import org.hcjf.errors.Errors;
 import org.hcjf.layers.Layer;
 import org.hcjf.layers.LayerInterface;
 import org.hcjf.layers.Layers;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
 import java.util.*;
 
 /**
@@ -17,6 +23,8 @@ import java.util.*;
  */
 public abstract class HttpPackage {
 
+    private static final int MIN_BODY_BUFFER_SIZE = 8192;
+    private static final int MAX_BODY_BUFFER_SIZE = Integer.MAX_VALUE - 8;
     private static final byte LINE_SEPARATOR_CR = '\r';
     private static final byte LINE_SEPARATOR_LF = '\n';
     public static final String STRING_LINE_SEPARATOR = "\r\n";
@@ -34,12 +42,16 @@ public abstract class HttpPackage {
     private String httpVersion;
     private final Map<String, HttpHeader> headers;
     private byte[] body;
+    private HttpBodyConsumer bodyConsumer;
 
     //This fields are only for internal parsing.
-    private List<String> lines;
+    private HttpParser parser;
     private boolean onBody;
     private boolean complete;
-    private ByteArrayOutputStream currentBuffer;
+    private long bodyLength;
+    private long bodySize;
+    private byte[] bodyBuffer;
+    private IOException bodyConsumerException;
     private TransferDecodingLayerInterface transferDecodingLayer;
 
     public HttpPackage() {
@@ -53,6 +65,7 @@ public abstract class HttpPackage {
         this.httpVersion = httpPackage.httpVersion;
         this.headers = httpPackage.headers;
         this.body = httpPackage.body;
+        this.bodyConsumer = httpPackage.bodyConsumer;
         this.protocol = httpPackage.protocol;
     }
 
@@ -88,6 +101,54 @@ public abstract class HttpPackage {
         this.body = body;
     }
 
+    /**
+     * Return the number of bytes of the body received by the package.
+     * @return Body size.
+     */
+    public final long getBodySize() {
+        return bodyConsumer != null ? bodySize : body.length;
+    }
+
+    /**
+     * Return the consumer that received the body of the package, if the package was
+     * decoded using a body consumer then the body array is empty.
+     * @return Body consumer or null if the body was accumulated into memory.
+     */
+    public HttpBodyConsumer getBodyConsumer() {
+        return bodyConsumer;
+    }
+
+    /**
+     * Return a channel to read the body of the package. If the body was stored by
+     * a {@link HttpBodyBuffer} then the channel reads the stored body, in the otherwise
+     * the channel reads the body array.
+     * @return Readable channel.
+     * @throws IOException If the stored body can't be read.
+     */
+    public final ReadableByteChannel getBodyChannel() throws IOException {
+        ReadableByteChannel result;
+        if(bodyConsumer instanceof HttpBodyBuffer) {
+            result = ((HttpBodyBuffer) bodyConsumer).getChannel();
+        } else {
+            result = Channels.newChannel(new ByteArrayInputStream(getBody()));
+        }
+        return result;
+    }
+
+    /**
+     * Closes the body consumer of the package, this method is called when the package
+     * was processed or when the package is discarded.
+     */
+    public final void releaseBody() {
+        if(bodyConsumer != null) {
+            try {
+                bodyConsumer.close();
+            } catch (Exception ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to close the body consumer", ex);
+            }
+        }
+    }
+
     /**
      * Return the version of the http protocol
      * @return Http protocol version.
@@ -138,10 +199,13 @@ public abstract class HttpPackage {
      * @return Founded header or null if there are'nt any header with this name.
      */
     public final HttpHeader getHeader(String headerName) {
-        HttpHeader result = null;
-        for(String name : headers.keySet()) {
-            if(name.equalsIgnoreCase(headerName)) {
-                result = headers.get(name);
+        //The parser uses the same instances for the well-known header names.
+        HttpHeader result = headers.get(headerName);
+        if(result == null) {
+            for (String name : headers.keySet()) {
+                if (name.equalsIgnoreCase(headerName)) {
+                    result = headers.get(name);
+                }
             }
         }
         return result;
@@ -161,63 +225,90 @@ public abstract class HttpPackage {
      * @param data Portion of data.
      */
     public final synchronized void addData(byte[] data) {
+        addData(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Add a portion of data into the package, the data is read in place from the position
+     * of the buffer and the position is moved to the end of the consumed data. If the package
+     * is completed before the limit of the buffer then the remaining data belongs to the
+     * next package and the position of the buffer points to the first byte of that package.
+     * The buffer is not referenced after this call.
+     * @param data Portion of data.
+     * @throws HttpParserException If the data is not a valid http package or if the
+     * package exceeds some of the limits.
+     */
+    public final synchronized void addData(ByteBuffer data) {
         if(!complete) {
-            if (currentBuffer == null) {
-                currentBuffer = new ByteArrayOutputStream();
-                lines = new ArrayList<>();
+            if (parser == null) {
+                parser = new HttpParser();
                 onBody = false;
-                complete = false;
             }
 
-            if (onBody) {
-                writeBody(data);
-            } else {
-                String line;
-                for (int i = 0; i < data.length - 1; i++) {
-                    if (data[i] == LINE_SEPARATOR_CR && data[i + 1] == LINE_SEPARATOR_LF) {
-                        if (currentBuffer.size() == 0) {
+            if (!onBody && parser.parse(data)) {
+                for(HttpHeader header : parser.getHeaders()) {
+                    addHeader(header);
+                }
 
-                            for(int j = 1; j < lines.size(); j++) {
-                                addHeader(new HttpHeader(lines.get(j)));
-                            }
+                HttpHeader transferEncodingHeader = getHeader(HttpHeader.TRANSFER_ENCODING);
+                if(transferEncodingHeader != null) {
+                    try {
+                        transferDecodingLayer = Layers.get(TransferDecodingLayerInterface.class, transferEncodingHeader.getHeaderValue());
+                    } catch (Exception ex) {
+                        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                                "Transfer decoding layer not found", ex);
+                    }
+                }
 
-                            HttpHeader transferEncodingHeader = getHeader(HttpHeader.TRANSFER_ENCODING);
-                            if(transferEncodingHeader != null) {
-                                try {
-                                    transferDecodingLayer = Layers.get(TransferDecodingLayerInterface.class, transferEncodingHeader.getHeaderValue());
-                                } catch (Exception ex) {
-                                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
-                                            "Transfer decoding layer not found", ex);
-                                }
-                            }
+                HttpHeader contentLengthHeader = getHeader(HttpHeader.CONTENT_LENGTH);
+                if (contentLengthHeader != null) {
+                    try {
+                        bodyLength = Long.parseLong(contentLengthHeader.getHeaderValue());
+                    } catch (NumberFormatException ex) {
+                        bodyLength = -1;
+                    }
+                    if(bodyLength < 0) {
+                        throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                                Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_15, contentLengthHeader.getHeaderValue()));
+                    }
+                }
 
-                            //The previous line is empty
-                            //Start body, because there are two CRLF together
-                            currentBuffer.reset();
-                            writeBody(data, i + 2, data.length - (i + 2));
-                            onBody = true;
-                            break;
-                        } else {
-                            //The current body is a new line
-                            line = new String(currentBuffer.toByteArray()).trim();
-                            if(!line.isEmpty()) {
-                                lines.add(line);
-                            }
-                            currentBuffer.reset();
-                            i++;
-                        }
-                    } else {
-                        currentBuffer.write(data[i]);
+                processFirstLine(parser.getFirstField(), parser.getSecondField(), parser.getThirdField());
+                if(bodyLength > 0 || transferDecodingLayer != null) {
+                    bodyConsumer = createBodyConsumer();
+                    if(bodyConsumer != null && transferDecodingLayer != null &&
+                            !transferDecodingLayer.setBodyConsumer(this::consumeChunk)) {
+                        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                                "The transfer decoding layer doesn't support body consumers, the body is accumulated");
                     }
                 }
+                if(bodyConsumer == null && transferDecodingLayer == null && bodyLength > MAX_BODY_BUFFER_SIZE) {
+                    throw new HttpParserException(HttpResponseCode.REQUEST_ENTITY_TOO_LARGE,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_15, contentLengthHeader.getHeaderValue()));
+                }
+                onBody = true;
             }
 
             if (onBody) {
+                writeBody(data);
                 if (bodyDone()) {
                     setBody(getAccumulatedBody());
-                    processFirstLine(lines.get(0));
+                    if(bodyConsumer != null) {
+                        if(getBody().length > 0) {
+                            //The decoder doesn't support body consumers.
+                            consumeChunk(ByteBuffer.wrap(getBody()));
+                            setBody(new byte[0]);
+                        }
+                        try {
+                            bodyConsumer.onEnd();
+                        } catch (IOException ex) {
+                            bodyConsumerException = ex;
+                        }
+                        checkBodyConsumer();
+                    }
                     processBody(getBody());
-                    currentBuffer = null;
+                    parser = null;
+                    bodyBuffer = null;
                     complete = true;
                 }
             }
@@ -227,26 +318,89 @@ public abstract class HttpPackage {
     }
 
     /**
-     * This method store the fragment information into the specific
-     * decoder implementation
-     * @param data Fragment information.
+     * Completes the package with a body that was decoded out of the http parser, like the
+     * body of a http/2 stream. The first line must be processed before this call.
+     * @param body Body of the package.
+     */
+    final synchronized void complete(byte[] body) {
+        setBody(body);
+        processBody(body);
+        complete = true;
+    }
+
+    /**
+     * This method is called when all the headers of the package was received and the package
+     * has body, to create the consumer of the body. If this method returns null the body is
+     * accumulated into memory.
+     * @return Body consumer or null.
      */
-    private void writeBody(byte[] data) {
-        writeBody(data, 0, data.length);
+    protected HttpBodyConsumer createBodyConsumer() {
+        return null;
     }
 
     /**
      * This method store the fragment information into the specific
-     * decoder implementation
+     * decoder implementation, the fragment is the data between the position
+     * and the limit of the buffer, only the data of the body is consumed.
+     * When the length of the body is known the body is copied directly from
+     * the buffer into the body array, the array grows in steps until the body length
+     * to avoid allocating big arrays before the data arrives. If the package has a
+     * body consumer then the fragment is delivered to the consumer without copies.
      * @param data Fragment information.
-     * @param off Start index into the array.
-     * @param len End index into the array.
      */
-    private void writeBody(byte[] data, int off, int len) {
+    private void writeBody(ByteBuffer data) {
         if(transferDecodingLayer == null) {
-            currentBuffer.write(data, off, len);
+            int size = (int) Math.min(data.remaining(), bodyLength - bodySize);
+            if(size > 0) {
+                if(bodyConsumer != null) {
+                    ByteBuffer chunk = data.duplicate();
+                    chunk.limit(chunk.position() + size);
+                    consumeChunk(chunk);
+                    data.position(data.position() + size);
+                } else {
+                    if (bodyBuffer == null) {
+                        bodyBuffer = new byte[(int) Math.min(bodyLength, Math.max(data.remaining(), MIN_BODY_BUFFER_SIZE))];
+                    } else if (bodyBuffer.length < bodySize + size) {
+                        bodyBuffer = Arrays.copyOf(bodyBuffer, (int) Math.min(bodyLength,
+                                Math.max(bodyBuffer.length * 2L, bodySize + size)));
+                    }
+                    data.get(bodyBuffer, (int) bodySize, size);
+                }
+                bodySize += size;
+            }
         } else {
-            transferDecodingLayer.add(ByteBuffer.wrap(data, off, len));
+            transferDecodingLayer.add(data);
+        }
+        checkBodyConsumer();
+    }
+
+    /**
+     * Delivers the chunk to the body consumer, the first error of the consumer is stored
+     * and the rest of the chunks are discarded. The chunks decoded by the transfer decoding
+     * layer are counted here because their size is unknown before the decoding.
+     * @param chunk Body chunk.
+     */
+    private void consumeChunk(ByteBuffer chunk) {
+        if(transferDecodingLayer != null) {
+            bodySize += chunk.remaining();
+        }
+        if(bodyConsumerException == null) {
+            try {
+                bodyConsumer.onChunk(chunk);
+            } catch (IOException ex) {
+                bodyConsumerException = ex;
+            }
+        }
+    }
+
+    /**
+     * Verify if the body consumer failed.
+     * @throws HttpParserException If the body consumer failed.
+     */
+    private void checkBodyConsumer() {
+        if(bodyConsumerException != null) {
+            throw new HttpParserException(HttpResponseCode.INTERNAL_SERVER_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_17), bodyConsumerException);
         }
     }
 
@@ -257,7 +411,13 @@ public abstract class HttpPackage {
     private byte[] getAccumulatedBody() {
         byte[] result;
         if(transferDecodingLayer == null) {
-            result = currentBuffer.toByteArray();
+            if(bodyBuffer == null) {
+                result = new byte[0];
+            } else if(bodyBuffer.length == bodySize) {
+                result = bodyBuffer;
+            } else {
+                result = Arrays.copyOf(bodyBuffer, (int) bodySize);
+            }
         } else {
             result = transferDecodingLayer.getBody();
         }
@@ -271,12 +431,7 @@ public abstract class HttpPackage {
     protected boolean bodyDone() {
         boolean result;
         if(transferDecodingLayer == null) {
-            int length = 0;
-            HttpHeader contentLengthHeader = getHeader(HttpHeader.CONTENT_LENGTH);
-            if (contentLengthHeader != null) {
-                length = Integer.parseInt(contentLengthHeader.getHeaderValue().trim());
-            }
-            result = currentBuffer.size() >= length;
+            result = bodySize >= bodyLength;
         } else {
             result = transferDecodingLayer.done(this);
         }
@@ -299,10 +454,13 @@ public abstract class HttpPackage {
     protected abstract void processBody(byte[] body);
 
     /**
-     * This method must be implemented to process the first line of the package.
-     * @param firstLine First line of the package.
+     * This method must be implemented to process the first line of the package,
+     * the line is already split by the parser.
+     * @param firstField First field of the line.
+     * @param secondField Second field of the line.
+     * @param thirdField Rest of the line after the second field, could be null.
      */
-    protected abstract void processFirstLine(String firstLine);
+    protected abstract void processFirstLine(String firstField, String secondField, String thirdField);
 
     /**
      * Return the bytes that represent the string of the protocol name.
@@ -327,11 +485,23 @@ public abstract class HttpPackage {
     public interface TransferDecodingLayerInterface extends LayerInterface {
 
         /**
-         * Add a new fragment for the current body.
+         * Add a new fragment for the current body, the decoder must consume only the
+         * bytes of the body and left the position of the buffer at the end of the body.
          * @param bodyFragment Body fragment.
          */
         void add(ByteBuffer bodyFragment);
 
+        /**
+         * Set the consumer of the decoded body, when the decoder has a consumer the decoded
+         * fragments are delivered to the consumer instead of being accumulated.
+         * @param bodyConsumer Consumer of the decoded fragments, the fragments are only valid
+         * during the call.
+         * @return Returns true if the decoder supports body consumers.
+         */
+        default boolean setBodyConsumer(Consumer<ByteBuffer> bodyConsumer) {
+            return false;
+        }
+
         /**
          * Verify if the body is done depends of the decode method.
          * @param httpPackage Package to verify if the body is complete.
@@ -352,19 +522,18 @@ public abstract class HttpPackage {
      */
     public static class ChunkedDecoderLayer extends Layer implements TransferDecodingLayerInterface {
 
-        private static final int DEFAULT_SIZE = -1;
-        private static final byte SLASH_R_BYTE = '\r';
-
         private int fragmentSize;
         private int byteWritten;
+        private int trailerLineLength;
+        private ChunkedState state;
         private final ByteArrayOutputStream lengthBuffer;
         private final ByteArrayOutputStream bodyBuffer;
+        private Consumer<ByteBuffer> bodyConsumer;
         private boolean done;
 
         public ChunkedDecoderLayer() {
             super(HttpHeader.CHUNKED, false);
-            fragmentSize = DEFAULT_SIZE;
-            byteWritten = 0;
+            state = ChunkedState.SIZE;
             bodyBuffer = new ByteArrayOutputStream();
             lengthBuffer = new ByteArrayOutputStream();
             done = false;
@@ -377,36 +546,90 @@ public abstract class HttpPackage {
         @Override
         public void add(ByteBuffer bodyFragment) {
             byte currentByte;
-            while(bodyFragment.position() < bodyFragment.limit()) {
-                if(fragmentSize == DEFAULT_SIZE) {
-                    currentByte = bodyFragment.get();
-                    if(currentByte == SLASH_R_BYTE) {
-                        fragmentSize = Integer.parseInt(lengthBuffer.toString(), 16);
-                        lengthBuffer.reset();
-                        byteWritten = DEFAULT_SIZE;
-                        if(fragmentSize == 0) {
-                            done = true;
-                            break;
+            while(!done && bodyFragment.hasRemaining()) {
+                switch (state) {
+                    case SIZE: {
+                        currentByte = bodyFragment.get();
+                        if(currentByte == LINE_SEPARATOR_CR) {
+                            String size = lengthBuffer.toString().trim();
+                            if(size.contains(";")) {
+                                //Chunk extensions are ignored
+                                size = size.substring(0, size.indexOf(';')).trim();
+                            }
+                            fragmentSize = Integer.parseInt(size, 16);
+                            lengthBuffer.reset();
+                            byteWritten = 0;
+                            state = ChunkedState.SIZE_LF;
+                        } else {
+                            lengthBuffer.write(currentByte);
                         }
-                    } else {
-                        lengthBuffer.write(currentByte);
+                        break;
                     }
-                } else {
-                    if(byteWritten == DEFAULT_SIZE) {
+                    case SIZE_LF: {
                         bodyFragment.get(); //Discards the '\n' byte
-                        byteWritten++;
-                    } else if(byteWritten == fragmentSize) {
+                        trailerLineLength = 0;
+                        state = fragmentSize == 0 ? ChunkedState.TRAILER : ChunkedState.DATA;
+                        break;
+                    }
+                    case DATA: {
+                        int size = Math.min(bodyFragment.remaining(), fragmentSize - byteWritten);
+                        if(bodyConsumer != null) {
+                            ByteBuffer chunk = bodyFragment.duplicate();
+                            chunk.limit(chunk.position() + size);
+                            bodyConsumer.accept(chunk);
+                            bodyFragment.position(bodyFragment.position() + size);
+                        } else if(bodyFragment.hasArray()) {
+                            bodyBuffer.write(bodyFragment.array(), bodyFragment.arrayOffset() + bodyFragment.position(), size);
+                            bodyFragment.position(bodyFragment.position() + size);
+                        } else {
+                            byte[] fragment = new byte[size];
+                            bodyFragment.get(fragment);
+                            bodyBuffer.write(fragment, 0, size);
+                        }
+                        byteWritten += size;
+                        if(byteWritten == fragmentSize) {
+                            state = ChunkedState.DATA_CR;
+                        }
+                        break;
+                    }
+                    case DATA_CR: {
                         bodyFragment.get(); //Discards the '\r' byte
+                        state = ChunkedState.DATA_LF;
+                        break;
+                    }
+                    case DATA_LF: {
                         bodyFragment.get(); //Discards the '\n' byte
-                        fragmentSize = DEFAULT_SIZE;
-                    } else {
-                        bodyBuffer.write(bodyFragment.get());
-                        byteWritten++;
+                        state = ChunkedState.SIZE;
+                        break;
+                    }
+                    case TRAILER: {
+                        //The trailer headers are discarded until the empty line.
+                        currentByte = bodyFragment.get();
+                        if(currentByte == LINE_SEPARATOR_LF) {
+                            if(trailerLineLength == 0) {
+                                done = true;
+                            }
+                            trailerLineLength = 0;
+                        } else if(currentByte != LINE_SEPARATOR_CR) {
+                            trailerLineLength++;
+                        }
+                        break;
                     }
                 }
             }
         }
 
+        /**
+         * Set the consumer of the decoded body.
+         * @param bodyConsumer Consumer of the decoded fragments.
+         * @return Always returns true.
+         */
+        @Override
+        public boolean setBodyConsumer(Consumer<ByteBuffer> bodyConsumer) {
+            this.bodyConsumer = bodyConsumer;
+            return true;
+        }
+
         /**
          * Verify if the body is complete. The body is complete when the
          * chunked size into the fragment is zero.
@@ -429,5 +652,24 @@ public abstract class HttpPackage {
             return bodyBuffer.toByteArray();
         }
 
+        /**
+         * States of the chunked decoder.
+         */
+        private enum ChunkedState {
+
+            SIZE,
+
+            SIZE_LF,
+
+            DATA,
+
+            DATA_CR,
+
+            DATA_LF,
+
+            TRAILER
+
+        }
+
     }
 }
@@ -0,0 +1,468 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.Errors;
+import org.hcjf.properties.SystemProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental parser of the first line and the headers of a http package. The parser
+ * is a state machine that consumes the data directly from the buffers, the data can be
+ * split at any byte and the state is kept between the calls. Only the bytes of a line
+ * that is split between two buffers are copied into the internal line buffer, the rest
+ * of the lines are parsed in place.
+ * The names of the well-known headers and the tokens of the first line (methods and versions)
+ * are resolved to the same string instances that are defined into {@link HttpHeader},
+ * {@link HttpMethod} and {@link HttpVersion}, without creating new strings.
+ * @author javaito
+ */
+final class HttpParser {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SP = ' ';
+    private static final byte HT = '\t';
+    private static final byte COLON = ':';
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+    private static final String HTTP_VERSION_1_0 = "HTTP/1.0";
+
+    private static final String[][] HEADER_NAMES = createTable(
+            HttpHeader.ACCEPT, HttpHeader.ACCEPT_CHARSET, HttpHeader.ACCEPT_ENCODING, HttpHeader.ACCEPT_LANGUAGE,
+            HttpHeader.AUTHORIZATION, HttpHeader.EXPECT, HttpHeader.FROM, HttpHeader.HOST, HttpHeader.ORIGIN,
+            HttpHeader.IF_MATCH, HttpHeader.IF_MODIFIED_SINCE, HttpHeader.IF_NONE_MATCH, HttpHeader.IF_RANGE,
+            HttpHeader.IF_UNMODIFIED_SINCE, HttpHeader.MAX_FORWARDS, HttpHeader.PROXY_AUTHORIZATION,
+            HttpHeader.RANGE, HttpHeader.REFERER, HttpHeader.TE, HttpHeader.USER_AGENT, HttpHeader.CONTENT_TYPE,
+            HttpHeader.CONTENT_LENGTH, HttpHeader.CONTENT_ENCODING, HttpHeader.SERVER, HttpHeader.DATE,
+            HttpHeader.LAST_MODIFIED, HttpHeader.CONNECTION, HttpHeader.E_TAG, HttpHeader.COOKIE,
+            HttpHeader.SET_COOKIE, HttpHeader.SOAP_ACTION, HttpHeader.ACCESS_CONTROL_ALLOW_ORIGIN,
+            HttpHeader.ACCESS_CONTROL_ALLOW_METHODS, HttpHeader.ACCESS_CONTROL_ALLOW_HEADERS,
+            HttpHeader.ACCESS_CONTROL_ALLOW_CREDENTIALS, HttpHeader.ACCESS_CONTROL_EXPOSE_HEADERS,
+            HttpHeader.ACCESS_CONTROL_MAX_AGE, HttpHeader.ACCESS_CONTROL_REQUEST_HEADERS,
+            HttpHeader.ACCESS_CONTROL_REQUEST_ORIGIN, HttpHeader.ACCESS_CONTROL_REQUEST_METHODS,
+            HttpHeader.TRANSFER_ENCODING, HttpHeader.KEEP_ALIVE, HttpHeader.DNT, HttpHeader.FRONT_END_HTTPS,
+            HttpHeader.PROXY_CONNECTION, HttpHeader.X_ATT_DEVICEID, HttpHeader.X_CORRELATION_ID,
+            HttpHeader.X_CSRF_TOKEN, HttpHeader.X_FORWARDED_FOR, HttpHeader.X_FORWARDED_HOST,
+            HttpHeader.X_FORWARDED_PROTO, HttpHeader.X_HTTP_METHOD_OVERRIDE, HttpHeader.X_REQUEST_ID,
+            HttpHeader.X_REQUESTED_WITH, HttpHeader.X_UIDH, HttpHeader.X_WAP_PROFILE,
+            "Cache-Control", "Pragma", "Upgrade", "Via", "Warning", "Upgrade-Insecure-Requests");
+
+    private static final String[][] FIRST_LINE_TOKENS;
+
+    static {
+        List<String> tokens = new ArrayList<>();
+        for(HttpMethod method : HttpMethod.values()) {
+            tokens.add(method.toString());
+        }
+        tokens.add(HttpVersion.VERSION_1_1);
+        tokens.add(HTTP_VERSION_1_0);
+        FIRST_LINE_TOKENS = createTable(tokens.toArray(new String[tokens.size()]));
+    }
+
+    private final int maxFirstLineLength;
+    private final int maxHeadersSize;
+    private final int maxHeaders;
+    private final List<HttpHeader> headers;
+    private State state;
+    private byte[] line;
+    private int lineLength;
+    private int headersSize;
+    private String firstField;
+    private String secondField;
+    private String thirdField;
+    private String currentHeaderName;
+    private String currentHeaderValue;
+
+    HttpParser() {
+        this(SystemProperties.getInteger(SystemProperties.Net.Http.MAX_FIRST_LINE_LENGTH),
+                SystemProperties.getInteger(SystemProperties.Net.Http.MAX_HEADERS_SIZE),
+                SystemProperties.getInteger(SystemProperties.Net.Http.MAX_HEADERS));
+    }
+
+    HttpParser(int maxFirstLineLength, int maxHeadersSize, int maxHeaders) {
+        this.maxFirstLineLength = maxFirstLineLength;
+        this.maxHeadersSize = maxHeadersSize;
+        this.maxHeaders = maxHeaders;
+        this.headers = new ArrayList<>();
+        this.state = State.FIRST_LINE;
+    }
+
+    /**
+     * Consumes the data from the position of the buffer until the end of the headers or
+     * until the limit of the buffer. When the headers are complete the position of the
+     * buffer points to the first byte of the body.
+     * @param data Portion of data.
+     * @return Returns true if the first line and all the headers was parsed.
+     * @throws HttpParserException If the data is not a valid http package or some of the
+     * limits was exceeded.
+     */
+    boolean parse(ByteBuffer data) {
+        while(state != State.DONE && data.hasRemaining()) {
+            int start = data.position();
+            int end = indexOfLineFeed(data, start, data.limit());
+            int size = (end < 0 ? data.limit() : end) - start;
+            checkLimits(size);
+            if(end < 0) {
+                append(data, size);
+                break;
+            }
+
+            if(lineLength == 0 && data.hasArray()) {
+                processLine(data.array(), data.arrayOffset() + start, size);
+            } else {
+                append(data, size);
+                processLine(line, 0, lineLength);
+            }
+            lineLength = 0;
+            data.position(end + 1);
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Return the first field of the first line, the method for requests and the
+     * version for responses.
+     * @return First field.
+     */
+    String getFirstField() {
+        return firstField;
+    }
+
+    /**
+     * Return the second field of the first line, the path for requests and the
+     * response code for responses.
+     * @return Second field.
+     */
+    String getSecondField() {
+        return secondField;
+    }
+
+    /**
+     * Return the rest of the first line, the version for requests and the
+     * reason phrase for responses. This field could be null.
+     * @return Third field.
+     */
+    String getThirdField() {
+        return thirdField;
+    }
+
+    /**
+     * Return the parsed headers in the same order that they were received.
+     * @return Headers list.
+     */
+    List<HttpHeader> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Verify that the current line doesn't exceed the limits.
+     * @param size Number of bytes of the line into the current buffer.
+     */
+    private void checkLimits(int size) {
+        int length = lineLength + size;
+        if(state == State.FIRST_LINE) {
+            //The carriage return is not counted.
+            if(length > maxFirstLineLength + 1) {
+                throw new HttpParserException(HttpResponseCode.REQUEST_URI_TOO_LARGE,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_11, maxFirstLineLength));
+            }
+        } else if(headersSize + length > maxHeadersSize) {
+            throw new HttpParserException(HttpResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_12, maxHeadersSize));
+        }
+    }
+
+    /**
+     * Copies the data of an incomplete line into the line buffer.
+     * @param data Buffer positioned at the first byte to copy.
+     * @param size Number of bytes to copy.
+     */
+    private void append(ByteBuffer data, int size) {
+        if(line == null) {
+            line = new byte[Math.max(INITIAL_LINE_BUFFER_SIZE, size)];
+        } else if(line.length < lineLength + size) {
+            byte[] newLine = new byte[Math.max(line.length * 2, lineLength + size)];
+            System.arraycopy(line, 0, newLine, 0, lineLength);
+            line = newLine;
+        }
+        data.get(line, lineLength, size);
+        lineLength += size;
+    }
+
+    /**
+     * Process a complete line without the line feed.
+     * @param bytes Array that contains the line.
+     * @param offset Offset of the line into the array.
+     * @param length Length of the line.
+     */
+    private void processLine(byte[] bytes, int offset, int length) {
+        if(length > 0 && bytes[offset + length - 1] == CR) {
+            length--;
+        }
+
+        switch (state) {
+            case FIRST_LINE: {
+                //Empty lines before the first line are ignored.
+                if(length > 0) {
+                    processFirstLine(bytes, offset, length);
+                    state = State.HEADERS;
+                }
+                break;
+            }
+            case HEADERS: {
+                headersSize += length + 2;
+                if(length == 0) {
+                    addCurrentHeader();
+                    state = State.DONE;
+                } else if(bytes[offset] == SP || bytes[offset] == HT) {
+                    //Obsolete line folding, the line is a continuation of the previous value.
+                    if(currentHeaderName == null) {
+                        throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                                Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_14, decode(bytes, offset, length)));
+                    }
+                    int start = skipWhiteSpaces(bytes, offset, offset + length);
+                    int end = trimWhiteSpaces(bytes, start, offset + length);
+                    if(end > start) {
+                        currentHeaderValue = currentHeaderValue + HttpPackage.LINE_FIELD_SEPARATOR + decode(bytes, start, end - start);
+                    }
+                } else {
+                    addCurrentHeader();
+                    processHeader(bytes, offset, length);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Splits the first line in three fields, the third field is the rest of the line.
+     * @param bytes Array that contains the line.
+     * @param offset Offset of the line into the array.
+     * @param length Length of the line.
+     */
+    private void processFirstLine(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int firstEnd = indexOf(bytes, offset, end, SP);
+        if(firstEnd <= offset) {
+            throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_10, decode(bytes, offset, length)));
+        }
+        firstField = token(bytes, offset, firstEnd - offset);
+
+        int secondStart = firstEnd + 1;
+        int secondEnd = indexOf(bytes, secondStart, end, SP);
+        if(secondEnd < 0) {
+            secondEnd = end;
+        }
+        if(secondEnd <= secondStart) {
+            throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_10, decode(bytes, offset, length)));
+        }
+        secondField = decode(bytes, secondStart, secondEnd - secondStart);
+
+        if(secondEnd < end) {
+            thirdField = token(bytes, secondEnd + 1, end - secondEnd - 1);
+        }
+    }
+
+    /**
+     * Parse the name and the value of a header line, the header is stored as current header
+     * because the next line could be a continuation of the value.
+     * @param bytes Array that contains the line.
+     * @param offset Offset of the line into the array.
+     * @param length Length of the line.
+     */
+    private void processHeader(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int colon = indexOf(bytes, offset, end, COLON);
+        int nameEnd = colon < 0 ? offset : trimWhiteSpaces(bytes, offset, colon);
+        if(nameEnd == offset) {
+            throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_14, decode(bytes, offset, length)));
+        }
+
+        if(headers.size() >= maxHeaders) {
+            throw new HttpParserException(HttpResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_13, maxHeaders));
+        }
+
+        currentHeaderName = lookup(HEADER_NAMES, bytes, offset, nameEnd - offset, true);
+        if(currentHeaderName == null) {
+            currentHeaderName = decode(bytes, offset, nameEnd - offset);
+        }
+        int valueStart = skipWhiteSpaces(bytes, colon + 1, end);
+        currentHeaderValue = decode(bytes, valueStart, trimWhiteSpaces(bytes, valueStart, end) - valueStart);
+    }
+
+    /**
+     * Creates the header instance with the current name and value.
+     */
+    private void addCurrentHeader() {
+        if(currentHeaderName != null) {
+            headers.add(new HttpHeader(currentHeaderName, currentHeaderValue));
+            currentHeaderName = null;
+            currentHeaderValue = null;
+        }
+    }
+
+    /**
+     * Return the well-known instance of the header name ignoring the case, the names of the
+     * headers decoded by other parsers like the http/2 streams are resolved with this method.
+     * @param name Header name.
+     * @return Well-known instance or the same name if the name is not a well-known header.
+     */
+    static String getHeaderName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        String result = lookup(HEADER_NAMES, bytes, 0, bytes.length, true);
+        return result == null ? name : result;
+    }
+
+    /**
+     * Return the instance of the well-known token or creates a new string.
+     * @param bytes Array that contains the token.
+     * @param offset Offset of the token.
+     * @param length Length of the token.
+     * @return Token.
+     */
+    private static String token(byte[] bytes, int offset, int length) {
+        String result = lookup(FIRST_LINE_TOKENS, bytes, offset, length, false);
+        if(result == null) {
+            result = decode(bytes, offset, length);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a string with the bytes, if all the bytes are ascii characters then the string
+     * is decoded as iso-8859-1 because is the faster way, in the otherwise the bytes are decoded
+     * with the default charset.
+     * @param bytes Array that contains the string.
+     * @param offset Offset of the string.
+     * @param length Length of the string.
+     * @return Decoded string.
+     */
+    private static String decode(byte[] bytes, int offset, int length) {
+        Charset charset = StandardCharsets.ISO_8859_1;
+        for (int i = offset; i < offset + length; i++) {
+            if(bytes[i] < 0) {
+                charset = Charset.defaultCharset();
+                break;
+            }
+        }
+        return new String(bytes, offset, length, charset);
+    }
+
+    /**
+     * Search the token into the table of well-known tokens.
+     * @param table Table of tokens indexed by length.
+     * @param bytes Array that contains the token.
+     * @param offset Offset of the token.
+     * @param length Length of the token.
+     * @param ignoreCase If the comparison is case insensitive.
+     * @return Returns the well-known instance or null if the token is not into the table.
+     */
+    private static String lookup(String[][] table, byte[] bytes, int offset, int length, boolean ignoreCase) {
+        String result = null;
+        if(length < table.length && table[length] != null) {
+            for(String candidate : table[length]) {
+                int i = 0;
+                for (; i < length; i++) {
+                    int expected = candidate.charAt(i);
+                    int current = bytes[offset + i];
+                    if(expected != current && (!ignoreCase || toLowerCase(expected) != toLowerCase(current))) {
+                        break;
+                    }
+                }
+                if(i == length) {
+                    result = candidate;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a table indexed by the length of the tokens.
+     * @param tokens Well-known tokens.
+     * @return Table.
+     */
+    private static String[][] createTable(String... tokens) {
+        int maxLength = 0;
+        for(String token : tokens) {
+            maxLength = Math.max(maxLength, token.length());
+        }
+        String[][] result = new String[maxLength + 1][];
+        for(String token : tokens) {
+            String[] row = result[token.length()];
+            if(row == null) {
+                row = new String[]{token};
+            } else {
+                row = Arrays.copyOf(row, row.length + 1);
+                row[row.length - 1] = token;
+            }
+            result[token.length()] = row;
+        }
+        return result;
+    }
+
+    private static int toLowerCase(int character) {
+        return character >= 'A' && character <= 'Z' ? character + ('a' - 'A') : character;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if(bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhiteSpaces(byte[] bytes, int from, int to) {
+        while(from < to && (bytes[from] == SP || bytes[from] == HT)) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimWhiteSpaces(byte[] bytes, int from, int to) {
+        while(to > from && (bytes[to - 1] == SP || bytes[to - 1] == HT)) {
+            to--;
+        }
+        return to;
+    }
+
+    private static int indexOfLineFeed(ByteBuffer data, int from, int to) {
+        if(data.hasArray()) {
+            byte[] array = data.array();
+            int offset = data.arrayOffset();
+            int index = indexOf(array, offset + from, offset + to, LF);
+            return index < 0 ? -1 : index - offset;
+        } else {
+            for (int i = from; i < to; i++) {
+                if(data.get(i) == LF) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * States of the parser.
+     */
+    private enum State {
+
+        FIRST_LINE,
+
+        HEADERS,
+
+        DONE
+
+    }
+}
@@ -0,0 +1,31 @@
+package org.hcjf.io.net.http;
+
+/**
+ * This exception is thrown when the data received is not a valid http package
+ * or when the package exceeds some of the configured limits.
+ * @author javaito
+ */
+public class HttpParserException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Integer responseCode;
+
+    public HttpParserException(Integer responseCode, String message) {
+        super(message);
+        this.responseCode = responseCode;
+    }
+
+    public HttpParserException(Integer responseCode, String message, Throwable cause) {
+        super(message, cause);
+        this.responseCode = responseCode;
+    }
+
+    /**
+     * Return the http response code that describes the error.
+     * @return Response code.
+     */
+    public Integer getResponseCode() {
+        return responseCode;
+    }
+}
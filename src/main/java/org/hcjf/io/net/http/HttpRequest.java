@@ -1,5 +1,6 @@
 package org.hcjf.io.net.http;
 
+import org.hcjf.errors.Errors;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
@@ -13,10 +14,6 @@ import java.util.*;
  */
 public class HttpRequest extends HttpPackage {
 
-    private static final int METHOD_INDEX = 0;
-    private static final int REQUEST_PATH_INDEX = 1;
-    private static final int VERSION_INDEX = 2;
-
     private String path;
     private String context;
     private HttpMethod method;
@@ -142,28 +139,45 @@ public class HttpRequest extends HttpPackage {
 
     /**
      * Process the first line of the request.
-     * @param firstLine First line of the request.
+     * @param method Method of the request.
+     * @param path Request path with the parameters.
+     * @param version Http version.
      */
     @Override
-    protected void processFirstLine(String firstLine) {
-        String[] parts = firstLine.split(LINE_FIELD_SEPARATOR);
-
-        method = HttpMethod.valueOf(parts[METHOD_INDEX]);
-        path = parts[REQUEST_PATH_INDEX];
-        setHttpVersion(parts[VERSION_INDEX]);
+    protected void processFirstLine(String method, String path, String version) {
+        try {
+            this.method = HttpMethod.valueOf(method);
+        } catch (IllegalArgumentException ex) {
+            throw new HttpParserException(HttpResponseCode.NOT_IMPLEMENTED,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_16, method), ex);
+        }
+        if(version == null) {
+            throw new HttpParserException(HttpResponseCode.BAD_REQUEST,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_10, method + LINE_FIELD_SEPARATOR + path));
+        }
+        this.path = path;
+        setHttpVersion(version);
 
         //Check if there are parameters into request
-        if(path.indexOf(HTTP_FIELD_START) >= 0) {
-            context = path.substring(0, path.indexOf(HTTP_FIELD_START));
-            parseHttpParameters(path.substring(path.indexOf(HTTP_FIELD_START) + 1));
+        int parametersIndex = path.indexOf(HTTP_FIELD_START);
+        if(parametersIndex >= 0) {
+            context = path.substring(0, parametersIndex);
+            parseHttpParameters(path.substring(parametersIndex + 1));
         } else {
             context = path;
         }
 
-        for(String pathPart : context.split(HTTP_CONTEXT_SEPARATOR)) {
-            if(!pathPart.isEmpty()) {
-                pathParts.add(pathPart);
+        int start = 0;
+        int end;
+        while(start < context.length()) {
+            end = context.indexOf(HTTP_CONTEXT_SEPARATOR, start);
+            if(end < 0) {
+                end = context.length();
+            }
+            if(end > start) {
+                pathParts.add(context.substring(start, end));
             }
+            start = end + 1;
         }
     }
 
@@ -1,8 +1,9 @@
 package org.hcjf.io.net.http;
 
+import org.hcjf.errors.Errors;
 import org.hcjf.properties.SystemProperties;
 
-import java.net.ResponseCache;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a http response package.
@@ -11,10 +12,6 @@ import java.net.ResponseCache;
  */
 public class HttpResponse extends HttpPackage {
 
-    private static final int VERSION_INDEX = 0;
-    private static final int RESPONSE_CODE_INDEX = 1;
-    private static final int REASON_PHRASE_INDEX = 2;
-
     private Integer responseCode;
     private String reasonPhrase;
 
@@ -69,20 +66,22 @@ public class HttpResponse extends HttpPackage {
 
     /**
      * Set the values of the first line of the package.
-     * @param firstLine String representation of the firs line.
+     * @param version Http version.
+     * @param responseCode Response code.
+     * @param reasonPhrase Reason phrase, could be null.
      */
     @Override
-    protected void processFirstLine(String firstLine) {
-        String[] parts = firstLine.split(LINE_FIELD_SEPARATOR);
-
-        if(parts.length == 2) {
-            setResponseCode(Integer.parseInt(parts[RESPONSE_CODE_INDEX]));
-            setHttpVersion(parts[VERSION_INDEX]);
-        } if(parts.length == 3) {
-            setResponseCode(Integer.parseInt(parts[RESPONSE_CODE_INDEX]));
-            setReasonPhrase(parts[REASON_PHRASE_INDEX]);
-            setHttpVersion(parts[VERSION_INDEX]);
+    protected void processFirstLine(String version, String responseCode, String reasonPhrase) {
+        try {
+            setResponseCode(Integer.parseInt(responseCode));
+        } catch (NumberFormatException ex) {
+            throw new HttpParserException(HttpResponseCode.BAD_GATEWAY,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_10, version + LINE_FIELD_SEPARATOR + responseCode), ex);
+        }
+        if(reasonPhrase != null) {
+            setReasonPhrase(reasonPhrase);
         }
+        setHttpVersion(version);
     }
 
     /**
@@ -108,7 +107,10 @@ public class HttpResponse extends HttpPackage {
      */
     @Override
     public byte[] getProtocolHeader() {
-        return toStringProtocolHeader().getBytes();
+        ByteBuffer buffer = HttpHeaderEncoder.encode(this);
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
     }
 
     /**
@@ -174,6 +174,11 @@ public interface HttpResponseCode {
      */
     Integer EXPECTATION_FAILED = 417;
 
+    /**
+     * href=https://tools.ietf.org/html/rfc6585#section-5
+     */
+    Integer REQUEST_HEADER_FIELDS_TOO_LARGE = 431;
+
     /**
      * href=https://www.w3.org/Protocols/rfc2616/rfc2616-sec10.html#sec10.1.110.5.1
      */
@@ -243,6 +248,7 @@ public interface HttpResponseCode {
             phrases.put(UNSUPPORTED_MEDIA_TYPE, "Unsupported media type.");
             phrases.put(REQUESTED_RANGE_NOT_SATISFIABLE, "Requested range not satisfiable");
             phrases.put(EXPECTATION_FAILED, "Expectation failed");
+            phrases.put(REQUEST_HEADER_FIELDS_TOO_LARGE, "Request header fields too large");
             phrases.put(INTERNAL_SERVER_ERROR, "Internal server error");
             phrases.put(NOT_IMPLEMENTED, "Not implemented");
             phrases.put(BAD_GATEWAY, "Bad gateway");
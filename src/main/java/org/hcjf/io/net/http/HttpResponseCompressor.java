@@ -0,0 +1,494 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is the compression stage of the http server. The stage negotiates the
+ * content coding of the response using the quality values of the 'Accept-Encoding' header
+ * and compresses the responses whose content type is compressible and whose size is over
+ * the minimum size.
+ * The compressed variants of the responses with 'ETag' header are stored into a bounded
+ * lru cache, the size of the cache is the sum of the sizes of the compressed variants.
+ * The file responses with a precompressed variant on disk are served using the
+ * variant without compress anything.
+ * Each content coding is a different representation of the resource, then the name of the
+ * coding is added at the end of the entity tag of the compressed responses.
+ * @author javaito
+ */
+public class HttpResponseCompressor {
+
+    private static final String ANY_CODING = "*";
+    private static final String ANY_SUBTYPE = "/*";
+    private static final String MIME_PARAMETERS_SEPARATOR = ";";
+    private static final String CACHE_KEY_SEPARATOR = " ";
+    private static final String CODING_TAG_SEPARATOR = "-";
+    private static final String ENTITY_TAG_QUOTE = "\"";
+    private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+    private static final String LIST_SEPARATOR = ",";
+    private static final List<String> SUPPORTED_CODINGS = Arrays.asList(HttpHeader.GZIP, HttpHeader.DEFLATE);
+
+    private final boolean enabled;
+    private final int minSize;
+    private final long maxSize;
+    private final int level;
+    private final Set<String> mimeTypes;
+    private final Set<String> mimeTypePrefixes;
+    private final long cacheMaxSize;
+    private final LinkedHashMap<String, byte[]> cache;
+    private long cacheSize;
+    private final LongAdder cacheHits;
+    private final LongAdder cacheMisses;
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+
+    public HttpResponseCompressor() {
+        this(SystemProperties.getBoolean(SystemProperties.Net.Http.Compression.ENABLED),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Compression.MIN_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.Http.Compression.MAX_SIZE),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Compression.LEVEL),
+                SystemProperties.getList(SystemProperties.Net.Http.Compression.MIME_TYPES),
+                SystemProperties.getLong(SystemProperties.Net.Http.Compression.CACHE_SIZE));
+    }
+
+    /**
+     * Constructor.
+     * @param enabled If the value is false then the responses are never compressed.
+     * @param minSize Min size of the body to compress it.
+     * @param maxSize Max size of a file to compress it into memory.
+     * @param level Compression level (0-9).
+     * @param mimeTypes Compressible mime types, the value 'type/*' represents all the subtypes.
+     * @param cacheMaxSize Max number of bytes stored into the cache of compressed variants.
+     */
+    public HttpResponseCompressor(boolean enabled, int minSize, long maxSize, int level,
+                                  Collection<String> mimeTypes, long cacheMaxSize) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.level = level;
+        this.mimeTypes = new HashSet<>();
+        this.mimeTypePrefixes = new HashSet<>();
+        for(String mimeType : mimeTypes) {
+            if(mimeType.endsWith(ANY_SUBTYPE)) {
+                mimeTypePrefixes.add(mimeType.substring(0, mimeType.length() - 1).toLowerCase());
+            } else {
+                this.mimeTypes.add(mimeType.toLowerCase());
+            }
+        }
+        this.cacheMaxSize = cacheMaxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.cacheHits = new LongAdder();
+        this.cacheMisses = new LongAdder();
+        this.bytesIn = new LongAdder();
+        this.bytesOut = new LongAdder();
+    }
+
+    /**
+     * Return the number of responses served from the cache of compressed variants.
+     * @return Cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Return the number of responses compressed because the variant was not into the cache.
+     * @return Cache misses.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Return the number of bytes stored into the cache of compressed variants.
+     * @return Cache size.
+     */
+    public long getCacheSize() {
+        synchronized (cache) {
+            return cacheSize;
+        }
+    }
+
+    /**
+     * Return the number of bytes of the bodies before the compression.
+     * @return Uncompressed bytes.
+     */
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    /**
+     * Return the number of bytes of the bodies after the compression.
+     * @return Compressed bytes.
+     */
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Returns the response encoded with the content coding negotiated with the request. If the
+     * response can't be compressed or the client doesn't accept any supported coding then the
+     * same response is returned.
+     * @param request Http request.
+     * @param response Http response.
+     * @return Compressed response or the same response.
+     */
+    public HttpResponse compress(HttpRequest request, HttpResponse response) {
+        HttpResponse result = response;
+        boolean compressible = isCompressible(response.getHeader(HttpHeader.CONTENT_TYPE));
+        if(enabled && !(response instanceof HttpPipelineResponse) &&
+                HttpResponseCode.OK.equals(response.getResponseCode()) &&
+                !response.containsHeader(HttpHeader.CONTENT_ENCODING) && (compressible ||
+                (response instanceof HttpFileResponse && ((HttpFileResponse) response).hasEncodedVariants()))) {
+            addVary(response);
+
+            String coding = negotiate(request.getHeader(HttpHeader.ACCEPT_ENCODING));
+            if(coding != null) {
+                try {
+                    if (response instanceof HttpFileResponse) {
+                        result = compressFile(request, (HttpFileResponse) response, coding, compressible);
+                    } else if (compressible && response.getBody().length >= minSize) {
+                        byte[] body = response.getBody();
+                        byte[] compressedBody = getVariant(request, response, coding, () -> encode(coding, body));
+                        result = response;
+                        result.setBody(compressedBody);
+                        result.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(compressedBody.length)));
+                        result.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, coding));
+                    }
+                } catch (IOException ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to compress the response", ex);
+                }
+
+                HttpHeader eTagHeader = result.getHeader(HttpHeader.E_TAG);
+                if(eTagHeader != null && result.containsHeader(HttpHeader.CONTENT_ENCODING)) {
+                    result.addHeader(new HttpHeader(HttpHeader.E_TAG, getEncodedEntityTag(eTagHeader.getHeaderValue(), coding)));
+                }
+            }
+        } else if(enabled && HttpResponseCode.NOT_MODIFIED.equals(response.getResponseCode())) {
+            //The not modified response has the entity tag of the compressed representation validated by the client.
+            HttpHeader eTagHeader = response.getHeader(HttpHeader.E_TAG);
+            HttpHeader ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+            if(eTagHeader != null && ifNoneMatch != null) {
+                String coding = getValidatedCoding(ifNoneMatch.getHeaderValue(), eTagHeader.getHeaderValue());
+                if(coding != null) {
+                    addVary(response);
+                    response.addHeader(new HttpHeader(HttpHeader.E_TAG, getEncodedEntityTag(eTagHeader.getHeaderValue(), coding)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the 'Accept-Encoding' header to the 'Vary' header of the response because the
+     * representation depends on the accepted codings.
+     * @param response Http response.
+     */
+    private void addVary(HttpResponse response) {
+        HttpHeader varyHeader = response.getHeader(HttpHeader.VARY);
+        if(varyHeader == null) {
+            response.addHeader(new HttpHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING));
+        } else if(!varyHeader.getHeaderValue().toLowerCase().contains(HttpHeader.ACCEPT_ENCODING.toLowerCase())) {
+            response.addHeader(new HttpHeader(varyHeader.getHeaderName(),
+                    varyHeader.getHeaderValue() + ", " + HttpHeader.ACCEPT_ENCODING));
+        }
+    }
+
+    /**
+     * Returns the entity tag of the compressed representation, the name of the coding is added
+     * at the end of the opaque tag, for example the tag "abc" with gzip coding is "abc-gzip".
+     * @param entityTag Entity tag of the identity representation.
+     * @param coding Content coding.
+     * @return Entity tag of the compressed representation.
+     */
+    public static String getEncodedEntityTag(String entityTag, String coding) {
+        String result = entityTag.trim();
+        if(result.length() > 1 && result.endsWith(ENTITY_TAG_QUOTE)) {
+            result = result.substring(0, result.length() - 1) + CODING_TAG_SEPARATOR + coding + ENTITY_TAG_QUOTE;
+        } else {
+            result = result + CODING_TAG_SEPARATOR + coding;
+        }
+        return result;
+    }
+
+    /**
+     * Removes the name of the coding added by the compressor at the end of the opaque tag, then
+     * the tags of the compressed representations match with the tag of the identity representation.
+     * @param opaqueTag Opaque tag, without quotes and without the weak prefix.
+     * @return Opaque tag of the identity representation.
+     */
+    public static String getIdentityTag(String opaqueTag) {
+        String result = opaqueTag;
+        for(String coding : SUPPORTED_CODINGS) {
+            if(result.endsWith(CODING_TAG_SEPARATOR + coding)) {
+                result = result.substring(0, result.length() - coding.length() - CODING_TAG_SEPARATOR.length());
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the coding of the compressed representation whose entity tag is into the
+     * 'If-None-Match' header value.
+     * @param ifNoneMatch Value of the 'If-None-Match' header.
+     * @param entityTag Entity tag of the identity representation.
+     * @return Content coding or null if the client validated the identity representation.
+     */
+    private static String getValidatedCoding(String ifNoneMatch, String entityTag) {
+        String result = null;
+        String opaqueTag = getOpaqueTag(entityTag);
+        for(String tag : ifNoneMatch.split(LIST_SEPARATOR)) {
+            tag = getOpaqueTag(tag);
+            for(String coding : SUPPORTED_CODINGS) {
+                if(tag.equals(opaqueTag + CODING_TAG_SEPARATOR + coding)) {
+                    result = coding;
+                    break;
+                }
+            }
+            if(result != null) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the quotes and the weak prefix of the entity tag.
+     * @param entityTag Entity tag.
+     * @return Opaque tag.
+     */
+    private static String getOpaqueTag(String entityTag) {
+        String result = entityTag.trim();
+        if(result.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+            result = result.substring(WEAK_ENTITY_TAG_PREFIX.length());
+        }
+        if(result.length() > 1 && result.startsWith(ENTITY_TAG_QUOTE) && result.endsWith(ENTITY_TAG_QUOTE)) {
+            result = result.substring(1, result.length() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Compress the file response, if the response has a precompressed variant for the coding
+     * then the variant file is used.
+     * @param request Http request.
+     * @param response File response.
+     * @param coding Content coding.
+     * @param compressible True if the content type of the file is compressible.
+     * @return Compressed response or the same response.
+     * @throws IOException If the file can't be read.
+     */
+    private HttpResponse compressFile(HttpRequest request, HttpFileResponse response,
+                                      String coding, boolean compressible) throws IOException {
+        HttpResponse result = response;
+        Path variant = response.getEncodedVariant(coding);
+        if(variant != null) {
+            result = new HttpFileResponse(variant, Files.size(variant));
+            copyHeaders(response, result);
+            result.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, coding));
+        } else if(compressible && response.getPath() != null &&
+                response.getLength() >= minSize && response.getLength() <= maxSize) {
+            byte[] body = getVariant(request, response, coding, () -> encode(coding, Files.readAllBytes(response.getPath())));
+            result = new HttpResponse();
+            copyHeaders(response, result);
+            result.setBody(body);
+            result.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+            result.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, coding));
+        }
+        return result;
+    }
+
+    /**
+     * Copy the response code and all the headers except the content length.
+     * @param source Source response.
+     * @param target Target response.
+     */
+    private void copyHeaders(HttpResponse source, HttpResponse target) {
+        target.setResponseCode(source.getResponseCode());
+        target.setReasonPhrase(source.getReasonPhrase());
+        for(HttpHeader header : source.getHeaders()) {
+            if(!header.getHeaderName().equalsIgnoreCase(HttpHeader.CONTENT_LENGTH)) {
+                target.addHeader(header);
+            }
+        }
+    }
+
+    /**
+     * Returns the compressed variant of the response, if the response has entity tag then
+     * the variant is stored into the cache.
+     * @param request Http request.
+     * @param response Http response.
+     * @param coding Content coding.
+     * @param encoder Encoder of the variant.
+     * @return Compressed variant.
+     * @throws IOException Compression exception.
+     */
+    private byte[] getVariant(HttpRequest request, HttpResponse response, String coding, Encoder encoder) throws IOException {
+        byte[] result = null;
+        String key = null;
+        HttpHeader eTagHeader = response.getHeader(HttpHeader.E_TAG);
+        if(eTagHeader != null && cacheMaxSize > 0) {
+            key = request.getPath() + CACHE_KEY_SEPARATOR + eTagHeader.getHeaderValue() + CACHE_KEY_SEPARATOR + coding;
+            synchronized (cache) {
+                result = cache.get(key);
+            }
+        }
+
+        if(result == null) {
+            cacheMisses.increment();
+            result = encoder.encode();
+            if(key != null && result.length <= cacheMaxSize) {
+                synchronized (cache) {
+                    byte[] oldValue = cache.put(key, result);
+                    cacheSize += result.length - (oldValue == null ? 0 : oldValue.length);
+                    Iterator<byte[]> iterator = cache.values().iterator();
+                    while(cacheSize > cacheMaxSize && iterator.hasNext()) {
+                        cacheSize -= iterator.next().length;
+                        iterator.remove();
+                    }
+                }
+            }
+        } else {
+            cacheHits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Compress the data using the content coding.
+     * @param coding Content coding.
+     * @param data Uncompressed data.
+     * @return Compressed data.
+     * @throws IOException Compression exception.
+     */
+    private byte[] encode(String coding, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        if(coding.equals(HttpHeader.GZIP)) {
+            try (OutputStream outputStream = new LeveledGZIPOutputStream(out, level)) {
+                outputStream.write(data);
+            }
+        } else {
+            //The 'deflate' coding is the zlib format.
+            Deflater deflater = new Deflater(level);
+            try (OutputStream outputStream = new DeflaterOutputStream(out, deflater)) {
+                outputStream.write(data);
+            } finally {
+                deflater.end();
+            }
+        }
+        bytesIn.add(data.length);
+        bytesOut.add(out.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * Verify if the content type is compressible.
+     * @param contentTypeHeader Content type header of the response.
+     * @return True if the content type is compressible.
+     */
+    private boolean isCompressible(HttpHeader contentTypeHeader) {
+        boolean result = false;
+        if(contentTypeHeader != null) {
+            String mimeType = contentTypeHeader.getHeaderValue();
+            int index = mimeType.indexOf(MIME_PARAMETERS_SEPARATOR);
+            if(index >= 0) {
+                mimeType = mimeType.substring(0, index);
+            }
+            mimeType = mimeType.trim().toLowerCase();
+            result = mimeTypes.contains(mimeType);
+            if(!result) {
+                for(String prefix : mimeTypePrefixes) {
+                    if(mimeType.startsWith(prefix)) {
+                        result = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Select the supported content coding with the biggest quality value, if two codings
+     * have the same quality then gzip is preferred.
+     * @param acceptEncodingHeader Accept encoding header of the request.
+     * @return Content coding or null if the response must not be compressed.
+     */
+    static String negotiate(HttpHeader acceptEncodingHeader) {
+        String result = null;
+        if(acceptEncodingHeader != null) {
+            float resultQuality = 0;
+            for(String coding : SUPPORTED_CODINGS) {
+                float quality = getQuality(acceptEncodingHeader, coding);
+                if(quality > resultQuality) {
+                    result = coding;
+                    resultQuality = quality;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the quality value of the coding, if the coding is not present then the
+     * quality of the wildcard is returned.
+     * @param acceptEncodingHeader Accept encoding header.
+     * @param coding Content coding.
+     * @return Quality value, zero means not acceptable.
+     */
+    private static float getQuality(HttpHeader acceptEncodingHeader, String coding) {
+        float result = 0;
+        String wildcard = null;
+        String group = null;
+        for(String current : acceptEncodingHeader.getGroups()) {
+            if(current.equalsIgnoreCase(coding)) {
+                group = current;
+            } else if(current.equals(ANY_CODING)) {
+                wildcard = current;
+            }
+        }
+        if(group == null) {
+            group = wildcard;
+        }
+        if(group != null) {
+            String quality = acceptEncodingHeader.getParameter(group, HttpHeader.PARAM_QUALITY);
+            try {
+                result = quality == null ? 1 : Float.parseFloat(quality);
+            } catch (NumberFormatException ex) {
+                result = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Function to create the compressed variant.
+     */
+    private interface Encoder {
+        byte[] encode() throws IOException;
+    }
+
+    /**
+     * Gzip stream with a specific compression level.
+     */
+    private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        private LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
@@ -5,25 +5,69 @@ import org.hcjf.io.net.NetPackage;
 import org.hcjf.io.net.NetServer;
 import org.hcjf.io.net.NetService;
 import org.hcjf.io.net.NetSession;
+import org.hcjf.errors.Errors;
+import org.hcjf.io.net.http.http2.Http2Connection;
+import org.hcjf.io.net.http.http2.Http2ErrorCode;
+import org.hcjf.io.net.http.http2.Http2Frame;
+import org.hcjf.io.net.http.http2.Http2Settings;
+import org.hcjf.io.net.http.http2.Http2Stream;
+import org.hcjf.io.net.http.pipeline.ChunkedHttpPipelineResponse;
 import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
+import org.hcjf.service.ServiceThread;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Implementation of the net service that provides the http protocol server.
+ * The connections that start with the http/2 connection preface (prior knowledge h2c or
+ * h2 negotiated by alpn) are served by a http/2 connection, each stream is processed as
+ * a http request by the same contexts.
  * @author javaito
  */
 public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
 
+    //Connection-specific headers that are not valid into the http/2 responses.
+    private static final Set<String> HTTP2_EXCLUDED_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade"));
+    private static final int HTTP2_PREFACE_MIN_LENGTH = 4;
+
     private Map<NetSession, HttpRequest> requestBuffers;
+    private final Map<NetSession, Queue<HttpRequest>> pipelines;
+    private final Map<NetSession, Integer> requestCounters;
+    private final Map<NetSession, Long> idleSessions;
+    private final Map<NetSession, HttpParserException> rejectedRequests;
+    private final Map<NetSession, Http2Connection> http2Connections;
+    private final Set<NetSession> processingSessions;
+    private final Map<NetSession, PipelineTransfer> transfers;
     private List<Context> contexts;
+    private volatile ContextRouter router;
+    private final LongAdder routeMatches;
+    private final LongAdder routeMatchTime;
+    private final LongAccumulator routeMatchMaxTime;
+    private HttpResponseCompressor compressor;
+    private HttpAccessLog accessLog;
+    private HttpAdmissionControl admissionControl;
     private HttpSessionManager sessionManager;
     private HttpPackage.HttpProtocol httpProtocol;
+    private long keepAliveTimeout;
+    private int keepAliveMaxRequests;
+    private int pipeliningMaxRequests;
+    private boolean http2Enabled;
+    private Timer idleTimer;
 
     public HttpServer() {
         this(SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_SERVER_PORT));
@@ -36,8 +80,26 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     protected HttpServer(Integer port, boolean sslProtocol) {
         super(port, sslProtocol ? NetService.TransportLayerProtocol.TCP_SSL :
                 NetService.TransportLayerProtocol.TCP, false, true);
-        requestBuffers = new HashMap<>();
+        requestBuffers = new ConcurrentHashMap<>();
+        pipelines = new ConcurrentHashMap<>();
+        requestCounters = new ConcurrentHashMap<>();
+        idleSessions = new ConcurrentHashMap<>();
+        rejectedRequests = new ConcurrentHashMap<>();
+        http2Connections = new ConcurrentHashMap<>();
+        processingSessions = ConcurrentHashMap.newKeySet();
+        transfers = new ConcurrentHashMap<>();
+        keepAliveTimeout = SystemProperties.getLong(SystemProperties.Net.Http.KEEP_ALIVE_TIMEOUT);
+        keepAliveMaxRequests = SystemProperties.getInteger(SystemProperties.Net.Http.KEEP_ALIVE_MAX_REQUESTS);
+        pipeliningMaxRequests = SystemProperties.getInteger(SystemProperties.Net.Http.PIPELINING_MAX_REQUESTS);
+        http2Enabled = SystemProperties.getBoolean(SystemProperties.Net.Http.Http2.ENABLED);
         contexts = new ArrayList<>();
+        router = new ContextRouter(contexts);
+        routeMatches = new LongAdder();
+        routeMatchTime = new LongAdder();
+        routeMatchMaxTime = new LongAccumulator(Long::max, 0);
+        compressor = new HttpResponseCompressor();
+        accessLog = new HttpAccessLog();
+        admissionControl = new HttpAdmissionControl();
         httpProtocol = sslProtocol ? HttpPackage.HttpProtocol.HTTPS : HttpPackage.HttpProtocol.HTTP;
     }
 
@@ -57,6 +119,74 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         this.sessionManager = sessionManager;
     }
 
+    /**
+     * Return the time in milliseconds that a keep alive connection could be idle
+     * before the server closes it, zero means without timeout.
+     * @return Keep alive timeout.
+     */
+    public final long getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * Set the time in milliseconds that a keep alive connection could be idle
+     * before the server closes it, zero means without timeout.
+     * This value must be set before start the server.
+     * @param keepAliveTimeout Keep alive timeout.
+     */
+    public final void setKeepAliveTimeout(long keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    /**
+     * Return the max number of requests served over the same connection, zero means without limit.
+     * @return Max number of requests by connection.
+     */
+    public final int getKeepAliveMaxRequests() {
+        return keepAliveMaxRequests;
+    }
+
+    /**
+     * Set the max number of requests served over the same connection, zero means without limit.
+     * @param keepAliveMaxRequests Max number of requests by connection.
+     */
+    public final void setKeepAliveMaxRequests(int keepAliveMaxRequests) {
+        this.keepAliveMaxRequests = keepAliveMaxRequests;
+    }
+
+    /**
+     * Return the max number of pipelined requests waiting for the same connection.
+     * @return Max number of pipelined requests.
+     */
+    public final int getPipeliningMaxRequests() {
+        return pipeliningMaxRequests;
+    }
+
+    /**
+     * Set the max number of pipelined requests waiting for the same connection, if a client
+     * exceeds this limit then the connection is closed.
+     * @param pipeliningMaxRequests Max number of pipelined requests.
+     */
+    public final void setPipeliningMaxRequests(int pipeliningMaxRequests) {
+        this.pipeliningMaxRequests = pipeliningMaxRequests;
+    }
+
+    /**
+     * Verify if the server accepts http/2 connections.
+     * @return Returns true if the http/2 is enabled.
+     */
+    public final boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    /**
+     * Enable or disable the http/2 connections, this value must be set before start the server.
+     * @param http2Enabled Http/2 enabled value.
+     */
+    public final void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
     /**
      * This method must implements the session creation based on
      * the net package that incoming.
@@ -107,23 +237,37 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     @Override
     protected final byte[] encode(HttpPackage payLoad) {
         byte[] result = null;
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            if(payLoad instanceof HttpPipelineResponse) {
-                if(((HttpPipelineResponse)payLoad).isFirstRead()) {
-                    out.write(payLoad.getProtocolHeader());
-                }
-                ByteBuffer mainBuffer = ((HttpPipelineResponse)payLoad).getMainBuffer();
-                out.write(mainBuffer.array(), 0, mainBuffer.position());
-                out.flush();
+        if(payLoad instanceof HttpPipelineResponse) {
+            //The fragment is copied only once because the main buffer is reused by the next read.
+            HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) payLoad;
+            ByteBuffer mainBuffer = pipelineResponse.getMainBuffer();
+            int offset = pipelineResponse.getDataOffset();
+            int size = mainBuffer.position() - offset;
+            if(pipelineResponse.isFirstRead()) {
+                ByteBuffer header = HttpHeaderEncoder.encode(pipelineResponse);
+                int headerSize = header.remaining();
+                result = new byte[headerSize + size];
+                header.get(result, 0, headerSize);
+                System.arraycopy(mainBuffer.array(), offset, result, headerSize, size);
             } else {
-                out.write(payLoad.getProtocolHeader());
-                out.write(payLoad.getBody());
-                out.flush();
+                result = Arrays.copyOfRange(mainBuffer.array(), offset, offset + size);
             }
-            result = out.toByteArray();
-
-            Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "%s", new String(result));
-        } catch (Exception ex){}
+        } else {
+            //The header block and the body are copied into the result without intermediate buffers.
+            byte[] body = payLoad.getBody() == null ? new byte[0] : payLoad.getBody();
+            if(payLoad instanceof HttpResponse) {
+                ByteBuffer header = HttpHeaderEncoder.encode((HttpResponse) payLoad);
+                int headerSize = header.remaining();
+                result = new byte[headerSize + body.length];
+                header.get(result, 0, headerSize);
+                System.arraycopy(body, 0, result, headerSize, body.length);
+            } else {
+                byte[] header = payLoad.getProtocolHeader();
+                result = new byte[header.length + body.length];
+                System.arraycopy(header, 0, result, 0, header.length);
+                System.arraycopy(body, 0, result, header.length, body.length);
+            }
+        }
         return result;
     }
 
@@ -135,15 +279,150 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     protected final HttpPackage decode(NetPackage netPackage) {
-        HttpRequest request = requestBuffers.get(netPackage.getSession());
-        if(request == null){
-            synchronized (requestBuffers) {
-                request = new HttpRequest();
-                request.setProtocol(httpProtocol);
-                requestBuffers.put(netPackage.getSession(), request);
+        return decode(netPackage.getSession(), ByteBuffer.wrap(netPackage.getPayload()));
+    }
+
+    /**
+     * This method decode the net package reading the data directly from the pooled buffer,
+     * without intermediate copies.
+     *
+     * @param netPackage Net package.
+     * @param buffer Buffer with the package data.
+     * @return Return the implementation data.
+     */
+    @Override
+    protected final HttpPackage decode(NetPackage netPackage, ByteBuffer buffer) {
+        return decode(netPackage.getSession(), buffer);
+    }
+
+    /**
+     * Split the data into all the requests contained, each complete request is queued into the
+     * pipeline of the session in the same order that it was received and the incomplete request
+     * keeps buffered until the next package.
+     * @param session Net session.
+     * @param buffer Buffer with the data.
+     * @return Returns the first request of the pipeline or the incomplete request if the
+     * pipeline is empty.
+     */
+    private HttpPackage decode(NetSession session, ByteBuffer buffer) {
+        idleSessions.remove(session);
+        Http2Connection http2Connection = getHttp2Connection(session, buffer);
+        if(http2Connection != null) {
+            //The streams are processed by the connection, then the decoded package is always incomplete.
+            http2Connection.onData(buffer);
+            return new ServerRequest();
+        }
+        Queue<HttpRequest> pipeline = getPipeline(session);
+        HttpRequest request = getRequestBuffer(session);
+        try {
+            request.addData(buffer);
+            while (request.isComplete()) {
+                requestBuffers.remove(session);
+                pipeline.add(request);
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                request = getRequestBuffer(session);
+                request.addData(buffer);
+            }
+        } catch (HttpParserException ex) {
+            //The requests received before the malformed request are processed and
+            //then the malformed request is rejected.
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Malformed http request: %s", ex.getMessage());
+            requestBuffers.remove(session);
+            request.releaseBody();
+            rejectedRequests.put(session, ex);
+        }
+
+        HttpPackage result = pipeline.peek();
+        if(result == null) {
+            result = request;
+        }
+        return result;
+    }
+
+    /**
+     * Return the http/2 connection of the session, the connection is created if the first
+     * bytes of the session are the http/2 connection preface.
+     * @param session Net session.
+     * @param buffer Buffer with the data.
+     * @return Http/2 connection or null if the session is a http/1.x session.
+     */
+    private Http2Connection getHttp2Connection(NetSession session, ByteBuffer buffer) {
+        Http2Connection result = http2Connections.get(session);
+        if(result == null && isHttp2Enabled() && !requestBuffers.containsKey(session) && isHttp2Preface(buffer)) {
+            Http2Settings settings = new Http2Settings();
+            settings.setEnablePush(false);
+            settings.setMaxConcurrentStreams(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.MAX_CONCURRENT_STREAMS));
+            settings.setInitialWindowSize(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.INITIAL_WINDOW_SIZE));
+            settings.setMaxFrameSize(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.MAX_FRAME_SIZE));
+            settings.setHeaderTableSize(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.HEADER_TABLE_SIZE));
+            settings.setMaxHeaderListSize(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.MAX_HEADER_LIST_SIZE));
+            Http2ServerHandler handler = new Http2ServerHandler((HttpSession) session);
+            result = new Http2Connection(handler, settings, SystemProperties.getLong(SystemProperties.Net.Http.Http2.WINDOW_TIMEOUT));
+            handler.connection = result;
+            http2Connections.put(session, result);
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 connection started");
+        }
+        return result;
+    }
+
+    /**
+     * Verify if the data starts with the http/2 connection preface, if the buffer contains
+     * only a part of the preface then the available bytes are compared.
+     * @param buffer Buffer with the data.
+     * @return Returns true if the data is the start of a http/2 connection.
+     */
+    private boolean isHttp2Preface(ByteBuffer buffer) {
+        boolean result = buffer.remaining() >= HTTP2_PREFACE_MIN_LENGTH;
+        int length = Math.min(buffer.remaining(), Http2Frame.CONNECTION_PREFACE.length);
+        for (int i = 0; result && i < length; i++) {
+            result = buffer.get(buffer.position() + i) == Http2Frame.CONNECTION_PREFACE[i];
+        }
+        return result;
+    }
+
+    /**
+     * Return the queue of complete requests waiting to be processed for the session.
+     * @param session Net session.
+     * @return Pipeline of the session.
+     */
+    private Queue<HttpRequest> getPipeline(NetSession session) {
+        Queue<HttpRequest> pipeline = pipelines.get(session);
+        if(pipeline == null) {
+            pipeline = new ConcurrentLinkedQueue<>();
+            Queue<HttpRequest> current = pipelines.putIfAbsent(session, pipeline);
+            if(current != null) {
+                pipeline = current;
             }
         }
-        request.addData(netPackage.getPayload());
+        return pipeline;
+    }
+
+    /**
+     * Discards all the requests of the pipeline releasing the bodies.
+     * @param pipeline Pipeline of the session.
+     */
+    private void releasePipeline(Queue<HttpRequest> pipeline) {
+        HttpRequest request;
+        while((request = pipeline.poll()) != null) {
+            request.releaseBody();
+        }
+    }
+
+    /**
+     * Return the request that is being accumulated for the session, if there are not
+     * any request then a new request is created.
+     * @param session Net session.
+     * @return Request buffer.
+     */
+    private HttpRequest getRequestBuffer(NetSession session) {
+        HttpRequest request = requestBuffers.get(session);
+        if(request == null){
+            request = new ServerRequest();
+            request.setProtocol(httpProtocol);
+            requestBuffers.put(session, request);
+        }
         return request;
     }
 
@@ -162,6 +441,7 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
 
         if(!duplicated) {
             contexts.add(context);
+            router = new ContextRouter(contexts);
             Log.i(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Context added: [%s] %s",
                     context.getClass().getName(),  context.getContextRegex());
         } else {
@@ -176,16 +456,104 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      * @return Founded context.
      */
     protected Context findContext(String contextName) {
-        Context result = null;
+        long startTime = System.nanoTime();
+        Context result = router.find(contextName);
+        long time = System.nanoTime() - startTime;
+        routeMatches.increment();
+        routeMatchTime.add(time);
+        routeMatchMaxTime.accumulate(time);
+        return result;
+    }
 
-        for(Context context : contexts) {
-            if(contextName.matches(context.getContextRegex())) {
-                result = context;
-                break;
-            }
+    /**
+     * Return the number of times that the server searched the context of a request.
+     * @return Number of route matches.
+     */
+    public final long getRouteMatchCount() {
+        return routeMatches.sum();
+    }
+
+    /**
+     * Return the accumulated time in nanoseconds spent searching the contexts of the requests.
+     * @return Accumulated route match time.
+     */
+    public final long getRouteMatchTime() {
+        return routeMatchTime.sum();
+    }
+
+    /**
+     * Return the average time in nanoseconds spent searching the context of a request.
+     * @return Average route match time.
+     */
+    public final long getRouteMatchAverageTime() {
+        long count = routeMatches.sum();
+        return count == 0 ? 0 : routeMatchTime.sum() / count;
+    }
+
+    /**
+     * Return the max time in nanoseconds spent searching the context of a request.
+     * @return Max route match time.
+     */
+    public final long getRouteMatchMaxTime() {
+        return routeMatchMaxTime.get();
+    }
+
+    /**
+     * Return the compression stage of the server.
+     * @return Response compressor.
+     */
+    public final HttpResponseCompressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Set the compression stage of the server.
+     * @param compressor Response compressor.
+     */
+    public final void setCompressor(HttpResponseCompressor compressor) {
+        if(compressor == null) {
+            throw new NullPointerException("Null response compressor");
         }
+        this.compressor = compressor;
+    }
 
-        return result;
+    /**
+     * Return the access log of the server.
+     * @return Access log.
+     */
+    public final HttpAccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    /**
+     * Set the access log of the server.
+     * @param accessLog Access log.
+     */
+    public final void setAccessLog(HttpAccessLog accessLog) {
+        if(accessLog == null) {
+            throw new NullPointerException("Null access log");
+        }
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Return the admission control of the server, the limits and the rejections of each
+     * context are available using this instance.
+     * @return Admission control.
+     */
+    public final HttpAdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * Set the admission control of the server.
+     * @param admissionControl Admission control.
+     */
+    public final void setAdmissionControl(HttpAdmissionControl admissionControl) {
+        if(admissionControl == null) {
+            throw new NullPointerException("Null admission control");
+        }
+        this.admissionControl = admissionControl;
     }
 
     /**
@@ -202,112 +570,444 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     }
 
     /**
-     * First check if the package is complete, then try to found the context using the
-     * http request information a create the response package.
+     * First check if the package is complete, then process all the requests queued into the
+     * pipeline of the session in the same order that they was received, the responses are
+     * written in the same order.
      * @param session Net session.
      * @param payLoad Net package decoded
      * @param netPackage Net package.
      */
     @Override
     protected final void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        if(payLoad.isComplete()) {
+        if(payLoad.isComplete() || rejectedRequests.containsKey(session)) {
+            Queue<HttpRequest> pipeline = getPipeline(session);
+            if(pipeline.size() > getPipeliningMaxRequests()) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                        "Pipelining limit exceeded (%d requests)", pipeline.size());
+                releasePipeline(pipeline);
+                disconnect(session, "Http pipelining limit exceeded.");
+                return;
+            }
 
-            //Flag to pipe line.
-            boolean connectionKeepAlive = false;
+            processPipeline(session, payLoad, netPackage);
+        }
+    }
 
-            //Remove the http buffer because the payload is complete.
-            requestBuffers.remove(session);
+    /**
+     * Processes the pipeline of the session if there isn't another thread processing it, the
+     * requests queued while the pipeline was taken are processed by the same thread before
+     * return.
+     * @param session Net session.
+     * @param payLoad Request already checked or null if all the requests must be checked.
+     * @param netPackage Net package.
+     */
+    private void processPipeline(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        Queue<HttpRequest> pipeline = getPipeline(session);
+        boolean next = true;
+        while(next && (!pipeline.isEmpty() || rejectedRequests.containsKey(session)) &&
+                processingSessions.add(session)) {
+            next = processPipeline(session, session, pipeline, payLoad, netPackage);
+            payLoad = null;
+        }
+    }
 
-            //Value to calculate the request execution time
-            long time = System.currentTimeMillis();
+    /**
+     * Processes the requests of the pipeline in order, the current thread must be the owner of
+     * the pipeline. If the body of some response can't be written because the session is not writable
+     * then the pipeline keeps taken by the response until the session is writable again, and the
+     * thread that resumes the response continues with the pipeline.
+     * @param session Net session.
+     * @param currentSession Session checked by the last request.
+     * @param pipeline Pipeline of the session.
+     * @param payLoad Request already checked or null if all the requests must be checked.
+     * @param netPackage Net package.
+     * @return Returns true if the connection is alive and the pipeline was released.
+     */
+    private boolean processPipeline(HttpSession session, HttpSession currentSession, Queue<HttpRequest> pipeline,
+                                    HttpPackage payLoad, NetPackage netPackage) {
+        boolean connectionKeepAlive = true;
+        boolean suspended = false;
+        try {
+            HttpRequest request;
+            while(connectionKeepAlive && !suspended && (request = pipeline.poll()) != null) {
+                if(request != payLoad) {
+                    //The session is checked again for each pipelined request.
+                    try {
+                        currentSession = checkSession(currentSession, request, netPackage);
+                        currentSession.setChecked(true);
+                    } catch (Exception ex) {
+                        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Check session fail", ex);
+                        currentSession.setChecked(false);
+                        request.releaseBody();
+                        releasePipeline(pipeline);
+                        onCheckSessionError(currentSession, request, netPackage, ex);
+                        return false;
+                    }
+                }
+                RequestResult result = RequestResult.CLOSE;
+                try {
+                    result = processRequest(currentSession, request, null);
+                } finally {
+                    if(result.equals(RequestResult.SUSPENDED)) {
+                        suspended = true;
+                    } else {
+                        request.releaseBody();
+                        connectionKeepAlive = result.equals(RequestResult.KEEP_ALIVE);
+                    }
+                }
+            }
+
+            if(!suspended) {
+                HttpParserException rejection = rejectedRequests.remove(session);
+                if (connectionKeepAlive && rejection != null) {
+                    rejectRequest(currentSession, rejection);
+                    connectionKeepAlive = false;
+                }
 
-            HttpResponse response = null;
-            HttpRequest request = (HttpRequest) payLoad;
+                if (connectionKeepAlive) {
+                    if (getKeepAliveTimeout() > 0) {
+                        idleSessions.put(currentSession, System.currentTimeMillis());
+                    }
+                } else {
+                    releasePipeline(pipeline);
+                    disconnect(currentSession, "Http request end.");
+                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection closed by server.");
+                }
+            }
+        } finally {
+            if(!suspended) {
+                processingSessions.remove(session);
+            }
+        }
+        return connectionKeepAlive && !suspended;
+    }
+
+    /**
+     * Try to found the context using the http request information, create the response
+     * package and write the response over the connection or over the http/2 stream.
+     * @param session Net session.
+     * @param request Http request.
+     * @param stream Http/2 stream of the request or null for the http/1.x requests.
+     * @return Returns the result of the request, the http/1.x pipeline responses could be
+     * suspended until the session is writable again.
+     */
+    private RequestResult processRequest(HttpSession session, HttpRequest request, Http2Stream stream) {
+        //Flag to pipe line.
+        boolean connectionKeepAlive = false;
+
+        //Value to calculate the request execution time
+        long time = System.nanoTime();
+
+        HttpResponse response = null;
+        long responseBytes = 0;
+        boolean debug = accessLog.isDebug(request);
+        if(debug) {
             Log.in(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request\r\n%s", request.toString());
-            try {
-                if(netPackage.getSession().isChecked()) {
-                    Context context = findContext(request.getContext());
-                    if (context != null) {
-                        boolean originHeaderPresent = request.containsHeader(HttpHeader.ORIGIN);
-                        try {
-                            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request context: %s", request.getContext());
-                            if(originHeaderPresent && request.getMethod().equals(HttpMethod.OPTIONS)){
-                                //If there's a Cross-Origin-Resource-Sharing preflight request returns a empty response
-                                response = new HttpResponse();
-                            } else{
-                                response = context.onContext(request);
-                            }
-                            if(request.containsHeader(HttpHeader.CONNECTION)) {
-                                if(request.getHeader(HttpHeader.CONNECTION).getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE)) {
-                                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection keep alive");
-                                    connectionKeepAlive = true;
+        }
+        try {
+            if(session.isChecked()) {
+                Context context = findContext(request.getContext());
+                if (context != null) {
+                    boolean originHeaderPresent = request.containsHeader(HttpHeader.ORIGIN);
+                    try {
+                        Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request context: %s", request.getContext());
+                        if(originHeaderPresent && request.getMethod().equals(HttpMethod.OPTIONS)){
+                            //If there's a Cross-Origin-Resource-Sharing preflight request returns a empty response
+                            response = new HttpResponse();
+                        } else if(!admissionControl.isEnabled()) {
+                            response = context.onContext(request);
+                        } else {
+                            HttpAdmissionControl.Limiter limiter = admissionControl.acquire(context);
+                            if(limiter == null) {
+                                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request rejected, context overloaded: %s", request.getContext());
+                                response = onContextOverloaded(request);
+                            } else {
+                                long contextTime = System.nanoTime();
+                                try {
+                                    response = context.onContext(request);
+                                } finally {
+                                    limiter.release(System.nanoTime() - contextTime, response != null &&
+                                            HttpResponseCode.SERVICE_UNAVAILABLE.equals(response.getResponseCode()));
                                 }
                             }
-                        } catch (Throwable throwable) {
-                            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Exception on context %s", throwable, context.getContextRegex());
-                            response = context.onError(request, throwable);
-                            if (response == null) {
-                                response = createDefaultErrorResponse(throwable);
-                            }
-                        } finally{
-                            if(originHeaderPresent){
-                                for(HttpHeader header : context.getCrossOriginHeaders(request)){
-                                    response.addHeader(header);
-                                }
+                        }
+                        if(isKeepAlive(request)) {
+                            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection keep alive");
+                            connectionKeepAlive = true;
+                        }
+                    } catch (Throwable throwable) {
+                        Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Exception on context %s", throwable, context.getContextRegex());
+                        response = context.onError(request, throwable);
+                        if (response == null) {
+                            response = createDefaultErrorResponse(throwable);
+                        }
+                    } finally{
+                        if(originHeaderPresent){
+                            for(HttpHeader header : context.getCrossOriginHeaders(request)){
+                                response.addHeader(header);
                             }
                         }
-                    } else {
-                        response = onContextNotFound(request);
-                    }
-
-                    if (response == null) {
-                        response = onUnresponsiveContext(request);
                     }
-
-                    response.addHeader(new HttpHeader(HttpHeader.DATE,
-                            SystemProperties.getDateFormat(
-                                    SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).format(new Date())));
-                    response.addHeader(new HttpHeader(HttpHeader.SERVER,
-                            SystemProperties.get(SystemProperties.Net.Http.SERVER_NAME)));
                 } else {
-                    response = onNotCheckedSession(request);
+                    response = onContextNotFound(request);
                 }
-            } catch (Throwable throwable) {
-                response = createDefaultErrorResponse(throwable);
-            }
 
-            try {
-                response.setProtocol(httpProtocol);
-                if(!response.containsHeader(HttpHeader.CONTENT_LENGTH) &&
-                        SystemProperties.getBoolean(SystemProperties.Net.Http.ENABLE_AUTOMATIC_RESPONSE_CONTENT_LENGTH) &&
-                        !(response instanceof HttpPipelineResponse)) {
-                    Integer length = response.getBody() == null ? 0 : response.getBody().length;
-                    response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, length.toString()));
+                if (response == null) {
+                    response = onUnresponsiveContext(request);
                 }
 
-                if(response instanceof HttpPipelineResponse) {
-                    HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) response;
-                    pipelineResponse.onStart();
-                    while(pipelineResponse.read() >= 0) {
-                        write(session, response, false);
-                    }
-                    pipelineResponse.onEnd();
-                } else {
+                response.addHeader(HttpHeaderEncoder.getDateHeader());
+                response.addHeader(HttpHeaderEncoder.getServerHeader());
+            } else {
+                response = onNotCheckedSession(request);
+            }
+        } catch (Throwable throwable) {
+            response = createDefaultErrorResponse(throwable);
+        }
+
+        if(stream == null && connectionKeepAlive && getKeepAliveMaxRequests() > 0) {
+            Integer counter = requestCounters.merge(session, 1, Integer::sum);
+            if(counter >= getKeepAliveMaxRequests()) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Max requests by connection reached");
+                connectionKeepAlive = false;
+                response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.CLOSE));
+            }
+        }
+
+        if(stream == null && !response.containsHeader(HttpHeader.CONNECTION)) {
+            if(!connectionKeepAlive) {
+                response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.CLOSE));
+            } else if(!HttpVersion.VERSION_1_1.equals(request.getHttpVersion())) {
+                //The http/1.0 clients only reuse the connection if the response confirms the keep alive.
+                response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.KEEP_ALIVE));
+            }
+        }
+
+        try {
+            response = compressor.compress(request, response);
+            response.setProtocol(httpProtocol);
+            if(!response.containsHeader(HttpHeader.CONTENT_LENGTH) &&
+                    SystemProperties.getBoolean(SystemProperties.Net.Http.ENABLE_AUTOMATIC_RESPONSE_CONTENT_LENGTH) &&
+                    !(response instanceof HttpPipelineResponse)) {
+                Integer length = response.getBody() == null ? 0 : response.getBody().length;
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, length.toString()));
+            }
+
+            if(stream != null) {
+                responseBytes = writeStream(stream, response);
+            } else if(response instanceof HttpPipelineResponse) {
+                //The transfer records the response when it ends.
+                HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) response;
+                pipelineResponse.onStart();
+                PipelineTransfer transfer = new PipelineTransfer(session, request, pipelineResponse,
+                        time, connectionKeepAlive, debug);
+                return transfer.transfer() ? transfer.getResult() : RequestResult.SUSPENDED;
+            } else if(response instanceof HttpFileResponse && response.getResponseCode().equals(HttpResponseCode.OK)) {
+                //The body of the response is transferred from the file to the socket after the headers.
+                HttpFileResponse fileResponse = (HttpFileResponse) response;
+                FileChannel fileChannel = fileResponse.openChannel();
+                try {
                     write(session, response, false);
+                } catch (Throwable throwable) {
+                    fileChannel.close();
+                    throw throwable;
+                }
+                writeFile(session, fileChannel, fileResponse.getPosition(), fileResponse.getLength());
+                responseBytes = fileResponse.getLength();
+            } else {
+                if(response instanceof HttpFileResponse) {
+                    ((HttpFileResponse) response).close();
                 }
+                write(session, response, false);
+                responseBytes = response.getBody() == null ? 0 : response.getBody().length;
+            }
 
+            if(debug) {
                 Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Response -> [Time: %d ms] \r\n%s",
-                        (System.currentTimeMillis() - time), response.toString());
-            } catch (Throwable throwable) {
-                Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
-                connectionKeepAlive = false;
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time), response.toString());
+            }
+        } catch (Throwable throwable) {
+            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
+            connectionKeepAlive = false;
+            if(stream != null && !stream.isReset()) {
+                stream.reset(Http2ErrorCode.INTERNAL_ERROR);
+            }
+        }
+        accessLog.record(session, request, response, responseBytes, System.nanoTime() - time);
+
+        return connectionKeepAlive ? RequestResult.KEEP_ALIVE : RequestResult.CLOSE;
+    }
+
+    /**
+     * Verify if the connection is kept alive after the response of the request. The http/1.1
+     * connections are persistent unless the client sends the close option and the http/1.0
+     * connections are persistent only if the client sends the keep alive option.
+     * @param request Http request.
+     * @return True if the connection is kept alive.
+     */
+    private boolean isKeepAlive(HttpRequest request) {
+        boolean result = HttpVersion.VERSION_1_1.equals(request.getHttpVersion());
+        HttpHeader connectionHeader = request.getHeader(HttpHeader.CONNECTION);
+        if(connectionHeader != null) {
+            for(String option : connectionHeader.getHeaderValue().split(",")) {
+                if(option.trim().equalsIgnoreCase(HttpHeader.CLOSE)) {
+                    result = false;
+                    break;
+                } else if(option.trim().equalsIgnoreCase(HttpHeader.KEEP_ALIVE)) {
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Processes the request of a http/2 stream, the session is checked for each stream
+     * like the pipelined requests.
+     * @param session Net session.
+     * @param connection Http/2 connection of the session.
+     * @param stream Stream with the complete request.
+     */
+    private void processStream(HttpSession session, Http2Connection connection, Http2Stream stream) {
+        HttpRequest request = null;
+        try {
+            request = createRequest(connection, stream);
+            HttpSession currentSession;
+            try {
+                currentSession = checkSession(session, request, null);
+                currentSession.setChecked(true);
+            } catch (Exception ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Check session fail", ex);
+                Context context = findContext(request.getContext());
+                writeStream(stream, context == null ? onNotCheckedSession(request) : context.onError(request, ex));
+                return;
+            }
+            processRequest(currentSession, request, stream);
+        } catch (HttpParserException ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Malformed http/2 request: %s", ex.getMessage());
+            try {
+                writeStream(stream, createRejectionResponse(ex));
+            } catch (IOException ioException) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to write the http/2 rejection", ioException);
+            }
+        } catch (Throwable throwable) {
+            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 stream error", throwable);
+            if(!stream.isReset()) {
+                stream.reset(Http2ErrorCode.INTERNAL_ERROR);
+            }
+        } finally {
+            if(request != null) {
+                request.releaseBody();
+            }
+            if(getKeepAliveTimeout() > 0 && connection.getStreamCount() == 0 && !connection.isClosed()) {
+                idleSessions.put(session, System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Creates the http request with the headers and the body of the stream, the pseudo-headers
+     * are translated to the first line of the request and the authority to the host header.
+     * @param connection Http/2 connection.
+     * @param stream Stream with the complete request.
+     * @return Http request.
+     * @throws HttpParserException If the request is not valid.
+     */
+    private HttpRequest createRequest(Http2Connection connection, Http2Stream stream) {
+        int maxHeaderListSize = connection.getLocalSettings().getMaxHeaderListSize();
+        if(stream.getHeaderListSize() > maxHeaderListSize) {
+            throw new HttpParserException(HttpResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_12, maxHeaderListSize));
+        }
+        ServerRequest request = new ServerRequest();
+        request.setProtocol(httpProtocol);
+        for(Map.Entry<String, String> header : stream.getHeaders().entrySet()) {
+            request.addHeader(new HttpHeader(HttpParser.getHeaderName(header.getKey()), header.getValue()));
+        }
+        if(stream.getAuthority() != null && !request.containsHeader(HttpHeader.HOST)) {
+            request.addHeader(new HttpHeader(HttpHeader.HOST, stream.getAuthority()));
+        }
+        request.processFirstLine(stream.getMethod(), stream.getPath(), HttpVersion.VERSION_2_0);
+        request.complete(stream.getBody());
+        return request;
+    }
+
+    /**
+     * Writes the response over the http/2 stream. The body of the pipeline responses and the
+     * file responses is written by fragments, the chunked framing of the pipelines is removed
+     * because the stream has its own framing.
+     * @param stream Http/2 stream.
+     * @param response Http response.
+     * @return Number of bytes of the response body.
+     * @throws IOException If the stream is reset or the connection is closed.
+     */
+    private long writeStream(Http2Stream stream, HttpResponse response) throws IOException {
+        long result = 0;
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for(HttpHeader header : response.getHeaders()) {
+            String name = header.getHeaderName().toLowerCase();
+            if(!HTTP2_EXCLUDED_HEADERS.contains(name)) {
+                headers.add(new AbstractMap.SimpleImmutableEntry<>(name, header.getHeaderValue()));
+            }
+        }
+        int responseCode = response.getResponseCode() == null ? HttpResponseCode.OK : response.getResponseCode();
+
+        if(response instanceof HttpPipelineResponse) {
+            HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) response;
+            boolean chunked = response instanceof ChunkedHttpPipelineResponse;
+            stream.writeHeaders(responseCode, headers, false);
+            pipelineResponse.onStart();
+            try {
+                while (pipelineResponse.read() >= 0) {
+                    byte[] data = pipelineResponse.getMainBuffer().array();
+                    int offset = pipelineResponse.getDataOffset();
+                    int end = pipelineResponse.getMainBuffer().position();
+                    if(chunked && end > offset) {
+                        //Skips the size line and the line separator after the data.
+                        while (data[offset++] != '\n');
+                        end -= 2;
+                    }
+                    if(end > offset) {
+                        stream.writeData(data, offset, end - offset, false);
+                        result += end - offset;
+                    }
+                }
             } finally {
-                if(!connectionKeepAlive) {
-                    disconnect(session, "Http request end.");
-                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection closed by server.");
+                pipelineResponse.onEnd();
+            }
+            stream.writeData(new byte[0], 0, 0, true);
+        } else if(response instanceof HttpFileResponse && response.getResponseCode().equals(HttpResponseCode.OK)) {
+            HttpFileResponse fileResponse = (HttpFileResponse) response;
+            try (FileChannel fileChannel = fileResponse.openChannel()) {
+                long position = fileResponse.getPosition();
+                long remaining = fileResponse.getLength();
+                stream.writeHeaders(responseCode, headers, remaining == 0);
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(remaining, getOutputBufferSize()));
+                while (remaining > 0) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                    int size = fileChannel.read(buffer, position);
+                    if(size < 0) {
+                        throw new EOFException("The file is shorter than the response length");
+                    }
+                    position += size;
+                    remaining -= size;
+                    stream.writeData(buffer.array(), 0, size, remaining == 0);
                 }
             }
+            result = fileResponse.getLength();
+        } else {
+            if(response instanceof HttpFileResponse) {
+                ((HttpFileResponse) response).close();
+            }
+            byte[] body = response.getBody() == null ? new byte[0] : response.getBody();
+            stream.writeHeaders(responseCode, headers, body.length == 0);
+            if(body.length > 0) {
+                stream.writeData(body, 0, body.length, true);
+            }
+            result = body.length;
         }
+        return result;
     }
 
     /**
@@ -336,6 +1036,38 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         }
     }
 
+    /**
+     * Writes the error response for a request that the parser can't decode,
+     * the connection is closed after this response.
+     * @param session Net session.
+     * @param exception Parser exception.
+     */
+    private void rejectRequest(HttpSession session, HttpParserException exception) {
+        HttpResponse response = createRejectionResponse(exception);
+        response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.CLOSE));
+        try {
+            write(session, response, false);
+        } catch (Throwable throwable) {
+            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error on request rejection.", throwable);
+        }
+    }
+
+    /**
+     * Creates the error response for a request that the parser can't decode.
+     * @param exception Parser exception.
+     * @return Http response package.
+     */
+    private HttpResponse createRejectionResponse(HttpParserException exception) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(exception.getResponseCode());
+        byte[] body = exception.getMessage().getBytes();
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.TEXT_PLAIN.toString()));
+        response.setBody(body);
+        response.setProtocol(httpProtocol);
+        return response;
+    }
+
     /**
      * Create default error response.
      * @param throwable Throwable
@@ -377,6 +1109,23 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         return  response;
     }
 
+    /**
+     * This method must create the response package when the admission control rejects
+     * the request, the response must be cheap because the server is overloaded.
+     * @param request Http request.
+     * @return Context overloaded response.
+     */
+    protected HttpResponse onContextOverloaded(HttpRequest request) {
+        HttpResponse response = new HttpResponse();
+        String body = "Context overloaded: " + request.getContext();
+        response.setResponseCode(HttpResponseCode.SERVICE_UNAVAILABLE);
+        response.setBody(body.getBytes());
+        response.addHeader(new HttpHeader(HttpHeader.RETRY_AFTER, Integer.toString(admissionControl.getRetryAfter())));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.TEXT_PLAIN.toString()));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.getBytes().length)));
+        return response;
+    }
+
     /**
      * This method must create the response package when the context result is null.
      * @param request Http request.
@@ -405,6 +1154,23 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         return response;
     }
 
+    /**
+     * Return the number of sessions with some state stored by the server, the state of
+     * each session is removed when the session is disconnected.
+     * @return Number of sessions with state.
+     */
+    final int getSessionsWithState() {
+        Set<NetSession> result = new HashSet<>(requestBuffers.keySet());
+        result.addAll(pipelines.keySet());
+        result.addAll(requestCounters.keySet());
+        result.addAll(idleSessions.keySet());
+        result.addAll(rejectedRequests.keySet());
+        result.addAll(processingSessions);
+        result.addAll(transfers.keySet());
+        result.addAll(http2Connections.keySet());
+        return result.size();
+    }
+
     /**
      * This method is called when the session is closed.
      * @param session Closed session.
@@ -412,7 +1178,26 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     protected final void onDisconnect(HttpSession session, NetPackage netPackage) {
-        requestBuffers.remove(session);
+        HttpRequest request = requestBuffers.remove(session);
+        if(request != null) {
+            request.releaseBody();
+        }
+        Queue<HttpRequest> pipeline = pipelines.remove(session);
+        if(pipeline != null) {
+            releasePipeline(pipeline);
+        }
+        requestCounters.remove(session);
+        idleSessions.remove(session);
+        rejectedRequests.remove(session);
+        PipelineTransfer transfer = transfers.remove(session);
+        if(transfer != null) {
+            transfer.abort();
+        }
+        Http2Connection http2Connection = http2Connections.remove(session);
+        if(http2Connection != null) {
+            http2Connection.close();
+            ((Http2ServerHandler) http2Connection.getHandler()).onWritable();
+        }
     }
 
     /**
@@ -424,11 +1209,43 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     protected final void onWrite(HttpSession session, NetPackage netPackage) {
     }
 
+    /**
+     * When the session is writable again the suspended pipeline response of the session
+     * is resumed over the io thread pool and the http/2 streams waiting for the session
+     * are notified.
+     * @param session Net session.
+     * @param writable True if the session is writable and false in the otherwise.
+     */
+    @Override
+    protected final void onWritabilityChanged(HttpSession session, boolean writable) {
+        if(writable) {
+            Http2Connection http2Connection = http2Connections.get(session);
+            if(http2Connection != null) {
+                ((Http2ServerHandler) http2Connection.getHandler()).onWritable();
+            }
+            PipelineTransfer transfer = transfers.remove(session);
+            if(transfer != null) {
+                try {
+                    getIoExecutor().execute(transfer);
+                } catch (RejectedExecutionException ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Pipeline response aborted, io thread pool exhausted");
+                    transfer.abort();
+                    disconnect(session, "Http pipeline response aborted.");
+                }
+            }
+        }
+    }
+
     /**
      * Only put in the log the moment to server start.
      */
     @Override
     protected void onStart() {
+        if(getKeepAliveTimeout() > 0) {
+            idleTimer = new Timer(true);
+            long period = Math.max(100, getKeepAliveTimeout() / 4);
+            idleTimer.schedule(new IdleConnectionsTask(), period, period);
+        }
         Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server started, listening on port %d", getPort());
     }
 
@@ -437,7 +1254,252 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     protected void onStop() {
+        if(idleTimer != null) {
+            idleTimer.cancel();
+            idleTimer = null;
+        }
+        accessLog.stop();
         Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server stopped.");
     }
 
+    /**
+     * This task closes the keep alive connections without requests since the keep alive timeout.
+     */
+    private class IdleConnectionsTask extends TimerTask {
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            for(Map.Entry<NetSession, Long> entry : idleSessions.entrySet()) {
+                if(now - entry.getValue() > getKeepAliveTimeout() && idleSessions.remove(entry.getKey(), entry.getValue())) {
+                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Keep alive timeout, connection closed by server.");
+                    disconnect((HttpSession) entry.getKey(), "Http keep alive timeout.");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Result of the request processing.
+     */
+    private enum RequestResult {
+
+        KEEP_ALIVE,
+
+        CLOSE,
+
+        SUSPENDED
+
+    }
+
+    /**
+     * Transfer of the body of a pipeline response. The body is read from the pipeline only
+     * while the session is writable, when the output of the session is over the high watermark
+     * the transfer is suspended without block the thread, and it's resumed over the io thread
+     * pool when the output is under the low watermark. The pipeline of the session keeps taken
+     * by the transfer until the end of the response.
+     */
+    private class PipelineTransfer implements Runnable {
+
+        private final HttpSession session;
+        private final HttpRequest request;
+        private final HttpPipelineResponse response;
+        private final long time;
+        private final boolean debug;
+        private boolean connectionKeepAlive;
+        private long responseBytes;
+
+        public PipelineTransfer(HttpSession session, HttpRequest request, HttpPipelineResponse response,
+                                long time, boolean connectionKeepAlive, boolean debug) {
+            this.session = session;
+            this.request = request;
+            this.response = response;
+            this.time = time;
+            this.connectionKeepAlive = connectionKeepAlive;
+            this.debug = debug;
+        }
+
+        /**
+         * Return the result of the ended transfer.
+         * @return Request result.
+         */
+        public RequestResult getResult() {
+            return connectionKeepAlive ? RequestResult.KEEP_ALIVE : RequestResult.CLOSE;
+        }
+
+        /**
+         * Writes the body of the response while the session is writable.
+         * @return Returns true if the transfer ends and false if it was suspended.
+         */
+        public boolean transfer() {
+            boolean result = true;
+            try {
+                int size;
+                while (true) {
+                    if (!session.isWritable()) {
+                        //The transfer is registered before check the session again, then the
+                        //writability change can't be lost.
+                        transfers.put(session, this);
+                        if (!session.isWritable() || !transfers.remove(session, this)) {
+                            result = false;
+                            break;
+                        }
+                    }
+                    if ((size = response.read()) < 0) {
+                        break;
+                    }
+                    write(session, response, false);
+                    responseBytes += size;
+                }
+            } catch (Throwable throwable) {
+                Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
+                connectionKeepAlive = false;
+            }
+
+            if (result) {
+                finish();
+            }
+            return result;
+        }
+
+        /**
+         * Ends the suspended transfer because the session was closed.
+         */
+        public void abort() {
+            connectionKeepAlive = false;
+            finish();
+            request.releaseBody();
+            processingSessions.remove(session);
+        }
+
+        /**
+         * Resumes the transfer and continues with the pipeline of the session.
+         */
+        @Override
+        public void run() {
+            ((ServiceThread) Thread.currentThread()).setSession(session);
+            try {
+                if (transfer()) {
+                    request.releaseBody();
+                    Queue<HttpRequest> pipeline = pipelines.get(session);
+                    if (connectionKeepAlive && pipeline != null) {
+                        if (processPipeline(session, session, pipeline, null, null)) {
+                            processPipeline(session, null, null);
+                        }
+                    } else {
+                        processingSessions.remove(session);
+                        if (pipeline != null) {
+                            releasePipeline(pipeline);
+                        }
+                        disconnect(session, "Http request end.");
+                    }
+                }
+            } finally {
+                ((ServiceThread) Thread.currentThread()).setSession(null);
+            }
+        }
+
+        private void finish() {
+            try {
+                response.onEnd();
+            } catch (Throwable throwable) {
+                Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
+                connectionKeepAlive = false;
+            }
+            if (debug) {
+                Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Response -> [Time: %d ms] \r\n%s",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time), response.toString());
+            }
+            accessLog.record(session, request, response, responseBytes, System.nanoTime() - time);
+        }
+    }
+
+    /**
+     * Handler of the http/2 connection of a session, the frames are written over the session
+     * and each stream is processed into the io thread pool of the server. The data frames are
+     * written from the threads of the streams, then these threads wait while the session is
+     * not writable, the control frames never wait because they are written from the read thread.
+     */
+    private class Http2ServerHandler implements Http2Connection.Handler {
+
+        private final HttpSession session;
+        private final long timeout;
+        private Http2Connection connection;
+
+        public Http2ServerHandler(HttpSession session) {
+            this.session = session;
+            this.timeout = SystemProperties.getLong(SystemProperties.Net.Http.Http2.WINDOW_TIMEOUT);
+        }
+
+        @Override
+        public void write(byte[] frames, boolean waitFor) throws IOException {
+            if(waitFor && !session.isWritable()) {
+                awaitWritable();
+            }
+            writeEncoded(session, frames, false);
+        }
+
+        /**
+         * Waits until the output of the session is under the low watermark or the connection is closed.
+         * @throws IOException If the session is not writable before the timeout.
+         */
+        private synchronized void awaitWritable() throws IOException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while(!session.isWritable() && !connection.isClosed()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) {
+                    throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_17));
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_17), ex);
+                }
+            }
+        }
+
+        /**
+         * Wakes up the threads waiting for the session.
+         */
+        public synchronized void onWritable() {
+            notifyAll();
+        }
+
+        @Override
+        public void onRequest(Http2Stream stream) {
+            try {
+                getIoExecutor().execute(() -> {
+                    ((ServiceThread) Thread.currentThread()).setSession(session);
+                    try {
+                        processStream(session, connection, stream);
+                    } finally {
+                        ((ServiceThread) Thread.currentThread()).setSession(null);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 stream refused, io thread pool exhausted");
+                stream.reset(Http2ErrorCode.REFUSED_STREAM);
+            }
+        }
+
+        @Override
+        public void onClose(Http2ErrorCode errorCode, String message) {
+            disconnect(session, "Http/2 connection error.");
+        }
+    }
+
+    /**
+     * Request decoded by the server, the body consumer of the request is created
+     * by the context that attends the request.
+     */
+    private class ServerRequest extends HttpRequest {
+
+        @Override
+        protected HttpBodyConsumer createBodyConsumer() {
+            Context context = findContext(getContext());
+            return context == null ? null : context.createBodyConsumer(this);
+        }
+    }
 }
@@ -6,5 +6,6 @@ package org.hcjf.io.net.http;
 public interface HttpVersion {
 
     String VERSION_1_1 = "HTTP/1.1";
+    String VERSION_2_0 = "HTTP/2.0";
 
 }
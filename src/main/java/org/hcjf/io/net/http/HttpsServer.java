@@ -1,21 +1,37 @@
 package org.hcjf.io.net.http;
 
 import org.hcjf.errors.Errors;
+import org.hcjf.io.fs.FileSystemWatcherConsumer;
+import org.hcjf.io.fs.FileSystemWatcherService;
+import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
 import javax.net.ssl.*;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.HashSet;
+import java.util.Set;
 import java.security.KeyStore;
 import java.security.Provider;
 import java.security.SecureRandom;
 
 /**
+ * Https server implementation. The ssl context is created only once and shared by all the
+ * connections, when the key store file or the trusted certs file change the context
+ * is reloaded and the new connections use the new context.
+ * The stateless session tickets are a jvm-wide setting of the jdk, they are enabled or disabled
+ * at startup with the property 'hcjf.net.ssl.session.ticket.enabled' unless the jvm property
+ * 'jdk.tls.server.enableSessionTicketExtension' is defined.
  * @author javaito.
  */
 public class HttpsServer extends HttpServer {
 
+    private static final String ALPN_HTTP_2 = "h2";
+    private static final String ALPN_HTTP_1_1 = "http/1.1";
+
     private String keystorePassword;
     private String keyPassword;
     private Path keystoreFilePath;
@@ -23,6 +39,10 @@ public class HttpsServer extends HttpServer {
     private String keyType;
     private Provider provider;
     private String sslProtocol;
+    private int sessionCacheSize;
+    private int sessionTimeout;
+    private volatile SSLContext sslContext;
+    private final Set<Path> watchedPaths;
 
     public HttpsServer() {
         this(SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_SERVER_PORT));
@@ -36,6 +56,9 @@ public class HttpsServer extends HttpServer {
         trustedCertsFilePath = SystemProperties.getPath(SystemProperties.Net.Ssl.DEFAULT_TRUSTED_CERTS_FILE_PATH);
         keyType = SystemProperties.get(SystemProperties.Net.Ssl.DEFAULT_KEY_TYPE);
         sslProtocol = SystemProperties.get(SystemProperties.Net.Ssl.DEFAULT_PROTOCOL);
+        sessionCacheSize = SystemProperties.getInteger(SystemProperties.Net.Ssl.SESSION_CACHE_SIZE);
+        sessionTimeout = SystemProperties.getInteger(SystemProperties.Net.Ssl.SESSION_TIMEOUT);
+        watchedPaths = new HashSet<>();
     }
 
     /**
@@ -45,14 +68,11 @@ public class HttpsServer extends HttpServer {
     @Override
     protected SSLEngine getSSLEngine() {
         try {
-            SSLContext context = SSLContext.getInstance(getSslProtocol());
-            context.init(createKeyManagers(), createTrustManagers(), new SecureRandom());
-
-            SSLSession dummySession = context.createSSLEngine().getSession();
-            dummySession.invalidate();
-
-            SSLEngine engine = context.createSSLEngine();
+            SSLEngine engine = getSSLContext().createSSLEngine();
             engine.setUseClientMode(false);
+            if(isHttp2Enabled()) {
+                setApplicationProtocols(engine);
+            }
             engine.beginHandshake();
             return engine;
         } catch (Exception ex) {
@@ -60,6 +80,93 @@ public class HttpsServer extends HttpServer {
         }
     }
 
+    /**
+     * Announces h2 by alpn, the http/2 connections are detected by the connection preface
+     * then the negotiation only needs to advertise the protocol.
+     * @param engine Ssl engine of the connection.
+     */
+    private void setApplicationProtocols(SSLEngine engine) {
+        try {
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setApplicationProtocols(new String[]{ALPN_HTTP_2, ALPN_HTTP_1_1});
+            engine.setSSLParameters(parameters);
+        } catch (NoSuchMethodError error) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                    "Alpn is not supported by the runtime, h2 is not announced");
+        }
+    }
+
+    /**
+     * Return the ssl context shared by all the connections of the server, the context
+     * is created the first time that this method is called.
+     * @return Ssl context.
+     * @throws Exception Context creation exception.
+     */
+    public final SSLContext getSSLContext() throws Exception {
+        SSLContext result = sslContext;
+        if(result == null) {
+            synchronized (this) {
+                result = sslContext;
+                if(result == null) {
+                    sslContext = result = createSSLContext();
+                    watch(getKeystoreFilePath());
+                    watch(getTrustedCertsFilePath());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new ssl context and replaces the current context, the connections
+     * established with the previous context are not affected. If the creation fail
+     * the current context is kept.
+     */
+    public final void reloadSSLContext() {
+        try {
+            SSLContext context = createSSLContext();
+            synchronized (this) {
+                sslContext = context;
+            }
+            Log.i(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Https ssl context reloaded");
+        } catch (Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to reload the ssl context", ex);
+        }
+    }
+
+    /**
+     * Creates the ssl context using the key store and trusted certs of the server.
+     * @return New ssl context.
+     * @throws Exception Context creation exception.
+     */
+    protected SSLContext createSSLContext() throws Exception {
+        SSLContext context = getProvider() == null ?
+                SSLContext.getInstance(getSslProtocol()) : SSLContext.getInstance(getSslProtocol(), getProvider());
+        context.init(createKeyManagers(), createTrustManagers(), new SecureRandom());
+        SSLSessionContext sessionContext = context.getServerSessionContext();
+        sessionContext.setSessionCacheSize(getSessionCacheSize());
+        sessionContext.setSessionTimeout(getSessionTimeout());
+        return context;
+    }
+
+    /**
+     * Register a watcher over the file in order to reload the ssl context when the file changes.
+     * @param path Path of the file.
+     */
+    private void watch(Path path) {
+        if(path != null && SystemProperties.getBoolean(SystemProperties.Net.Ssl.KEYSTORE_WATCHER_ENABLED) &&
+                watchedPaths.add(path.toAbsolutePath())) {
+            FileSystemWatcherService.getInstance().registerConsumer(new SSLContextWatcher(path));
+        }
+    }
+
+    /**
+     * Removes the current ssl context, the next connection creates a new one.
+     */
+    private synchronized void invalidateSSLContext() {
+        sslContext = null;
+    }
+
     /**
      * Return the key store password.
      * @return Key store password.
@@ -74,6 +181,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setKeystorePassword(String keystorePassword) {
         this.keystorePassword = keystorePassword;
+        invalidateSSLContext();
     }
 
     /**
@@ -90,6 +198,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setKeyPassword(String keyPassword) {
         this.keyPassword = keyPassword;
+        invalidateSSLContext();
     }
 
     /**
@@ -106,6 +215,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setKeystoreFilePath(Path keystoreFilePath) {
         this.keystoreFilePath = keystoreFilePath;
+        invalidateSSLContext();
     }
 
     /**
@@ -122,6 +232,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setTrustedCertsFilePath(Path trustedCertsFilePath) {
         this.trustedCertsFilePath = trustedCertsFilePath;
+        invalidateSSLContext();
     }
 
     /**
@@ -138,6 +249,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setKeyType(String keyType) {
         this.keyType = keyType;
+        invalidateSSLContext();
     }
 
     /**
@@ -154,6 +266,41 @@ public class HttpsServer extends HttpServer {
      */
     public final void setSslProtocol(String sslProtocol) {
         this.sslProtocol = sslProtocol;
+        invalidateSSLContext();
+    }
+
+    /**
+     * Return the max number of sessions stored into the server session cache.
+     * @return Session cache size.
+     */
+    public final int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Set the max number of sessions stored into the server session cache, zero means no limit.
+     * @param sessionCacheSize Session cache size.
+     */
+    public final void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+        invalidateSSLContext();
+    }
+
+    /**
+     * Return the time in seconds that a session could be resumed.
+     * @return Session timeout in seconds.
+     */
+    public final int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Set the time in seconds that a session could be resumed.
+     * @param sessionTimeout Session timeout in seconds.
+     */
+    public final void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        invalidateSSLContext();
     }
 
     /**
@@ -170,6 +317,7 @@ public class HttpsServer extends HttpServer {
      */
     public final void setProvider(Provider provider) {
         this.provider = provider;
+        invalidateSSLContext();
     }
 
     /**
@@ -211,4 +359,34 @@ public class HttpsServer extends HttpServer {
         trustFactory.init(trustStore);
         return trustFactory.getTrustManagers();
     }
+
+    /**
+     * This consumer reloads the ssl context when the watched file is created or updated.
+     */
+    private class SSLContextWatcher extends FileSystemWatcherConsumer {
+
+        public SSLContextWatcher(Path path) {
+            super(path, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        @Override
+        protected void create(WatchEvent<Path> event) {
+            reload();
+        }
+
+        @Override
+        protected void update(WatchEvent<Path> event) {
+            reload();
+        }
+
+        /**
+         * Reloads the context only if the file is still used by the server.
+         */
+        private void reload() {
+            if(sslContext != null && (getPath().equals(getKeystoreFilePath()) ||
+                    getPath().equals(getTrustedCertsFilePath()))) {
+                reloadSSLContext();
+            }
+        }
+    }
 }
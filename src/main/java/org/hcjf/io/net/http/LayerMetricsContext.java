@@ -0,0 +1,76 @@
+package org.hcjf.io.net.http;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.hcjf.encoding.MimeType;
+import org.hcjf.layers.metrics.LatencyHistogram;
+import org.hcjf.layers.metrics.LayerMetrics;
+import org.hcjf.layers.metrics.MethodMetrics;
+
+/**
+ * This context publish the metrics of the layer invocations as json, the latencies are
+ * expressed in nanoseconds. The metrics could be filtered with the parameters 'layer'
+ * (name or simple name of the layer interface) and 'impl' (implementation name).
+ * @author javaito
+ */
+public class LayerMetricsContext extends Context {
+
+    private static final String LAYER_PARAMETER = "layer";
+    private static final String IMPL_PARAMETER = "impl";
+    private static final String METRICS = "metrics";
+    private static final String LAYER_INTERFACE = "layerInterface";
+    private static final String IMPL_NAME = "implName";
+    private static final String METHOD = "method";
+    private static final String INVOCATIONS = "invocations";
+    private static final String ERRORS = "errors";
+    private static final String THROUGHPUT = "throughput";
+    private static final String LATENCY = "latency";
+    private static final String MEAN = "mean";
+    private static final String MAX = "max";
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    public LayerMetricsContext(String name) {
+        super(START_CONTEXT + URI_FOLDER_SEPARATOR + name + END_CONTEXT);
+    }
+
+    @Override
+    public HttpResponse onContext(HttpRequest request) {
+        String layer = request.getParameter(LAYER_PARAMETER);
+        String impl = request.getParameter(IMPL_PARAMETER);
+
+        JsonArray jsonMetrics = new JsonArray();
+        for(MethodMetrics methodMetrics : LayerMetrics.getMetrics(M ->
+                (layer == null || M.getLayerInterface().getName().equals(layer) ||
+                        M.getLayerInterface().getSimpleName().equals(layer)) &&
+                (impl == null || impl.equals(M.getImplName())))) {
+            JsonObject jsonMethodMetrics = new JsonObject();
+            jsonMethodMetrics.addProperty(LAYER_INTERFACE, methodMetrics.getLayerInterface().getName());
+            jsonMethodMetrics.addProperty(IMPL_NAME, methodMetrics.getImplName());
+            jsonMethodMetrics.addProperty(METHOD, methodMetrics.getMethod().toGenericString());
+            jsonMethodMetrics.addProperty(INVOCATIONS, methodMetrics.getInvocationCount());
+            jsonMethodMetrics.addProperty(ERRORS, methodMetrics.getErrorCount());
+            jsonMethodMetrics.addProperty(THROUGHPUT, methodMetrics.getThroughput());
+            LatencyHistogram latency = methodMetrics.getLatency();
+            JsonObject jsonLatency = new JsonObject();
+            jsonLatency.addProperty(MEAN, latency.getMean());
+            jsonLatency.addProperty(MAX, latency.getMax());
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                jsonLatency.addProperty(PERCENTILE_NAMES[i], latency.getValueAtPercentile(PERCENTILES[i]));
+            }
+            jsonMethodMetrics.add(LATENCY, jsonLatency);
+            jsonMetrics.add(jsonMethodMetrics);
+        }
+        JsonObject jsonBody = new JsonObject();
+        jsonBody.add(METRICS, jsonMetrics);
+
+        byte[] body = jsonBody.toString().getBytes();
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.setBody(body);
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+        return response;
+    }
+
+}
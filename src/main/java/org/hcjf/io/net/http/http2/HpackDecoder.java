@@ -0,0 +1,188 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.errors.Errors;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Decoder of the hpack header blocks. The decoder keeps the dynamic table between the
+ * blocks then all the header blocks of the connection must be decoded in the same order
+ * that was received, even the blocks of the refused streams.
+ * @author javaito
+ */
+public class HpackDecoder {
+
+    private final HpackTable table;
+    private int maxTableSize;
+    private int headerListSize;
+
+    /**
+     * Constructor.
+     * @param maxTableSize Max size of the dynamic table announced to the peer.
+     */
+    public HpackDecoder(int maxTableSize) {
+        this.table = new HpackTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * Set the max size of the dynamic table announced to the peer, the peer must
+     * update the table size with a value less or equals than this limit.
+     * @param maxTableSize Max size of the dynamic table.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * Return the size of the header list of the last decoded block, the length of the
+     * names and values plus 32 bytes for each header.
+     * @return Header list size.
+     */
+    public int getHeaderListSize() {
+        return headerListSize;
+    }
+
+    /**
+     * Decodes a complete header block, each header is delivered to the consumer in the
+     * same order than the block.
+     * @param block Buffer with the header block, the position is moved to the limit.
+     * @param consumer Consumer of the headers, the first argument is the name and the second the value.
+     * @throws Http2Exception If the block is not a valid hpack block.
+     */
+    public void decode(ByteBuffer block, BiConsumer<String, String> consumer) {
+        headerListSize = 0;
+        boolean start = true;
+        while(block.hasRemaining()) {
+            int first = block.get(block.position()) & 0xff;
+            if((first & 0x80) != 0) {
+                //Indexed header field.
+                int index = decodeInteger(block, 7);
+                if(index == 0) {
+                    throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_4, index));
+                }
+                emit(table.getName(index), table.getValue(index), consumer);
+            } else if((first & 0x40) != 0) {
+                //Literal header field with incremental indexing.
+                int index = decodeInteger(block, 6);
+                byte[] name = index == 0 ? decodeString(block) : null;
+                String nameString = name == null ? table.getName(index) : new String(name, StandardCharsets.ISO_8859_1);
+                byte[] value = decodeString(block);
+                String valueString = toString(value);
+                table.add(nameString, valueString, nameString.length() + value.length + HpackTable.ENTRY_OVERHEAD);
+                emit(nameString, valueString, consumer);
+            } else if((first & 0x20) != 0) {
+                //Dynamic table size update.
+                if(!start) {
+                    throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_7, first & 0x1f));
+                }
+                int size = decodeInteger(block, 5);
+                if(size > maxTableSize) {
+                    throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_7, size));
+                }
+                table.setMaxSize(size);
+                continue;
+            } else {
+                //Literal header field without indexing or never indexed.
+                int index = decodeInteger(block, 4);
+                String name = index == 0 ?
+                        new String(decodeString(block), StandardCharsets.ISO_8859_1) : table.getName(index);
+                emit(name, toString(decodeString(block)), consumer);
+            }
+            start = false;
+        }
+    }
+
+    /**
+     * Accounts the header and delivers it to the consumer.
+     * @param name Header name.
+     * @param value Header value.
+     * @param consumer Header consumer.
+     */
+    private void emit(String name, String value, BiConsumer<String, String> consumer) {
+        headerListSize += name.length() + value.length() + HpackTable.ENTRY_OVERHEAD;
+        consumer.accept(name, value);
+    }
+
+    /**
+     * Decodes an integer with a prefix of n bits.
+     * @param block Header block.
+     * @param prefix Number of bits of the prefix.
+     * @return Decoded integer.
+     * @throws Http2Exception If the integer is incomplete or overflows.
+     */
+    static int decodeInteger(ByteBuffer block, int prefix) {
+        int mask = (1 << prefix) - 1;
+        int result = block.get() & mask;
+        if(result == mask) {
+            int shift = 0;
+            int value;
+            do {
+                if(!block.hasRemaining() || shift > 28) {
+                    throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_5));
+                }
+                value = block.get() & 0xff;
+                long next = result + ((long) (value & 0x7f) << shift);
+                if(next > Integer.MAX_VALUE) {
+                    throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_5));
+                }
+                result = (int) next;
+                shift += 7;
+            } while((value & 0x80) != 0);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a string literal, plain or huffman encoded.
+     * @param block Header block.
+     * @return Decoded bytes.
+     * @throws Http2Exception If the string exceeds the block.
+     */
+    private static byte[] decodeString(ByteBuffer block) {
+        if(!block.hasRemaining()) {
+            throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_5));
+        }
+        boolean huffman = (block.get(block.position()) & 0x80) != 0;
+        int length = decodeInteger(block, 7);
+        if(length > block.remaining()) {
+            throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_5));
+        }
+        byte[] result;
+        if(huffman) {
+            result = HpackHuffman.decode(block, length);
+        } else {
+            result = new byte[length];
+            block.get(result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the string of the value, if all the bytes are ascii characters then the
+     * value is decoded as iso-8859-1, in the otherwise with the default charset like
+     * the http/1.1 parser.
+     * @param bytes Bytes of the value.
+     * @return Value.
+     */
+    private static String toString(byte[] bytes) {
+        Charset charset = StandardCharsets.ISO_8859_1;
+        for (byte value : bytes) {
+            if(value < 0) {
+                charset = Charset.defaultCharset();
+                break;
+            }
+        }
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,166 @@
+package org.hcjf.io.net.http.http2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Encoder of the hpack header blocks. The headers already stored into the static or the
+ * dynamic table are encoded as a single index, the rest of the headers are added into the
+ * dynamic table except the sensitive headers. The strings are huffman encoded only when the
+ * encoded string is shorter than the plain string.
+ * The encoder keeps the dynamic table between the blocks then all the blocks must be
+ * written in the same order that they was encoded.
+ * @author javaito
+ */
+public class HpackEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final HpackTable table;
+    private final int capacity;
+    private int minTableSize;
+    private boolean tableSizeChanged;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     * @param capacity Max size of the dynamic table used by the encoder, the table is
+     *                 limited by the size announced by the peer too.
+     */
+    public HpackEncoder(int capacity) {
+        this.capacity = capacity;
+        this.table = new HpackTable(Math.min(capacity, Http2Settings.DEFAULT_HEADER_TABLE_SIZE));
+        this.minTableSize = table.getMaxSize();
+    }
+
+    /**
+     * Set the max size of the dynamic table announced by the peer, the size update
+     * is written at the start of the next header block.
+     * @param maxTableSize Max size announced by the peer.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        int size = Math.min(capacity, maxTableSize);
+        if(size != table.getMaxSize()) {
+            minTableSize = Math.min(minTableSize, size);
+            table.setMaxSize(size);
+            tableSizeChanged = true;
+        }
+    }
+
+    /**
+     * Encodes a header block.
+     * @param headers Headers, the key of each entry is the name and the value is the header value.
+     * @return Header block.
+     */
+    public byte[] encode(Iterable<? extends Map.Entry<String, String>> headers) {
+        buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        if(tableSizeChanged) {
+            //If the table was reduced and then increased the peer must see the lowest size.
+            if(minTableSize < table.getMaxSize()) {
+                encodeInteger(0x20, 5, minTableSize);
+            }
+            encodeInteger(0x20, 5, table.getMaxSize());
+            minTableSize = table.getMaxSize();
+            tableSizeChanged = false;
+        }
+        for(Map.Entry<String, String> header : headers) {
+            encode(header.getKey(), header.getValue());
+        }
+        byte[] result = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(result);
+        buffer = null;
+        return result;
+    }
+
+    /**
+     * Encodes one header.
+     * @param name Header name, must be lower case.
+     * @param value Header value.
+     */
+    private void encode(String name, String value) {
+        int index = table.find(name, value);
+        if(index > 0) {
+            encodeInteger(0x80, 7, index);
+        } else {
+            byte[] nameBytes = index == 0 ? name.getBytes(StandardCharsets.ISO_8859_1) : null;
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            int entrySize = name.length() + valueBytes.length + HpackTable.ENTRY_OVERHEAD;
+            if(isSensitive(name)) {
+                encodeInteger(0x10, 4, -index);
+            } else if(entrySize > table.getMaxSize() / 2) {
+                encodeInteger(0x00, 4, -index);
+            } else {
+                encodeInteger(0x40, 6, -index);
+                table.add(name, value, entrySize);
+            }
+            if(nameBytes != null) {
+                encodeString(nameBytes);
+            }
+            encodeString(valueBytes);
+        }
+    }
+
+    /**
+     * The credentials are never indexed, then the intermediaries can't index them either.
+     * @param name Header name.
+     * @return Returns true if the header must not be indexed.
+     */
+    private static boolean isSensitive(String name) {
+        return name.equals("authorization") || name.equals("proxy-authorization") ||
+                name.equals("cookie") || name.equals("set-cookie");
+    }
+
+    /**
+     * Encodes an integer with a prefix of n bits.
+     * @param mask Bits of the first byte before the prefix.
+     * @param prefix Number of bits of the prefix.
+     * @param value Value to encode.
+     */
+    private void encodeInteger(int mask, int prefix, int value) {
+        ensure(6);
+        int max = (1 << prefix) - 1;
+        if(value < max) {
+            buffer.put((byte) (mask | value));
+        } else {
+            buffer.put((byte) (mask | max));
+            value -= max;
+            while(value >= 0x80) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * Encodes a string literal.
+     * @param bytes String bytes.
+     */
+    private void encodeString(byte[] bytes) {
+        int huffmanLength = HpackHuffman.encodedLength(bytes);
+        if(huffmanLength < bytes.length) {
+            encodeInteger(0x80, 7, huffmanLength);
+            ensure(huffmanLength);
+            HpackHuffman.encode(bytes, buffer);
+        } else {
+            encodeInteger(0x00, 7, bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Grows the buffer if there are not enough space for the next bytes.
+     * @param length Number of bytes.
+     */
+    private void ensure(int length) {
+        if(buffer.remaining() < length) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.errors.Errors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index space of hpack, the static table (RFC 7541, appendix A) followed by the
+ * dynamic table. The dynamic table is a circular array where the newest entry has
+ * the lowest index, the oldest entries are evicted when the size of the table
+ * exceeds the max size.
+ * @author javaito
+ */
+final class HpackTable {
+
+    static final int ENTRY_OVERHEAD = 32;
+
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+    static final int STATIC_TABLE_LENGTH = STATIC_TABLE.length;
+
+    //Index of the first entry of each name into the static table.
+    private static final Map<String, Integer> STATIC_NAMES;
+
+    static {
+        STATIC_NAMES = new HashMap<>();
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAMES.put(STATIC_TABLE[i][0], i + 1);
+        }
+    }
+
+    private String[] names;
+    private String[] values;
+    private int[] sizes;
+    private int head;
+    private int length;
+    private int size;
+    private int maxSize;
+
+    HpackTable(int maxSize) {
+        this.names = new String[16];
+        this.values = new String[16];
+        this.sizes = new int[16];
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the name of the entry.
+     * @param index Index of the entry, starting at one.
+     * @return Name of the entry.
+     * @throws Http2Exception If the index is out of range.
+     */
+    String getName(int index) {
+        String result;
+        if(index > 0 && index <= STATIC_TABLE_LENGTH) {
+            result = STATIC_TABLE[index - 1][0];
+        } else {
+            result = names[dynamicIndex(index)];
+        }
+        return result;
+    }
+
+    /**
+     * Return the value of the entry.
+     * @param index Index of the entry, starting at one.
+     * @return Value of the entry.
+     * @throws Http2Exception If the index is out of range.
+     */
+    String getValue(int index) {
+        String result;
+        if(index > 0 && index <= STATIC_TABLE_LENGTH) {
+            result = STATIC_TABLE[index - 1][1];
+        } else {
+            result = values[dynamicIndex(index)];
+        }
+        return result;
+    }
+
+    /**
+     * Search the index of the entry with the name and the value, if there are not
+     * any entry with the value then returns the negative index of the first
+     * entry with the name.
+     * @param name Header name.
+     * @param value Header value.
+     * @return Index of the entry with the name and the value, the negative index of the
+     * entry with the name or zero if the name is not into the table.
+     */
+    int find(String name, String value) {
+        int result = 0;
+        Integer staticIndex = STATIC_NAMES.get(name);
+        if(staticIndex != null) {
+            result = -staticIndex;
+            for (int i = staticIndex - 1; i < STATIC_TABLE_LENGTH && STATIC_TABLE[i][0].equals(name); i++) {
+                if(STATIC_TABLE[i][1].equals(value)) {
+                    return i + 1;
+                }
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            int position = (head - 1 - i + names.length) % names.length;
+            if(names[position].equals(name)) {
+                if(values[position].equals(value)) {
+                    return STATIC_TABLE_LENGTH + 1 + i;
+                } else if(result == 0) {
+                    result = -(STATIC_TABLE_LENGTH + 1 + i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a new entry as the first entry of the dynamic table, if the entry is larger than
+     * the max size then the table is cleared.
+     * @param name Header name.
+     * @param value Header value.
+     * @param entrySize Size of the entry, the length in bytes of the name and the value plus 32.
+     */
+    void add(String name, String value, int entrySize) {
+        evict(maxSize - entrySize);
+        if(entrySize <= maxSize) {
+            if(length == names.length) {
+                grow();
+            }
+            names[head] = name;
+            values[head] = value;
+            sizes[head] = entrySize;
+            head = (head + 1) % names.length;
+            length++;
+            size += entrySize;
+        }
+    }
+
+    /**
+     * Return the max size of the dynamic table.
+     * @return Max size.
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set the max size of the dynamic table evicting the entries that exceed the new size.
+     * @param maxSize Max size.
+     */
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    /**
+     * Return the current size of the dynamic table.
+     * @return Size.
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Return the number of entries of the dynamic table.
+     * @return Number of entries.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Removes the oldest entries until the size of the table is less or equals than the limit.
+     * @param limit Size limit.
+     */
+    private void evict(int limit) {
+        while(length > 0 && size > limit) {
+            int tail = (head - length + names.length) % names.length;
+            size -= sizes[tail];
+            names[tail] = null;
+            values[tail] = null;
+            length--;
+        }
+    }
+
+    /**
+     * Duplicates the capacity of the circular array keeping the order of the entries.
+     */
+    private void grow() {
+        int capacity = names.length * 2;
+        String[] newNames = new String[capacity];
+        String[] newValues = new String[capacity];
+        int[] newSizes = new int[capacity];
+        for (int i = 0; i < length; i++) {
+            int position = (head - length + i + names.length) % names.length;
+            newNames[i] = names[position];
+            newValues[i] = values[position];
+            newSizes[i] = sizes[position];
+        }
+        names = newNames;
+        values = newValues;
+        sizes = newSizes;
+        head = length;
+    }
+
+    /**
+     * Return the position into the circular array of the dynamic entry.
+     * @param index Index of the entry.
+     * @return Position of the entry.
+     * @throws Http2Exception If the index is out of range.
+     */
+    private int dynamicIndex(int index) {
+        int dynamic = index - STATIC_TABLE_LENGTH - 1;
+        if(dynamic < 0 || dynamic >= length) {
+            throw new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_4, index));
+        }
+        return (head - 1 - dynamic + names.length) % names.length;
+    }
+}
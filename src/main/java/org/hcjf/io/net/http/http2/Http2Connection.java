@@ -0,0 +1,794 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.errors.Errors;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server side of a http/2 connection (RFC 7540). The connection consumes the bytes received
+ * from the client, starting with the connection preface, and keeps the state of the streams,
+ * the hpack tables and the flow control windows. Each stream is delivered to the handler
+ * when the request is complete and the response is written using the methods of the stream.
+ * The received bytes must be consumed by one thread at the time, the responses can be
+ * written from any thread. The request bodies are buffered until the end of the stream, then
+ * each body is limited by the max body size and the window of the stream is only replenished
+ * while the buffered body is under the limit.
+ * @author javaito
+ */
+public class Http2Connection {
+
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final String STATUS = ":status";
+
+    private final Handler handler;
+    private final Http2Settings localSettings;
+    private final Http2Settings remoteSettings;
+    private final HpackDecoder decoder;
+    private final HpackEncoder encoder;
+    private final Map<Integer, Http2Stream> streams;
+    private final long windowTimeout;
+    private final int maxBodySize;
+    private final byte[] frameHeader;
+    private int prefaceIndex;
+    private int frameHeaderIndex;
+    private int frameLength;
+    private int frameType;
+    private int frameFlags;
+    private int frameStreamId;
+    private ByteBuffer framePayload;
+    private int lastStreamId;
+    private int continuationStreamId;
+    private boolean continuationEndStream;
+    private ByteArrayOutputStream headerBlock;
+    private long sendWindow;
+    private long receiveWindow;
+    private volatile boolean closed;
+
+    /**
+     * Constructor, the request bodies are limited by the max body size of the system properties.
+     * @param handler Handler of the connection.
+     * @param localSettings Settings announced to the client.
+     * @param windowTimeout Max time in milliseconds that a write operation waits for the
+     *                      flow control windows.
+     */
+    public Http2Connection(Handler handler, Http2Settings localSettings, long windowTimeout) {
+        this(handler, localSettings, windowTimeout,
+                SystemProperties.getInteger(SystemProperties.Net.Http.Http2.MAX_BODY_SIZE));
+    }
+
+    /**
+     * Constructor.
+     * @param handler Handler of the connection.
+     * @param localSettings Settings announced to the client.
+     * @param windowTimeout Max time in milliseconds that a write operation waits for the
+     *                      flow control windows.
+     * @param maxBodySize Max number of bytes of the request body of each stream.
+     */
+    public Http2Connection(Handler handler, Http2Settings localSettings, long windowTimeout, int maxBodySize) {
+        this.handler = handler;
+        this.localSettings = localSettings;
+        this.remoteSettings = new Http2Settings();
+        this.decoder = new HpackDecoder(localSettings.getHeaderTableSize());
+        this.encoder = new HpackEncoder(localSettings.getHeaderTableSize());
+        this.streams = new ConcurrentHashMap<>();
+        this.windowTimeout = windowTimeout;
+        this.maxBodySize = maxBodySize;
+        this.frameHeader = new byte[Http2Frame.HEADER_LENGTH];
+        this.sendWindow = Http2Settings.DEFAULT_WINDOW_SIZE;
+        this.receiveWindow = Math.max(Http2Settings.DEFAULT_WINDOW_SIZE, localSettings.getInitialWindowSize());
+    }
+
+    /**
+     * Return the handler of the connection.
+     * @return Connection handler.
+     */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Return the settings announced to the client.
+     * @return Local settings.
+     */
+    public Http2Settings getLocalSettings() {
+        return localSettings;
+    }
+
+    /**
+     * Return the settings announced by the client.
+     * @return Remote settings.
+     */
+    public Http2Settings getRemoteSettings() {
+        return remoteSettings;
+    }
+
+    /**
+     * Return the number of open streams.
+     * @return Number of streams.
+     */
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * Verify if the connection is closed.
+     * @return Returns true if the connection is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Consumes the bytes received from the client, the frames can be split at any byte.
+     * If the client violates the protocol the connection sends a GOAWAY frame and the
+     * handler is notified to close the connection.
+     * @param data Buffer with the received bytes, all the bytes are consumed.
+     */
+    public void onData(ByteBuffer data) {
+        try {
+            while (data.hasRemaining() && !closed) {
+                if (prefaceIndex < Http2Frame.CONNECTION_PREFACE.length) {
+                    if (data.get() != Http2Frame.CONNECTION_PREFACE[prefaceIndex++]) {
+                        throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR,
+                                Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_1));
+                    }
+                    if (prefaceIndex == Http2Frame.CONNECTION_PREFACE.length) {
+                        writeSettings();
+                    }
+                } else if (frameHeaderIndex < Http2Frame.HEADER_LENGTH) {
+                    int length = Math.min(data.remaining(), Http2Frame.HEADER_LENGTH - frameHeaderIndex);
+                    data.get(frameHeader, frameHeaderIndex, length);
+                    frameHeaderIndex += length;
+                    if (frameHeaderIndex == Http2Frame.HEADER_LENGTH) {
+                        startFrame(data);
+                    }
+                } else {
+                    int length = Math.min(data.remaining(), framePayload.remaining());
+                    ByteBuffer fragment = data.slice();
+                    fragment.limit(length);
+                    framePayload.put(fragment);
+                    data.position(data.position() + length);
+                    if (!framePayload.hasRemaining()) {
+                        framePayload.flip();
+                        endFrame();
+                    }
+                }
+            }
+        } catch (Http2Exception ex) {
+            goAway(ex.getErrorCode(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Parses the header of the frame, if all the payload is into the buffer then the frame
+     * is processed in place, in the otherwise the payload is accumulated.
+     * @param data Received data.
+     */
+    private void startFrame(ByteBuffer data) {
+        ByteBuffer header = ByteBuffer.wrap(frameHeader);
+        frameLength = ((header.get() & 0xff) << 16) | ((header.get() & 0xff) << 8) | (header.get() & 0xff);
+        frameType = header.get() & 0xff;
+        frameFlags = header.get() & 0xff;
+        frameStreamId = header.getInt() & Integer.MAX_VALUE;
+        if (frameLength > localSettings.getMaxFrameSize()) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, frameType, frameLength));
+        }
+        if (data.remaining() >= frameLength) {
+            framePayload = data.slice();
+            framePayload.limit(frameLength);
+            data.position(data.position() + frameLength);
+            endFrame();
+        } else {
+            framePayload = ByteBuffer.allocate(frameLength);
+        }
+    }
+
+    /**
+     * Processes the frame and resets the parser state for the next frame.
+     */
+    private void endFrame() {
+        ByteBuffer payload = framePayload;
+        framePayload = null;
+        frameHeaderIndex = 0;
+        try {
+            onFrame(frameType, frameFlags, frameStreamId, payload);
+        } catch (Http2Exception ex) {
+            if (ex.isConnectionError()) {
+                throw ex;
+            }
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 stream error: %s", ex.getMessage());
+            resetStream(ex.getStreamId(), ex.getErrorCode());
+        }
+    }
+
+    /**
+     * Processes a complete frame.
+     * @param type Frame type.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @param payload Frame payload.
+     */
+    private void onFrame(int type, int flags, int streamId, ByteBuffer payload) {
+        if (continuationStreamId != 0 && (type != Http2Frame.CONTINUATION || streamId != continuationStreamId)) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_9, continuationStreamId, type));
+        }
+        switch (type) {
+            case Http2Frame.DATA: {
+                onDataFrame(flags, checkStreamId(type, streamId), payload);
+                break;
+            }
+            case Http2Frame.HEADERS: {
+                onHeadersFrame(flags, checkStreamId(type, streamId), payload);
+                break;
+            }
+            case Http2Frame.PRIORITY: {
+                checkStreamId(type, streamId);
+                checkLength(type, payload, 5);
+                break;
+            }
+            case Http2Frame.RST_STREAM: {
+                checkLength(type, payload, Integer.BYTES);
+                Http2Stream stream = streams.remove(checkStreamId(type, streamId));
+                if (stream != null) {
+                    stream.setReset();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                } else if (streamId > lastStreamId) {
+                    throw invalidStreamId(type, streamId);
+                }
+                break;
+            }
+            case Http2Frame.SETTINGS: {
+                onSettingsFrame(flags, streamId, payload);
+                break;
+            }
+            case Http2Frame.PING: {
+                if (streamId != 0) {
+                    throw invalidStreamId(type, streamId);
+                }
+                checkLength(type, payload, Long.BYTES);
+                if ((flags & Http2Frame.FLAG_ACK) == 0) {
+                    byte[] data = new byte[Long.BYTES];
+                    payload.get(data);
+                    write(Http2Frame.create(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, data, 0, data.length));
+                }
+                break;
+            }
+            case Http2Frame.GOAWAY: {
+                if (streamId != 0) {
+                    throw invalidStreamId(type, streamId);
+                }
+                if (payload.remaining() >= 2 * Integer.BYTES) {
+                    payload.getInt();
+                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 GOAWAY received: %s",
+                            Http2ErrorCode.valueOf(payload.getInt()));
+                }
+                break;
+            }
+            case Http2Frame.WINDOW_UPDATE: {
+                onWindowUpdateFrame(streamId, payload);
+                break;
+            }
+            case Http2Frame.CONTINUATION: {
+                if (continuationStreamId == 0) {
+                    throw invalidStreamId(type, streamId);
+                }
+                addHeaderFragment(payload);
+                if ((flags & Http2Frame.FLAG_END_HEADERS) != 0) {
+                    ByteBuffer block = ByteBuffer.wrap(headerBlock.toByteArray());
+                    int id = continuationStreamId;
+                    continuationStreamId = 0;
+                    headerBlock = null;
+                    onHeaderBlock(id, block, continuationEndStream);
+                }
+                break;
+            }
+            default: {
+                //The unknown frames are ignored, even PUSH_PROMISE because the client can't push.
+                if (type == Http2Frame.PUSH_PROMISE) {
+                    throw invalidStreamId(type, streamId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates the data into the request body and replenishes the flow control windows.
+     * The window of the connection is replenished when the data is stored or discarded, the
+     * window of the stream is replenished only while the body is under the max body size,
+     * and the stream is cancelled if the client sends more data than the max body size.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @param payload Frame payload.
+     */
+    private void onDataFrame(int flags, int streamId, ByteBuffer payload) {
+        int length = payload.remaining();
+        if (length > receiveWindow) {
+            throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_8, 0));
+        }
+        if (length > 0) {
+            write(Http2Frame.createInt(Http2Frame.WINDOW_UPDATE, 0, length));
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.isRemoteClosed()) {
+            if (streamId > lastStreamId) {
+                throw invalidStreamId(Http2Frame.DATA, streamId);
+            }
+            throw new Http2Exception(Http2ErrorCode.STREAM_CLOSED, streamId,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_11, streamId));
+        }
+        if (length > stream.getReceiveWindow()) {
+            throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, streamId,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_8, streamId));
+        }
+        stream.setReceiveWindow(stream.getReceiveWindow() - length);
+        int padding = removePadding(flags, payload);
+        payload.limit(payload.limit() - padding);
+        if (stream.getBodySize() + payload.remaining() > maxBodySize) {
+            throw new Http2Exception(Http2ErrorCode.CANCEL, streamId,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_16, streamId, maxBodySize));
+        }
+        stream.addData(payload);
+        if ((flags & Http2Frame.FLAG_END_STREAM) != 0) {
+            onRequest(stream);
+        } else if (length > 0 && stream.getBodySize() < maxBodySize) {
+            stream.setReceiveWindow(stream.getReceiveWindow() + length);
+            write(Http2Frame.createInt(Http2Frame.WINDOW_UPDATE, streamId, length));
+        }
+    }
+
+    /**
+     * Starts the header block of a new stream or the trailers of an open stream.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @param payload Frame payload.
+     */
+    private void onHeadersFrame(int flags, int streamId, ByteBuffer payload) {
+        if (streamId % 2 == 0) {
+            throw invalidStreamId(Http2Frame.HEADERS, streamId);
+        }
+        int padding = removePadding(flags, payload);
+        if ((flags & Http2Frame.FLAG_PRIORITY) != 0) {
+            if (payload.remaining() - padding < 5) {
+                throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, Http2Frame.HEADERS, payload.remaining()));
+            }
+            payload.position(payload.position() + 5);
+        }
+        payload.limit(payload.limit() - padding);
+        boolean endStream = (flags & Http2Frame.FLAG_END_STREAM) != 0;
+        if ((flags & Http2Frame.FLAG_END_HEADERS) != 0) {
+            onHeaderBlock(streamId, payload, endStream);
+        } else {
+            continuationStreamId = streamId;
+            continuationEndStream = endStream;
+            headerBlock = new ByteArrayOutputStream();
+            addHeaderFragment(payload);
+        }
+    }
+
+    /**
+     * Accumulates a fragment of the header block, the block is limited by the max header list
+     * size because the decoded list can't be smaller than the block. The block can't be discarded
+     * without desynchronize the hpack table, then the limit is a connection error.
+     * @param payload Fragment of the header block.
+     */
+    private void addHeaderFragment(ByteBuffer payload) {
+        int maxHeaderListSize = localSettings.getMaxHeaderListSize();
+        if (headerBlock.size() + payload.remaining() > maxHeaderListSize) {
+            throw new Http2Exception(Http2ErrorCode.ENHANCE_YOUR_CALM,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_15, maxHeaderListSize));
+        }
+        copy(payload, headerBlock);
+    }
+
+    /**
+     * Decodes a complete header block. The block is decoded even if the stream is refused
+     * in order to keep the hpack table synchronized with the client.
+     * @param streamId Stream id.
+     * @param block Header block.
+     * @param endStream If the client closed the stream.
+     */
+    private void onHeaderBlock(int streamId, ByteBuffer block, boolean endStream) {
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId <= lastStreamId) {
+                throw new Http2Exception(Http2ErrorCode.STREAM_CLOSED,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_11, streamId));
+            }
+            lastStreamId = streamId;
+            Http2Stream newStream;
+            synchronized (this) {
+                newStream = new Http2Stream(this, streamId, remoteSettings.getInitialWindowSize(),
+                        localSettings.getInitialWindowSize());
+            }
+            boolean[] valid = {true};
+            decoder.decode(block, (name, value) -> valid[0] &= newStream.addHeader(name, value));
+            if (streams.size() >= localSettings.getMaxConcurrentStreams()) {
+                throw new Http2Exception(Http2ErrorCode.REFUSED_STREAM, streamId,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_14, localSettings.getMaxConcurrentStreams()));
+            }
+            if (!valid[0] || newStream.getMethod() == null || newStream.getPath() == null || newStream.getScheme() == null) {
+                throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, streamId,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_10, streamId, "invalid pseudo-headers"));
+            }
+            streams.put(streamId, newStream);
+            if (endStream) {
+                onRequest(newStream);
+            }
+        } else {
+            //Trailers of the request.
+            boolean[] valid = {true};
+            decoder.decode(block, (name, value) -> valid[0] &= !name.startsWith(":") && stream.addHeader(name, value));
+            if (stream.isRemoteClosed()) {
+                throw new Http2Exception(Http2ErrorCode.STREAM_CLOSED, streamId,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_11, streamId));
+            }
+            if (!endStream || !valid[0]) {
+                throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, streamId,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_10, streamId, "invalid trailers"));
+            }
+            onRequest(stream);
+        }
+    }
+
+    /**
+     * Applies the settings of the client and writes the acknowledgement.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @param payload Frame payload.
+     */
+    private void onSettingsFrame(int flags, int streamId, ByteBuffer payload) {
+        if (streamId != 0) {
+            throw invalidStreamId(Http2Frame.SETTINGS, streamId);
+        }
+        if ((flags & Http2Frame.FLAG_ACK) != 0) {
+            checkLength(Http2Frame.SETTINGS, payload, 0);
+        } else {
+            synchronized (this) {
+                int initialWindowSize = remoteSettings.getInitialWindowSize();
+                remoteSettings.decode(payload);
+                long delta = (long) remoteSettings.getInitialWindowSize() - initialWindowSize;
+                if (delta != 0) {
+                    for (Http2Stream stream : streams.values()) {
+                        long window = stream.getSendWindow() + delta;
+                        if (window > MAX_WINDOW_SIZE) {
+                            throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR,
+                                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_8, stream.getId()));
+                        }
+                        stream.setSendWindow(window);
+                    }
+                    notifyAll();
+                }
+            }
+            synchronized (encoder) {
+                encoder.setMaxTableSize(remoteSettings.getHeaderTableSize());
+            }
+            write(Http2Frame.create(Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0));
+        }
+    }
+
+    /**
+     * Increments the send window of the connection or the stream.
+     * @param streamId Stream id.
+     * @param payload Frame payload.
+     */
+    private void onWindowUpdateFrame(int streamId, ByteBuffer payload) {
+        checkLength(Http2Frame.WINDOW_UPDATE, payload, Integer.BYTES);
+        int increment = payload.getInt() & Integer.MAX_VALUE;
+        if (increment == 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, streamId,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_10, streamId, "zero window increment"));
+        }
+        synchronized (this) {
+            if (streamId == 0) {
+                if (sendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR,
+                            Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_8, streamId));
+                }
+                sendWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream != null) {
+                    if (stream.getSendWindow() + increment > MAX_WINDOW_SIZE) {
+                        throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, streamId,
+                                Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_8, streamId));
+                    }
+                    stream.setSendWindow(stream.getSendWindow() + increment);
+                } else if (streamId > lastStreamId) {
+                    throw invalidStreamId(Http2Frame.WINDOW_UPDATE, streamId);
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the remote side of the stream and delivers the request to the handler.
+     * @param stream Stream with the complete request.
+     */
+    private void onRequest(Http2Stream stream) {
+        stream.setRemoteClosed();
+        handler.onRequest(stream);
+    }
+
+    /**
+     * Writes the header block of a response, the block is split into a HEADERS frame and
+     * CONTINUATION frames if it's larger than the max frame size of the client.
+     * @param stream Response stream.
+     * @param status Response status.
+     * @param headers Response headers.
+     * @param endStream If the response doesn't have body.
+     * @throws IOException If the stream or the connection are closed.
+     */
+    void writeHeaders(Http2Stream stream, int status, Iterable<? extends Map.Entry<String, String>> headers, boolean endStream) throws IOException {
+        List<Map.Entry<String, String>> block = new ArrayList<>();
+        block.add(new AbstractMap.SimpleImmutableEntry<>(STATUS, Integer.toString(status)));
+        for (Map.Entry<String, String> header : headers) {
+            block.add(header);
+        }
+        //The hpack state must be updated in the same order that the blocks are written.
+        synchronized (encoder) {
+            checkWritable(stream);
+            byte[] encoded = encoder.encode(block);
+            int maxFrameSize = remoteSettings.getMaxFrameSize();
+            int frames = Math.max(1, (encoded.length + maxFrameSize - 1) / maxFrameSize);
+            ByteBuffer buffer = ByteBuffer.allocate(frames * Http2Frame.HEADER_LENGTH + encoded.length);
+            int offset = 0;
+            do {
+                int length = Math.min(maxFrameSize, encoded.length - offset);
+                boolean last = offset + length == encoded.length;
+                int flags = (last ? Http2Frame.FLAG_END_HEADERS : 0) |
+                        (offset == 0 && endStream ? Http2Frame.FLAG_END_STREAM : 0);
+                Http2Frame.putHeader(buffer, length, offset == 0 ? Http2Frame.HEADERS : Http2Frame.CONTINUATION,
+                        flags, stream.getId());
+                buffer.put(encoded, offset, length);
+                offset += length;
+            } while (offset < encoded.length);
+            handler.write(buffer.array(), false);
+        }
+        if (endStream) {
+            closeLocal(stream);
+        }
+    }
+
+    /**
+     * Writes a fragment of the response body as DATA frames, each frame waits until the
+     * flow control windows of the connection and the stream allow to send it.
+     * @param stream Response stream.
+     * @param data Array that contains the fragment.
+     * @param offset Offset of the fragment.
+     * @param length Length of the fragment.
+     * @param endStream If the fragment is the last fragment of the body.
+     * @throws IOException If the stream or the connection are closed or if the windows are
+     * not updated before the timeout.
+     */
+    void writeData(Http2Stream stream, byte[] data, int offset, int length, boolean endStream) throws IOException {
+        do {
+            int size = acquireWindow(stream, Math.min(length, remoteSettings.getMaxFrameSize()));
+            boolean last = size == length;
+            handler.write(Http2Frame.create(Http2Frame.DATA, last && endStream ? Http2Frame.FLAG_END_STREAM : 0,
+                    stream.getId(), data, offset, size), true);
+            offset += size;
+            length -= size;
+        } while (length > 0);
+        if (endStream) {
+            closeLocal(stream);
+        }
+    }
+
+    /**
+     * Waits until the windows of the connection and the stream are open and reserves
+     * the bytes of the next frame.
+     * @param stream Response stream.
+     * @param size Size of the frame.
+     * @return Number of bytes reserved.
+     * @throws IOException If the stream or the connection are closed or the timeout is reached.
+     */
+    private synchronized int acquireWindow(Http2Stream stream, int size) throws IOException {
+        long deadline = System.currentTimeMillis() + windowTimeout;
+        checkWritable(stream);
+        while (size > 0 && (sendWindow <= 0 || stream.getSendWindow() <= 0)) {
+            long timeout = deadline - System.currentTimeMillis();
+            if (timeout <= 0) {
+                throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_12, stream.getId()));
+            }
+            try {
+                wait(timeout);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_12, stream.getId()), ex);
+            }
+            checkWritable(stream);
+        }
+        int result = (int) Math.min(size, Math.min(sendWindow, stream.getSendWindow()));
+        sendWindow -= result;
+        stream.setSendWindow(stream.getSendWindow() - result);
+        return result;
+    }
+
+    /**
+     * Closes the local side of the stream, the stream is removed because the
+     * remote side was closed before the request was delivered.
+     * @param stream Response stream.
+     */
+    private void closeLocal(Http2Stream stream) {
+        stream.setLocalClosed();
+        streams.remove(stream.getId(), stream);
+    }
+
+    /**
+     * Resets the stream and writes the RST_STREAM frame.
+     * @param streamId Stream id.
+     * @param errorCode Reason of the reset.
+     */
+    void resetStream(int streamId, Http2ErrorCode errorCode) {
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            stream.setReset();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        write(Http2Frame.createInt(Http2Frame.RST_STREAM, streamId, errorCode.getCode()));
+    }
+
+    /**
+     * Sends the GOAWAY frame and closes the connection.
+     * @param errorCode Reason of the close.
+     * @param message Description of the error.
+     */
+    private void goAway(Http2ErrorCode errorCode, String message) {
+        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http/2 connection error %s: %s", errorCode, message);
+        write(Http2Frame.createGoAway(lastStreamId, errorCode));
+        close();
+        handler.onClose(errorCode, message);
+    }
+
+    /**
+     * Closes the connection, the pending write operations of the streams fail.
+     */
+    public void close() {
+        closed = true;
+        for (Http2Stream stream : streams.values()) {
+            stream.setReset();
+        }
+        streams.clear();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes the server preface, a SETTINGS frame with the local settings. If the
+     * initial window is larger than the default window then the connection window
+     * is incremented too because the settings affect only to the stream windows.
+     */
+    private void writeSettings() {
+        byte[] settings = localSettings.encode();
+        write(Http2Frame.create(Http2Frame.SETTINGS, 0, 0, settings, 0, settings.length));
+        int increment = localSettings.getInitialWindowSize() - Http2Settings.DEFAULT_WINDOW_SIZE;
+        if (increment > 0) {
+            write(Http2Frame.createInt(Http2Frame.WINDOW_UPDATE, 0, increment));
+        }
+    }
+
+    /**
+     * Writes a control frame without waiting for the output queue of the connection.
+     * @param frame Encoded frame.
+     */
+    private void write(byte[] frame) {
+        if (!closed) {
+            try {
+                handler.write(frame, false);
+            } catch (IOException ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to write http/2 frame", ex);
+            }
+        }
+    }
+
+    private void checkWritable(Http2Stream stream) throws IOException {
+        if (closed || stream.isReset() || stream.isLocalClosed()) {
+            throw new IOException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_11, stream.getId()));
+        }
+    }
+
+    private static int checkStreamId(int type, int streamId) {
+        if (streamId == 0) {
+            throw invalidStreamId(type, streamId);
+        }
+        return streamId;
+    }
+
+    private static void checkLength(int type, ByteBuffer payload, int length) {
+        if (payload.remaining() != length) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, type, payload.remaining()));
+        }
+    }
+
+    /**
+     * Reads the padding length of the padded frames.
+     * @param flags Frame flags.
+     * @param payload Frame payload, the position is moved after the padding length.
+     * @return Number of padding bytes at the end of the payload.
+     */
+    private static int removePadding(int flags, ByteBuffer payload) {
+        int padding = 0;
+        if ((flags & Http2Frame.FLAG_PADDED) != 0) {
+            if (!payload.hasRemaining()) {
+                throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, -1, 0));
+            }
+            padding = payload.get() & 0xff;
+            if (padding > payload.remaining()) {
+                throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR,
+                        Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, -1, padding));
+            }
+        }
+        return padding;
+    }
+
+    /**
+     * Copies the remaining bytes of the buffer, the payload could be a slice of a direct buffer.
+     * @param source Source buffer.
+     * @param destination Destination stream.
+     */
+    static void copy(ByteBuffer source, ByteArrayOutputStream destination) {
+        if (source.hasArray()) {
+            destination.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        } else {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            destination.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static Http2Exception invalidStreamId(int type, int streamId) {
+        return new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR,
+                Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_3, streamId, type));
+    }
+
+    /**
+     * Handler of the connection events, implemented by the transport.
+     */
+    public interface Handler {
+
+        /**
+         * Writes encoded frames over the connection, the frames must be written in the
+         * same order that this method is called.
+         * @param frames Encoded frames.
+         * @param waitFor If the operation can wait while the output of the connection is full.
+         * @throws IOException If the connection is closed.
+         */
+        void write(byte[] frames, boolean waitFor) throws IOException;
+
+        /**
+         * This method is called when the request of a stream is complete, the stream
+         * must be processed out of the thread that consumes the connection data because the
+         * write operations wait for the window updates sent by the client.
+         * @param stream Stream with the complete request.
+         */
+        void onRequest(Http2Stream stream);
+
+        /**
+         * This method is called when the connection is closed by a protocol error.
+         * @param errorCode Error code sent to the client.
+         * @param message Error description.
+         */
+        void onClose(Http2ErrorCode errorCode, String message);
+    }
+}
@@ -0,0 +1,55 @@
+package org.hcjf.io.net.http.http2;
+
+/**
+ * Error codes used by the RST_STREAM and GOAWAY frames to indicate the reason of
+ * the stream or connection error.
+ * @author javaito
+ */
+public enum Http2ErrorCode {
+
+    NO_ERROR(0x0),
+    PROTOCOL_ERROR(0x1),
+    INTERNAL_ERROR(0x2),
+    FLOW_CONTROL_ERROR(0x3),
+    SETTINGS_TIMEOUT(0x4),
+    STREAM_CLOSED(0x5),
+    FRAME_SIZE_ERROR(0x6),
+    REFUSED_STREAM(0x7),
+    CANCEL(0x8),
+    COMPRESSION_ERROR(0x9),
+    CONNECT_ERROR(0xa),
+    ENHANCE_YOUR_CALM(0xb),
+    INADEQUATE_SECURITY(0xc),
+    HTTP_1_1_REQUIRED(0xd);
+
+    private final int code;
+
+    Http2ErrorCode(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Return the numeric code written into the frames.
+     * @return Numeric code.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Return the error code with the numeric value, the unknown codes are
+     * interpreted as internal errors.
+     * @param code Numeric code.
+     * @return Error code.
+     */
+    public static Http2ErrorCode valueOf(int code) {
+        Http2ErrorCode result = INTERNAL_ERROR;
+        for(Http2ErrorCode errorCode : values()) {
+            if(errorCode.code == code) {
+                result = errorCode;
+                break;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package org.hcjf.io.net.http.http2;
+
+/**
+ * Exception thrown when the peer violates the http/2 protocol. If the stream id is
+ * zero then the error is a connection error and the connection is closed, in the
+ * otherwise only the stream is reset.
+ * @author javaito
+ */
+public class Http2Exception extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Http2ErrorCode errorCode;
+    private final int streamId;
+
+    public Http2Exception(Http2ErrorCode errorCode, String message) {
+        this(errorCode, 0, message);
+    }
+
+    public Http2Exception(Http2ErrorCode errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Return the error code sent to the peer.
+     * @return Error code.
+     */
+    public Http2ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Return the id of the stream with the error or zero for the connection errors.
+     * @return Stream id.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Verify if the error affects all the connection.
+     * @return Returns true if the error is a connection error.
+     */
+    public boolean isConnectionError() {
+        return streamId == 0;
+    }
+}
@@ -0,0 +1,115 @@
+package org.hcjf.io.net.http.http2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants of the http/2 framing layer and utility methods to encode the frames.
+ * Each frame starts with a fixed header of nine bytes: length (24 bits), type (8 bits),
+ * flags (8 bits) and stream id (31 bits).
+ * @author javaito
+ */
+public final class Http2Frame {
+
+    public static final byte[] CONNECTION_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    public static final int HEADER_LENGTH = 9;
+
+    public static final int DATA = 0x0;
+    public static final int HEADERS = 0x1;
+    public static final int PRIORITY = 0x2;
+    public static final int RST_STREAM = 0x3;
+    public static final int SETTINGS = 0x4;
+    public static final int PUSH_PROMISE = 0x5;
+    public static final int PING = 0x6;
+    public static final int GOAWAY = 0x7;
+    public static final int WINDOW_UPDATE = 0x8;
+    public static final int CONTINUATION = 0x9;
+
+    public static final int FLAG_END_STREAM = 0x1;
+    public static final int FLAG_ACK = 0x1;
+    public static final int FLAG_END_HEADERS = 0x4;
+    public static final int FLAG_PADDED = 0x8;
+    public static final int FLAG_PRIORITY = 0x20;
+
+    private Http2Frame() {
+    }
+
+    /**
+     * Puts the header of a frame into the buffer.
+     * @param buffer Destination buffer.
+     * @param length Length of the payload.
+     * @param type Frame type.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     */
+    public static void putHeader(ByteBuffer buffer, int length, int type, int flags, int streamId) {
+        buffer.put((byte) (length >>> 16));
+        buffer.put((byte) (length >>> 8));
+        buffer.put((byte) length);
+        buffer.put((byte) type);
+        buffer.put((byte) flags);
+        buffer.putInt(streamId & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a complete frame.
+     * @param type Frame type.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @param payload Array that contains the payload.
+     * @param offset Offset of the payload.
+     * @param length Length of the payload.
+     * @return Encoded frame.
+     */
+    public static byte[] create(int type, int flags, int streamId, byte[] payload, int offset, int length) {
+        byte[] result = new byte[HEADER_LENGTH + length];
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        putHeader(buffer, length, type, flags, streamId);
+        buffer.put(payload, offset, length);
+        return result;
+    }
+
+    /**
+     * Creates a frame without payload.
+     * @param type Frame type.
+     * @param flags Frame flags.
+     * @param streamId Stream id.
+     * @return Encoded frame.
+     */
+    public static byte[] create(int type, int flags, int streamId) {
+        byte[] result = new byte[HEADER_LENGTH];
+        putHeader(ByteBuffer.wrap(result), 0, type, flags, streamId);
+        return result;
+    }
+
+    /**
+     * Creates a frame whose payload is a single 32 bits value, like the WINDOW_UPDATE
+     * and RST_STREAM frames.
+     * @param type Frame type.
+     * @param streamId Stream id.
+     * @param value Value of the payload.
+     * @return Encoded frame.
+     */
+    public static byte[] createInt(int type, int streamId, int value) {
+        byte[] result = new byte[HEADER_LENGTH + Integer.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        putHeader(buffer, Integer.BYTES, type, 0, streamId);
+        buffer.putInt(value);
+        return result;
+    }
+
+    /**
+     * Creates a GOAWAY frame.
+     * @param lastStreamId Id of the last stream processed.
+     * @param errorCode Reason of the connection close.
+     * @return Encoded frame.
+     */
+    public static byte[] createGoAway(int lastStreamId, Http2ErrorCode errorCode) {
+        byte[] result = new byte[HEADER_LENGTH + 2 * Integer.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        putHeader(buffer, 2 * Integer.BYTES, GOAWAY, 0, 0);
+        buffer.putInt(lastStreamId & Integer.MAX_VALUE);
+        buffer.putInt(errorCode.getCode());
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.errors.Errors;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Settings of one endpoint of a http/2 connection. The initial values are the
+ * defaults of the protocol, the values announced by the peer are applied using
+ * the method {@link #decode(ByteBuffer)}.
+ * @author javaito
+ */
+public class Http2Settings {
+
+    public static final int HEADER_TABLE_SIZE = 0x1;
+    public static final int ENABLE_PUSH = 0x2;
+    public static final int MAX_CONCURRENT_STREAMS = 0x3;
+    public static final int INITIAL_WINDOW_SIZE = 0x4;
+    public static final int MAX_FRAME_SIZE = 0x5;
+    public static final int MAX_HEADER_LIST_SIZE = 0x6;
+
+    public static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+    public static final int DEFAULT_WINDOW_SIZE = 65535;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    public static final int MAX_MAX_FRAME_SIZE = 16777215;
+
+    private static final int ENTRY_LENGTH = 6;
+
+    private int headerTableSize;
+    private boolean enablePush;
+    private int maxConcurrentStreams;
+    private int initialWindowSize;
+    private int maxFrameSize;
+    private int maxHeaderListSize;
+
+    public Http2Settings() {
+        headerTableSize = DEFAULT_HEADER_TABLE_SIZE;
+        enablePush = true;
+        maxConcurrentStreams = Integer.MAX_VALUE;
+        initialWindowSize = DEFAULT_WINDOW_SIZE;
+        maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        maxHeaderListSize = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Return the max size of the hpack dynamic table used to decode the header blocks.
+     * @return Header table size.
+     */
+    public int getHeaderTableSize() {
+        return headerTableSize;
+    }
+
+    /**
+     * Set the max size of the hpack dynamic table used to decode the header blocks.
+     * @param headerTableSize Header table size.
+     */
+    public void setHeaderTableSize(int headerTableSize) {
+        this.headerTableSize = headerTableSize;
+    }
+
+    /**
+     * Verify if the server push is enabled.
+     * @return Returns true if the server push is enabled.
+     */
+    public boolean isEnablePush() {
+        return enablePush;
+    }
+
+    /**
+     * Enable or disable the server push.
+     * @param enablePush Enable push value.
+     */
+    public void setEnablePush(boolean enablePush) {
+        this.enablePush = enablePush;
+    }
+
+    /**
+     * Return the max number of streams that the peer can open concurrently.
+     * @return Max concurrent streams.
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Set the max number of streams that the peer can open concurrently.
+     * @param maxConcurrentStreams Max concurrent streams.
+     */
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * Return the initial flow control window of the streams.
+     * @return Initial window size.
+     */
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    /**
+     * Set the initial flow control window of the streams.
+     * @param initialWindowSize Initial window size.
+     */
+    public void setInitialWindowSize(int initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+    }
+
+    /**
+     * Return the max size of the frame payloads.
+     * @return Max frame size.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Set the max size of the frame payloads.
+     * @param maxFrameSize Max frame size.
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Return the max size of the decoded header list.
+     * @return Max header list size.
+     */
+    public int getMaxHeaderListSize() {
+        return maxHeaderListSize;
+    }
+
+    /**
+     * Set the max size of the decoded header list.
+     * @param maxHeaderListSize Max header list size.
+     */
+    public void setMaxHeaderListSize(int maxHeaderListSize) {
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    /**
+     * Creates the payload of the SETTINGS frame with all the values.
+     * @return Settings payload.
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_LENGTH * 6);
+        buffer.putShort((short) HEADER_TABLE_SIZE).putInt(headerTableSize);
+        buffer.putShort((short) ENABLE_PUSH).putInt(enablePush ? 1 : 0);
+        buffer.putShort((short) MAX_CONCURRENT_STREAMS).putInt(maxConcurrentStreams);
+        buffer.putShort((short) INITIAL_WINDOW_SIZE).putInt(initialWindowSize);
+        buffer.putShort((short) MAX_FRAME_SIZE).putInt(maxFrameSize);
+        buffer.putShort((short) MAX_HEADER_LIST_SIZE).putInt(maxHeaderListSize);
+        return buffer.array();
+    }
+
+    /**
+     * Applies the values of a SETTINGS frame payload, the unknown settings are ignored.
+     * @param payload Settings payload.
+     * @throws Http2Exception If the payload or some value is invalid.
+     */
+    public void decode(ByteBuffer payload) {
+        if(payload.remaining() % ENTRY_LENGTH != 0) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR,
+                    Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_2, Http2Frame.SETTINGS, payload.remaining()));
+        }
+        while(payload.hasRemaining()) {
+            int id = payload.getShort() & 0xffff;
+            int value = payload.getInt();
+            switch (id) {
+                case HEADER_TABLE_SIZE: {
+                    headerTableSize = unsigned(value);
+                    break;
+                }
+                case ENABLE_PUSH: {
+                    if(value != 0 && value != 1) {
+                        throw invalid(Http2ErrorCode.PROTOCOL_ERROR, id, value);
+                    }
+                    enablePush = value == 1;
+                    break;
+                }
+                case MAX_CONCURRENT_STREAMS: {
+                    maxConcurrentStreams = unsigned(value);
+                    break;
+                }
+                case INITIAL_WINDOW_SIZE: {
+                    if(value < 0) {
+                        throw invalid(Http2ErrorCode.FLOW_CONTROL_ERROR, id, value);
+                    }
+                    initialWindowSize = value;
+                    break;
+                }
+                case MAX_FRAME_SIZE: {
+                    if(value < DEFAULT_MAX_FRAME_SIZE || value > MAX_MAX_FRAME_SIZE) {
+                        throw invalid(Http2ErrorCode.PROTOCOL_ERROR, id, value);
+                    }
+                    maxFrameSize = value;
+                    break;
+                }
+                case MAX_HEADER_LIST_SIZE: {
+                    maxHeaderListSize = unsigned(value);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The unsigned values greater than the max integer are truncated.
+     * @param value Setting value.
+     * @return Value.
+     */
+    private static int unsigned(int value) {
+        return value < 0 ? Integer.MAX_VALUE : value;
+    }
+
+    private static Http2Exception invalid(Http2ErrorCode errorCode, int id, int value) {
+        return new Http2Exception(errorCode, Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_HTTP2_13, id, value));
+    }
+}
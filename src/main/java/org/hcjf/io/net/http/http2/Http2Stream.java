@@ -0,0 +1,237 @@
+package org.hcjf.io.net.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stream of a http/2 connection, contains the request received from the peer and
+ * provides the methods to write the response. The request is complete when the peer
+ * closes its side of the stream, then the connection delivers the stream to the handler.
+ * @author javaito
+ */
+public class Http2Stream {
+
+    private static final String COOKIE = "cookie";
+    private static final String COOKIE_SEPARATOR = "; ";
+    private static final String VALUE_SEPARATOR = ", ";
+
+    private final Http2Connection connection;
+    private final int id;
+    private final Map<String, String> headers;
+    private final ByteArrayOutputStream body;
+    private String method;
+    private String scheme;
+    private String authority;
+    private String path;
+    private int headerListSize;
+    private long sendWindow;
+    private long receiveWindow;
+    private volatile boolean remoteClosed;
+    private volatile boolean localClosed;
+    private volatile boolean reset;
+
+    Http2Stream(Http2Connection connection, int id, long sendWindow, long receiveWindow) {
+        this.connection = connection;
+        this.id = id;
+        this.headers = new LinkedHashMap<>();
+        this.body = new ByteArrayOutputStream();
+        this.sendWindow = sendWindow;
+        this.receiveWindow = receiveWindow;
+    }
+
+    /**
+     * Return the stream id.
+     * @return Stream id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Return the value of the pseudo-header :method.
+     * @return Request method.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Return the value of the pseudo-header :scheme.
+     * @return Request scheme.
+     */
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * Return the value of the pseudo-header :authority.
+     * @return Request authority or null.
+     */
+    public String getAuthority() {
+        return authority;
+    }
+
+    /**
+     * Return the value of the pseudo-header :path.
+     * @return Request path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Return the regular headers of the request, the names are in lower case and the
+     * repeated headers are combined into one value.
+     * @return Request headers.
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Return the size of the header list of the request.
+     * @return Header list size.
+     */
+    public int getHeaderListSize() {
+        return headerListSize;
+    }
+
+    /**
+     * Return the body of the request.
+     * @return Request body.
+     */
+    public byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    /**
+     * Verify if the peer was reset the stream or if the connection was closed.
+     * @return Returns true if the stream can't be written.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Writes the header block of the response.
+     * @param status Response status.
+     * @param headers Response headers, the names must be in lower case.
+     * @param endStream If the response doesn't have body.
+     * @throws IOException If the stream or the connection are closed.
+     */
+    public void writeHeaders(int status, Iterable<? extends Map.Entry<String, String>> headers, boolean endStream) throws IOException {
+        connection.writeHeaders(this, status, headers, endStream);
+    }
+
+    /**
+     * Writes a fragment of the body of the response, the fragment is split into frames
+     * and the write operation waits until the flow control windows allows to send each frame.
+     * @param data Array that contains the fragment.
+     * @param offset Offset of the fragment.
+     * @param length Length of the fragment.
+     * @param endStream If the fragment is the last fragment of the body.
+     * @throws IOException If the stream or the connection are closed or if the windows
+     * are not updated before the timeout.
+     */
+    public void writeData(byte[] data, int offset, int length, boolean endStream) throws IOException {
+        connection.writeData(this, data, offset, length, endStream);
+    }
+
+    /**
+     * Resets the stream, the pending write operations of the stream fail.
+     * @param errorCode Reason of the reset.
+     */
+    public void reset(Http2ErrorCode errorCode) {
+        connection.resetStream(id, errorCode);
+    }
+
+    /**
+     * Stores a decoded header, the pseudo-headers are stored into their fields.
+     * @param name Header name.
+     * @param value Header value.
+     * @return Returns false if the header is an unknown pseudo-header or if a
+     * pseudo-header is after the regular headers or repeated.
+     */
+    boolean addHeader(String name, String value) {
+        boolean result = true;
+        headerListSize += name.length() + value.length() + HpackTable.ENTRY_OVERHEAD;
+        if(name.startsWith(":")) {
+            if(!headers.isEmpty()) {
+                result = false;
+            } else if(name.equals(":method") && method == null) {
+                method = value;
+            } else if(name.equals(":scheme") && scheme == null) {
+                scheme = value;
+            } else if(name.equals(":authority") && authority == null) {
+                authority = value;
+            } else if(name.equals(":path") && path == null) {
+                path = value;
+            } else {
+                result = false;
+            }
+        } else {
+            String current = headers.get(name);
+            if(current != null) {
+                value = current + (name.equals(COOKIE) ? COOKIE_SEPARATOR : VALUE_SEPARATOR) + value;
+            }
+            headers.put(name, value);
+        }
+        return result;
+    }
+
+    /**
+     * Stores a fragment of the request body.
+     * @param data Buffer with the fragment.
+     */
+    void addData(ByteBuffer data) {
+        Http2Connection.copy(data, body);
+    }
+
+    /**
+     * Return the number of bytes of the request body stored.
+     * @return Body size.
+     */
+    int getBodySize() {
+        return body.size();
+    }
+
+    long getReceiveWindow() {
+        return receiveWindow;
+    }
+
+    void setReceiveWindow(long receiveWindow) {
+        this.receiveWindow = receiveWindow;
+    }
+
+    long getSendWindow() {
+        return sendWindow;
+    }
+
+    void setSendWindow(long sendWindow) {
+        this.sendWindow = sendWindow;
+    }
+
+    boolean isRemoteClosed() {
+        return remoteClosed;
+    }
+
+    void setRemoteClosed() {
+        remoteClosed = true;
+    }
+
+    boolean isLocalClosed() {
+        return localClosed;
+    }
+
+    void setLocalClosed() {
+        localClosed = true;
+    }
+
+    void setReset() {
+        reset = true;
+    }
+}
@@ -0,0 +1,93 @@
+package org.hcjf.io.net.http.pipeline;
+
+import org.hcjf.io.net.http.HttpHeader;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Pipeline response whose body is the content of a readable channel with a known length,
+ * the channel is read directly into the main buffer and the body is written without any
+ * transfer encoding. The channel must be blocking and it's closed when the pipeline ends.
+ * Use {@link ChunkedChannelHttpPipelineResponse} if the length of the content is unknown.
+ * @author javaito
+ */
+public class ChannelHttpPipelineResponse extends HttpPipelineResponse {
+
+    private final ReadableByteChannel channel;
+    private long remaining;
+
+    /**
+     * Constructor.
+     * @param channel Channel with the content of the body.
+     * @param length Number of bytes of the body.
+     * @param bufferSize Max number of bytes of each write operation.
+     */
+    public ChannelHttpPipelineResponse(ReadableByteChannel channel, long length, int bufferSize) {
+        super(bufferSize, bufferSize);
+        this.channel = channel;
+        this.remaining = length;
+        addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Long.toString(length)));
+    }
+
+    /**
+     * Reads the next fragment of the channel into the main buffer.
+     * @param result Main buffer.
+     * @return Number of bytes read or -1 if all the body was read.
+     * @throws UncheckedIOException If the channel fails or it ends before the length of the body.
+     */
+    @Override
+    protected int read(ByteBuffer result) {
+        int size;
+        if(remaining == 0) {
+            //If the body is empty the first read returns zero to write the headers.
+            size = isFirstRead() ? 0 : -1;
+        } else {
+            result.limit((int) Math.min(result.capacity(), remaining));
+            size = readPipeline(result);
+            result.limit(result.capacity());
+            if(size < 0) {
+                throw new UncheckedIOException(new EOFException("The channel is shorter than the content length"));
+            }
+            remaining -= size;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the channel into the buffer.
+     * @param buffer Buffer to put all the read bytes.
+     * @return Number of bytes read or -1 if the channel is done.
+     * @throws UncheckedIOException If the channel fails.
+     */
+    @Override
+    protected int readPipeline(ByteBuffer buffer) {
+        try {
+            return channel.read(buffer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    protected int readPipeline(byte[] buffer) {
+        return readPipeline(ByteBuffer.wrap(buffer));
+    }
+
+    /**
+     * Closes the channel.
+     */
+    @Override
+    public void onEnd() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to close pipeline channel", ex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.hcjf.io.net.http.pipeline;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Pipeline response whose body is the content of a readable channel with unknown length, the
+ * channel is read directly into the main buffer and each fragment is framed as a chunk. The
+ * channel must be blocking and it's closed when the pipeline ends.
+ * @author javaito
+ */
+public class ChunkedChannelHttpPipelineResponse extends ChunkedHttpPipelineResponse {
+
+    private final ReadableByteChannel channel;
+
+    /**
+     * Constructor.
+     * @param channel Channel with the content of the body.
+     * @param bufferSize Max size of each chunk.
+     */
+    public ChunkedChannelHttpPipelineResponse(ReadableByteChannel channel, int bufferSize) {
+        super(bufferSize);
+        this.channel = channel;
+    }
+
+    /**
+     * Reads the channel into the buffer.
+     * @param buffer Buffer to put all the read bytes.
+     * @return Number of bytes read or -1 if the channel is done.
+     * @throws UncheckedIOException If the channel fails.
+     */
+    @Override
+    protected int readPipeline(ByteBuffer buffer) {
+        try {
+            return channel.read(buffer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    protected int readPipeline(byte[] buffer) {
+        return readPipeline(ByteBuffer.wrap(buffer));
+    }
+
+    /**
+     * Closes the channel.
+     */
+    @Override
+    public void onEnd() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to close pipeline channel", ex);
+        }
+    }
+}
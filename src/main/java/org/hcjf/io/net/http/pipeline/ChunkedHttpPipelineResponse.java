@@ -6,41 +6,61 @@ import java.nio.ByteBuffer;
 
 /**
  * This specific pipeline implements a chunked http transfer encoding.
+ * The data of each chunk is read directly into the main buffer after the space reserved
+ * for the size line, then the size line is written just before the data.
  * @author javaito.
  */
 public abstract class ChunkedHttpPipelineResponse extends HttpPipelineResponse {
 
     //Amount of reserved byte for the chunked separators.
     private static final int RESERVED_BYTE_NUMBER = 4;
-    private static final byte[] CHUNKED_SEPARATOR = "\r\n".getBytes();
+    private static final int HEX_RADIX = 16;
+    private static final String LINE_SEPARATOR = "\r\n";
+    private static final byte[] CHUNKED_SEPARATOR = LINE_SEPARATOR.getBytes();
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+    private final int sizeLineLength;
     private boolean end;
 
     public ChunkedHttpPipelineResponse(int bufferSize) {
         super(calculateMainBufferSize(bufferSize), bufferSize);
+        this.sizeLineLength = Integer.toString(bufferSize, HEX_RADIX).length() + CHUNKED_SEPARATOR.length;
         addHeader(new HttpHeader(HttpHeader.TRANSFER_ENCODING, HttpHeader.CHUNKED));
     }
 
     /**
-     * Wrap the buffer with the chunked encoding separators.
-     * @param result In this instance of the byte buffer, this method must put
-     * the byte to wrap the source data and the source data.
-     * @param buffer All the bytes read from the application source.
-     * @param size Size of the buffer used to read the application source.
-     * @return Returns the amount of bytes read.
+     * Reads the next chunk into the main buffer and frames it in place. The empty reads
+     * doesn't create chunks because the empty chunk is the end of the body.
+     * @param result Main buffer.
+     * @return Number of bytes of the framed chunk, zero if the source doesn't have data yet
+     * or -1 if the last chunk was already written.
      */
     @Override
-    protected int wrap(ByteBuffer result, byte[] buffer, int size) {
+    protected int read(ByteBuffer result) {
         int resultSize;
-        if(size == -1 && end) {
+        if(end) {
             resultSize = -1;
         } else {
-            result.put(Integer.toString(size > 0 ? size : 0, 16).getBytes());
-            result.put(CHUNKED_SEPARATOR);
-            result.put(buffer, 0, size > 0 ? size : 0);
-            result.put(CHUNKED_SEPARATOR);
-            resultSize = result.position();
-            if(size == -1) {
+            result.position(sizeLineLength);
+            ByteBuffer data = result.slice();
+            data.limit(getBufferSize());
+            int size = readPipeline(data);
+            if(size < 0) {
+                result.position(0);
+                result.put(LAST_CHUNK);
+                resultSize = result.position();
                 end = true;
+            } else if(size == 0) {
+                result.position(0);
+                resultSize = 0;
+            } else {
+                byte[] sizeLine = (Integer.toString(size, HEX_RADIX) + LINE_SEPARATOR).getBytes();
+                int offset = sizeLineLength - sizeLine.length;
+                result.position(offset);
+                result.put(sizeLine);
+                result.position(sizeLineLength + size);
+                result.put(CHUNKED_SEPARATOR);
+                setDataOffset(offset);
+                resultSize = result.position() - offset;
             }
         }
         return resultSize;
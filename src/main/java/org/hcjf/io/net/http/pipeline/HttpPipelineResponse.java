@@ -7,17 +7,26 @@ import java.nio.ByteBuffer;
 /**
  * This class provides a way to create a pipeline between the http connection and
  * the specific data source.
+ * Each read operation puts the next fragment of the source into the main buffer, the
+ * encoded fragment are the bytes between the data offset and the position of the main buffer.
+ * The implementations that can read the source into a byte buffer should override the method
+ * {@link #readPipeline(ByteBuffer)} to put the data directly into the main buffer.
+ * The server reads the next fragment only while the session is writable, then the body
+ * queued for a connection is bounded by the high watermark of the output queue plus one
+ * fragment, the source is not read while the client doesn't consume the queued data.
  * @author javaito.
  */
 public abstract class HttpPipelineResponse extends HttpResponse {
 
     private final ByteBuffer mainBuffer;
-    private final byte[] buffer;
+    private final int bufferSize;
+    private byte[] buffer;
     private int readCounter;
+    private int dataOffset;
 
     public HttpPipelineResponse(int mainBufferSize, int bufferSize) {
         this.mainBuffer = ByteBuffer.allocate(mainBufferSize);
-        this.buffer = new byte[bufferSize];
+        this.bufferSize = bufferSize;
         this.readCounter = 0;
     }
 
@@ -30,13 +39,22 @@ public abstract class HttpPipelineResponse extends HttpResponse {
     }
 
     /**
-     * Returns the counter of the read operations over pipeline.
+     * Returns the counter of the read operations over pipeline, the counter
+     * includes the read operation in progress.
      * @return Counter of the read operations.
      */
     public final int getReadCounter() {
         return readCounter;
     }
 
+    /**
+     * Return the max number of bytes read from the source for each read operation.
+     * @return Buffer size.
+     */
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
     /**
      * This method reads the bytes of the application
      * side of the pipeline and wrap this bytes depends of the
@@ -45,11 +63,10 @@ public abstract class HttpPipelineResponse extends HttpResponse {
      * to -1 then this pipeline is done.
      */
     public final int read() {
-        mainBuffer.rewind();
-        int size = readPipeline(buffer);
+        mainBuffer.clear();
+        dataOffset = 0;
         readCounter++;
-        size = wrap(mainBuffer, buffer, size);
-        return size;
+        return read(mainBuffer);
     }
 
     /**
@@ -60,6 +77,36 @@ public abstract class HttpPipelineResponse extends HttpResponse {
         return mainBuffer;
     }
 
+    /**
+     * Return the index of the main buffer where the data of the last read operation starts.
+     * @return Data offset.
+     */
+    public final int getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Set the index of the main buffer where the data of the current read operation starts,
+     * the implementations that reserve space before the data must set the offset.
+     * @param dataOffset Data offset.
+     */
+    protected final void setDataOffset(int dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Reads the next fragment of the source into the main buffer. The default implementation
+     * reads the fragment using {@link #readPipeline(byte[])} and puts it using the
+     * {@link #wrap(ByteBuffer, byte[], int)} method.
+     * @param result Main buffer, the position of the buffer must be the end of the data.
+     * @return Number of bytes of the main buffer or -1 if the pipeline is done.
+     */
+    protected int read(ByteBuffer result) {
+        byte[] buffer = getBuffer();
+        int size = readPipeline(buffer);
+        return wrap(result, buffer, size);
+    }
+
     /**
      * This method wrap the byte with the encoding protocol.
      * @param result In this instance of the byte buffer, this method must put
@@ -79,10 +126,26 @@ public abstract class HttpPipelineResponse extends HttpResponse {
     public void onStart() {}
 
     /**
-     * This method is called after the last read over the pipeline.
+     * This method is called after the last read over the pipeline, also when the
+     * pipeline is interrupted by an error.
      */
     public void onEnd() {}
 
+    /**
+     * Reads the application source into the buffer, the default implementation uses the method
+     * {@link #readPipeline(byte[])} and copies the bytes into the buffer.
+     * @param buffer Buffer with at least {@link #getBufferSize()} bytes remaining.
+     * @return Number of bytes read or -1 if the source is done.
+     */
+    protected int readPipeline(ByteBuffer buffer) {
+        byte[] array = getBuffer();
+        int size = readPipeline(array);
+        if(size > 0) {
+            buffer.put(array, 0, size);
+        }
+        return size;
+    }
+
     /**
      * This method must implements the way to read the information from the
      * application source.
@@ -90,4 +153,16 @@ public abstract class HttpPipelineResponse extends HttpResponse {
      * @return Number of bytes read.
      */
     protected abstract int readPipeline(byte[] buffer);
+
+    /**
+     * Return the intermediate buffer, the buffer is created only if the implementation reads
+     * the source using arrays.
+     * @return Intermediate buffer.
+     */
+    private byte[] getBuffer() {
+        if(buffer == null) {
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
 }
@@ -1,42 +1,96 @@
 package org.hcjf.io.net.http.proxy;
 
 import org.hcjf.errors.Errors;
-import org.hcjf.io.net.http.Context;
-import org.hcjf.io.net.http.HttpRequest;
-import org.hcjf.io.net.http.HttpResponse;
-import org.hcjf.io.net.http.HttpServer;
+import org.hcjf.io.net.http.*;
 import org.hcjf.properties.SystemProperties;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Http proxy implementation
+ * Http proxy implementation. The rules are indexed by the first segment of the context
+ * and the bodies of the requests and the responses are streamed between the client and
+ * the upstream without accumulate them into memory.
  * @author javaito
  */
 public class HttpProxy extends HttpServer {
 
     private static final String DEFAULT_CONTEXT_REGEX = ".*";
+    private static final Set<String> HOP_BY_HOP_HEADERS;
+
+    static {
+        HOP_BY_HOP_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.CONNECTION);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.KEEP_ALIVE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.PROXY_CONNECTION);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.PROXY_AUTHORIZATION);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.TE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.TRAILER);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.TRANSFER_ENCODING);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.UPGRADE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.HOST);
+    }
 
     private final List<HttpProxyRule> rules;
+    private final Map<HttpRequest, ProxyTask> streamingTasks;
+    private volatile RuleIndex ruleIndex;
     private Context defaultContext;
 
     public HttpProxy(Integer port) {
         super(port);
         this.rules = new ArrayList<>();
+        this.streamingTasks = new ConcurrentHashMap<>();
+        this.ruleIndex = new RuleIndex(rules);
 
         defaultContext = new Context(DEFAULT_CONTEXT_REGEX) {
 
+            /**
+             * Creates the task of the request when the headers arrives, then the
+             * task can send the body to the upstream while the body is received.
+             * @param request Http request without body.
+             * @return Body consumer of the task or null.
+             */
+            @Override
+            protected HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+                HttpBodyConsumer result = null;
+                HttpProxyRule rule = findRule(request);
+                if(rule != null) {
+                    ProxyTask task = rule.getTask();
+                    HttpBodyConsumer bodyConsumer = task.createBodyConsumer(request);
+                    if(bodyConsumer != null) {
+                        streamingTasks.put(request, task);
+                        result = new StreamingBodyConsumer(request, bodyConsumer);
+                    }
+                }
+                return result;
+            }
+
+            /**
+             * All the rules of the proxy are served by this context, then a single limiter of the
+             * admission control would throttle every upstream together, the requests are always
+             * admitted and each upstream is protected by its own timeouts.
+             * @return Critical priority.
+             */
+            @Override
+            public Priority getPriority() {
+                return Priority.CRITICAL;
+            }
+
             @Override
             public HttpResponse onContext(HttpRequest request) {
                 HttpResponse response = null;
-                for(HttpProxyRule rule : rules) {
-                    if(rule.evaluate(request)) {
-                        ProxyTask task = rule.getTask();
-                        response = task.execute(request);
-                        break;
+                ProxyTask task = streamingTasks.remove(request);
+                if(task == null) {
+                    HttpProxyRule rule = findRule(request);
+                    if(rule != null) {
+                        task = rule.getTask();
                     }
                 }
+                if(task != null) {
+                    response = task.execute(request);
+                }
                 return response;
             }
 
@@ -53,11 +107,12 @@ public class HttpProxy extends HttpServer {
      * @param rule Http proxy rule.
      * @throws NullPointerException if the rule parameter is null.
      */
-    public final void addRule(HttpProxyRule rule) {
+    public final synchronized void addRule(HttpProxyRule rule) {
         if(rule == null) {
             throw new NullPointerException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PROXY_1));
         }
         rules.add(rule);
+        ruleIndex = new RuleIndex(rules);
     }
 
     /**
@@ -81,4 +136,114 @@ public class HttpProxy extends HttpServer {
         return defaultContext;
     }
 
+    /**
+     * Returns the first rule that meets the request, only the rules indexed with the first
+     * segment of the context and the rules without index are evaluated, in the order that they was added.
+     * @param request Incoming request.
+     * @return Rule or null if there are not rule for the request.
+     */
+    protected final HttpProxyRule findRule(HttpRequest request) {
+        HttpProxyRule result = null;
+        for(HttpProxyRule rule : ruleIndex.getRules(request.getContext())) {
+            if(rule.evaluate(request)) {
+                result = rule;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the end to end headers from the source package to the target package.
+     * @param source Source package.
+     * @param target Target package.
+     */
+    static void copyHeaders(HttpPackage source, HttpPackage target) {
+        for(HttpHeader header : source.getHeaders()) {
+            if(!HOP_BY_HOP_HEADERS.contains(header.getHeaderName())) {
+                target.addHeader(header);
+            }
+        }
+    }
+
+    /**
+     * Immutable index of the rules, each first segment of the contexts has the list of
+     * the rules that could meet a request with that segment.
+     */
+    private static final class RuleIndex {
+
+        private final Map<String, HttpProxyRule[]> indexedRules;
+        private final HttpProxyRule[] genericRules;
+
+        private RuleIndex(List<HttpProxyRule> rules) {
+            Set<String> keys = new HashSet<>();
+            List<HttpProxyRule> genericRules = new ArrayList<>();
+            for(HttpProxyRule rule : rules) {
+                if(rule.getContextKey() == null) {
+                    genericRules.add(rule);
+                } else {
+                    keys.add(rule.getContextKey());
+                }
+            }
+
+            indexedRules = new HashMap<>();
+            for(String key : keys) {
+                List<HttpProxyRule> keyRules = new ArrayList<>();
+                for(HttpProxyRule rule : rules) {
+                    if(rule.getContextKey() == null || rule.getContextKey().equals(key)) {
+                        keyRules.add(rule);
+                    }
+                }
+                indexedRules.put(key, keyRules.toArray(new HttpProxyRule[0]));
+            }
+            this.genericRules = genericRules.toArray(new HttpProxyRule[0]);
+        }
+
+        /**
+         * Return the rules that could meet the context.
+         * @param context Request context.
+         * @return Candidate rules.
+         */
+        private HttpProxyRule[] getRules(String context) {
+            String key = context;
+            if(context.startsWith(HttpPackage.HTTP_CONTEXT_SEPARATOR)) {
+                int separatorIndex = context.indexOf(HttpPackage.HTTP_CONTEXT_SEPARATOR, 1);
+                if(separatorIndex > 0) {
+                    key = context.substring(0, separatorIndex);
+                }
+            }
+            return indexedRules.getOrDefault(key, genericRules);
+        }
+    }
+
+    /**
+     * Body consumer that removes the task of the request if the connection is lost
+     * before the request is processed.
+     */
+    private class StreamingBodyConsumer implements HttpBodyConsumer {
+
+        private final HttpRequest request;
+        private final HttpBodyConsumer bodyConsumer;
+
+        private StreamingBodyConsumer(HttpRequest request, HttpBodyConsumer bodyConsumer) {
+            this.request = request;
+            this.bodyConsumer = bodyConsumer;
+        }
+
+        @Override
+        public void onChunk(ByteBuffer chunk) throws IOException {
+            bodyConsumer.onChunk(chunk);
+        }
+
+        @Override
+        public void onEnd() throws IOException {
+            bodyConsumer.onEnd();
+        }
+
+        @Override
+        public void close() throws IOException {
+            streamingTasks.remove(request);
+            bodyConsumer.close();
+        }
+    }
 }
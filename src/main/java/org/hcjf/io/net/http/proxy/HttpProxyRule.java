@@ -9,6 +9,16 @@ import org.hcjf.io.net.http.HttpRequest;
  */
 public abstract class HttpProxyRule {
 
+    /**
+     * Return the first segment of the contexts accepted by the rule (for example '/api'), the proxy
+     * evaluates the rule only for the requests with the same first segment. If the method returns
+     * null then the rule is evaluated for all the requests.
+     * @return First segment of the context or null.
+     */
+    public String getContextKey() {
+        return null;
+    }
+
     /**
      * Checks whether the request meets the conditions of the rule.
      * @param request Incoming request.
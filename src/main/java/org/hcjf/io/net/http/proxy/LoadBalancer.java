@@ -0,0 +1,186 @@
+package org.hcjf.io.net.http.proxy;
+
+import org.hcjf.errors.Errors;
+import org.hcjf.io.net.http.HttpPackage;
+import org.hcjf.properties.SystemProperties;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class selects the upstream server for each proxied request.
+ * @author javaito
+ */
+public class LoadBalancer {
+
+    private final Strategy strategy;
+    private final Upstream[] upstreams;
+    private final AtomicInteger counter;
+
+    public LoadBalancer(Strategy strategy, URL... urls) {
+        if(urls == null || urls.length == 0) {
+            throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PROXY_3));
+        }
+        this.strategy = strategy;
+        this.upstreams = new Upstream[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            upstreams[i] = new Upstream(urls[i]);
+        }
+        this.counter = new AtomicInteger();
+    }
+
+    public LoadBalancer(Strategy strategy, List<URL> urls) {
+        this(strategy, urls == null ? null : urls.toArray(new URL[0]));
+    }
+
+    /**
+     * Return the strategy of the balancer.
+     * @return Balancer strategy.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Return the upstream servers.
+     * @return Upstream servers.
+     */
+    public List<Upstream> getUpstreams() {
+        return Collections.unmodifiableList(Arrays.asList(upstreams));
+    }
+
+    /**
+     * Selects the upstream for the next request.
+     * @return Selected upstream.
+     */
+    public Upstream select() {
+        int start = Math.floorMod(counter.getAndIncrement(), upstreams.length);
+        Upstream result = upstreams[start];
+        if(strategy.equals(Strategy.LEAST_CONNECTIONS)) {
+            //The search starts from a different upstream each time to distribute the ties.
+            for (int i = 1; i < upstreams.length; i++) {
+                Upstream upstream = upstreams[(start + i) % upstreams.length];
+                if(upstream.getActiveRequests() < result.getActiveRequests()) {
+                    result = upstream;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Strategies to select the upstream.
+     */
+    public enum Strategy {
+
+        ROUND_ROBIN,
+
+        LEAST_CONNECTIONS
+
+    }
+
+    /**
+     * Upstream server and its counters.
+     */
+    public static final class Upstream {
+
+        private final URL url;
+        private final HttpPackage.HttpProtocol protocol;
+        private final String host;
+        private final int port;
+        private final String basePath;
+        private final String hostHeader;
+        private final AtomicInteger activeRequests;
+        private final LongAdder requests;
+
+        private Upstream(URL url) {
+            this.url = url;
+            this.protocol = url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
+                    HttpPackage.HttpProtocol.HTTPS : HttpPackage.HttpProtocol.HTTP;
+            this.host = url.getHost();
+            this.port = url.getPort() != -1 ? url.getPort() :
+                    protocol.equals(HttpPackage.HttpProtocol.HTTPS) ?
+                            SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
+                            SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT);
+            String path = url.getPath();
+            this.basePath = path.endsWith(HttpPackage.HTTP_CONTEXT_SEPARATOR) ? path.substring(0, path.length() - 1) : path;
+            this.hostHeader = url.getPort() != -1 ? host + ":" + port : host;
+            this.activeRequests = new AtomicInteger();
+            this.requests = new LongAdder();
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public HttpPackage.HttpProtocol getProtocol() {
+            return protocol;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Return the value of the host header for the requests sent to the upstream.
+         * @return Host header value.
+         */
+        public String getHostHeader() {
+            return hostHeader;
+        }
+
+        /**
+         * Creates the path of the upstream request adding the path of the url before the
+         * path of the incoming request.
+         * @param path Path of the incoming request.
+         * @return Upstream path.
+         */
+        public String createPath(String path) {
+            return basePath + path;
+        }
+
+        /**
+         * Return the number of requests in progress.
+         * @return Active requests.
+         */
+        public int getActiveRequests() {
+            return activeRequests.get();
+        }
+
+        /**
+         * Return the number of requests sent to the upstream.
+         * @return Number of requests.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * This method is called when a request starts.
+         */
+        void acquire() {
+            requests.increment();
+            activeRequests.incrementAndGet();
+        }
+
+        /**
+         * This method is called when a request ends.
+         */
+        void release() {
+            activeRequests.decrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.hcjf.io.net.http.proxy;
+
+import org.hcjf.io.net.http.HttpBodyPipe;
+import org.hcjf.io.net.http.HttpHeader;
+import org.hcjf.io.net.http.HttpPackage;
+import org.hcjf.io.net.http.HttpResponse;
+import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Response of the proxy that writes the body of the upstream response as it arrives.
+ * If the upstream response has content length then the body is written without changes,
+ * in the otherwise the body is framed using the chunked transfer encoding.
+ * @author javaito
+ */
+final class ProxyResponse extends HttpPipelineResponse {
+
+    //Amount of reserved byte for the chunked separators.
+    private static final int RESERVED_BYTE_NUMBER = 4;
+    private static final byte[] CHUNKED_SEPARATOR = HttpPackage.STRING_LINE_SEPARATOR.getBytes();
+    private static final byte[] LAST_CHUNK = ("0" + HttpPackage.STRING_LINE_SEPARATOR +
+            HttpPackage.STRING_LINE_SEPARATOR).getBytes();
+
+    private final HttpBodyPipe pipe;
+    private final Runnable onFinish;
+    private final boolean chunked;
+    private boolean end;
+    private boolean finished;
+
+    /**
+     * Constructor.
+     * @param upstreamResponse Upstream response with the headers.
+     * @param pipe Pipe with the body of the upstream response.
+     * @param bufferSize Max size of each write.
+     * @param onFinish Task called when the response is complete or interrupted.
+     */
+    ProxyResponse(HttpResponse upstreamResponse, HttpBodyPipe pipe, int bufferSize, Runnable onFinish) {
+        super(bufferSize + Integer.toHexString(bufferSize).length() + RESERVED_BYTE_NUMBER, bufferSize);
+        this.pipe = pipe;
+        this.onFinish = onFinish;
+        setResponseCode(upstreamResponse.getResponseCode());
+        setReasonPhrase(upstreamResponse.getReasonPhrase());
+        HttpProxy.copyHeaders(upstreamResponse, this);
+        chunked = !containsHeader(HttpHeader.CONTENT_LENGTH);
+        if(chunked) {
+            addHeader(new HttpHeader(HttpHeader.TRANSFER_ENCODING, HttpHeader.CHUNKED));
+        }
+    }
+
+    /**
+     * Reads the next fragment of the upstream body.
+     * @param buffer Buffer to put all the read bytes.
+     * @return Number of bytes read or -1 if the body is complete.
+     * @throws UncheckedIOException If the upstream fails before the end of the body, the
+     * client connection must be closed because the response is incomplete.
+     */
+    @Override
+    protected int readPipeline(byte[] buffer) {
+        try {
+            return pipe.read(buffer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    protected int wrap(ByteBuffer result, byte[] buffer, int size) {
+        int resultSize;
+        if(size < 0) {
+            if(chunked && !end) {
+                result.put(LAST_CHUNK);
+                resultSize = result.position();
+                end = true;
+            } else if(isFirstRead()) {
+                //The body is empty but the headers must be written.
+                resultSize = 0;
+            } else {
+                resultSize = -1;
+            }
+        } else if(chunked) {
+            result.put(Integer.toHexString(size).getBytes());
+            result.put(CHUNKED_SEPARATOR);
+            result.put(buffer, 0, size);
+            result.put(CHUNKED_SEPARATOR);
+            resultSize = result.position();
+        } else {
+            result.put(buffer, 0, size);
+            resultSize = result.position();
+        }
+        return resultSize;
+    }
+
+    /**
+     * If the response was interrupted then the pipe is aborted to release the upstream connection.
+     */
+    @Override
+    public void onEnd() {
+        if(!finished) {
+            finished = true;
+            if(!pipe.isEnded()) {
+                pipe.abort();
+            }
+            onFinish.run();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.hcjf.io.net.http.proxy;
 
+import org.hcjf.io.net.http.HttpBodyConsumer;
 import org.hcjf.io.net.http.HttpRequest;
 import org.hcjf.io.net.http.HttpResponse;
 
@@ -10,6 +11,17 @@ import org.hcjf.io.net.http.HttpResponse;
  */
 public abstract class ProxyTask {
 
+    /**
+     * This method is called when the headers of a request with body was received, before the
+     * body arrives. The task could return a consumer to receive the body as a sequence of chunks,
+     * if the method returns null then the body is accumulated into the request.
+     * @param request Incoming request without body.
+     * @return Body consumer or null.
+     */
+    public HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+        return null;
+    }
+
     /**
      * This method execute the task.
      * @param request Incoming request.
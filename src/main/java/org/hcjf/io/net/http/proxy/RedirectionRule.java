@@ -1,29 +1,80 @@
 package org.hcjf.io.net.http.proxy;
 
-import org.hcjf.io.net.http.HttpClient;
-import org.hcjf.io.net.http.HttpHeader;
-import org.hcjf.io.net.http.HttpRequest;
-import org.hcjf.io.net.http.HttpResponse;
+import org.hcjf.io.net.http.*;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
 
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 /**
- * Proxy task that implements a redirection rule.
+ * Proxy task that implements a redirection rule. The requests are sent to the upstream
+ * selected by the load balancer, using the path of the upstream url followed by the path
+ * of the incoming request. The bodies of the request and the response are transferred as
+ * chunks using the persistent connections of the pool.
  * @author javaito
  */
 public class RedirectionRule extends HttpProxyRule {
 
-    private final String contextRegex;
-    private final URL url;
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+    private static final String QUANTIFIERS = "*+?{";
+    private static final char START_ANCHOR = '^';
+    private static final char END_ANCHOR = '$';
+
+    private final Pattern contextPattern;
+    private final String contextKey;
+    private final LoadBalancer loadBalancer;
+    private HttpClientPool pool;
+
+    public RedirectionRule(String contextRegex, LoadBalancer loadBalancer) {
+        this.contextPattern = Pattern.compile(contextRegex);
+        this.contextKey = createContextKey(contextRegex);
+        this.loadBalancer = loadBalancer;
+        this.pool = HttpClientPool.getInstance();
+    }
 
     public RedirectionRule(String contextRegex, URL url) {
-        this.contextRegex = contextRegex;
-        this.url = url;
+        this(contextRegex, new LoadBalancer(LoadBalancer.Strategy.ROUND_ROBIN, url));
+    }
+
+    /**
+     * Return the load balancer of the rule.
+     * @return Load balancer.
+     */
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * Return the pool of the upstream connections.
+     * @return Connection pool.
+     */
+    public HttpClientPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Set the pool of the upstream connections.
+     * @param pool Connection pool.
+     */
+    public void setPool(HttpClientPool pool) {
+        if(pool == null) {
+            throw new NullPointerException("Null http client pool");
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public String getContextKey() {
+        return contextKey;
     }
 
     @Override
     public boolean evaluate(HttpRequest request) {
-        return request.getContext().matches(contextRegex);
+        return contextPattern.matcher(request.getContext()).matches();
     }
 
     @Override
@@ -31,20 +82,131 @@ public class RedirectionRule extends HttpProxyRule {
         return new RedirectionTask();
     }
 
+    /**
+     * Creates the context key using the literal prefix of the regular expression,
+     * the key is the first segment of the prefix if the prefix contains the whole segment.
+     * @param contextRegex Context regular expression.
+     * @return Context key or null if the regular expression starts with a pattern.
+     */
+    private static String createContextKey(String contextRegex) {
+        StringBuilder prefix = new StringBuilder();
+        boolean complete = true;
+        int start = !contextRegex.isEmpty() && contextRegex.charAt(0) == START_ANCHOR ? 1 : 0;
+        for (int i = start; i < contextRegex.length(); i++) {
+            char character = contextRegex.charAt(i);
+            if(character == END_ANCHOR && i == contextRegex.length() - 1) {
+                break;
+            }
+            if(META_CHARACTERS.indexOf(character) >= 0) {
+                if(QUANTIFIERS.indexOf(character) >= 0 && prefix.length() > 0) {
+                    //The last literal is optional or repeated.
+                    prefix.setLength(prefix.length() - 1);
+                }
+                complete = false;
+                break;
+            }
+            prefix.append(character);
+        }
+
+        String result = null;
+        if(prefix.length() > 0 && prefix.charAt(0) == HttpPackage.HTTP_CONTEXT_SEPARATOR.charAt(0)) {
+            int separatorIndex = prefix.indexOf(HttpPackage.HTTP_CONTEXT_SEPARATOR, 1);
+            if(separatorIndex > 0) {
+                result = prefix.substring(0, separatorIndex);
+            } else if(complete) {
+                result = prefix.toString();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Exchange between the incoming request and the upstream.
+     */
     private class RedirectionTask extends ProxyTask {
 
-        private HttpResponse response;
+        private LoadBalancer.Upstream upstream;
+        private HttpBodyPipe responseBody;
+        private CompletableFuture<HttpResponse> future;
+
+        /**
+         * Starts the upstream request when the headers of the incoming request are received,
+         * the body is written into the upstream connection as it arrives.
+         * @param request Incoming request without body.
+         * @return Pipe of the request body.
+         */
+        @Override
+        public HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+            HttpBodyPipe requestBody = createPipe();
+            start(request, requestBody);
+            return requestBody;
+        }
 
         @Override
         public HttpResponse execute(HttpRequest request) {
-            HttpClient client = new HttpClient(url);
-            client.setHttpMethod(request.getMethod());
-            //TODO: Set body
-            request.getHeaders().stream().filter(
-                    header -> !header.getHeaderName().equals(HttpHeader.HOST))
-                    .forEach(client::addHttpHeader);
-            return client.request();
+            if(future == null) {
+                start(request, null);
+            }
+
+            HttpResponse response;
+            try {
+                HttpResponse upstreamResponse = future.get();
+                if(upstreamResponse.getBodyConsumer() == responseBody) {
+                    response = new ProxyResponse(upstreamResponse, responseBody,
+                            SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.BUFFER_SIZE), upstream::release);
+                } else {
+                    response = new HttpResponse();
+                    response.setResponseCode(upstreamResponse.getResponseCode());
+                    response.setReasonPhrase(upstreamResponse.getReasonPhrase());
+                    HttpProxy.copyHeaders(upstreamResponse, response);
+                    response.setBody(upstreamResponse.getBody());
+                    upstream.release();
+                }
+            } catch (Exception ex) {
+                Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Upstream request fail %s", cause, upstream);
+                responseBody.abort();
+                upstream.release();
+                response = new HttpResponse();
+                response.setResponseCode(cause instanceof TimeoutException ?
+                        HttpResponseCode.GATEWAY_TIMEOUT : HttpResponseCode.BAD_GATEWAY);
+                response.setBody(new byte[0]);
+            }
+            return response;
+        }
+
+        /**
+         * Sends the request to the upstream selected by the load balancer.
+         * @param request Incoming request.
+         * @param requestBody Pipe of the request body, could be null.
+         */
+        private void start(HttpRequest request, HttpBodyPipe requestBody) {
+            upstream = loadBalancer.select();
+            upstream.acquire();
+            responseBody = createPipe();
+
+            HttpRequest upstreamRequest = new HttpRequest(upstream.createPath(request.getPath()), request.getMethod());
+            upstreamRequest.setHttpVersion(HttpVersion.VERSION_1_1);
+            HttpProxy.copyHeaders(request, upstreamRequest);
+            upstreamRequest.addHeader(new HttpHeader(HttpHeader.HOST, upstream.getHostHeader()));
+            upstreamRequest.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.KEEP_ALIVE));
+            if(requestBody != null && !upstreamRequest.containsHeader(HttpHeader.CONTENT_LENGTH)) {
+                upstreamRequest.addHeader(new HttpHeader(HttpHeader.TRANSFER_ENCODING, HttpHeader.CHUNKED));
+            }
+
+            future = pool.stream(upstream.getProtocol(), upstream.getHost(), upstream.getPort(),
+                    upstreamRequest, requestBody, responseBody,
+                    SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_CONNECT_TIMEOUT),
+                    SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_READ_TIMEOUT));
         }
 
+        /**
+         * Creates a pipe for some of the bodies.
+         * @return Body pipe.
+         */
+        private HttpBodyPipe createPipe() {
+            return new HttpBodyPipe(SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.PIPE_CAPACITY),
+                    SystemProperties.getLong(SystemProperties.Net.Http.Proxy.PIPE_TIMEOUT));
+        }
     }
 }
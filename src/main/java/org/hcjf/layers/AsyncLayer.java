@@ -0,0 +1,55 @@
+package org.hcjf.layers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous proxy of a layer implementation. The invocations are executed over the
+ * threads of the {@link LayerInvocationService} with the session of the invoker thread,
+ * and each invocation obtains the layer instance from the provider of the implementation,
+ * then the stateless layers are not shared between concurrent invocations.
+ * @param <L> Layer interface.
+ * @author javaito
+ */
+public final class AsyncLayer<L extends LayerInterface> {
+
+    private final String implName;
+    private final Supplier<L> provider;
+
+    AsyncLayer(String implName, Supplier<L> provider) {
+        this.implName = implName;
+        this.provider = provider;
+    }
+
+    /**
+     * Return the name of the layer implementation.
+     * @return Implementation name.
+     */
+    public String getImplName() {
+        return implName;
+    }
+
+    /**
+     * Invokes the layer asynchronously.
+     * @param invocation Function that invokes some method of the layer.
+     * @param <R> Expected result type.
+     * @return Future completed with the result of the invocation.
+     */
+    public <R extends Object> CompletableFuture<R> call(Function<L, R> invocation) {
+        return LayerInvocationService.getInstance().invoke(() -> invocation.apply(provider.get()));
+    }
+
+    /**
+     * Invokes the layer asynchronously without result.
+     * @param invocation Consumer that invokes some method of the layer.
+     * @return Future completed when the invocation ends.
+     */
+    public CompletableFuture<Void> run(Consumer<L> invocation) {
+        return LayerInvocationService.getInstance().invoke(() -> {
+            invocation.accept(provider.get());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package org.hcjf.layers;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+/**
+ * Result of an invocation over all the implementations of a layer interface. Contains
+ * the results of the implementations that finished in time and the exceptions of the
+ * implementations that failed, the implementations that didn't finish in time fail
+ * with a timeout exception.
+ * @param <R> Result type.
+ * @author javaito
+ */
+public final class FanOutResult<R extends Object> {
+
+    private final Map<String, R> results;
+    private final Map<String, Throwable> failures;
+
+    FanOutResult() {
+        this.results = new LinkedHashMap<>();
+        this.failures = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds the result of an implementation.
+     * @param implName Implementation name.
+     * @param result Result of the implementation.
+     */
+    void addResult(String implName, R result) {
+        results.put(implName, result);
+    }
+
+    /**
+     * Adds the exception of an implementation.
+     * @param implName Implementation name.
+     * @param throwable Exception of the implementation.
+     */
+    void addFailure(String implName, Throwable throwable) {
+        failures.put(implName, throwable);
+    }
+
+    /**
+     * Return the results indexed by implementation name.
+     * @return Results of the implementations.
+     */
+    public Map<String, R> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * Return the exceptions indexed by implementation name.
+     * @return Exceptions of the implementations.
+     */
+    public Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Verify if all the implementations finished in time without exceptions.
+     * @return Returns true if there are not failures.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Merges the results of the implementations.
+     * @param merger Function to merge two results.
+     * @return Merged result or null if there are not results.
+     */
+    public R merge(BinaryOperator<R> merger) {
+        R result = null;
+        for(R implementationResult : results.values()) {
+            result = result == null ? implementationResult : merger.apply(result, implementationResult);
+        }
+        return result;
+    }
+}
@@ -1,6 +1,9 @@
 package org.hcjf.layers;
 
+import org.hcjf.layers.cache.LayerCache;
 import org.hcjf.layers.crud.CrudLayerInterface;
+import org.hcjf.layers.metrics.LayerMetrics;
+import org.hcjf.layers.metrics.MethodMetrics;
 import org.hcjf.layers.storage.StorageLayerInterface;
 import org.hcjf.service.ServiceSession;
 import org.hcjf.service.ServiceThread;
@@ -131,7 +134,10 @@ public abstract class Layer implements LayerInterface {
 
     /**
      * This method intercepts the call to layer implementation and
-     * save some information about the thread behavior.
+     * save some information about the thread behavior. The access check and
+     * the proxy hooks are called only if the layer overrides them and the cache
+     * is used only if the layer has cached methods. If the layer metrics are enabled
+     * then the latency and the result of the invocation are recorded.
      * @param proxy Object to be called.
      * @param method Method to be called.
      * @param args Method to invoke the method.
@@ -140,18 +146,48 @@ public abstract class Layer implements LayerInterface {
      */
     @Override
     public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        Access access = checkAccess();
-
-        if(access == null) {
-            throw new SecurityException("Access null");
+        LayerDispatcher dispatcher = LayerDispatcher.get(getClass());
+        Object result;
+        if(LayerMetrics.isEnabled()) {
+            MethodMetrics metrics = dispatcher.getMetrics(method, getImplName());
+            boolean failed = true;
+            long startTime = System.nanoTime();
+            try {
+                result = invokeLayer(dispatcher, method, args);
+                failed = false;
+            } finally {
+                metrics.record(System.nanoTime() - startTime, failed);
+            }
+        } else {
+            result = invokeLayer(dispatcher, method, args);
         }
-        if(!access.granted) {
-            if(access.message != null && access.getThrowable() != null) {
-                throw new SecurityException(access.getMessage(), access.getThrowable());
-            } else if(access.getMessage() != null) {
-                throw new SecurityException(access.getMessage());
-            } else if(access.getThrowable() != null) {
-                throw new SecurityException(access.getThrowable());
+        return result;
+    }
+
+    /**
+     * Checks the access and invokes the layer pushing the layer class into the
+     * layer stack of the service thread.
+     * @param dispatcher Dispatcher of the layer class.
+     * @param method Method to be called.
+     * @param args Invocation arguments.
+     * @return Invocation result.
+     * @throws Throwable Throw all the generated exceptions.
+     */
+    private Object invokeLayer(LayerDispatcher dispatcher, Method method, Object[] args) throws Throwable {
+        if(dispatcher.isAccessChecked()) {
+            Access access = checkAccess();
+
+            if(access == null) {
+                throw new SecurityException("Access null");
+            }
+            if(!access.granted) {
+                if(access.message != null && access.getThrowable() != null) {
+                    throw new SecurityException(access.getMessage(), access.getThrowable());
+                } else if(access.getMessage() != null) {
+                    throw new SecurityException(access.getMessage());
+                } else if(access.getThrowable() != null) {
+                    throw new SecurityException(access.getThrowable());
+                }
             }
         }
 
@@ -163,13 +199,18 @@ public abstract class Layer implements LayerInterface {
 
         Object result;
         try {
-            LayerProxy.ProxyInterceptor interceptor =getProxy().onBeforeInvoke(method, args);
-            if(interceptor == null || !interceptor.isCached()) {
-                result = method.invoke(getTarget(), args);
+            if(dispatcher.isProxied()) {
+                LayerProxy layerProxy = getProxy();
+                LayerProxy.ProxyInterceptor interceptor = layerProxy.onBeforeInvoke(method, args);
+                if(interceptor == null || !interceptor.isCached()) {
+                    result = invokeTarget(dispatcher, method, args);
+                } else {
+                    result = interceptor.getResult();
+                }
+                layerProxy.onAfterInvoke(method, result, args);
             } else {
-                result = interceptor.getResult();
+                result = invokeTarget(dispatcher, method, args);
             }
-            getProxy().onAfterInvoke(method, result, args);
         } finally {
             if(serviceThread != null) {
                 serviceThread.removeLayer();
@@ -178,6 +219,32 @@ public abstract class Layer implements LayerInterface {
         return result;
     }
 
+    /**
+     * Invokes the method over the target, if the layer has cached methods then the
+     * invocation is resolved by the cache when it's possible.
+     * @param dispatcher Dispatcher of the layer class.
+     * @param method Method to be called.
+     * @param args Invocation arguments.
+     * @return Invocation result.
+     * @throws Throwable Throw all the generated exceptions.
+     */
+    private Object invokeTarget(LayerDispatcher dispatcher, Method method, Object[] args) throws Throwable {
+        Object result;
+        LayerCache cache = dispatcher.getCache();
+        if(cache == null) {
+            result = dispatcher.invoke(getTarget(), method, args);
+        } else {
+            LayerProxy.ProxyInterceptor interceptor = cache.onBeforeInvoke(method, args);
+            if(interceptor.isCached()) {
+                result = interceptor.getResult();
+            } else {
+                result = dispatcher.invoke(getTarget(), method, args);
+                cache.onAfterInvoke(method, interceptor, result);
+            }
+        }
+        return result;
+    }
+
     /**
      * This method return the invocation target.
      * @return Invation target.
@@ -0,0 +1,252 @@
+package org.hcjf.layers;
+
+import org.hcjf.layers.cache.LayerCache;
+import org.hcjf.layers.metrics.LayerMetrics;
+import org.hcjf.layers.metrics.MethodMetrics;
+import org.hcjf.properties.SystemProperties;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatcher of the invocations of a layer class. The dispatcher knows if the layer overrides
+ * the access check and the proxy hooks, then the invocation skips them when the layer uses the
+ * default implementations, and knows the cache of the layer if the layer has cached methods.
+ * The methods are invoked by invokers generated with the lambda metafactory, one class for each
+ * method that calls the method directly over the target, instead of the reflective invocation.
+ * The void methods, the methods with more parameters than the generated arities, the methods
+ * of non-public interfaces and the methods of interfaces that are not visible from the class
+ * loader of the framework (plugins) are invoked by reflection.
+ * @author javaito
+ */
+final class LayerDispatcher {
+
+    //Marks the methods that are invoked by reflection.
+    private static final Object REFLECTIVE = new Object();
+    //Index of the metrics of the layers without implementation name.
+    private static final String UNNAMED = "";
+    private static final Class<?>[] INVOKER_TYPES = {
+            Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class,
+            Invoker4.class, Invoker5.class, Invoker6.class
+    };
+
+    private static final ClassValue<LayerDispatcher> dispatchers = new ClassValue<LayerDispatcher>() {
+        @Override
+        protected LayerDispatcher computeValue(Class<?> type) {
+            return new LayerDispatcher(type);
+        }
+    };
+
+    private final boolean accessChecked;
+    private final boolean proxied;
+    private final boolean generated;
+    private final LayerCache cache;
+    private final Map<Method, Object> invokers;
+    private final Map<String, Map<Method, MethodMetrics>> metrics;
+
+    private LayerDispatcher(Class<?> layerClass) {
+        this.accessChecked = isOverridden(layerClass, "checkAccess");
+        this.proxied = isOverridden(layerClass, "getProxy");
+        this.generated = SystemProperties.getBoolean(SystemProperties.Layer.DISPATCH_GENERATED_INVOKERS);
+        LayerCache layerCache = LayerCache.get(layerClass);
+        this.cache = layerCache.isEnabled() ? layerCache : null;
+        this.invokers = new ConcurrentHashMap<>();
+        this.metrics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Return the dispatcher of the layer class.
+     * @param layerClass Layer class.
+     * @return Dispatcher instance.
+     */
+    static LayerDispatcher get(Class<? extends Layer> layerClass) {
+        return dispatchers.get(layerClass);
+    }
+
+    /**
+     * Verify if the layer class overrides the access check.
+     * @return Returns true if the access must be checked.
+     */
+    boolean isAccessChecked() {
+        return accessChecked;
+    }
+
+    /**
+     * Verify if the layer class overrides the layer proxy.
+     * @return Returns true if the proxy hooks must be called.
+     */
+    boolean isProxied() {
+        return proxied;
+    }
+
+    /**
+     * Return the cache of the layer class.
+     * @return Layer cache or null if the layer class has not cached methods.
+     */
+    LayerCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Return the metrics of the method for the layer class.
+     * @param method Method of the layer interface.
+     * @param implName Name of the layer implementation.
+     * @return Method metrics instance.
+     */
+    MethodMetrics getMetrics(Method method, String implName) {
+        //The instances of the same layer class could have different implementation names.
+        Map<Method, MethodMetrics> implMetrics = metrics.get(implName == null ? UNNAMED : implName);
+        if(implMetrics == null) {
+            implMetrics = metrics.computeIfAbsent(implName == null ? UNNAMED : implName, N -> new ConcurrentHashMap<>());
+        }
+        MethodMetrics result = implMetrics.get(method);
+        if(result == null) {
+            result = implMetrics.computeIfAbsent(method, M -> LayerMetrics.getMethodMetrics(
+                    M.getDeclaringClass(), implName, M));
+        }
+        return result;
+    }
+
+    /**
+     * Invokes the method over the target. The exceptions thrown by the method are wrapped
+     * into an invocation target exception like the reflective invocation.
+     * @param target Invocation target.
+     * @param method Method to invoke.
+     * @param args Invocation arguments.
+     * @return Invocation result.
+     * @throws InvocationTargetException If the method throws an exception.
+     * @throws IllegalAccessException If the method is not accessible.
+     */
+    Object invoke(Object target, Method method, Object[] args) throws InvocationTargetException, IllegalAccessException {
+        Object result;
+        Object invoker = generated ? getInvoker(method) : REFLECTIVE;
+        if(invoker == REFLECTIVE) {
+            result = method.invoke(target, args);
+        } else {
+            try {
+                switch (args == null ? 0 : args.length) {
+                    case 0: result = ((Invoker0) invoker).invoke(target); break;
+                    case 1: result = ((Invoker1) invoker).invoke(target, args[0]); break;
+                    case 2: result = ((Invoker2) invoker).invoke(target, args[0], args[1]); break;
+                    case 3: result = ((Invoker3) invoker).invoke(target, args[0], args[1], args[2]); break;
+                    case 4: result = ((Invoker4) invoker).invoke(target, args[0], args[1], args[2], args[3]); break;
+                    case 5: result = ((Invoker5) invoker).invoke(target, args[0], args[1], args[2], args[3], args[4]); break;
+                    default: result = ((Invoker6) invoker).invoke(target, args[0], args[1], args[2], args[3], args[4], args[5]);
+                }
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the invoker of the method, the invoker is generated the first time
+     * that the method is called.
+     * @param method Method instance.
+     * @return Invoker instance or the reflective mark.
+     */
+    private Object getInvoker(Method method) {
+        Object result = invokers.get(method);
+        if(result == null) {
+            result = createInvoker(method);
+            invokers.put(method, result);
+        }
+        return result;
+    }
+
+    /**
+     * Generates the invoker of the method using the functional interface of the method arity.
+     * @param method Method instance.
+     * @return Invoker instance or the reflective mark if the invoker can't be generated.
+     */
+    private static Object createInvoker(Method method) {
+        Object result = REFLECTIVE;
+        int arity = method.getParameterCount();
+        Class<?> declaringClass = method.getDeclaringClass();
+        if(arity < INVOKER_TYPES.length && !method.getReturnType().equals(void.class) && isVisible(declaringClass)) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflect(method);
+                Class<?> invokerType = INVOKER_TYPES[arity];
+                result = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(invokerType),
+                        MethodType.genericMethodType(arity + 1), handle, handle.type().wrap())
+                        .getTarget().invoke();
+            } catch (Throwable throwable) {
+                result = REFLECTIVE;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verify if the class is visible from the class loader of the dispatcher, the generated
+     * invokers are defined into this class loader.
+     * @param clazz Class to verify.
+     * @return Returns true if the class is visible.
+     */
+    private static boolean isVisible(Class<?> clazz) {
+        boolean result;
+        try {
+            result = Class.forName(clazz.getName(), false, LayerDispatcher.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException ex) {
+            result = false;
+        }
+        return result;
+    }
+
+    /**
+     * Verify if some class of the hierarchy, between the layer class and the base layer class,
+     * declares the method.
+     * @param layerClass Layer class.
+     * @param methodName Name of a method without parameters declared by the base layer class.
+     * @return Returns true if the method is overridden.
+     */
+    private static boolean isOverridden(Class<?> layerClass, String methodName) {
+        boolean result = false;
+        Class<?> introspectedClass = layerClass;
+        while(!result && introspectedClass != null && !introspectedClass.equals(Layer.class)) {
+            try {
+                introspectedClass.getDeclaredMethod(methodName);
+                result = true;
+            } catch (NoSuchMethodException ex) {
+                introspectedClass = introspectedClass.getSuperclass();
+            }
+        }
+        return result;
+    }
+
+    interface Invoker0 {
+        Object invoke(Object target) throws Throwable;
+    }
+
+    interface Invoker1 {
+        Object invoke(Object target, Object arg0) throws Throwable;
+    }
+
+    interface Invoker2 {
+        Object invoke(Object target, Object arg0, Object arg1) throws Throwable;
+    }
+
+    interface Invoker3 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2) throws Throwable;
+    }
+
+    interface Invoker4 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2, Object arg3) throws Throwable;
+    }
+
+    interface Invoker5 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2, Object arg3, Object arg4) throws Throwable;
+    }
+
+    interface Invoker6 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2, Object arg3, Object arg4, Object arg5) throws Throwable;
+    }
+}
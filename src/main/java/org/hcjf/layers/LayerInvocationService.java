@@ -0,0 +1,79 @@
+package org.hcjf.layers;
+
+import org.hcjf.properties.SystemProperties;
+import org.hcjf.service.Service;
+import org.hcjf.service.ServiceConsumer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * This service executes the asynchronous invocations of the layers. The invocations are
+ * executed over the service threads with the session of the invoker thread, like any
+ * other fork of the services.
+ * @author javaito
+ */
+public final class LayerInvocationService extends Service<ServiceConsumer> {
+
+    private static final LayerInvocationService instance;
+
+    static {
+        instance = new LayerInvocationService();
+    }
+
+    private LayerInvocationService() {
+        super(SystemProperties.get(SystemProperties.Layer.Invocation.SERVICE_NAME),
+                SystemProperties.getInteger(SystemProperties.Layer.Invocation.SERVICE_PRIORITY));
+    }
+
+    /**
+     * Return the instance of the service.
+     * @return Layer invocation service instance.
+     */
+    public static LayerInvocationService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Executes the invocation over a service thread. If the future is cancelled then
+     * the service thread is interrupted.
+     * @param invocation Invocation to execute.
+     * @param <R> Expected result type.
+     * @return Future completed with the result or the exception of the invocation.
+     */
+    public <R extends Object> CompletableFuture<R> invoke(Callable<R> invocation) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Future<?> task = fork(() -> {
+            if(!result.isDone()) {
+                try {
+                    result.complete(invocation.call());
+                } catch (Throwable throwable) {
+                    result.completeExceptionally(throwable);
+                }
+            }
+        });
+        result.whenComplete((V, T) -> {
+            if(result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The service has not consumers.
+     * @param consumer Object with the logic to consume the service.
+     */
+    @Override
+    public void registerConsumer(ServiceConsumer consumer) {
+    }
+
+    /**
+     * The service has not consumers.
+     * @param consumer Consumer to unregister.
+     */
+    @Override
+    public void unregisterConsumer(ServiceConsumer consumer) {
+    }
+}
@@ -15,12 +15,21 @@ import org.hcjf.utils.Version;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -28,6 +37,10 @@ import java.util.stream.Collectors;
 
 /**
  * This class manage all the published layers.
+ * The published implementations are stored into an immutable registry, each publication
+ * creates a new registry and replaces the current one, then the lookup of the layers
+ * doesn't need any lock. Each registry keeps the ready proxies of the implementations
+ * already requested, indexed by interface and implementation name.
  * @author javaito
  */
 public final class Layers {
@@ -45,48 +58,55 @@ public final class Layers {
     }
 
     private final Map<Class<? extends Layer>, Object> initialInstances;
-    private final Map<Class<? extends LayerInterface>, Map<String, String>> implAlias;
-    private final Map<Class<? extends LayerInterface>, Map<String, Class<? extends Layer>>> layerImplementations;
-    private final Map<Class<? extends LayerInterface>, Map<String, String>> pluginLayerImplementations;
     private final Map<Class<? extends Layer>, LayerInterface> instanceCache;
-    private final Map<String, LayerInterface> pluginWrapperCache;
     private final Map<String, Layer> pluginCache;
     private final Set<Resource> resources;
+    private volatile Registry registry;
 
     private Layers() {
-        initialInstances = new HashMap<>();
-        implAlias = new HashMap<>();
-        layerImplementations = new HashMap<>();
-        pluginLayerImplementations = new HashMap<>();
-        instanceCache = new HashMap<>();
-        pluginWrapperCache = new HashMap<>();
-        pluginCache = new HashMap<>();
-        resources = new HashSet<>();
+        initialInstances = new ConcurrentHashMap<>();
+        instanceCache = new ConcurrentHashMap<>();
+        pluginCache = new ConcurrentHashMap<>();
+        resources = ConcurrentHashMap.newKeySet();
+        registry = new Registry();
     }
 
     /**
-     * Get from cache the implementation instance or create an instance.
-     * @param layerClass Layer interface class.
+     * Creates the provider of the implementation instances. The instances of the stateful
+     * layers are created only once, for the stateless layers the provider creates a new
+     * instance each time using the constructors resolved here.
      * @param clazz Layer implementation class.
-     * @param <L> Expected interface class.
-     * @return Return the implementation instance.
+     * @return Implementation provider.
      */
-    private static synchronized <L extends LayerInterface> L getImplementationInstance(
-            Class<? extends L> layerClass, Class<? extends Layer> clazz) {
-        L result = null;
-        result = (L) instance.instanceCache.get(clazz);
-        if (result == null) {
+    private static Supplier<LayerInterface> createImplementationProvider(Class<? extends Layer> clazz) {
+        Supplier<LayerInterface> result;
+        LayerInterface proxy = instance.instanceCache.get(clazz);
+        if(proxy != null) {
+            result = () -> proxy;
+        } else {
             try {
-                result = (L) instance.initialInstances.get(clazz);
-                if(result == null) {
-                    result = (L) clazz.newInstance();
+                Layer layer = (Layer) instance.initialInstances.get(clazz);
+                if(layer == null) {
+                    layer = clazz.newInstance();
                 }
 
-                result = (L) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
-                        getLayerInterfaceClass(clazz).toArray(new Class[]{}), result);
-
-                if (result.isStateful()) {
-                    instance.instanceCache.put(clazz, result);
+                LayerInterface newProxy = (LayerInterface) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+                        getLayerInterfaceClass(clazz).toArray(new Class<?>[0]), layer);
+                if (layer.isStateful()) {
+                    LayerInterface currentProxy = instance.instanceCache.putIfAbsent(clazz, newProxy);
+                    LayerInterface statefulProxy = currentProxy == null ? newProxy : currentProxy;
+                    result = () -> statefulProxy;
+                } else {
+                    //The constructor of the proxy class is resolved once and used for each new instance.
+                    Constructor<?> proxyConstructor = newProxy.getClass().getConstructor(InvocationHandler.class);
+                    Constructor<? extends Layer> layerConstructor = clazz.getDeclaredConstructor();
+                    result = () -> {
+                        try {
+                            return (LayerInterface) proxyConstructor.newInstance(layerConstructor.newInstance());
+                        } catch (Exception ex) {
+                            throw new IllegalArgumentException("Unable to create layer instance", ex);
+                        }
+                    };
                 }
             } catch (Exception ex) {
                 throw new IllegalArgumentException("Unable to create layer instance", ex);
@@ -96,27 +116,22 @@ public final class Layers {
     }
 
     /**
-     * Get from cache the plugin implementation instance or create a new implementation.
+     * Creates the provider of a plugin implementation, the provider returns always the same proxy
+     * and the proxy delegates each invocation to the last deployed version of the plugin class.
      * @param layerClass Layer interface class.
      * @param layerName Plugin class name.
-     * @param <L> Expected interface class.
-     * @return Return the plugin implementation instance.
+     * @return Plugin implementation provider.
      */
-    private static synchronized <L extends LayerInterface> L getPluginImplementationInstance(
-            Class<? extends L> layerClass, String layerName) {
-        L result = null;
-        result = (L) instance.pluginWrapperCache.get(layerName);
-        if(result == null) {
-            result = (L) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
-                    new Class[]{layerClass}, new PluginLayer() {
-                        @Override
-                        protected Object getTarget() {
-                            return instance.pluginCache.get(layerName);
-                        }
-                    });
-            instance.pluginWrapperCache.put(layerName, result);
-        }
-        return result;
+    private static Supplier<LayerInterface> createPluginImplementationProvider(
+            Class<? extends LayerInterface> layerClass, String layerName) {
+        LayerInterface proxy = (LayerInterface) Proxy.newProxyInstance(ClassLoader.getSystemClassLoader(),
+                new Class[]{layerClass}, new PluginLayer() {
+                    @Override
+                    protected Object getTarget() {
+                        return instance.pluginCache.get(layerName);
+                    }
+                });
+        return () -> proxy;
     }
 
     /**
@@ -129,39 +144,12 @@ public final class Layers {
      * does't exist.
      */
     public static <L extends LayerInterface> L get(Class<? extends L> layerClass, String implName) {
-        L result = null;
-
-        //Check if the implementation name is an alias
-        if(instance.layerImplementations.containsKey(layerClass)) {
-
-            Class<? extends Layer> clazz = instance.layerImplementations.get(layerClass).get(implName);
-            //If the implementation class is not founded with the specific alias then we check
-            //if the implementation name is an alias.
-            if(clazz == null && instance.implAlias.get(layerClass).containsKey(implName)) {
-                clazz = instance.layerImplementations.get(layerClass).get(
-                        instance.implAlias.get(layerClass).get(implName));
-            }
-
-            if(clazz != null) {
-                result = getImplementationInstance(layerClass, clazz);
-            }
-        }
-
-        if(result == null) {
-            if (instance.pluginLayerImplementations.containsKey(layerClass)) {
-                String className = instance.pluginLayerImplementations.get(layerClass).get(implName);
-                if (className != null) {
-                    result = getPluginImplementationInstance(layerClass, className);
-                }
-            }
-        }
-
-        if(result == null) {
+        Supplier<LayerInterface> provider = instance.registry.getProvider(layerClass, implName);
+        if(provider == null) {
             throw new IllegalArgumentException("Layer implementation not found: "
                     + layerClass + "@" + implName);
         }
-
-        return result;
+        return (L) provider.get();
     }
 
     /**
@@ -173,12 +161,11 @@ public final class Layers {
      */
     public static <L extends LayerInterface> L get(Class<? extends L> layerClass, LayerMatcher<L> matcher) {
         L result = null;
-        if(instance.layerImplementations.containsKey(layerClass)) {
-            Map<String, Class<? extends Layer>> layersByName =
-                    instance.layerImplementations.get(layerClass);
+        Registry registry = instance.registry;
+        Map<String, Class<? extends Layer>> layersByName = registry.layerImplementations.get(layerClass);
+        if(layersByName != null) {
             for(String implName : layersByName.keySet()) {
-                result = getImplementationInstance(
-                        layerClass, layersByName.get(implName));
+                result = (L) registry.getProvider(layerClass, implName).get();
                 if(matcher.match(result)){
                     break;
                 } else {
@@ -188,12 +175,10 @@ public final class Layers {
         }
 
         if(result == null) {
-            if (instance.pluginLayerImplementations.containsKey(layerClass)) {
-                Map<String, String> layersByName =
-                        instance.pluginLayerImplementations.get(layerClass);
-                for (String implName : layersByName.keySet()) {
-                    result = getPluginImplementationInstance(
-                            layerClass, layersByName.get(implName));
+            Map<String, String> pluginsByName = registry.pluginLayerImplementations.get(layerClass);
+            if (pluginsByName != null) {
+                for (String implName : pluginsByName.keySet()) {
+                    result = (L) registry.getProvider(layerClass, implName).get();
                     if(matcher.match(result)){
                         break;
                     } else {
@@ -210,6 +195,92 @@ public final class Layers {
         return result;
     }
 
+    /**
+     * Return the asynchronous proxy of the layer interface implementation indexed by implName parameter.
+     * @param layerClass Layer interface for the expected implementation.
+     * @param implName Implementation name.
+     * @param <L> Expected interface.
+     * @return Asynchronous proxy of the implementation.
+     * @throws IllegalArgumentException If the implementation does't exist.
+     */
+    public static <L extends LayerInterface> AsyncLayer<L> getAsync(Class<? extends L> layerClass, String implName) {
+        if(instance.registry.getProvider(layerClass, implName) == null) {
+            throw new IllegalArgumentException("Layer implementation not found: "
+                    + layerClass + "@" + implName);
+        }
+        return new AsyncLayer<>(implName, () -> get(layerClass, implName));
+    }
+
+    /**
+     * Invokes in parallel all the implementations of the layer interface that match, using the default
+     * fan out timeout.
+     * @param layerClass Layer class.
+     * @param matcher Layer matcher.
+     * @param invocation Function that invokes some method of each implementation.
+     * @param <L> Expected layer class.
+     * @param <R> Expected result type.
+     * @return Results of the implementations.
+     */
+    public static <L extends LayerInterface, R extends Object> FanOutResult<R> fanOut(
+            Class<? extends L> layerClass, LayerMatcher<L> matcher, Function<L, R> invocation) {
+        return fanOut(layerClass, matcher, invocation,
+                SystemProperties.getLong(SystemProperties.Layer.Invocation.FAN_OUT_TIMEOUT));
+    }
+
+    /**
+     * Invokes in parallel all the implementations of the layer interface that match. The invocations are
+     * executed over the threads of the layer invocation service with the session of the current thread,
+     * and the method waits for all the invocations until the timeout, the invocations that not finish in
+     * time are cancelled.
+     * @param layerClass Layer class.
+     * @param matcher Layer matcher.
+     * @param invocation Function that invokes some method of each implementation.
+     * @param timeout Max time to wait for all the invocations in milliseconds.
+     * @param <L> Expected layer class.
+     * @param <R> Expected result type.
+     * @return Results of the implementations.
+     */
+    public static <L extends LayerInterface, R extends Object> FanOutResult<R> fanOut(
+            Class<? extends L> layerClass, LayerMatcher<L> matcher, Function<L, R> invocation, long timeout) {
+        Registry registry = instance.registry;
+        Set<String> implNames = new LinkedHashSet<>();
+        Map<String, Class<? extends Layer>> layersByName = registry.layerImplementations.get(layerClass);
+        if(layersByName != null) {
+            implNames.addAll(layersByName.keySet());
+        }
+        Map<String, String> pluginsByName = registry.pluginLayerImplementations.get(layerClass);
+        if(pluginsByName != null) {
+            implNames.addAll(pluginsByName.keySet());
+        }
+
+        Map<String, CompletableFuture<R>> futures = new LinkedHashMap<>();
+        for(String implName : implNames) {
+            L layer = (L) registry.getProvider(layerClass, implName).get();
+            if(matcher.match(layer)) {
+                futures.put(implName, LayerInvocationService.getInstance().invoke(() -> invocation.apply(layer)));
+            }
+        }
+
+        FanOutResult<R> result = new FanOutResult<>();
+        long deadline = System.currentTimeMillis() + timeout;
+        for(Map.Entry<String, CompletableFuture<R>> entry : futures.entrySet()) {
+            try {
+                result.addResult(entry.getKey(), entry.getValue().get(
+                        Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (ExecutionException ex) {
+                result.addFailure(entry.getKey(), ex.getCause());
+            } catch (TimeoutException | InterruptedException ex) {
+                entry.getValue().cancel(true);
+                result.addFailure(entry.getKey(), ex);
+                if(ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    deadline = 0;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * This method publish the layers in order to be used by anyone
      * that has the credentials to use the layer.
@@ -236,34 +307,37 @@ public final class Layers {
                     " because the implementation is not name declared");
         }
 
+        //The changes are applied over a copy of the registry and the copy
+        //replaces the current registry when the publication is complete.
+        Registry registry = new Registry(instance.registry);
         for(Class<? extends LayerInterface> layerInterfaceClass : getLayerInterfaceClass(layerClass)) {
             //Creates the map for the implementations and aliases
-            if (!instance.layerImplementations.containsKey(layerInterfaceClass)) {
-                instance.layerImplementations.put(layerInterfaceClass, new HashMap<>());
-                instance.implAlias.put(layerInterfaceClass, new HashMap<>());
+            if (!registry.layerImplementations.containsKey(layerInterfaceClass)) {
+                registry.layerImplementations.put(layerInterfaceClass, new HashMap<>());
+                registry.implAlias.put(layerInterfaceClass, new HashMap<>());
             }
 
             //Check if the impl name exist into the implementations.
-            if (instance.layerImplementations.get(layerInterfaceClass).containsKey(implName)) {
-                checkOverwriteAlias(layerInterfaceClass, layerInstance, implName);
+            if (registry.layerImplementations.get(layerInterfaceClass).containsKey(implName)) {
+                checkOverwriteAlias(registry, layerInterfaceClass, layerInstance, implName);
             }
 
             //Check if the some alias exist into the map of aliases for the specific interface.
             if (layerInstance.getAliases() != null) {
                 for (String alias : layerInstance.getAliases()) {
-                    checkOverwriteAlias(layerInterfaceClass, layerInstance, alias);
+                    checkOverwriteAlias(registry, layerInterfaceClass, layerInstance, alias);
                 }
             }
 
             if(layerInstance.isStateful()) {
                 instance.initialInstances.put(layerClass, layerInstance);
             }
-            instance.layerImplementations.get(layerInterfaceClass).put(implName, layerClass);
+            registry.layerImplementations.get(layerInterfaceClass).put(implName, layerClass);
 
             //Add one map entry for each alias with the same implementation name.
             if (layerInstance.getAliases() != null) {
                 for (String alias : layerInstance.getAliases()) {
-                    instance.implAlias.get(layerInterfaceClass).put(alias, implName);
+                    registry.implAlias.get(layerInterfaceClass).put(alias, implName);
                 }
             }
 
@@ -273,6 +347,8 @@ public final class Layers {
             }
         }
 
+        instance.registry = registry;
+
         //Register the implementation name into the named uuid singleton
         if(layerInstance instanceof IdentifiableLayerInterface) {
             NamedUuid.registerName(layerInstance.getImplName());
@@ -283,13 +359,14 @@ public final class Layers {
 
     /**
      * Check if the implementation could be overwritten.
+     * @param registry Registry that is being modified.
      * @param layerInterfaceClass Layer interface.
      * @param layerInstance Layer instance.
      */
-    private static void checkOverwriteAlias(Class<? extends LayerInterface> layerInterfaceClass, Layer layerInstance, String alias) {
-        Layer initialImplementation =
-                (Layer) instance.initialInstances.get(
-                        instance.layerImplementations.get(layerInterfaceClass).get(layerInstance.getImplName()));
+    private static void checkOverwriteAlias(Registry registry, Class<? extends LayerInterface> layerInterfaceClass,
+                                            Layer layerInstance, String alias) {
+        Class<? extends Layer> initialClass = registry.layerImplementations.get(layerInterfaceClass).get(layerInstance.getImplName());
+        Layer initialImplementation = initialClass == null ? null : (Layer) instance.initialInstances.get(initialClass);
         if(initialImplementation != null) {
             if (initialImplementation.isOverwritable()) {
                 Log.d(SystemProperties.get(SystemProperties.Layer.LOG_TAG),
@@ -362,19 +439,20 @@ public final class Layers {
                     Log.d(SystemProperties.get(SystemProperties.Layer.LOG_TAG), "Layer %s loaded", layer.getImplName());
                 }
 
+                Registry registry = new Registry(instance.registry);
                 for (Layer layerInstance : toDeployLayers) {
-                    instance.pluginCache.remove(layerInstance.getClass().getName());
                     instance.pluginCache.put(layerInstance.getClass().getName(), layerInstance);
 
                     for(Class<? extends LayerInterface> layerInterfaceClass : getLayerInterfaceClass(layerInstance.getClass())) {
-                        if (!instance.pluginLayerImplementations.containsKey(layerInterfaceClass)) {
-                            instance.pluginLayerImplementations.put(layerInterfaceClass, new HashMap<>());
+                        if (!registry.pluginLayerImplementations.containsKey(layerInterfaceClass)) {
+                            registry.pluginLayerImplementations.put(layerInterfaceClass, new HashMap<>());
                         }
-                        if (!instance.pluginLayerImplementations.get(layerInterfaceClass).containsKey(layerInstance.getImplName())) {
-                            instance.pluginLayerImplementations.get(layerInterfaceClass).put(layerInstance.getImplName(), layerInstance.getClass().getName());
+                        if (!registry.pluginLayerImplementations.get(layerInterfaceClass).containsKey(layerInstance.getImplName())) {
+                            registry.pluginLayerImplementations.get(layerInterfaceClass).put(layerInstance.getImplName(), layerInstance.getClass().getName());
                         }
                     }
                 }
+                instance.registry = registry;
             } else {
                 Log.d(SystemProperties.get(SystemProperties.Layer.LOG_TAG), "Plugin refused (%s:%s)", pluginGroupName, pluginName);
             }
@@ -441,4 +519,99 @@ public final class Layers {
     }
 
     public interface ResourcePredicate extends Predicate<Resource> {}
+
+    /**
+     * Snapshot of the published implementations. The maps of the implementations are never
+     * modified after the registry is published, the only mutable structure is the cache of
+     * providers that is populated by the readers.
+     */
+    private static final class Registry {
+
+        private final Map<Class<? extends LayerInterface>, Map<String, Class<? extends Layer>>> layerImplementations;
+        private final Map<Class<? extends LayerInterface>, Map<String, String>> implAlias;
+        private final Map<Class<? extends LayerInterface>, Map<String, String>> pluginLayerImplementations;
+        private final Map<Class<? extends LayerInterface>, Map<String, Supplier<LayerInterface>>> providers;
+
+        private Registry() {
+            layerImplementations = new HashMap<>();
+            implAlias = new HashMap<>();
+            pluginLayerImplementations = new HashMap<>();
+            providers = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Creates a copy of the registry to be modified, the cache of providers is not copied.
+         * @param registry Current registry.
+         */
+        private Registry(Registry registry) {
+            this();
+            registry.layerImplementations.forEach((K, V) -> layerImplementations.put(K, new HashMap<>(V)));
+            registry.implAlias.forEach((K, V) -> implAlias.put(K, new HashMap<>(V)));
+            registry.pluginLayerImplementations.forEach((K, V) -> pluginLayerImplementations.put(K, new HashMap<>(V)));
+        }
+
+        /**
+         * Return the provider of the implementation, the provider is created the first time
+         * that the implementation is requested.
+         * @param layerClass Layer interface class.
+         * @param implName Implementation name or alias.
+         * @return Implementation provider or null if the implementation doesn't exist.
+         */
+        private Supplier<LayerInterface> getProvider(Class<? extends LayerInterface> layerClass, String implName) {
+            Map<String, Supplier<LayerInterface>> providersByName = providers.get(layerClass);
+            if(providersByName == null) {
+                providersByName = new ConcurrentHashMap<>();
+                Map<String, Supplier<LayerInterface>> current = providers.putIfAbsent(layerClass, providersByName);
+                if(current != null) {
+                    providersByName = current;
+                }
+            }
+
+            Supplier<LayerInterface> result = implName == null ? null : providersByName.get(implName);
+            if(result == null && implName != null) {
+                result = createProvider(layerClass, implName);
+                if(result != null) {
+                    Supplier<LayerInterface> current = providersByName.putIfAbsent(implName, result);
+                    if(current != null) {
+                        result = current;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Resolves the implementation name and creates the provider.
+         * @param layerClass Layer interface class.
+         * @param implName Implementation name or alias.
+         * @return Implementation provider or null if the implementation doesn't exist.
+         */
+        private Supplier<LayerInterface> createProvider(Class<? extends LayerInterface> layerClass, String implName) {
+            Supplier<LayerInterface> result = null;
+            Map<String, Class<? extends Layer>> layersByName = layerImplementations.get(layerClass);
+            if(layersByName != null) {
+                Class<? extends Layer> clazz = layersByName.get(implName);
+                //If the implementation class is not founded with the specific alias then we check
+                //if the implementation name is an alias.
+                if(clazz == null && implAlias.get(layerClass).containsKey(implName)) {
+                    clazz = layersByName.get(implAlias.get(layerClass).get(implName));
+                }
+
+                if(clazz != null) {
+                    result = createImplementationProvider(clazz);
+                }
+            }
+
+            if(result == null) {
+                Map<String, String> pluginsByName = pluginLayerImplementations.get(layerClass);
+                if (pluginsByName != null) {
+                    String className = pluginsByName.get(implName);
+                    if (className != null) {
+                        result = createPluginImplementationProvider(layerClass, className);
+                    }
+                }
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package org.hcjf.layers.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This annotation marks the results of a layer method as cacheable. The annotation could be
+ * placed over the method of the layer interface or over the method of the layer implementation,
+ * the results are stored by the layer invocation using the arguments of the invocation as key.
+ * All the caches of a layer are invalidated when the create, update or delete methods of the
+ * crud interfaces are invoked over the same layer.
+ * @author javaito
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cached {
+
+    /**
+     * Time to live of the cached results in milliseconds, zero to store the results
+     * without expiration and a negative value to use the default time to live.
+     * @return Time to live.
+     */
+    long ttl() default -1;
+
+    /**
+     * Max number of results stored for the method, a negative value to use the
+     * default max size.
+     * @return Max size.
+     */
+    int maxSize() default -1;
+
+    /**
+     * Policy used to evict the results when the cache is full.
+     * @return Eviction policy.
+     */
+    Eviction eviction() default Eviction.LRU;
+
+    /**
+     * If the value is true then the identity of the current session is part of the key,
+     * then the results are not shared between identities.
+     * @return Session scoped value.
+     */
+    boolean sessionScoped() default false;
+
+    /**
+     * Eviction policies.
+     */
+    enum Eviction {
+
+        /**
+         * Evicts the least recently used result.
+         */
+        LRU,
+
+        /**
+         * Evicts the least frequently used result, the oldest between results with the same frequency.
+         */
+        LFU
+
+    }
+}
@@ -0,0 +1,259 @@
+package org.hcjf.layers.cache;
+
+import org.hcjf.layers.LayerProxy;
+import org.hcjf.layers.crud.CreateLayerInterface;
+import org.hcjf.layers.crud.CrudLayerInterface;
+import org.hcjf.layers.crud.DeleteLayerInterface;
+import org.hcjf.layers.crud.UpdateLayerInterface;
+import org.hcjf.properties.SystemProperties;
+import org.hcjf.service.ServiceSession;
+import org.hcjf.service.ServiceThread;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class contains the caches of the methods of a layer class annotated with {@link Cached}.
+ * The layer invocation calls the before invoke method, that returns an interceptor with the
+ * stored result if the invocation is resolved by the cache, and the after invoke method with the
+ * result of the invocation to store it. The create, update and delete methods of the crud
+ * interfaces invalidate all the caches of the layer.
+ * @author javaito
+ */
+public final class LayerCache {
+
+    private static final Object NOT_CACHED = new Object();
+    private static final Object WRITE = new Object();
+    private static final LayerProxy.ProxyInterceptor NOT_INTERCEPTED = new LayerProxy.ProxyInterceptor();
+    private static final Set<Class<?>> WRITE_INTERFACES = new HashSet<>(Arrays.asList(
+            CrudLayerInterface.class, CreateLayerInterface.class,
+            UpdateLayerInterface.class, DeleteLayerInterface.class));
+    private static final Set<String> WRITE_METHODS = new HashSet<>(Arrays.asList("create", "update", "delete"));
+
+    private static final ClassValue<LayerCache> caches = new ClassValue<LayerCache>() {
+        @Override
+        protected LayerCache computeValue(Class<?> type) {
+            return new LayerCache(type);
+        }
+    };
+
+    private final Class<?> layerClass;
+    private final boolean enabled;
+    private final Map<Method, Object> methods;
+    private final Map<Method, MethodCache> methodCaches;
+
+    private LayerCache(Class<?> layerClass) {
+        this.layerClass = layerClass;
+        this.enabled = SystemProperties.getBoolean(SystemProperties.Layer.Cache.ENABLED) && hasCachedMethods(layerClass);
+        this.methods = new ConcurrentHashMap<>();
+        this.methodCaches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Return the cache of the layer class.
+     * @param layerClass Layer class.
+     * @return Layer cache instance.
+     */
+    public static LayerCache get(Class<?> layerClass) {
+        return caches.get(layerClass);
+    }
+
+    /**
+     * Return the layer class of the cache.
+     * @return Layer class.
+     */
+    public Class<?> getLayerClass() {
+        return layerClass;
+    }
+
+    /**
+     * Verify if the layer class has cached methods, if the value is false then the
+     * layer invocation ignores the cache.
+     * @return Enabled value.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the caches of the methods invoked at least once.
+     * @return Collection of method caches.
+     */
+    public Collection<MethodCache> getMethodCaches() {
+        return Collections.unmodifiableCollection(new ArrayList<>(methodCaches.values()));
+    }
+
+    /**
+     * Return the cache of a method.
+     * @param methodName Name of the method.
+     * @param parameterTypes Parameter types of the method.
+     * @return Method cache or null if the method is not cached or it was never invoked.
+     */
+    public MethodCache getMethodCache(String methodName, Class<?>... parameterTypes) {
+        MethodCache result = null;
+        try {
+            result = methodCaches.get(layerClass.getMethod(methodName, parameterTypes));
+        } catch (NoSuchMethodException ex) {
+        }
+        return result;
+    }
+
+    /**
+     * Removes the results of all the cached methods of the layer.
+     */
+    public void invalidate() {
+        for(MethodCache methodCache : methodCaches.values()) {
+            methodCache.invalidate();
+        }
+    }
+
+    /**
+     * This method is called before the invocation of the layer.
+     * @param method Method of the layer interface to invoke.
+     * @param params Invocation arguments.
+     * @return Interceptor that contains the stored result if the invocation is resolved
+     * by the cache, this interceptor must be passed to the after invoke method.
+     */
+    public LayerProxy.ProxyInterceptor onBeforeInvoke(Method method, Object[] params) {
+        LayerProxy.ProxyInterceptor result = NOT_INTERCEPTED;
+        Object resolution = resolve(method);
+        if(resolution instanceof MethodCache) {
+            MethodCache methodCache = (MethodCache) resolution;
+            long generation = methodCache.getGeneration();
+            MethodCache.Key key = methodCache.createKey(
+                    methodCache.isSessionScoped() ? getIdentity() : null, params);
+            Object value = methodCache.get(key);
+            if(value == MethodCache.MISS) {
+                result = new PendingInterceptor(methodCache, key, generation);
+            } else {
+                result = new LayerProxy.ProxyInterceptor(true, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method is called after the invocation of the layer, when the invocation was
+     * not resolved by the cache.
+     * @param method Method of the layer interface invoked.
+     * @param interceptor Interceptor returned by the before invoke method.
+     * @param result Invocation result.
+     */
+    public void onAfterInvoke(Method method, LayerProxy.ProxyInterceptor interceptor, Object result) {
+        if(interceptor instanceof PendingInterceptor) {
+            PendingInterceptor pendingInterceptor = (PendingInterceptor) interceptor;
+            pendingInterceptor.methodCache.put(pendingInterceptor.key, result, pendingInterceptor.generation);
+        } else if(resolve(method) == WRITE) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Resolves the cache of the interface method, the result is the method cache, the
+     * write mark or the not cached mark.
+     * @param method Method of the layer interface.
+     * @return Resolution of the method.
+     */
+    private Object resolve(Method method) {
+        Object result = methods.get(method);
+        if(result == null) {
+            result = methods.computeIfAbsent(method, this::createResolution);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the resolution of the method using the annotation of the implementation
+     * method or the annotation of the interface method. The interface methods with the
+     * same signature share the method cache.
+     * @param method Method of the layer interface.
+     * @return Resolution of the method.
+     */
+    private Object createResolution(Method method) {
+        Object result = NOT_CACHED;
+        Method implementationMethod;
+        try {
+            implementationMethod = layerClass.getMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException ex) {
+            implementationMethod = method;
+        }
+        Cached cached = implementationMethod.getAnnotation(Cached.class);
+        if(cached == null) {
+            cached = method.getAnnotation(Cached.class);
+        }
+        if(cached != null) {
+            Cached finalCached = cached;
+            result = methodCaches.computeIfAbsent(implementationMethod, M -> new MethodCache(M.toGenericString(),
+                    finalCached.ttl() < 0 ?
+                            SystemProperties.getLong(SystemProperties.Layer.Cache.DEFAULT_TTL) : finalCached.ttl(),
+                    finalCached.maxSize() < 0 ?
+                            SystemProperties.getInteger(SystemProperties.Layer.Cache.DEFAULT_MAX_SIZE) : finalCached.maxSize(),
+                    finalCached.eviction(), finalCached.sessionScoped()));
+        } else if(WRITE_INTERFACES.contains(method.getDeclaringClass()) && WRITE_METHODS.contains(method.getName())) {
+            result = WRITE;
+        }
+        return result;
+    }
+
+    /**
+     * Return the id of the identity associated to the current thread.
+     * @return Identity id or null if the current thread is not a service thread.
+     */
+    private static Object getIdentity() {
+        Object result = null;
+        if(Thread.currentThread() instanceof ServiceThread) {
+            ServiceSession session = ((ServiceThread) Thread.currentThread()).getSession();
+            if(session != null) {
+                result = session.currentIdentity().getId();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verify if some public method of the class or some method of the interfaces
+     * of the class is annotated as cached.
+     * @param layerClass Layer class.
+     * @return Returns true if the class has cached methods.
+     */
+    private static boolean hasCachedMethods(Class<?> layerClass) {
+        boolean result = false;
+        for(Method method : layerClass.getMethods()) {
+            if(method.isAnnotationPresent(Cached.class)) {
+                result = true;
+                break;
+            }
+        }
+        Class<?> introspectedClass = layerClass;
+        while(!result && introspectedClass != null) {
+            for(Class<?> interfaceClass : introspectedClass.getInterfaces()) {
+                for(Method method : interfaceClass.getMethods()) {
+                    if(method.isAnnotationPresent(Cached.class)) {
+                        result = true;
+                        break;
+                    }
+                }
+            }
+            introspectedClass = introspectedClass.getSuperclass();
+        }
+        return result;
+    }
+
+    /**
+     * Interceptor of the invocations not resolved by the cache, contains the key
+     * to store the result after the invocation.
+     */
+    private static final class PendingInterceptor extends LayerProxy.ProxyInterceptor {
+
+        private final MethodCache methodCache;
+        private final MethodCache.Key key;
+        private final long generation;
+
+        private PendingInterceptor(MethodCache methodCache, MethodCache.Key key, long generation) {
+            this.methodCache = methodCache;
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.hcjf.layers.cache;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class stores the results of a cached layer method indexed by the arguments of
+ * the invocation, and the identity of the session if the cache is session scoped.
+ * The results are evicted using the policy of the method when the cache is full and
+ * removed when they expire.
+ * @author javaito
+ */
+public final class MethodCache {
+
+    static final Object MISS = new Object();
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private final String name;
+    private final long ttl;
+    private final int maxSize;
+    private final Cached.Eviction eviction;
+    private final boolean sessionScoped;
+    private final Map<Key, Entry> entries;
+    private final Map<Long, LinkedHashSet<Entry>> frequencies;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder expirations;
+    private final LongAdder invalidations;
+    private volatile long generation;
+    private long minFrequency;
+
+    MethodCache(String name, long ttl, int maxSize, Cached.Eviction eviction, boolean sessionScoped) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        }
+        this.name = name;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.eviction = eviction;
+        this.sessionScoped = sessionScoped;
+        this.entries = eviction == Cached.Eviction.LRU ? new LinkedHashMap<>(16, 0.75f, true) : new HashMap<>();
+        this.frequencies = new HashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.expirations = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    /**
+     * Return the name of the cache, this name is the signature of the cached method.
+     * @return Cache name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the time to live of the results in milliseconds.
+     * @return Time to live, zero if the results never expire.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Return the max number of results stored.
+     * @return Max size.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Return the eviction policy of the cache.
+     * @return Eviction policy.
+     */
+    public Cached.Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * Verify if the identity of the session is part of the key.
+     * @return Session scoped value.
+     */
+    public boolean isSessionScoped() {
+        return sessionScoped;
+    }
+
+    /**
+     * Return the number of results stored.
+     * @return Cache size.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Return the number of invocations resolved by the cache.
+     * @return Number of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of invocations that was not resolved by the cache.
+     * @return Number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Return the fraction of the invocations resolved by the cache.
+     * @return Hit ratio between zero and one.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Return the number of results evicted because the cache was full.
+     * @return Number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Return the number of results removed because they expired.
+     * @return Number of expirations.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Return the number of times that the cache was invalidated.
+     * @return Number of invalidations.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Removes all the results of the cache. The results of the invocations that started
+     * before the invalidation are not stored.
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+        frequencies.clear();
+        generation++;
+        invalidations.increment();
+    }
+
+    /**
+     * Return the generation of the cache, the generation changes each time that the cache is invalidated.
+     * @return Generation of the cache.
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Creates the key of the invocation.
+     * @param identity Identity of the session or null.
+     * @param args Invocation arguments.
+     * @return Key instance.
+     */
+    Key createKey(Object identity, Object[] args) {
+        return new Key(sessionScoped ? identity : null, args == null ? EMPTY_ARGS : args.clone());
+    }
+
+    /**
+     * Return the result stored for the key.
+     * @param key Invocation key.
+     * @return Result stored or the miss mark if there are not a valid result for the key.
+     */
+    synchronized Object get(Key key) {
+        Object result = MISS;
+        Entry entry = entries.get(key);
+        if(entry != null) {
+            if(entry.expiration > 0 && entry.expiration < System.currentTimeMillis()) {
+                remove(entry);
+                expirations.increment();
+            } else {
+                if(eviction == Cached.Eviction.LFU) {
+                    touch(entry);
+                }
+                result = entry.value;
+            }
+        }
+        if(result == MISS) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result for the key, the result is discarded if the cache was invalidated
+     * after the generation.
+     * @param key Invocation key.
+     * @param value Result of the invocation.
+     * @param generation Generation of the cache when the invocation started.
+     */
+    synchronized void put(Key key, Object value, long generation) {
+        if(generation == this.generation) {
+            long expiration = ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+            Entry entry = entries.get(key);
+            if(entry == null) {
+                if(entries.size() >= maxSize) {
+                    evict();
+                }
+                entry = new Entry(key, value, expiration);
+                entries.put(key, entry);
+                if(eviction == Cached.Eviction.LFU) {
+                    frequencies.computeIfAbsent(entry.frequency, F -> new LinkedHashSet<>()).add(entry);
+                    minFrequency = entry.frequency;
+                }
+            } else {
+                entry.value = value;
+                entry.expiration = expiration;
+            }
+        }
+    }
+
+    /**
+     * Removes an entry using the eviction policy.
+     */
+    private void evict() {
+        Entry victim;
+        if(eviction == Cached.Eviction.LRU) {
+            victim = entries.values().iterator().next();
+        } else {
+            victim = frequencies.get(minFrequency).iterator().next();
+        }
+        remove(victim);
+        evictions.increment();
+    }
+
+    /**
+     * Removes the entry from the cache.
+     * @param entry Entry instance.
+     */
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        if(eviction == Cached.Eviction.LFU) {
+            LinkedHashSet<Entry> bucket = frequencies.get(entry.frequency);
+            bucket.remove(entry);
+            if(bucket.isEmpty()) {
+                frequencies.remove(entry.frequency);
+            }
+        }
+    }
+
+    /**
+     * Increments the frequency of the entry, moving the entry to the next bucket.
+     * @param entry Entry instance.
+     */
+    private void touch(Entry entry) {
+        LinkedHashSet<Entry> bucket = frequencies.get(entry.frequency);
+        bucket.remove(entry);
+        if(bucket.isEmpty()) {
+            frequencies.remove(entry.frequency);
+            if(minFrequency == entry.frequency) {
+                minFrequency++;
+            }
+        }
+        entry.frequency++;
+        frequencies.computeIfAbsent(entry.frequency, F -> new LinkedHashSet<>()).add(entry);
+    }
+
+    /**
+     * Key of the invocations, compares the arguments deeply.
+     */
+    static final class Key {
+
+        private final Object identity;
+        private final Object[] args;
+        private final int hash;
+
+        private Key(Object identity, Object[] args) {
+            this.identity = identity;
+            this.args = args;
+            this.hash = 31 * Objects.hashCode(identity) + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean result = this == obj;
+            if(!result && obj instanceof Key) {
+                Key key = (Key) obj;
+                result = hash == key.hash && Objects.equals(identity, key.identity) &&
+                        Arrays.deepEquals(args, key.args);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Stored result.
+     */
+    private static final class Entry {
+
+        private final Key key;
+        private Object value;
+        private long expiration;
+        private long frequency;
+
+        private Entry(Key key, Object value, long expiration) {
+            this.key = key;
+            this.value = value;
+            this.expiration = expiration;
+            this.frequency = 1;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.hcjf.layers.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, in the style of the hdr histogram: the values are
+ * counted into log-linear buckets, each power of two is divided into sixteen linear buckets,
+ * then the relative error of the values is bounded by 6.25% for any magnitude.
+ * The values greater than the max trackable value are counted into the last bucket.
+ * The instances of this class are snapshots of the metrics, merged from the buckets recorded
+ * by each thread.
+ * @author javaito
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+    static final int BUCKET_COUNT = index(MAX_TRACKABLE_VALUE) + 1;
+
+    private final long[] counts;
+    private long count;
+    private long total;
+    private long max;
+
+    LatencyHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+    }
+
+    /**
+     * Return the index of the bucket of the value.
+     * @param value Value in nanoseconds.
+     * @return Bucket index.
+     */
+    static int index(long value) {
+        int result;
+        long boundedValue = Math.max(0, Math.min(value, MAX_TRACKABLE_VALUE));
+        if(boundedValue < SUB_BUCKET_COUNT) {
+            result = (int) boundedValue;
+        } else {
+            int shift = 63 - Long.numberOfLeadingZeros(boundedValue) - (SUB_BUCKET_BITS - 1);
+            result = shift * SUB_BUCKET_HALF_COUNT + (int) (boundedValue >>> shift);
+        }
+        return result;
+    }
+
+    /**
+     * Return the highest value counted into the bucket.
+     * @param index Bucket index.
+     * @return Highest value of the bucket.
+     */
+    static long highestValue(int index) {
+        long result;
+        if(index < SUB_BUCKET_COUNT) {
+            result = index;
+        } else {
+            int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+            long lowestValue = ((long) (index - shift * SUB_BUCKET_HALF_COUNT)) << shift;
+            result = lowestValue + (1L << shift) - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the buckets recorded by a thread.
+     * @param buckets Buckets of the thread.
+     * @param total Sum of the values recorded by the thread.
+     * @param max Max value recorded by the thread.
+     */
+    void add(AtomicLongArray buckets, long total, long max) {
+        for (int i = 0; i < counts.length; i++) {
+            long bucketCount = buckets.get(i);
+            counts[i] += bucketCount;
+            count += bucketCount;
+        }
+        this.total += total;
+        this.max = Math.max(this.max, max);
+    }
+
+    /**
+     * Return the number of values of the histogram.
+     * @return Number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the mean of the values.
+     * @return Mean in nanoseconds.
+     */
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+
+    /**
+     * Return the max value.
+     * @return Max value in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Return the value at the percentile, the value is the highest value of the
+     * bucket that contains the percentile.
+     * @param percentile Percentile between 0 and 100.
+     * @return Value in nanoseconds.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long result = 0;
+        if(count > 0) {
+            long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+            long accumulated = 0;
+            for (int i = 0; i < counts.length; i++) {
+                accumulated += counts[i];
+                if(accumulated >= countAtPercentile) {
+                    result = Math.min(highestValue(i), max);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package org.hcjf.layers.metrics;
+
+import org.hcjf.layers.LayerInterface;
+import org.hcjf.properties.SystemProperties;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * This class is the registry of the metrics of the layer invocations. When the metrics are
+ * enabled each invocation of a layer records the latency and the result into the metrics of
+ * the method, indexed by the layer interface, the implementation name and the method.
+ * When the metrics are disabled the layer invocation only reads the enabled flag.
+ * @author javaito
+ */
+public final class LayerMetrics {
+
+    private static final Map<String, MethodMetrics> metrics = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = SystemProperties.getBoolean(SystemProperties.Layer.Metrics.ENABLED);
+
+    private LayerMetrics() {
+    }
+
+    /**
+     * Verify if the metrics of the layer invocations are enabled.
+     * @return Enabled value.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the metrics of the layer invocations, the values recorded
+     * are kept when the metrics are disabled.
+     * @param enabled Enabled value.
+     */
+    public static void setEnabled(boolean enabled) {
+        LayerMetrics.enabled = enabled;
+    }
+
+    /**
+     * Return the metrics of the method, the metrics are created the first time.
+     * @param layerInterface Layer interface that declares the method.
+     * @param implName Name of the layer implementation.
+     * @param method Method of the layer interface.
+     * @return Method metrics instance.
+     */
+    public static MethodMetrics getMethodMetrics(Class<?> layerInterface, String implName, Method method) {
+        String key = layerInterface.getName() + "#" + implName + "#" + method.getName() +
+                Arrays.toString(method.getParameterTypes());
+        MethodMetrics result = metrics.get(key);
+        if(result == null) {
+            result = metrics.computeIfAbsent(key, K -> new MethodMetrics(layerInterface, implName, method));
+        }
+        return result;
+    }
+
+    /**
+     * Return the metrics of all the methods invoked.
+     * @return Collection of method metrics.
+     */
+    public static Collection<MethodMetrics> getMetrics() {
+        return Collections.unmodifiableCollection(new ArrayList<>(metrics.values()));
+    }
+
+    /**
+     * Return the metrics that satisfy the predicate.
+     * @param predicate Predicate to filter the metrics.
+     * @return Collection of method metrics.
+     */
+    public static Collection<MethodMetrics> getMetrics(Predicate<MethodMetrics> predicate) {
+        return Collections.unmodifiableCollection(metrics.values().stream().filter(predicate).collect(Collectors.toList()));
+    }
+
+    /**
+     * Return the metrics of the methods of a layer interface.
+     * @param layerInterface Layer interface.
+     * @return Collection of method metrics.
+     */
+    public static Collection<MethodMetrics> getMetrics(Class<? extends LayerInterface> layerInterface) {
+        return getMetrics(M -> M.getLayerInterface().equals(layerInterface));
+    }
+
+    /**
+     * Return the metrics of the methods of a layer implementation.
+     * @param layerInterface Layer interface.
+     * @param implName Name of the layer implementation.
+     * @return Collection of method metrics.
+     */
+    public static Collection<MethodMetrics> getMetrics(Class<? extends LayerInterface> layerInterface, String implName) {
+        return getMetrics(M -> M.getLayerInterface().equals(layerInterface) && Objects.equals(M.getImplName(), implName));
+    }
+
+    /**
+     * Return the metrics of the methods with the name of a layer implementation,
+     * one metrics for each overload of the method.
+     * @param layerInterface Layer interface.
+     * @param implName Name of the layer implementation.
+     * @param methodName Name of the method.
+     * @return Collection of method metrics.
+     */
+    public static Collection<MethodMetrics> getMetrics(Class<? extends LayerInterface> layerInterface,
+                                                       String implName, String methodName) {
+        return getMetrics(M -> M.getLayerInterface().equals(layerInterface) &&
+                Objects.equals(M.getImplName(), implName) && M.getMethod().getName().equals(methodName));
+    }
+}
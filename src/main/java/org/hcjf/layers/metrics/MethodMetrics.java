@@ -0,0 +1,206 @@
+package org.hcjf.layers.metrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of a method of a layer implementation. Each thread records the invocations
+ * into its own recorder without locks or contention, and the recorders are merged when
+ * the metrics are read. The recorders of the threads that ended are folded into a
+ * shared recorder, then the number of recorders is bounded by the live threads.
+ * @author javaito
+ */
+public final class MethodMetrics {
+
+    private final Class<?> layerInterface;
+    private final String implName;
+    private final Method method;
+    private final long creationTime;
+    private final List<Recorder> recorders;
+    private final Recorder retired;
+    private final ThreadLocal<Recorder> recorder;
+
+    MethodMetrics(Class<?> layerInterface, String implName, Method method) {
+        this.layerInterface = layerInterface;
+        this.implName = implName;
+        this.method = method;
+        this.creationTime = System.currentTimeMillis();
+        this.recorders = new ArrayList<>();
+        this.retired = new Recorder(null);
+        this.recorder = ThreadLocal.withInitial(this::createRecorder);
+    }
+
+    /**
+     * Return the layer interface that declares the method.
+     * @return Layer interface.
+     */
+    public Class<?> getLayerInterface() {
+        return layerInterface;
+    }
+
+    /**
+     * Return the name of the layer implementation.
+     * @return Implementation name.
+     */
+    public String getImplName() {
+        return implName;
+    }
+
+    /**
+     * Return the method of the layer interface.
+     * @return Method instance.
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Return the timestamp when the metrics was created.
+     * @return Creation timestamp.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * Records an invocation of the method.
+     * @param latency Latency of the invocation in nanoseconds.
+     * @param failed True if the invocation throws an exception.
+     */
+    public void record(long latency, boolean failed) {
+        recorder.get().record(latency, failed);
+    }
+
+    /**
+     * Return the number of invocations of the method.
+     * @return Number of invocations.
+     */
+    public synchronized long getInvocationCount() {
+        retireRecorders();
+        long result = retired.values.get(Recorder.COUNT);
+        for(Recorder recorder : recorders) {
+            result += recorder.values.get(Recorder.COUNT);
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of invocations that throws an exception.
+     * @return Number of errors.
+     */
+    public synchronized long getErrorCount() {
+        retireRecorders();
+        long result = retired.values.get(Recorder.ERRORS);
+        for(Recorder recorder : recorders) {
+            result += recorder.values.get(Recorder.ERRORS);
+        }
+        return result;
+    }
+
+    /**
+     * Return the mean number of invocations per second since the metrics was created.
+     * @return Invocations per second.
+     */
+    public double getThroughput() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - creationTime);
+        return getInvocationCount() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Return the histogram of latencies merging the values recorded by all the threads.
+     * @return Latency histogram.
+     */
+    public synchronized LatencyHistogram getLatency() {
+        retireRecorders();
+        LatencyHistogram result = new LatencyHistogram();
+        result.add(retired.buckets, retired.values.get(Recorder.TOTAL), retired.values.get(Recorder.MAX));
+        for(Recorder recorder : recorders) {
+            result.add(recorder.buckets, recorder.values.get(Recorder.TOTAL), recorder.values.get(Recorder.MAX));
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of recorders of live threads.
+     * @return Number of recorders.
+     */
+    synchronized int getRecorderCount() {
+        retireRecorders();
+        return recorders.size();
+    }
+
+    /**
+     * Creates the recorder of the current thread.
+     * @return Recorder instance.
+     */
+    private synchronized Recorder createRecorder() {
+        retireRecorders();
+        Recorder result = new Recorder(Thread.currentThread());
+        recorders.add(result);
+        return result;
+    }
+
+    /**
+     * Folds the recorders of the threads that ended into the shared recorder, the owner
+     * thread was the only writer of the recorder, then its values are final.
+     */
+    private void retireRecorders() {
+        Iterator<Recorder> iterator = recorders.iterator();
+        while(iterator.hasNext()) {
+            Recorder recorder = iterator.next();
+            if(!recorder.owner.isAlive()) {
+                retired.merge(recorder);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Values recorded by a thread. Only the owner thread writes the values, then the values
+     * are published with ordered writes instead of atomic operations. The shared recorder
+     * has not owner and it's written only by the merge operation.
+     */
+    private static final class Recorder {
+
+        private static final int COUNT = 0;
+        private static final int ERRORS = 1;
+        private static final int TOTAL = 2;
+        private static final int MAX = 3;
+
+        private final Thread owner;
+        private final AtomicLongArray buckets;
+        private final AtomicLongArray values;
+
+        private Recorder(Thread owner) {
+            this.owner = owner;
+            this.buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+            this.values = new AtomicLongArray(4);
+        }
+
+        private void merge(Recorder recorder) {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.lazySet(i, buckets.get(i) + recorder.buckets.get(i));
+            }
+            values.lazySet(COUNT, values.get(COUNT) + recorder.values.get(COUNT));
+            values.lazySet(ERRORS, values.get(ERRORS) + recorder.values.get(ERRORS));
+            values.lazySet(TOTAL, values.get(TOTAL) + recorder.values.get(TOTAL));
+            values.lazySet(MAX, Math.max(values.get(MAX), recorder.values.get(MAX)));
+        }
+
+        private void record(long latency, boolean failed) {
+            int index = LatencyHistogram.index(latency);
+            buckets.lazySet(index, buckets.get(index) + 1);
+            values.lazySet(COUNT, values.get(COUNT) + 1);
+            if(failed) {
+                values.lazySet(ERRORS, values.get(ERRORS) + 1);
+            }
+            values.lazySet(TOTAL, values.get(TOTAL) + latency);
+            if(latency > values.get(MAX)) {
+                values.lazySet(MAX, latency);
+            }
+        }
+    }
+}
@@ -40,6 +40,23 @@ public final class SystemProperties extends Properties {
 
     public static final class Layer {
         public static final String LOG_TAG = "hcjf.layers.log.tag";
+        public static final String DISPATCH_GENERATED_INVOKERS = "hcjf.layers.dispatch.generated.invokers";
+
+        public static final class Cache {
+            public static final String ENABLED = "hcjf.layers.cache.enabled";
+            public static final String DEFAULT_TTL = "hcjf.layers.cache.default.ttl";
+            public static final String DEFAULT_MAX_SIZE = "hcjf.layers.cache.default.max.size";
+        }
+
+        public static final class Metrics {
+            public static final String ENABLED = "hcjf.layers.metrics.enabled";
+        }
+
+        public static final class Invocation {
+            public static final String SERVICE_NAME = "hcjf.layers.invocation.service.name";
+            public static final String SERVICE_PRIORITY = "hcjf.layers.invocation.service.priority";
+            public static final String FAN_OUT_TIMEOUT = "hcjf.layers.invocation.fan.out.timeout";
+        }
 
         public static final class Deployment {
             public static final String SERVICE_NAME = "hcjf.layers.deployment.service.name";
@@ -118,6 +135,19 @@ public final class SystemProperties extends Properties {
         public static final String SSL_MAX_IO_THREAD_POOL_SIZE = "hcjf.net.ssl.max.io.thread.pool.size";
         public static final String PORT_PROVIDER_TIME_WINDOWS_SIZE = "hcjf.net.port.provider.time.windows.size";
         public static final String PORT_PROBE_CONNECTION_TIMEOUT = "hcjf.net.port.probe.connection.timeout";
+        public static final String MULTI_REACTOR_ENABLED = "hcjf.net.multi.reactor.enabled";
+        public static final String REACTOR_WORKERS_SIZE = "hcjf.net.reactor.workers.size";
+        public static final String REACTOR_THREAD_NAME = "hcjf.net.reactor.thread.name";
+        public static final String BUFFER_POOL_ENABLED = "hcjf.net.buffer.pool.enabled";
+        public static final String BUFFER_POOL_CHUNK_SIZE = "hcjf.net.buffer.pool.chunk.size";
+        public static final String BUFFER_POOL_MAX_SIZE = "hcjf.net.buffer.pool.max.size";
+        public static final String BUFFER_POOL_DIRECT_ALLOCATE_MEMORY = "hcjf.net.buffer.pool.direct.allocate.memory";
+        public static final String GATHERING_WRITE_MAX_BUFFERS = "hcjf.net.gathering.write.max.buffers";
+        public static final String OUTPUT_QUEUE_HIGH_WATERMARK_BYTES = "hcjf.net.output.queue.high.watermark.bytes";
+        public static final String OUTPUT_QUEUE_LOW_WATERMARK_BYTES = "hcjf.net.output.queue.low.watermark.bytes";
+        public static final String OUTPUT_QUEUE_HIGH_WATERMARK_PACKAGES = "hcjf.net.output.queue.high.watermark.packages";
+        public static final String OUTPUT_QUEUE_LOW_WATERMARK_PACKAGES = "hcjf.net.output.queue.low.watermark.packages";
+        public static final String IO_REJECTION_BACKOFF = "hcjf.net.io.rejection.backoff";
 
         public static final class Broadcast {
             public static final String SERVICE_NAME = "hcjf.net.broadcast.service.name";
@@ -133,6 +163,11 @@ public final class SystemProperties extends Properties {
             public static final String DEFAULT_PROTOCOL = "hcjf.net.ssl.default.protocol";
             public static final String IO_THREAD_NAME = "hcjf.net.ssl.io.thread.name";
             public static final String ENGINE_THREAD_NAME = "hcjf.net.ssl.engine.thread.name";
+            public static final String ENGINE_TASK_QUEUE_SIZE = "hcjf.net.ssl.engine.task.queue.size";
+            public static final String SESSION_CACHE_SIZE = "hcjf.net.ssl.session.cache.size";
+            public static final String SESSION_TIMEOUT = "hcjf.net.ssl.session.timeout";
+            public static final String SESSION_TICKET_ENABLED = "hcjf.net.ssl.session.ticket.enabled";
+            public static final String KEYSTORE_WATCHER_ENABLED = "hcjf.net.ssl.keystore.watcher.enabled";
             public static final String DEFAULT_KEYSTORE_PASSWORD = "hcjf.net.ssl.default.keystore.password";
             public static final String DEFAULT_KEY_PASSWORD = "hcjf.net.ssl.default.key.password";
             public static final String DEFAULT_KEYSTORE_FILE_PATH = "hcjf.net.ssl.default.keystore.file.path";
@@ -157,6 +192,76 @@ public final class SystemProperties extends Properties {
             public static final String DEFAULT_GUEST_SESSION_NAME = "hcjf.net.http.default.guest.session.name";
             public static final String DEFAULT_FILE_CHECKSUM_ALGORITHM = "hcjf.net.http.default.file.checksum.algorithm";
             public static final String ENABLE_AUTOMATIC_RESPONSE_CONTENT_LENGTH = "hcjf.net.http.enable.automatic.response.content.length";
+            public static final String KEEP_ALIVE_TIMEOUT = "hcjf.net.http.keep.alive.timeout";
+            public static final String KEEP_ALIVE_MAX_REQUESTS = "hcjf.net.http.keep.alive.max.requests";
+            public static final String PIPELINING_MAX_REQUESTS = "hcjf.net.http.pipelining.max.requests";
+            public static final String MAX_FIRST_LINE_LENGTH = "hcjf.net.http.max.first.line.length";
+            public static final String MAX_HEADERS_SIZE = "hcjf.net.http.max.headers.size";
+            public static final String MAX_HEADERS = "hcjf.net.http.max.headers";
+            public static final String BODY_SPILL_THRESHOLD = "hcjf.net.http.body.spill.threshold";
+            public static final String BODY_SPILL_PREFIX = "hcjf.net.http.body.spill.prefix";
+
+            public static final class Compression {
+                public static final String ENABLED = "hcjf.net.http.compression.enabled";
+                public static final String MIN_SIZE = "hcjf.net.http.compression.min.size";
+                public static final String MAX_SIZE = "hcjf.net.http.compression.max.size";
+                public static final String LEVEL = "hcjf.net.http.compression.level";
+                public static final String MIME_TYPES = "hcjf.net.http.compression.mime.types";
+                public static final String CACHE_SIZE = "hcjf.net.http.compression.cache.size";
+            }
+
+            public static final class ClientPool {
+                public static final String MAX_CONNECTIONS_PER_HOST = "hcjf.net.http.client.pool.max.connections.per.host";
+                public static final String MAX_PENDING_REQUESTS = "hcjf.net.http.client.pool.max.pending.requests";
+                public static final String IDLE_TIMEOUT = "hcjf.net.http.client.pool.idle.timeout";
+                public static final String EVICTION_PERIOD = "hcjf.net.http.client.pool.eviction.period";
+            }
+
+            public static final class Cache {
+                public static final String MAX_SIZE = "hcjf.net.http.cache.max.size";
+                public static final String MAX_ENTRY_SIZE = "hcjf.net.http.cache.max.entry.size";
+                public static final String DEFAULT_MAX_AGE = "hcjf.net.http.cache.default.max.age";
+                public static final String LOCK_TIMEOUT = "hcjf.net.http.cache.lock.timeout";
+            }
+
+            public static final class Http2 {
+                public static final String ENABLED = "hcjf.net.http.http2.enabled";
+                public static final String MAX_CONCURRENT_STREAMS = "hcjf.net.http.http2.max.concurrent.streams";
+                public static final String INITIAL_WINDOW_SIZE = "hcjf.net.http.http2.initial.window.size";
+                public static final String MAX_FRAME_SIZE = "hcjf.net.http.http2.max.frame.size";
+                public static final String HEADER_TABLE_SIZE = "hcjf.net.http.http2.header.table.size";
+                public static final String MAX_HEADER_LIST_SIZE = "hcjf.net.http.http2.max.header.list.size";
+                public static final String WINDOW_TIMEOUT = "hcjf.net.http.http2.window.timeout";
+                public static final String MAX_BODY_SIZE = "hcjf.net.http.http2.max.body.size";
+            }
+
+            public static final class Admission {
+                public static final String ENABLED = "hcjf.net.http.admission.enabled";
+                public static final String ADAPTIVE = "hcjf.net.http.admission.adaptive";
+                public static final String INITIAL_LIMIT = "hcjf.net.http.admission.initial.limit";
+                public static final String MIN_LIMIT = "hcjf.net.http.admission.min.limit";
+                public static final String MAX_LIMIT = "hcjf.net.http.admission.max.limit";
+                public static final String LOW_PRIORITY_RATIO = "hcjf.net.http.admission.low.priority.ratio";
+                public static final String LATENCY_PROBE_SAMPLES = "hcjf.net.http.admission.latency.probe.samples";
+                public static final String RETRY_AFTER = "hcjf.net.http.admission.retry.after";
+                public static final String CRITICAL_CONTEXT_REGEX = "hcjf.net.http.admission.critical.context.regex";
+            }
+
+            public static final class Proxy {
+                public static final String BUFFER_SIZE = "hcjf.net.http.proxy.buffer.size";
+                public static final String PIPE_CAPACITY = "hcjf.net.http.proxy.pipe.capacity";
+                public static final String PIPE_TIMEOUT = "hcjf.net.http.proxy.pipe.timeout";
+            }
+
+            public static final class AccessLog {
+                public static final String ENABLED = "hcjf.net.http.access.log.enabled";
+                public static final String LOG_TAG = "hcjf.net.http.access.log.tag";
+                public static final String SAMPLE_RATE = "hcjf.net.http.access.log.sample.rate";
+                public static final String BUFFER_SIZE = "hcjf.net.http.access.log.buffer.size";
+                public static final String BATCH_SIZE = "hcjf.net.http.access.log.batch.size";
+                public static final String FLUSH_PERIOD = "hcjf.net.http.access.log.flush.period";
+                public static final String DEBUG_CONTEXT_REGEX = "hcjf.net.http.access.log.debug.context.regex";
+            }
 
             public static final class Folder {
                 public static final String LOG_TAG = "hcjf.net.http.folder.log.tag";
@@ -294,6 +399,7 @@ public final class SystemProperties extends Properties {
 
     //Java property names
     public static final String FILE_ENCODING = "file.encoding";
+    public static final String TLS_SERVER_SESSION_TICKET_EXTENSION = "jdk.tls.server.enableSessionTicketExtension";
 
     private static final SystemProperties instance;
 
@@ -326,6 +432,14 @@ public final class SystemProperties extends Properties {
         defaults.put(HCJF_MATH_SPLITTER_REGULAR_EXPRESSION, "(?<=(\\+|\\-|\\*|/))|(?=(\\+|\\-|\\*|/))");
 
         defaults.put(Layer.LOG_TAG, "LAYER");
+        defaults.put(Layer.DISPATCH_GENERATED_INVOKERS, "true");
+        defaults.put(Layer.Cache.ENABLED, "true");
+        defaults.put(Layer.Cache.DEFAULT_TTL, "60000");
+        defaults.put(Layer.Cache.DEFAULT_MAX_SIZE, "1000");
+        defaults.put(Layer.Metrics.ENABLED, "false");
+        defaults.put(Layer.Invocation.SERVICE_NAME, "LayerInvocationService");
+        defaults.put(Layer.Invocation.SERVICE_PRIORITY, "0");
+        defaults.put(Layer.Invocation.FAN_OUT_TIMEOUT, "10000");
         defaults.put(Layer.Deployment.SERVICE_NAME, "DeploymentService");
         defaults.put(Layer.Deployment.SERVICE_PRIORITY, "0");
         defaults.put(Layer.Deployment.CLOUD_DEPLOYMENT_ENABLED, "true");
@@ -388,6 +502,19 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.SSL_MAX_IO_THREAD_POOL_SIZE, "2");
         defaults.put(Net.PORT_PROVIDER_TIME_WINDOWS_SIZE, "15000");
         defaults.put(Net.PORT_PROBE_CONNECTION_TIMEOUT, "1000");
+        defaults.put(Net.MULTI_REACTOR_ENABLED, "false");
+        defaults.put(Net.REACTOR_WORKERS_SIZE, "0");
+        defaults.put(Net.REACTOR_THREAD_NAME, "NetReactor");
+        defaults.put(Net.BUFFER_POOL_ENABLED, "true");
+        defaults.put(Net.BUFFER_POOL_CHUNK_SIZE, "16384");
+        defaults.put(Net.BUFFER_POOL_MAX_SIZE, "1024");
+        defaults.put(Net.BUFFER_POOL_DIRECT_ALLOCATE_MEMORY, "false");
+        defaults.put(Net.GATHERING_WRITE_MAX_BUFFERS, "64");
+        defaults.put(Net.OUTPUT_QUEUE_HIGH_WATERMARK_BYTES, "4194304");
+        defaults.put(Net.OUTPUT_QUEUE_LOW_WATERMARK_BYTES, "1048576");
+        defaults.put(Net.OUTPUT_QUEUE_HIGH_WATERMARK_PACKAGES, "1024");
+        defaults.put(Net.OUTPUT_QUEUE_LOW_WATERMARK_PACKAGES, "256");
+        defaults.put(Net.IO_REJECTION_BACKOFF, "1");
 
         defaults.put(Net.Broadcast.SERVICE_NAME, "Broadcast service");
         defaults.put(Net.Broadcast.LOG_TAG, "BROADCAST");
@@ -405,6 +532,11 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Ssl.DEFAULT_PROTOCOL, "TLSv1.2");
         defaults.put(Net.Ssl.IO_THREAD_NAME, "SslIoThread");
         defaults.put(Net.Ssl.ENGINE_THREAD_NAME, "SslEngineThread");
+        defaults.put(Net.Ssl.ENGINE_TASK_QUEUE_SIZE, "1024");
+        defaults.put(Net.Ssl.SESSION_CACHE_SIZE, "20480");
+        defaults.put(Net.Ssl.SESSION_TIMEOUT, "86400");
+        defaults.put(Net.Ssl.SESSION_TICKET_ENABLED, "true");
+        defaults.put(Net.Ssl.KEYSTORE_WATCHER_ENABLED, "true");
 
         defaults.put(Net.Http.LOG_TAG, "HTTP_SERVER");
         defaults.put(Net.Http.SERVER_NAME, "HCJF Web Server");
@@ -421,7 +553,56 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Http.DEFAULT_GUEST_SESSION_NAME, "Http guest session");
         defaults.put(Net.Http.DEFAULT_FILE_CHECKSUM_ALGORITHM, "MD5");
         defaults.put(Net.Http.ENABLE_AUTOMATIC_RESPONSE_CONTENT_LENGTH, "true");
-
+        defaults.put(Net.Http.KEEP_ALIVE_TIMEOUT, "60000");
+        defaults.put(Net.Http.KEEP_ALIVE_MAX_REQUESTS, "1000");
+        defaults.put(Net.Http.PIPELINING_MAX_REQUESTS, "64");
+        defaults.put(Net.Http.MAX_FIRST_LINE_LENGTH, "8192");
+        defaults.put(Net.Http.MAX_HEADERS_SIZE, "65536");
+        defaults.put(Net.Http.MAX_HEADERS, "128");
+        defaults.put(Net.Http.BODY_SPILL_THRESHOLD, "1048576");
+        defaults.put(Net.Http.BODY_SPILL_PREFIX, "hcjf_http_body_");
+
+        defaults.put(Net.Http.Compression.ENABLED, "true");
+        defaults.put(Net.Http.Compression.MIN_SIZE, "1024");
+        defaults.put(Net.Http.Compression.MAX_SIZE, "10485760");
+        defaults.put(Net.Http.Compression.LEVEL, "6");
+        defaults.put(Net.Http.Compression.MIME_TYPES, "[\"text/*\",\"application/json\",\"application/javascript\",\"application/xml\",\"image/svg+xml\"]");
+        defaults.put(Net.Http.Compression.CACHE_SIZE, "33554432");
+        defaults.put(Net.Http.ClientPool.MAX_CONNECTIONS_PER_HOST, "8");
+        defaults.put(Net.Http.ClientPool.MAX_PENDING_REQUESTS, "1024");
+        defaults.put(Net.Http.ClientPool.IDLE_TIMEOUT, "30000");
+        defaults.put(Net.Http.ClientPool.EVICTION_PERIOD, "5000");
+        defaults.put(Net.Http.Cache.MAX_SIZE, "33554432");
+        defaults.put(Net.Http.Cache.MAX_ENTRY_SIZE, "1048576");
+        defaults.put(Net.Http.Cache.DEFAULT_MAX_AGE, "0");
+        defaults.put(Net.Http.Cache.LOCK_TIMEOUT, "10000");
+        defaults.put(Net.Http.Http2.ENABLED, "true");
+        defaults.put(Net.Http.Http2.MAX_CONCURRENT_STREAMS, "100");
+        defaults.put(Net.Http.Http2.INITIAL_WINDOW_SIZE, "65535");
+        defaults.put(Net.Http.Http2.MAX_FRAME_SIZE, "16384");
+        defaults.put(Net.Http.Http2.HEADER_TABLE_SIZE, "4096");
+        defaults.put(Net.Http.Http2.MAX_HEADER_LIST_SIZE, "65536");
+        defaults.put(Net.Http.Http2.WINDOW_TIMEOUT, "30000");
+        defaults.put(Net.Http.Http2.MAX_BODY_SIZE, "10485760");
+        defaults.put(Net.Http.Admission.ENABLED, "false");
+        defaults.put(Net.Http.Admission.ADAPTIVE, "true");
+        defaults.put(Net.Http.Admission.INITIAL_LIMIT, "100");
+        defaults.put(Net.Http.Admission.MIN_LIMIT, "20");
+        defaults.put(Net.Http.Admission.MAX_LIMIT, "1000");
+        defaults.put(Net.Http.Admission.LOW_PRIORITY_RATIO, "0.5");
+        defaults.put(Net.Http.Admission.LATENCY_PROBE_SAMPLES, "1000");
+        defaults.put(Net.Http.Admission.RETRY_AFTER, "1");
+        defaults.put(Net.Http.Admission.CRITICAL_CONTEXT_REGEX, "");
+        defaults.put(Net.Http.Proxy.BUFFER_SIZE, "16384");
+        defaults.put(Net.Http.Proxy.PIPE_CAPACITY, "16");
+        defaults.put(Net.Http.Proxy.PIPE_TIMEOUT, "30000");
+        defaults.put(Net.Http.AccessLog.ENABLED, "true");
+        defaults.put(Net.Http.AccessLog.LOG_TAG, "HTTP_ACCESS");
+        defaults.put(Net.Http.AccessLog.SAMPLE_RATE, "1.0");
+        defaults.put(Net.Http.AccessLog.BUFFER_SIZE, "8192");
+        defaults.put(Net.Http.AccessLog.BATCH_SIZE, "256");
+        defaults.put(Net.Http.AccessLog.FLUSH_PERIOD, "1000");
+        defaults.put(Net.Http.AccessLog.DEBUG_CONTEXT_REGEX, "");
         defaults.put(Net.Http.Folder.LOG_TAG, "FOLDER_CONTEXT");
         defaults.put(Net.Http.Folder.FORBIDDEN_CHARACTERS, "[]");
         defaults.put(Net.Http.Folder.FILE_EXTENSION_REGEX, "\\.(?=[^\\.]+$)");
@@ -529,6 +710,12 @@ public final class SystemProperties extends Properties {
 
         Properties system = System.getProperties();
         putAll(system);
+
+        //The jdk reads the stateless session tickets property only when the first tls context is
+        //created, then the flag is applied at startup and only if the jdk property is not defined.
+        if(!containsKey(TLS_SERVER_SESSION_TICKET_EXTENSION)) {
+            put(TLS_SERVER_SESSION_TICKET_EXTENSION, getProperty(Net.Ssl.SESSION_TICKET_ENABLED));
+        }
         System.setProperties(this);
     }
 
@@ -0,0 +1,57 @@
+package org.hcjf.service;
+
+import org.hcjf.layers.Layer;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the layers invoked by a thread of the session. The stack is an array
+ * preallocated when the thread starts, then the push and pop operations doesn't
+ * create objects.
+ * @author javaito
+ */
+final class LayerStack {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Class<?>[] elements;
+    private int size;
+
+    LayerStack() {
+        this.elements = new Class<?>[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add an element as the head of the stack.
+     * @param layerClass Layer class.
+     */
+    void push(Class<? extends Layer> layerClass) {
+        if(size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = layerClass;
+    }
+
+    /**
+     * Remove the head of the stack.
+     * @throws IndexOutOfBoundsException If the stack is empty.
+     */
+    void pop() {
+        if(size == 0) {
+            throw new IndexOutOfBoundsException("Empty layer stack");
+        }
+        elements[--size] = null;
+    }
+
+    /**
+     * Return the elements of the stack, the head is the first element of the array.
+     * @return Array with the elements.
+     */
+    Class<?>[] toArray() {
+        Class<?>[] result = new Class<?>[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = elements[size - 1 - i];
+        }
+        return result;
+    }
+}
@@ -27,7 +27,7 @@ public class ServiceSession implements Comparable {
 
     private final UUID id;
     private String sessionName;
-    private final Map<Long, List<Class<? extends Layer>>> layerStack;
+    private final Map<Long, LayerStack> layerStack;
     private final Map<Long, Map<String, Object>> properties;
     private final Map<Long, Long> systemTimeByThread;
     private final ThreadMXBean threadMXBean;
@@ -118,7 +118,7 @@ public class ServiceSession implements Comparable {
     public synchronized void startThread() {
         systemTimeByThread.put(Thread.currentThread().getId(),
                 threadMXBean.getCurrentThreadCpuTime());
-        layerStack.put(Thread.currentThread().getId(), new ArrayList<>());
+        layerStack.put(Thread.currentThread().getId(), new LayerStack());
         properties.put(Thread.currentThread().getId(), new HashMap<>());
         onStartThread();
     }
@@ -186,14 +186,14 @@ public class ServiceSession implements Comparable {
      * @param layerClass Layer class.
      */
     public final void putLayer(Class<? extends Layer> layerClass) {
-        layerStack.get(Thread.currentThread().getId()).add(0, layerClass);
+        layerStack.get(Thread.currentThread().getId()).push(layerClass);
     }
 
     /**
      * Remove the head of the layer stack.
      */
     public final void removeLayer() {
-        layerStack.get(Thread.currentThread().getId()).remove(0);
+        layerStack.get(Thread.currentThread().getId()).pop();
     }
 
     /**
@@ -201,7 +201,16 @@ public class ServiceSession implements Comparable {
      * @return Layer stack.
      */
     public Class[] getLayerStack() {
-        return layerStack.get(Thread.currentThread().getId()).toArray(new Class[]{});
+        return layerStack.get(Thread.currentThread().getId()).toArray();
+    }
+
+    /**
+     * Return the layer stack of the current thread, the service thread keeps the
+     * reference to avoid the lookup for each layer invocation.
+     * @return Layer stack of the current thread or null if the thread is not started.
+     */
+    final LayerStack getThreadLayerStack() {
+        return layerStack.get(Thread.currentThread().getId());
     }
 
     /**
@@ -16,6 +16,7 @@ public class ServiceThread extends Thread {
     private static final String NAME = "ServiceThread";
 
     private ServiceSession session;
+    private LayerStack layerStack;
 
     public ServiceThread(Runnable target) {
         this(target, NAME + UUID.randomUUID().toString());
@@ -30,14 +31,18 @@ public class ServiceThread extends Thread {
      * @param layerClass Layer class.
      */
     public final void putLayer(Class<? extends Layer> layerClass) {
-        getSession().putLayer(layerClass);
+        if(layerStack != null) {
+            layerStack.push(layerClass);
+        }
     }
 
     /**
      * Remove the head of the layer stack.
      */
     public final void removeLayer() {
-        getSession().removeLayer();
+        if(layerStack != null) {
+            layerStack.pop();
+        }
     }
 
     /**
@@ -69,6 +74,9 @@ public class ServiceThread extends Thread {
         if(session != null) {
             //Start the status of the current thread into the new session.
             session.startThread();
+            layerStack = session.getThreadLayerStack();
+        } else {
+            layerStack = null;
         }
 
         this.session = session;
@@ -0,0 +1,119 @@
+package org.hcjf.io.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author javaito
+ */
+public class GatheringWriteTest {
+
+    private static final int PACKAGES = 2048;
+    private static final int PACKAGE_SIZE = 8192;
+    private static final int PATTERN = 251;
+
+    @Test
+    public void testPartialGatheringWrites() throws Exception {
+        Integer port = InetPortProvider.getTcpPort(10600);
+        SequenceServer server = new SequenceServer(port);
+        server.start();
+
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.getOutputStream().write(1);
+
+            //The client doesn't read, then all the packages are queued and only a part of the
+            //first gathering write is accepted by the socket.
+            Thread.sleep(1000);
+            NetSession session = server.session.get();
+            Assert.assertNotNull(session);
+            Assert.assertTrue("Queued packages: " + session.getOutputQueueSize(), session.getOutputQueueSize() > 1);
+
+            InputStream inputStream = socket.getInputStream();
+            byte[] buffer = new byte[PACKAGE_SIZE];
+            long total = 0;
+            int size;
+            while(total < PACKAGES * PACKAGE_SIZE && (size = inputStream.read(buffer)) >= 0) {
+                for (int i = 0; i < size; i++, total++) {
+                    if(buffer[i] != (byte) (total % PATTERN)) {
+                        Assert.fail("Unexpected byte at " + total);
+                    }
+                }
+            }
+            Assert.assertEquals(PACKAGES * PACKAGE_SIZE, total);
+            Assert.assertEquals(0, session.getOutputQueueSize());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Server that writes a sequence of packages when the client sends some data, the bytes
+     * of the sequence are the position of each byte into the sequence modulo 251.
+     */
+    private static class SequenceServer extends NetServer<SequenceSession, byte[]> {
+
+        private final AtomicReference<SequenceSession> session;
+
+        public SequenceServer(Integer port) {
+            super(port, NetService.TransportLayerProtocol.TCP, false, true);
+            this.session = new AtomicReference<>();
+        }
+
+        @Override
+        public SequenceSession createSession(NetPackage netPackage) {
+            return new SequenceSession(this);
+        }
+
+        @Override
+        public SequenceSession checkSession(SequenceSession session, byte[] payLoad, NetPackage netPackage) {
+            return session;
+        }
+
+        @Override
+        public void destroySession(NetSession session) {
+        }
+
+        @Override
+        protected byte[] encode(byte[] payLoad) {
+            return payLoad;
+        }
+
+        @Override
+        protected byte[] decode(NetPackage netPackage) {
+            return netPackage.getPayload();
+        }
+
+        @Override
+        protected void onRead(SequenceSession session, byte[] payLoad, NetPackage netPackage) {
+            this.session.set(session);
+            long position = 0;
+            try {
+                for (int i = 0; i < PACKAGES; i++) {
+                    byte[] data = new byte[PACKAGE_SIZE];
+                    for (int j = 0; j < data.length; j++, position++) {
+                        data[j] = (byte) (position % PATTERN);
+                    }
+                    write(session, data, false);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    private static class SequenceSession extends NetSession {
+
+        public SequenceSession(SequenceServer server) {
+            super(UUID.randomUUID(), server);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.hcjf.io.net;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.File;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Benchmark of the tls handshakes of the https server.
+ * The first argument is the number of handshakes of each stage.
+ * The first stage invalidates the session after each connection then all the handshakes are full,
+ * the second stage keeps the sessions then the sessions are resumed.
+ * At the end the key store is replaced and the suit verifies that the server uses the new certificate.
+ * @author javaito
+ */
+public class HttpsHandshakeTestSuit {
+
+    public static void main(String[] args) throws Exception {
+        int handshakes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        File keyStore = HttpsLoadTestSuit.createKeyStore();
+        Integer port = InetPortProvider.getTcpPort(9443);
+        HttpsLoadTestSuit.startServer(port, keyStore);
+
+        SSLContext context = HttpsLoadTestSuit.createClientContext();
+
+        //Warm up
+        handshake(context, port, true);
+
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < handshakes; i++) {
+            handshake(context, port, true);
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.printf("Full handshakes: %d, handshakes/sec: %d\r\n",
+                handshakes, handshakes * 1000L / Math.max(1, time));
+
+        byte[] sessionId = handshake(context, port, false);
+        int resumed = 0;
+        time = System.currentTimeMillis();
+        for (int i = 0; i < handshakes; i++) {
+            if(Arrays.equals(sessionId, handshake(context, port, false))) {
+                resumed++;
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.printf("Resumed handshakes: %d/%d, handshakes/sec: %d\r\n",
+                resumed, handshakes, handshakes * 1000L / Math.max(1, time));
+
+        BigInteger serial = getSerial(HttpsLoadTestSuit.createClientContext(), port);
+        HttpsLoadTestSuit.generateKey(keyStore);
+        BigInteger newSerial = serial;
+        long end = System.currentTimeMillis() + 30000;
+        while(newSerial.equals(serial) && System.currentTimeMillis() < end) {
+            Thread.sleep(500);
+            newSerial = getSerial(HttpsLoadTestSuit.createClientContext(), port);
+        }
+        System.out.printf("Key store reloaded: %b\r\n", !newSerial.equals(serial));
+
+        System.exit(0);
+    }
+
+    /**
+     * Connects to the server and returns the id of the tls session.
+     * @param context Client context.
+     * @param port Server port.
+     * @param invalidate Invalidates the session to avoid the resumption.
+     * @return Session id.
+     */
+    private static byte[] handshake(SSLContext context, Integer port, boolean invalidate) throws Exception {
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            socket.startHandshake();
+            if(invalidate) {
+                socket.getSession().invalidate();
+            }
+            return socket.getSession().getId();
+        }
+    }
+
+    /**
+     * Connects to the server and returns the serial number of the server certificate.
+     * @param context Client context.
+     * @param port Server port.
+     * @return Serial number.
+     */
+    private static BigInteger getSerial(SSLContext context, Integer port) throws Exception {
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port)) {
+            socket.startHandshake();
+            return ((X509Certificate) socket.getSession().getPeerCertificates()[0]).getSerialNumber();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.hcjf.io.net;
+
+import org.hcjf.io.net.http.*;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Load test of the tls stage of the net service.
+ * The first argument is the number of concurrent keep-alive clients and the second argument
+ * is the number of requests sent by each client.
+ * The suit prints the number of live threads of the process with all the clients connected
+ * and the latency percentiles of the requests.
+ * The suit creates a self-signed key store using the keytool command of the jdk.
+ * @author javaito
+ */
+public class HttpsLoadTestSuit {
+
+    private static final String PASSWORD = "hcjfpassword";
+    private static final byte[] REQUEST = ("GET /bench HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n\r\n").getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        File keyStore = createKeyStore();
+        Integer port = InetPortProvider.getTcpPort(9443);
+        startServer(port, keyStore);
+        SSLContext context = createClientContext();
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        int initialThreads = threadMXBean.getThreadCount();
+
+        List<SSLSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", port);
+            socket.startHandshake();
+            sockets.add(socket);
+        }
+        int connectedThreads = threadMXBean.getThreadCount();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for(SSLSocket socket : sockets) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < requests; i++) {
+                        long time = System.nanoTime();
+                        socket.getOutputStream().write(REQUEST);
+                        MultiReactorTestSuit.readResponse(socket.getInputStream());
+                        latencies.add(System.nanoTime() - time);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        long time = System.currentTimeMillis() - start;
+        int peakThreads = threadMXBean.getPeakThreadCount();
+
+        for(SSLSocket socket : sockets) {
+            socket.close();
+        }
+
+        Collections.sort(latencies);
+        System.out.printf("Clients: %d, threads (without clients): %d, peak threads: %d\r\n",
+                clients, connectedThreads - initialThreads, peakThreads);
+        if(!latencies.isEmpty()) {
+            System.out.printf("Requests: %d, requests/sec: %d, p50: %.2fms, p99: %.2fms\r\n",
+                    latencies.size(), latencies.size() * 1000L / Math.max(1, time),
+                    latencies.get(latencies.size() / 2) / 1000000.0,
+                    latencies.get((int) (latencies.size() * 0.99)) / 1000000.0);
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Creates a temporal key store with a self-signed certificate.
+     * @return Key store file.
+     */
+    public static File createKeyStore() throws Exception {
+        File keyStore = File.createTempFile("hcjf", ".jks");
+        keyStore.delete();
+        keyStore.deleteOnExit();
+        generateKey(keyStore);
+        return keyStore;
+    }
+
+    /**
+     * Generates a new self-signed key into the key store, if the key store exists then it is replaced.
+     * @param keyStore Key store file.
+     */
+    static void generateKey(File keyStore) throws Exception {
+        File temporal = new File(keyStore.getPath() + ".tmp");
+        temporal.delete();
+        Process keytool = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+                "-genkeypair", "-alias", "hcjf", "-keyalg", "RSA", "-keysize", "2048",
+                "-dname", "CN=localhost", "-validity", "1", "-storetype", "JKS",
+                "-keystore", temporal.getPath(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true).redirectOutput(new File("/dev/null")).start();
+        if(keytool.waitFor() != 0) {
+            throw new IllegalStateException("Unable to create the key store");
+        }
+        Files.copy(temporal.toPath(), keyStore.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        temporal.delete();
+    }
+
+    /**
+     * Starts a https server with a context that always responds 'OK'.
+     * @param port Server port.
+     * @param keyStore Key store file.
+     * @return Server instance.
+     */
+    public static HttpsServer startServer(Integer port, File keyStore) {
+        HttpsServer server = new HttpsServer(port);
+        server.setKeystoreFilePath(keyStore.toPath());
+        server.setTrustedCertsFilePath(keyStore.toPath());
+        server.setKeystorePassword(PASSWORD);
+        server.setKeyPassword(PASSWORD);
+        server.addContext(new Context("/bench") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody("OK".getBytes());
+                return response;
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Creates a client ssl context that trusts in all the certificates.
+     * @return Client ssl context.
+     */
+    public static SSLContext createClientContext() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(null, new TrustManager[]{new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {}
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {}
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+}
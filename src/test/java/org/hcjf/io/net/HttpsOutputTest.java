@@ -0,0 +1,87 @@
+package org.hcjf.io.net;
+
+import org.hcjf.io.net.http.*;
+import org.hcjf.service.ServiceSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author javaito
+ */
+public class HttpsOutputTest {
+
+    private static final String HEADER_END = "\r\n\r\n";
+
+    @Test
+    public void testEncryptedOutputAccounting() throws Exception {
+        byte[] content = new byte[8 * 1024 * 1024];
+        new Random(content.length).nextBytes(content);
+        Integer port = InetPortProvider.getTcpPort(10580);
+        AtomicReference<NetSession> serverSession = new AtomicReference<>();
+        HttpsServer server = HttpsLoadTestSuit.startServer(port, HttpsLoadTestSuit.createKeyStore());
+        server.addContext(new Context("/large") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                serverSession.set(ServiceSession.getCurrentSession());
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(content.length)));
+                response.setBody(content);
+                return response;
+            }
+        });
+
+        try (SSLSocket socket = (SSLSocket) HttpsLoadTestSuit.createClientContext().getSocketFactory().createSocket()) {
+            socket.setReceiveBufferSize(8192);
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.startHandshake();
+            socket.getOutputStream().write("GET /large HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+
+            //The client doesn't read, then the encrypted data waiting into the tls stage must keep
+            //the session over the high watermark.
+            long deadline = System.currentTimeMillis() + 10000;
+            while((serverSession.get() == null || serverSession.get().isWritable()) &&
+                    System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            NetSession session = serverSession.get();
+            Assert.assertNotNull(session);
+            Assert.assertFalse(session.isWritable());
+            Assert.assertTrue("Output queue: " + session.getOutputQueueBytes(),
+                    session.getOutputQueueBytes() > session.getHighWatermarkBytes());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream inputStream = socket.getInputStream();
+            byte[] buffer = new byte[65536];
+            int headerEnd = -1;
+            while(headerEnd < 0 || out.size() < headerEnd + content.length) {
+                int size = inputStream.read(buffer);
+                Assert.assertTrue(size >= 0);
+                out.write(buffer, 0, size);
+                if(headerEnd < 0) {
+                    int index = new String(out.toByteArray(), StandardCharsets.ISO_8859_1).indexOf(HEADER_END);
+                    headerEnd = index < 0 ? -1 : index + HEADER_END.length();
+                }
+            }
+            byte[] data = out.toByteArray();
+            Assert.assertArrayEquals(content, Arrays.copyOfRange(data, headerEnd, data.length));
+
+            //When all the encrypted data is written the session is released.
+            deadline = System.currentTimeMillis() + 5000;
+            while(session.getOutputQueueBytes() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, session.getOutputQueueBytes());
+            Assert.assertTrue(session.isWritable());
+        }
+    }
+}
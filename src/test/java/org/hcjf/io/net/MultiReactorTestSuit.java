@@ -0,0 +1,164 @@
+package org.hcjf.io.net;
+
+import org.hcjf.io.net.http.*;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of the net service running with one or more worker reactors.
+ * The first argument is the number of worker reactors (0 to disable the multi-reactor mode),
+ * the second argument is the number of concurrent clients and the third is the
+ * duration of each stage in seconds.
+ * Run the suit once by each worker size to compare the connections/sec and requests/sec values.
+ * @author javaito
+ */
+public class MultiReactorTestSuit {
+
+    private static final byte[] REQUEST = ("GET /bench HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n\r\n").getBytes();
+
+    private static final byte[] CLOSE_REQUEST = ("GET /bench HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: close\r\n\r\n").getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        long duration = (args.length > 2 ? Long.parseLong(args[2]) : 10) * 1000;
+
+        System.setProperty(SystemProperties.Net.MULTI_REACTOR_ENABLED, Boolean.toString(workers > 0));
+        System.setProperty(SystemProperties.Net.REACTOR_WORKERS_SIZE, Integer.toString(workers));
+
+        Integer port = InetPortProvider.getTcpPort(9080);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/bench") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody("OK".getBytes());
+                return response;
+            }
+        });
+        server.start();
+
+        long connections = run(clients, duration, () -> {
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.getOutputStream().write(CLOSE_REQUEST);
+                readResponse(socket.getInputStream());
+            }
+            return true;
+        });
+        System.out.printf("Workers: %d, clients: %d, connections/sec: %d\r\n",
+                workers, clients, connections * 1000 / duration);
+
+        List<Socket> sockets = new ArrayList<>();
+        long requests = run(clients, duration, new Stage() {
+
+            private final ThreadLocal<Socket> socket = new ThreadLocal<>();
+
+            @Override
+            public boolean execute() throws Exception {
+                if(socket.get() == null) {
+                    socket.set(new Socket("localhost", port));
+                    synchronized (sockets) {
+                        sockets.add(socket.get());
+                    }
+                }
+                try {
+                    socket.get().getOutputStream().write(REQUEST);
+                    return readResponse(socket.get().getInputStream()).length > 0;
+                } catch (IOException ex) {
+                    //The server closes the connection when the max requests by connection is reached.
+                    socket.get().close();
+                    socket.remove();
+                    return false;
+                }
+            }
+        });
+        for(Socket socket : sockets) {
+            socket.close();
+        }
+        System.out.printf("Workers: %d, clients: %d, requests/sec: %d\r\n",
+                workers, clients, requests * 1000 / duration);
+
+        System.exit(0);
+    }
+
+    /**
+     * Execute the stage from many threads during the duration time.
+     * @param clients Number of threads.
+     * @param duration Duration in milliseconds.
+     * @param stage Stage to execute.
+     * @return Number of success executions.
+     */
+    private static long run(int clients, long duration, Stage stage) throws Exception {
+        AtomicLong counter = new AtomicLong();
+        long end = System.currentTimeMillis() + duration;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                while(System.currentTimeMillis() < end) {
+                    try {
+                        if(stage.execute()) {
+                            counter.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        return counter.get();
+    }
+
+    /**
+     * Read a complete http response from the stream using the content length header.
+     * @param inputStream Socket input stream.
+     * @return Response bytes.
+     */
+    public static byte[] readResponse(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int headerEnd = -1;
+        int contentLength = 0;
+        int value;
+        while(headerEnd < 0 && (value = inputStream.read()) >= 0) {
+            out.write(value);
+            byte[] data = out.toByteArray();
+            int size = data.length;
+            if(size >= 4 && data[size - 4] == '\r' && data[size - 3] == '\n' &&
+                    data[size - 2] == '\r' && data[size - 1] == '\n') {
+                headerEnd = size;
+                for(String line : new String(data).split("\r\n")) {
+                    if(line.toLowerCase().startsWith(HttpHeader.CONTENT_LENGTH.toLowerCase() + ":")) {
+                        contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < contentLength && (value = inputStream.read()) >= 0; i++) {
+            out.write(value);
+        }
+        return out.toByteArray();
+    }
+
+    private interface Stage {
+
+        boolean execute() throws Exception;
+
+    }
+}
@@ -0,0 +1,144 @@
+package org.hcjf.io.net;
+
+import org.hcjf.io.net.http.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author javaito
+ */
+public class NetBufferPoolTest {
+
+    private static final byte[] REQUEST = ("POST /test HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Content-Length: 5\r\n\r\n" +
+            "Hello").getBytes();
+    private static final byte[] OK = "OK".getBytes();
+    private static final int BODY_SIZE = 8192;
+
+    @Test
+    public void testReferenceCount() {
+        NetBufferPool pool = new NetBufferPool(1024, 10, false);
+        NetBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.retain();
+        buffer.release();
+        Assert.assertEquals(0, pool.getPooledSize());
+        buffer.release();
+        Assert.assertEquals(1, pool.getPooledSize());
+        Assert.assertSame(buffer, pool.acquire());
+
+        try {
+            NetBufferPool.PooledBuffer released = pool.acquire();
+            released.release();
+            released.release();
+            Assert.fail("Double release");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testRequestFromPooledPackage() {
+        NetBufferPool pool = new NetBufferPool(1024, 10, true);
+        NetBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.getBuffer().put(REQUEST);
+        PooledNetPackage netPackage = new PooledNetPackage("", "", 0, 0,
+                buffer, 0, REQUEST.length, NetPackage.ActionEvent.READ);
+
+        HttpRequest request = new HttpRequest();
+        request.addData(netPackage.getBuffer());
+        buffer.release();
+
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals(HttpMethod.POST, request.getMethod());
+        Assert.assertEquals("/test", request.getContext());
+        Assert.assertEquals("Hello", new String(request.getBody()));
+    }
+
+    @Test
+    public void testSteadyStateAllocation() throws Exception {
+        Integer port = InetPortProvider.getTcpPort(10590);
+        HttpServer server = new HttpServer(port);
+        server.setKeepAliveMaxRequests(Integer.MAX_VALUE);
+        server.addContext(new Context("/allocation") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(OK);
+                return response;
+            }
+        });
+        server.start();
+
+        byte[] smallRequest = createRequest(1);
+        byte[] largeRequest = createRequest(BODY_SIZE);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        try (Socket socket = new Socket("localhost", port)) {
+            //Warm up
+            send(socket, smallRequest, 2000);
+            send(socket, largeRequest, 2000);
+
+            //The difference between both requests is the cost of the body over the read and decode path,
+            //the rest of the allocations of the request processing are the same for both.
+            int requests = 5000;
+            long small = getAllocatedBytesPerRequest(threadMXBean, socket, smallRequest, requests);
+            long large = getAllocatedBytesPerRequest(threadMXBean, socket, largeRequest, requests);
+
+            //The body is copied once by the decoder, a copy of the read data into a new array
+            //for each read (the path without pool) allocates more than twice the body size.
+            Assert.assertTrue("Allocated bytes per body: " + (large - small), large - small < BODY_SIZE * 3 / 2);
+        }
+    }
+
+    private byte[] createRequest(int bodySize) {
+        byte[] header = ("POST /allocation HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: keep-alive\r\n" +
+                "Content-Length: " + bodySize + "\r\n\r\n").getBytes();
+        byte[] request = Arrays.copyOf(header, header.length + bodySize);
+        Arrays.fill(request, header.length, request.length, (byte) 'a');
+        return request;
+    }
+
+    private void send(Socket socket, byte[] request, int requests) throws Exception {
+        for (int i = 0; i < requests; i++) {
+            socket.getOutputStream().write(request);
+            MultiReactorTestSuit.readResponse(socket.getInputStream());
+        }
+    }
+
+    /**
+     * Return the bytes allocated by the server threads for each request, the allocations
+     * of the client thread are not measured.
+     */
+    private long getAllocatedBytesPerRequest(com.sun.management.ThreadMXBean threadMXBean,
+                                             Socket socket, byte[] request, int requests) throws Exception {
+        Map<Long, Long> before = getAllocatedBytes(threadMXBean);
+        send(socket, request, requests);
+        Map<Long, Long> after = getAllocatedBytes(threadMXBean);
+        long allocated = 0;
+        for(Map.Entry<Long, Long> entry : after.entrySet()) {
+            allocated += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+        }
+        return allocated / requests;
+    }
+
+    private Map<Long, Long> getAllocatedBytes(com.sun.management.ThreadMXBean threadMXBean) {
+        Map<Long, Long> result = new HashMap<>();
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        long[] allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadIds);
+        for (int i = 0; i < threadIds.length; i++) {
+            if(threadIds[i] != Thread.currentThread().getId() && allocatedBytes[i] >= 0) {
+                result.put(threadIds[i], allocatedBytes[i]);
+            }
+        }
+        return result;
+    }
+}
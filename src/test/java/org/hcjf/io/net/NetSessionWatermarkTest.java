@@ -0,0 +1,65 @@
+package org.hcjf.io.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+
+/**
+ * @author javaito
+ */
+public class NetSessionWatermarkTest {
+
+    @Test
+    public void testBytesWatermark() {
+        NetSession session = new TestSession();
+        session.setWriteWatermarks(100, 60, 1000, 500);
+
+        Assert.assertFalse(session.addOutput(60));
+        Assert.assertTrue(session.isWritable());
+        Assert.assertTrue(session.addOutput(60));
+        Assert.assertFalse(session.isWritable());
+        Assert.assertFalse(session.addOutput(60));
+        Assert.assertEquals(180, session.getOutputQueueBytes());
+        Assert.assertEquals(3, session.getOutputQueueSize());
+
+        //Between the watermarks the session keeps not writable.
+        Assert.assertFalse(session.removeOutput(60));
+        Assert.assertFalse(session.isWritable());
+        Assert.assertTrue(session.removeOutput(60));
+        Assert.assertTrue(session.isWritable());
+        Assert.assertFalse(session.removeOutput(60));
+        Assert.assertEquals(0, session.getOutputQueueBytes());
+    }
+
+    @Test
+    public void testPackagesWatermark() {
+        NetSession session = new TestSession();
+        session.setWriteWatermarks(Long.MAX_VALUE, Long.MAX_VALUE, 2, 1);
+
+        Assert.assertFalse(session.addOutput(1));
+        Assert.assertFalse(session.addOutput(1));
+        Assert.assertTrue(session.addOutput(1));
+        Assert.assertFalse(session.removeOutput(1));
+        Assert.assertTrue(session.removeOutput(1));
+
+        session.addOutput(1);
+        session.addOutput(1);
+        session.addOutput(1);
+        session.resetOutput();
+        Assert.assertTrue(session.isWritable());
+        Assert.assertEquals(0, session.getOutputQueueSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalWatermarks() {
+        new TestSession().setWriteWatermarks(10, 20, 10, 5);
+    }
+
+    private static class TestSession extends NetSession {
+
+        public TestSession() {
+            super(UUID.randomUUID(), null);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author javaito
+ */
+public class CachedContextTest {
+
+    @Test
+    public void testCacheControlAndConditionalRequests() {
+        CountingContext context = new CountingContext("max-age=60", null, 0);
+        CachedContext cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 1000);
+
+        HttpResponse first = cachedContext.onContext(request("GET", "/data?id=1"));
+        HttpResponse second = cachedContext.onContext(request("GET", "/data?id=1"));
+        Assert.assertEquals(1, context.executions.get());
+        Assert.assertArrayEquals(first.getBody(), second.getBody());
+        Assert.assertEquals(1, cachedContext.getHits());
+        Assert.assertEquals(1, cachedContext.getMisses());
+        Assert.assertNotNull(second.getHeader(HttpHeader.AGE));
+
+        //Other parameters are other key.
+        cachedContext.onContext(request("GET", "/data?id=2"));
+        Assert.assertEquals(2, context.executions.get());
+
+        //The entity tag is created using the body.
+        String eTag = second.getHeader(HttpHeader.E_TAG).getHeaderValue();
+        HttpResponse notModified = cachedContext.onContext(request("GET", "/data?id=1", HttpHeader.IF_NONE_MATCH, "\"other\", " + eTag));
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, notModified.getResponseCode());
+        Assert.assertEquals(0, notModified.getBody().length);
+        Assert.assertEquals(eTag, notModified.getHeader(HttpHeader.E_TAG).getHeaderValue());
+        Assert.assertEquals(1, cachedContext.getNotModified());
+        notModified = cachedContext.onContext(request("GET", "/data?id=1", HttpHeader.IF_NONE_MATCH,
+                HttpResponseCompressor.getEncodedEntityTag(eTag, HttpHeader.GZIP)));
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, notModified.getResponseCode());
+        Assert.assertEquals(2, cachedContext.getNotModified());
+        HttpResponse modified = cachedContext.onContext(request("GET", "/data?id=1", HttpHeader.IF_NONE_MATCH, "\"other\""));
+        Assert.assertEquals(HttpResponseCode.OK, modified.getResponseCode());
+
+        //The client could skip the cache.
+        cachedContext.onContext(request("GET", "/data?id=1", HttpHeader.CACHE_CONTROL, "no-cache"));
+        Assert.assertEquals(3, context.executions.get());
+        cachedContext.onContext(request("GET", "/data?id=1", HttpHeader.CACHE_CONTROL, "no-store"));
+        Assert.assertEquals(4, context.executions.get());
+
+        //The unsafe methods invalidate the stored responses of the context.
+        cachedContext.onContext(request("POST", "/data"));
+        Assert.assertEquals(2, cachedContext.getInvalidations());
+        Assert.assertEquals(0, cachedContext.getEntries());
+        Assert.assertEquals(0, cachedContext.getSize());
+        cachedContext.onContext(request("GET", "/data?id=1"));
+        Assert.assertEquals(6, context.executions.get());
+    }
+
+    @Test
+    public void testNotCacheableResponses() {
+        CountingContext context = new CountingContext("no-store", null, 0);
+        CachedContext cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 60, 1000);
+        cachedContext.onContext(request("GET", "/data"));
+        cachedContext.onContext(request("GET", "/data"));
+        Assert.assertEquals(2, context.executions.get());
+
+        //Without max age the default max age is used.
+        context = new CountingContext(null, null, 0);
+        cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 60, 1000);
+        cachedContext.onContext(request("GET", "/data"));
+        cachedContext.onContext(request("GET", "/data"));
+        Assert.assertEquals(1, context.executions.get());
+
+        context = new CountingContext(null, null, 0);
+        cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 1000);
+        cachedContext.onContext(request("GET", "/data"));
+        cachedContext.onContext(request("GET", "/data"));
+        Assert.assertEquals(2, context.executions.get());
+    }
+
+    @Test
+    public void testVaryAndEviction() {
+        CountingContext context = new CountingContext("max-age=60", HttpHeader.ACCEPT_LANGUAGE, 0);
+        CachedContext cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 1000);
+        HttpResponse english = cachedContext.onContext(request("GET", "/data", HttpHeader.ACCEPT_LANGUAGE, "en"));
+        HttpResponse spanish = cachedContext.onContext(request("GET", "/data", HttpHeader.ACCEPT_LANGUAGE, "es"));
+        Assert.assertEquals("en", new String(english.getBody()));
+        Assert.assertEquals("es", new String(spanish.getBody()));
+        Assert.assertEquals("es", new String(cachedContext.onContext(request("GET", "/data", HttpHeader.ACCEPT_LANGUAGE, "es")).getBody()));
+        Assert.assertEquals("en", new String(cachedContext.onContext(request("GET", "/data", HttpHeader.ACCEPT_LANGUAGE, "en")).getBody()));
+        Assert.assertEquals(2, context.executions.get());
+        Assert.assertEquals(2, cachedContext.getEntries());
+
+        //The size of the cache is enough only for one entry.
+        long entrySize = cachedContext.getSize() / 2;
+        context = new CountingContext("max-age=60", null, 0);
+        cachedContext = new CachedContext(context, entrySize, 1024 * 1024, 0, 1000);
+        cachedContext.onContext(request("GET", "/a"));
+        cachedContext.onContext(request("GET", "/b"));
+        Assert.assertEquals(1, cachedContext.getEntries());
+        Assert.assertEquals(1, cachedContext.getEvictions());
+        Assert.assertTrue(cachedContext.getSize() <= entrySize);
+    }
+
+    @Test
+    public void testStampedeProtection() throws Exception {
+        CountingContext context = new CountingContext("max-age=60", null, 200);
+        CachedContext cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 5000);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        AtomicInteger responses = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    if(cachedContext.onContext(request("GET", "/slow")).getResponseCode().equals(HttpResponseCode.OK)) {
+                        responses.incrementAndGet();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        Assert.assertEquals(threads, responses.get());
+        Assert.assertEquals(1, context.executions.get());
+        Assert.assertEquals(threads - 1, cachedContext.getCoalesced());
+    }
+
+    @Test
+    public void testRequestsWithCredentials() {
+        CountingContext context = new CountingContext("max-age=60", null, 0);
+        CachedContext cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 1000);
+
+        //The responses of the requests with credentials are not stored.
+        cachedContext.onContext(request("GET", "/data", HttpHeader.AUTHORIZATION, "Bearer first"));
+        cachedContext.onContext(request("GET", "/data", HttpHeader.AUTHORIZATION, "Bearer second"));
+        cachedContext.onContext(request("GET", "/data", HttpHeader.COOKIE, "session=first"));
+        Assert.assertEquals(3, context.executions.get());
+        Assert.assertEquals(0, cachedContext.getEntries());
+
+        //The stored responses are not served to the requests with credentials.
+        cachedContext.onContext(request("GET", "/data"));
+        Assert.assertEquals(1, cachedContext.getEntries());
+        cachedContext.onContext(request("GET", "/data", HttpHeader.AUTHORIZATION, "Bearer first"));
+        Assert.assertEquals(5, context.executions.get());
+        Assert.assertEquals(0, cachedContext.getHits());
+
+        //The shared responses are stored and served.
+        for(String cacheControl : new String[]{"public, max-age=60", "s-maxage=60"}) {
+            context = new CountingContext(cacheControl, null, 0);
+            cachedContext = new CachedContext(context, 1024 * 1024, 1024 * 1024, 0, 1000);
+            cachedContext.onContext(request("GET", "/data", HttpHeader.AUTHORIZATION, "Bearer first"));
+            cachedContext.onContext(request("GET", "/data", HttpHeader.AUTHORIZATION, "Bearer second"));
+            cachedContext.onContext(request("GET", "/data"));
+            Assert.assertEquals(1, context.executions.get());
+            Assert.assertEquals(2, cachedContext.getHits());
+        }
+    }
+
+    @Test
+    public void testPriority() {
+        CountingContext context = new CountingContext(null, null, 0) {
+            @Override
+            public Priority getPriority() {
+                return Priority.CRITICAL;
+            }
+        };
+        Assert.assertEquals(Context.Priority.CRITICAL, new CachedContext(context).getPriority());
+    }
+
+    private static HttpRequest request(String method, String path, String... headers) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(method).append(" ").append(path).append(" HTTP/1.1\r\n");
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.append(headers[i]).append(": ").append(headers[i + 1]).append("\r\n");
+        }
+        builder.append("\r\n");
+        HttpRequest request = new HttpRequest();
+        request.addData(ByteBuffer.wrap(builder.toString().getBytes()));
+        return request;
+    }
+
+    private static class CountingContext extends Context {
+
+        private final String cacheControl;
+        private final String vary;
+        private final long delay;
+        private final AtomicInteger executions;
+
+        private CountingContext(String cacheControl, String vary, long delay) {
+            super("/.*");
+            this.cacheControl = cacheControl;
+            this.vary = vary;
+            this.delay = delay;
+            this.executions = new AtomicInteger();
+        }
+
+        @Override
+        public HttpResponse onContext(HttpRequest request) {
+            executions.incrementAndGet();
+            if(delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ex) {
+                }
+            }
+            byte[] body = vary == null ? ("response " + executions.get()).getBytes() :
+                    request.getHeader(vary).getHeaderValue().getBytes();
+            HttpResponse response = new HttpResponse();
+            response.setResponseCode(HttpResponseCode.OK);
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+            if(cacheControl != null) {
+                response.addHeader(new HttpHeader(HttpHeader.CACHE_CONTROL, cacheControl));
+            }
+            if(vary != null) {
+                response.addHeader(new HttpHeader(HttpHeader.VARY, vary));
+            }
+            response.setBody(body);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author javaito
+ */
+public class ContextRouterTest {
+
+    @Test
+    public void testSameResultThanLinearSearch() {
+        List<Context> contexts = new ArrayList<>();
+        contexts.add(context("^/api/v1/resource7/detail.*"));
+        for (int i = 0; i < 50; i++) {
+            contexts.add(context("^/api/v1/resource" + i + ".*"));
+            contexts.add(context("^/static" + i + ".*"));
+            contexts.add(context("/exact/" + i));
+        }
+        contexts.add(context("^/users/[0-9]+/orders.*"));
+        contexts.add(context("^/api.*"));
+        contexts.add(context("^/file\\.txt$"));
+        contexts.add(context("^/folder/.*"));
+        contexts.add(context("(?i)^/CASE.*"));
+        contexts.add(context("^/api/v1/resource1\\.*"));
+        contexts.add(context(".*"));
+
+        List<String> paths = Arrays.asList("", "/", "/api", "/apis", "/api/", "/api/v1",
+                "/api/v1/resource1", "/api/v1/resource10", "/api/v1/resource1/x", "/api/v1/resource7/detail/x",
+                "/api/v1/resource7/details", "/static4", "/static49/a/b", "/exact/3", "/exact/3/", "/exact/30",
+                "/users/12/orders", "/users/abc/orders", "/file.txt", "/fileXtxt", "/folder", "/folder/",
+                "/folder/index.html", "/case/x", "/api\n/x", "/static1\r", "//api", "/unknown");
+
+        assertSameResult(contexts, paths);
+
+        //Without the catch all context some paths are not routed.
+        contexts.remove(contexts.size() - 1);
+        assertSameResult(contexts, paths);
+    }
+
+    @Test
+    public void testRegistrationOrder() {
+        Context api = context("^/api.*");
+        Context regex = context("^/a[p]i/v1.*");
+        Context specific = context("^/api/v1.*");
+        ContextRouter router = new ContextRouter(Arrays.asList(api, regex, specific));
+        Assert.assertSame(api, router.find("/api/v1/resource"));
+
+        router = new ContextRouter(Arrays.asList(specific, regex, api));
+        Assert.assertSame(specific, router.find("/api/v1/resource"));
+
+        router = new ContextRouter(Arrays.asList(regex, specific, api));
+        Assert.assertSame(regex, router.find("/api/v1/resource"));
+        Assert.assertSame(api, router.find("/api/v2"));
+    }
+
+    private void assertSameResult(List<Context> contexts, List<String> paths) {
+        ContextRouter router = new ContextRouter(contexts);
+        for(String path : paths) {
+            Context expected = null;
+            for(Context context : contexts) {
+                if(path.matches(context.getContextRegex())) {
+                    expected = context;
+                    break;
+                }
+            }
+            Assert.assertSame("Path: " + path, expected, router.find(path));
+        }
+    }
+
+    private Context context(String regex) {
+        return new Context(regex) {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return null;
+            }
+
+            @Override
+            public String toString() {
+                return regex;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author javaito
+ */
+public class FolderContextTest {
+
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    private static Integer port;
+    private static Path folder;
+    private static byte[] content;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        folder = Files.createTempDirectory("hcjf_folder_test");
+        folder.toFile().deleteOnExit();
+        content = new byte[FILE_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 253);
+        }
+        Files.write(folder.resolve("data.bin"), content);
+        Files.write(folder.resolve("index.html"), "<html></html>".getBytes());
+
+        port = InetPortProvider.getTcpPort(9380);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new FolderContext("static", folder));
+        server.start();
+    }
+
+    @Test
+    public void testFileTransfer() throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET /static/data.bin HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Connection: keep-alive\r\n\r\n" +
+                    "GET /static/index.html HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Connection: keep-alive\r\n\r\n").getBytes());
+            InputStream inputStream = socket.getInputStream();
+            byte[] response = readResponse(inputStream);
+            byte[] body = Arrays.copyOfRange(response, response.length - FILE_SIZE, response.length);
+            Assert.assertTrue(new String(response, 0, 64).startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.OK));
+            Assert.assertArrayEquals(content, body);
+            Assert.assertTrue(new String(readResponse(inputStream)).endsWith("<html></html>"));
+        }
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+        Path file = folder.resolve("cached.txt");
+        Files.write(file, "first".getBytes());
+        String eTag = getETag(request("/static/cached.txt", null));
+        String notModified = request("/static/cached.txt", eTag);
+        Assert.assertTrue(notModified.startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.NOT_MODIFIED));
+        Assert.assertTrue(request("/static/cached.txt", "\"other\", \"" + eTag + "\"").
+                startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.NOT_MODIFIED));
+        Assert.assertTrue(request("/static/cached.txt", HttpResponseCompressor.getEncodedEntityTag(eTag, HttpHeader.GZIP)).
+                startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.NOT_MODIFIED));
+
+        Files.write(file, "second version".getBytes());
+        String modified = request("/static/cached.txt", eTag);
+        Assert.assertTrue(modified.startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.OK));
+        Assert.assertTrue(modified.endsWith("second version"));
+        Assert.assertNotEquals(eTag, getETag(modified));
+    }
+
+    private String request(String path, String eTag) throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    (eTag == null ? "" : HttpHeader.IF_NONE_MATCH + ": " + eTag + "\r\n") +
+                    "\r\n").getBytes());
+            return new String(readResponse(socket.getInputStream()));
+        }
+    }
+
+    private String getETag(String response) {
+        for(String line : response.split("\r\n")) {
+            if(line.toLowerCase().startsWith(HttpHeader.E_TAG.toLowerCase() + ":")) {
+                return line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private byte[] readResponse(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int contentLength = -1;
+        int value;
+        while(contentLength < 0 && (value = inputStream.read()) >= 0) {
+            out.write(value);
+            String data = out.toString();
+            if(data.endsWith("\r\n\r\n")) {
+                for(String line : data.split("\r\n")) {
+                    if(line.toLowerCase().startsWith(HttpHeader.CONTENT_LENGTH.toLowerCase() + ":")) {
+                        contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+                    }
+                }
+            }
+        }
+        byte[] buffer = new byte[8192];
+        int read;
+        while(contentLength > 0 && (read = inputStream.read(buffer, 0, Math.min(buffer.length, contentLength))) >= 0) {
+            out.write(buffer, 0, read);
+            contentLength -= read;
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author javaito
+ */
+public class HttpAccessLogTest {
+
+    @Test
+    public void testRecords() {
+        //The batches are printed by the writer thread and by the thread that stops the log.
+        List<String> batches = Collections.synchronizedList(new ArrayList<>());
+        HttpAccessLog accessLog = new HttpAccessLog(true, "TEST", 1.0, 16, 4, 60000);
+        accessLog.setPrinter(batches::add);
+
+        HttpRequest request = new HttpRequest("/resource", HttpMethod.POST);
+        request.setContext("/resource");
+        request.setBody(new byte[10]);
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.CREATED);
+        for (int i = 0; i < 6; i++) {
+            accessLog.record(null, request, response, 20, 3000000);
+        }
+        accessLog.stop();
+
+        Assert.assertEquals(6, accessLog.getRecorded());
+        Assert.assertEquals(0, accessLog.getDropped());
+        Assert.assertEquals(6, batches.stream().mapToInt(B -> B.split("\r\n").length).sum());
+        String[] fields = batches.get(0).split("\r\n")[0].split(" ");
+        Assert.assertEquals("POST", fields[1]);
+        Assert.assertEquals("/resource", fields[2]);
+        Assert.assertEquals(HttpResponseCode.CREATED.toString(), fields[3]);
+        Assert.assertEquals("10", fields[4]);
+        Assert.assertEquals("20", fields[5]);
+        Assert.assertEquals("3000", fields[6]);
+        Assert.assertEquals("-", fields[7]);
+    }
+
+    @Test
+    public void testSampling() {
+        HttpAccessLog accessLog = new HttpAccessLog(true, "TEST", 0.0, 2, 2, 60000);
+        accessLog.setPrinter(lines -> {});
+        HttpRequest request = new HttpRequest("/resource", HttpMethod.GET);
+        request.setContext("/resource");
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        accessLog.record(null, request, response, 0, 0);
+        Assert.assertEquals(0, accessLog.getRecorded());
+
+        //The server errors are always registered.
+        response.setResponseCode(HttpResponseCode.INTERNAL_SERVER_ERROR);
+        accessLog.record(null, request, response, 0, 0);
+        Assert.assertEquals(1, accessLog.getRecorded());
+        accessLog.stop();
+
+        Assert.assertFalse(accessLog.isDebug(request));
+        accessLog.setDebugFilter(R -> R.getContext().startsWith("/res"));
+        Assert.assertTrue(accessLog.isDebug(request));
+    }
+}
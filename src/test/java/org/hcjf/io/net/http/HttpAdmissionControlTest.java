@@ -0,0 +1,153 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author javaito
+ */
+public class HttpAdmissionControlTest {
+
+    @Test
+    public void testStaticLimit() {
+        HttpAdmissionControl admissionControl = new HttpAdmissionControl(
+                true, false, 2, 1, 10, 0.5, 1000, 1, null);
+        Context context = new TestContext("/normal", Context.Priority.NORMAL);
+        HttpAdmissionControl.Limiter first = admissionControl.acquire(context);
+        HttpAdmissionControl.Limiter second = admissionControl.acquire(context);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNull(admissionControl.acquire(context));
+        first.release(1000, false);
+        Assert.assertNotNull(admissionControl.acquire(context));
+        Assert.assertEquals(1, admissionControl.getRejectionCount());
+        Assert.assertEquals(3, admissionControl.getLimiter(context).getAdmissionCount());
+        Assert.assertEquals(2, admissionControl.getLimiter(context).getInFlight());
+    }
+
+    @Test
+    public void testPriorities() {
+        HttpAdmissionControl admissionControl = new HttpAdmissionControl(
+                true, false, 4, 1, 10, 0.5, 1000, 1, "^/health.*");
+        Context low = new TestContext("/low", Context.Priority.LOW);
+        Context critical = new TestContext("/health", Context.Priority.NORMAL);
+        Assert.assertNotNull(admissionControl.acquire(low));
+        Assert.assertNotNull(admissionControl.acquire(low));
+        Assert.assertNull(admissionControl.acquire(low));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(admissionControl.acquire(critical));
+        }
+        Assert.assertEquals(Context.Priority.CRITICAL, admissionControl.getLimiter(critical).getPriority());
+    }
+
+    @Test
+    public void testAdaptiveLimit() {
+        HttpAdmissionControl admissionControl = new HttpAdmissionControl(
+                true, true, 50, 10, 200, 0.5, 1000, 1, null);
+        Context context = new TestContext("/adaptive", Context.Priority.NORMAL);
+        HttpAdmissionControl.Limiter limiter = admissionControl.acquire(context);
+        limiter.release(1000, false);
+        int initialLimit = limiter.getLimit();
+
+        //Saturated context with the latency without load, the limit grows.
+        for (int i = 0; i < 100; i++) {
+            acquire(admissionControl, context, limiter.getLimit());
+            limiter.release(1000, false);
+        }
+        int grownLimit = limiter.getLimit();
+        Assert.assertTrue(grownLimit > initialLimit);
+
+        //The latency grows because the requests are queued, the limit decreases.
+        for (int i = 0; i < 100; i++) {
+            limiter.release(10000, false);
+            acquire(admissionControl, context, 1);
+        }
+        Assert.assertTrue(limiter.getLimit() < grownLimit);
+
+        //The dropped requests reduce the limit to the min limit.
+        for (int i = 0; i < 100; i++) {
+            limiter.release(1000, true);
+            acquire(admissionControl, context, 1);
+        }
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testOverloadedResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        HttpServer server = new HttpServer(InetPortProvider.getTcpPort(10380));
+        server.setAdmissionControl(new HttpAdmissionControl(true, false, 1, 1, 1, 0.5, 1000, 5, null));
+        server.addContext(new Context("/slow") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                started.countDown();
+                try {
+                    finish.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody("done".getBytes());
+                return response;
+            }
+        });
+        server.start();
+        String request = "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        try(Socket first = new Socket("localhost", server.getPort());
+            Socket second = new Socket("localhost", server.getPort())) {
+            first.getOutputStream().write(request.getBytes());
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            second.getOutputStream().write(request.getBytes());
+            String rejection = readHead(second.getInputStream());
+            Assert.assertTrue(rejection.startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.SERVICE_UNAVAILABLE));
+            Assert.assertTrue(rejection.contains(HttpHeader.RETRY_AFTER + ": 5"));
+            finish.countDown();
+            Assert.assertTrue(readHead(first.getInputStream()).startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.OK));
+        } finally {
+            finish.countDown();
+        }
+        Assert.assertEquals(1, server.getAdmissionControl().getRejectionCount());
+    }
+
+    private void acquire(HttpAdmissionControl admissionControl, Context context, int count) {
+        HttpAdmissionControl.Limiter limiter = admissionControl.getLimiter(context);
+        while(limiter.getInFlight() < count && admissionControl.acquire(context) != null);
+    }
+
+    private String readHead(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int value;
+        while(!out.toString().endsWith("\r\n\r\n") && (value = inputStream.read()) >= 0) {
+            out.write(value);
+        }
+        return out.toString();
+    }
+
+    private static class TestContext extends Context {
+
+        private final Priority priority;
+
+        public TestContext(String contextRegex, Priority priority) {
+            super(contextRegex);
+            this.priority = priority;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public HttpResponse onContext(HttpRequest request) {
+            return new HttpResponse();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * @author javaito
+ */
+public class HttpBodyStreamingTest {
+
+    private static final int BODY_SIZE = 256 * 1024;
+    private static final int SPILL_THRESHOLD = 1024;
+
+    private static Integer port;
+
+    @BeforeClass
+    public static void startServer() {
+        port = InetPortProvider.getTcpPort(9280);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/upload") {
+
+            @Override
+            protected HttpBodyConsumer createBodyConsumer(HttpRequest request) {
+                return new HttpBodyBuffer(SPILL_THRESHOLD);
+            }
+
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                try {
+                    HttpBodyBuffer bodyBuffer = (HttpBodyBuffer) request.getBodyConsumer();
+                    byte[] body = read(request.getBodyChannel());
+                    response.setResponseCode(HttpResponseCode.OK);
+                    response.setBody((request.getBody().length + ":" + bodyBuffer.isSpilled() + ":" +
+                            body.length + ":" + Arrays.equals(body, createBody(body.length)) + ":" +
+                            request.getBodySize()).getBytes());
+                } catch (Exception ex) {
+                    response.setResponseCode(HttpResponseCode.INTERNAL_SERVER_ERROR);
+                }
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @Test
+    public void testBodyBufferSpill() throws Exception {
+        byte[] body = createBody(100);
+        HttpBodyBuffer bodyBuffer = new HttpBodyBuffer(64);
+        bodyBuffer.onChunk(ByteBuffer.wrap(body, 0, 60));
+        Assert.assertFalse(bodyBuffer.isSpilled());
+        bodyBuffer.onChunk(ByteBuffer.wrap(body, 60, 40));
+        bodyBuffer.onEnd();
+        Assert.assertTrue(bodyBuffer.isSpilled());
+        Assert.assertEquals(100, bodyBuffer.getSize());
+        Assert.assertArrayEquals(body, read(bodyBuffer.getChannel()));
+        bodyBuffer.close();
+        try {
+            bodyBuffer.getChannel();
+            Assert.fail("Closed buffer");
+        } catch (Exception ex) {
+        }
+    }
+
+    @Test
+    public void testRequestBodyConsumer() {
+        HttpBodyBuffer bodyBuffer = new HttpBodyBuffer(SPILL_THRESHOLD);
+        HttpRequest request = new HttpRequest() {
+            @Override
+            protected HttpBodyConsumer createBodyConsumer() {
+                return bodyBuffer;
+            }
+        };
+        byte[] body = createBody(10000);
+        request.addData(("POST /upload HTTP/1.1\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes());
+        for (int i = 0; i < body.length; i += 1000) {
+            request.addData(Arrays.copyOfRange(body, i, i + 1000));
+        }
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals(0, request.getBody().length);
+        Assert.assertSame(bodyBuffer, request.getBodyConsumer());
+        Assert.assertEquals(body.length, bodyBuffer.getSize());
+        Assert.assertEquals(body.length, request.getBodySize());
+        request.releaseBody();
+    }
+
+    @Test
+    public void testStreamingUpload() throws Exception {
+        byte[] body = createBody(BODY_SIZE);
+        try(Socket socket = new Socket("localhost", port)) {
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(("POST /upload HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Connection: keep-alive\r\n" +
+                    "Content-Length: " + body.length + "\r\n\r\n").getBytes());
+            outputStream.write(body);
+
+            outputStream.write(("POST /upload HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Transfer-Encoding: chunked\r\n\r\n").getBytes());
+            for (int i = 0; i < body.length; i += 4096) {
+                outputStream.write((Integer.toHexString(4096) + "\r\n").getBytes());
+                outputStream.write(body, i, 4096);
+                outputStream.write("\r\n".getBytes());
+            }
+            outputStream.write("0\r\n\r\n".getBytes());
+
+            InputStream inputStream = socket.getInputStream();
+            String expected = "0:true:" + BODY_SIZE + ":true:" + BODY_SIZE;
+            Assert.assertTrue(readResponse(inputStream).endsWith(expected));
+            Assert.assertTrue(readResponse(inputStream).endsWith(expected));
+        }
+    }
+
+    private static byte[] createBody(int size) {
+        byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (i % 251);
+        }
+        return result;
+    }
+
+    private static byte[] read(ReadableByteChannel channel) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        try {
+            while (channel.read(buffer) >= 0) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return out.toByteArray();
+    }
+
+    private String readResponse(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int contentLength = -1;
+        int value;
+        while(contentLength < 0 && (value = inputStream.read()) >= 0) {
+            out.write(value);
+            String data = out.toString();
+            if(data.endsWith("\r\n\r\n")) {
+                for(String line : data.split("\r\n")) {
+                    if(line.toLowerCase().startsWith(HttpHeader.CONTENT_LENGTH.toLowerCase() + ":")) {
+                        contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            out.write(inputStream.read());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compares the throughput of the http client against a local server: a new connection
+ * for each request, the pooled keep alive connections and the asynchronous requests.
+ * Usage: HttpClientBenchmarkTestSuit [requests] [concurrency]
+ * @author javaito
+ */
+public class HttpClientBenchmarkTestSuit {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        Integer port = InetPortProvider.getTcpPort(9680);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/bench") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody("{\"status\":\"ok\"}".getBytes());
+                return response;
+            }
+        });
+        server.start();
+        URL url = new URL("http://localhost:" + port + "/bench");
+
+        HttpClientPool pool = new HttpClientPool(concurrency, requests, 30000, 5000);
+        run("Connection per request", requests, () -> {
+            HttpClient client = new HttpClient(url);
+            client.setPool(pool);
+            client.addHttpHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.CLOSE));
+            client.request();
+        });
+        System.out.printf("    connections created: %d\r\n", pool.getCreatedConnections());
+
+        HttpClientPool keepAlivePool = new HttpClientPool(concurrency, requests, 30000, 5000);
+        run("Keep alive", requests, () -> {
+            HttpClient client = new HttpClient(url);
+            client.setPool(keepAlivePool);
+            client.request();
+        });
+        System.out.printf("    connections created: %d\r\n", keepAlivePool.getCreatedConnections());
+
+        HttpClientPool asyncPool = new HttpClientPool(concurrency, requests, 30000, 5000);
+        run("Keep alive async (" + concurrency + " connections)", 1, () -> {
+            List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                HttpClient client = new HttpClient(url);
+                client.setPool(asyncPool);
+                futures.add(client.requestAsync());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }, requests);
+        System.out.printf("    connections created: %d\r\n", asyncPool.getCreatedConnections());
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void run(String name, int iterations, Task task) throws Exception {
+        run(name, iterations, task, iterations);
+    }
+
+    private static void run(String name, int iterations, Task task, int requests) throws Exception {
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%-40s %10.1f requests/s\r\n", name, requests / (time / 1000000000.0));
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,174 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author javaito
+ */
+public class HttpClientPoolTest {
+
+    private static Integer port;
+
+    @BeforeClass
+    public static void startServer() {
+        port = InetPortProvider.getTcpPort(9480);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/echo.*") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody((request.getMethod() + " " + request.getPath() + " " + request.getBody().length).getBytes());
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        HttpClientPool pool = new HttpClientPool(4, 100, 30000, 1000);
+        for (int i = 0; i < 20; i++) {
+            HttpClient client = new HttpClient(new URL("http://localhost:" + port + "/echo/" + i));
+            client.setPool(pool);
+            client.setHttpMethod(HttpMethod.POST);
+            client.setBody(new byte[i]);
+            HttpResponse response = client.request();
+            Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+            Assert.assertEquals("POST /echo/" + i + " " + i, new String(response.getBody()));
+        }
+        Assert.assertEquals(1, pool.getCreatedConnections());
+        Assert.assertEquals(19, pool.getReusedConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testAsyncRequests() throws Exception {
+        HttpClientPool pool = new HttpClientPool(4, 1000, 30000, 1000);
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            HttpClient client = new HttpClient(new URL("http://localhost:" + port + "/echo/" + i));
+            client.setPool(pool);
+            futures.add(client.requestAsync());
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+            Assert.assertEquals("GET /echo/" + i + " 0", new String(response.getBody()));
+        }
+        Assert.assertTrue(pool.getCreatedConnections() <= 4);
+        Assert.assertTrue(pool.getConnections(HttpPackage.HttpProtocol.HTTP, "localhost", port) <= 4);
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        HttpClientPool pool = new HttpClientPool(4, 100, 30000, 1000);
+        HttpClient client = new HttpClient(new URL("http://localhost:" + InetPortProvider.getTcpPort(9580) + "/echo"));
+        client.setPool(pool);
+        client.setConnectTimeout(5000L);
+        long time = System.currentTimeMillis();
+        try {
+            client.requestAsync().get();
+            Assert.fail("Connection refused");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(System.currentTimeMillis() - time < 5000);
+        }
+        Assert.assertEquals(HttpResponseCode.BAD_REQUEST, client.request().getResponseCode());
+        Assert.assertEquals(0, pool.getConnections(HttpPackage.HttpProtocol.HTTP, "localhost", client.getPort()));
+    }
+
+    @Test
+    public void testRetryOnlyIdempotentRequests() throws Exception {
+        Integer closingPort = InetPortProvider.getTcpPort(10620);
+        AtomicInteger requests = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(closingPort)) {
+            Thread thread = new Thread(() -> {
+                //Each connection responds only the first request and it's closed when the second request arrives.
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept()) {
+                        while (readRequest(socket.getInputStream())) {
+                            if (requests.incrementAndGet() % 2 == 0) {
+                                break;
+                            }
+                            socket.getOutputStream().write(("HTTP/1.1 200 OK\r\n" +
+                                    "Content-Length: 2\r\n" +
+                                    "Connection: keep-alive\r\n\r\nOK").getBytes());
+                        }
+                    } catch (IOException ex) {
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            HttpClientPool pool = new HttpClientPool(1, 100, 30000, 1000);
+            HttpClient client = new HttpClient(new URL("http://localhost:" + closingPort + "/get"));
+            client.setPool(pool);
+            Assert.assertEquals("OK", new String(client.requestAsync().get(10, TimeUnit.SECONDS).getBody()));
+            client = new HttpClient(new URL("http://localhost:" + closingPort + "/get"));
+            client.setPool(pool);
+            Assert.assertEquals("OK", new String(client.requestAsync().get(10, TimeUnit.SECONDS).getBody()));
+            Assert.assertEquals(3, requests.get());
+            Assert.assertEquals(1, pool.getRetriedRequests());
+
+            client = new HttpClient(new URL("http://localhost:" + closingPort + "/post"));
+            client.setPool(pool);
+            client.setHttpMethod(HttpMethod.POST);
+            client.setBody("data".getBytes());
+            try {
+                client.requestAsync().get(10, TimeUnit.SECONDS);
+                Assert.fail("The post request must not be sent again");
+            } catch (ExecutionException ex) {
+            }
+            Assert.assertEquals(4, requests.get());
+            Assert.assertEquals(1, pool.getRetriedRequests());
+            pool.close();
+        }
+    }
+
+    /**
+     * Reads a request of the stream including the body indicated by the content length header.
+     * @param inputStream Input stream.
+     * @return False if the stream ends before the request.
+     * @throws IOException Exception for io operations.
+     */
+    private static boolean readRequest(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int value;
+        while (!head.toString(StandardCharsets.ISO_8859_1.name()).endsWith("\r\n\r\n")) {
+            if ((value = inputStream.read()) < 0) {
+                return false;
+            }
+            head.write(value);
+        }
+        int length = 0;
+        for (String line : head.toString(StandardCharsets.ISO_8859_1.name()).split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (inputStream.read() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package org.hcjf.io.net.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the bytes and the time per response of the compression stage.
+ * Usage: HttpCompressionBenchmarkTestSuit [items] [iterations]
+ * @author javaito
+ */
+public class HttpCompressionBenchmarkTestSuit {
+
+    private static final List<String> MIME_TYPES = Arrays.asList("application/json");
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        byte[] body = HttpResponseCompressorTest.createJson(items);
+        System.out.printf("Uncompressed body: %d bytes\r\n", body.length);
+
+        //Legacy folder context behaviour, the body was compressed for each request.
+        run("Gzip per request", iterations, () -> {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream(); GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out)) {
+                gzipOutputStream.write(body);
+                gzipOutputStream.finish();
+                return out.size();
+            }
+        });
+
+        HttpResponseCompressor level6 = new HttpResponseCompressor(true, 1024, Long.MAX_VALUE, 6, MIME_TYPES, 0);
+        run("Stage without etag (level 6)", iterations, () -> compress(level6, body, null));
+        HttpResponseCompressor level1 = new HttpResponseCompressor(true, 1024, Long.MAX_VALUE, 1, MIME_TYPES, 0);
+        run("Stage without etag (level 1)", iterations, () -> compress(level1, body, null));
+        HttpResponseCompressor cached = new HttpResponseCompressor(true, 1024, Long.MAX_VALUE, 6, MIME_TYPES, 1024 * 1024);
+        run("Stage with etag (cached)", iterations, () -> compress(cached, body, "v1"));
+    }
+
+    private static int compress(HttpResponseCompressor compressor, byte[] body, String eTag) {
+        HttpRequest request = new HttpRequest("/bench", HttpMethod.GET);
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br"));
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, "application/json"));
+        if(eTag != null) {
+            response.addHeader(new HttpHeader(HttpHeader.E_TAG, eTag));
+        }
+        response.setBody(body);
+        return compressor.compress(request, response).getBody().length;
+    }
+
+    private static void run(String name, int iterations, Task task) throws Exception {
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            size = task.run();
+        }
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            size = task.run();
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%-30s %8d bytes %10.2f us/response\r\n", name, size, time / 1000.0 / iterations);
+    }
+
+    private interface Task {
+        int run() throws Exception;
+    }
+}
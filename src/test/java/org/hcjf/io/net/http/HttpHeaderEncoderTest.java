@@ -0,0 +1,57 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author javaito
+ */
+public class HttpHeaderEncoderTest {
+
+    @Test
+    public void testEncode() {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.addHeader(HttpHeaderEncoder.getServerHeader());
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, "text/plain"));
+        response.addHeader(new HttpHeader("X-Name", "\u00f1and\u00fa"));
+        String header = new String(response.getProtocolHeader(), StandardCharsets.UTF_8);
+        List<String> lines = Arrays.asList(header.split("\r\n"));
+        Assert.assertTrue(header.endsWith("\r\n\r\n"));
+        Assert.assertEquals(4, lines.size());
+        Assert.assertEquals(HttpVersion.VERSION_1_1 + " 200 Ok", lines.get(0));
+        Assert.assertTrue(lines.contains(HttpHeader.SERVER + ": " + HttpHeaderEncoder.getServerHeader().getHeaderValue()));
+        Assert.assertTrue(lines.contains(HttpHeader.CONTENT_TYPE + ": text/plain"));
+        Assert.assertTrue(lines.contains("X-Name: \u00f1and\u00fa"));
+
+        response.setReasonPhrase("Fine");
+        Assert.assertTrue(new String(response.getProtocolHeader()).startsWith(HttpVersion.VERSION_1_1 + " 200 Fine\r\n"));
+    }
+
+    @Test
+    public void testLargeHeaderBlock() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            value.append('a');
+        }
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.NOT_FOUND);
+        response.addHeader(new HttpHeader("X-Large", value.toString()));
+        String header = new String(response.getProtocolHeader());
+        Assert.assertTrue(header.startsWith(HttpVersion.VERSION_1_1 + " 404 "));
+        Assert.assertTrue(header.endsWith(value + "\r\n\r\n"));
+    }
+
+    @Test
+    public void testDateHeader() {
+        HttpHeader dateHeader = HttpHeaderEncoder.getDateHeader();
+        Assert.assertEquals(HttpHeader.DATE, dateHeader.getHeaderName());
+        Assert.assertNotNull(dateHeader.getEncoded());
+        HttpHeader other = HttpHeaderEncoder.getDateHeader();
+        Assert.assertTrue(dateHeader == other || !dateHeader.getHeaderValue().equals(other.getHeaderValue()));
+    }
+}
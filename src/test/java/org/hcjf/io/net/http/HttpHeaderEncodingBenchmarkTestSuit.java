@@ -0,0 +1,85 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Measures the cost to encode a response (status line, headers and body), comparing the
+ * string based encoding with the header encoder.
+ * Usage: HttpHeaderEncodingBenchmarkTestSuit [iterations]
+ * @author javaito
+ */
+public class HttpHeaderEncodingBenchmarkTestSuit {
+
+    private static final byte[] BODY = "{\"id\":1,\"name\":\"item\"}".getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        run("String header block", iterations, () -> {
+            HttpResponse response = createResponse();
+            response.addHeader(new HttpHeader(HttpHeader.DATE,
+                    SystemProperties.getDateFormat(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).format(new Date())));
+            response.addHeader(new HttpHeader(HttpHeader.SERVER, SystemProperties.get(SystemProperties.Net.Http.SERVER_NAME)));
+            StringBuilder builder = new StringBuilder();
+            builder.append(response.getHttpVersion()).append(HttpPackage.LINE_FIELD_SEPARATOR);
+            builder.append(response.getResponseCode()).append(HttpPackage.LINE_FIELD_SEPARATOR);
+            builder.append(response.getReasonPhrase()).append(HttpPackage.STRING_LINE_SEPARATOR);
+            for(HttpHeader header : response.getHeaders()) {
+                builder.append(header).append(HttpPackage.STRING_LINE_SEPARATOR);
+            }
+            builder.append(HttpPackage.STRING_LINE_SEPARATOR);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(builder.toString().getBytes());
+            out.write(response.getBody());
+            return out.toByteArray().length;
+        });
+
+        run("Header encoder", iterations, () -> {
+            HttpResponse response = createResponse();
+            response.addHeader(HttpHeaderEncoder.getDateHeader());
+            response.addHeader(HttpHeaderEncoder.getServerHeader());
+            ByteBuffer header = HttpHeaderEncoder.encode(response);
+            int headerSize = header.remaining();
+            byte[] result = new byte[headerSize + response.getBody().length];
+            header.get(result, 0, headerSize);
+            System.arraycopy(response.getBody(), 0, result, headerSize, response.getBody().length);
+            return result.length;
+        });
+    }
+
+    private static HttpResponse createResponse() {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, "application/json"));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(BODY.length)));
+        response.setBody(BODY);
+        return response;
+    }
+
+    private static void run(String name, int iterations, Task task) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            size = task.run();
+        }
+        time = System.nanoTime() - time;
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.printf("%-20s %5d bytes %8.1f ns/response %8d allocated bytes/response\r\n",
+                name, size, (double) time / iterations, allocated / iterations);
+    }
+
+    private interface Task {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,129 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author javaito
+ */
+public class HttpParserTest {
+
+    private static final String REQUEST =
+            "POST /path/to/resource?name=value&flag HTTP/1.1\r\n" +
+            "host: localhost:8080\r\n" +
+            "USER-AGENT: Mozilla/5.0 (X11; Linux x86_64)\r\n" +
+            "Accept: text/html,application/xhtml+xml;q=0.9\r\n" +
+            "X-Custom-Header:   custom value  \r\n" +
+            "X-Folded: first\r\n" +
+            "  second\r\n" +
+            "content-length: 11\r\n\r\n" +
+            "Hello World";
+
+    @Test
+    public void testSplitAtEachByte() {
+        byte[] data = REQUEST.getBytes();
+        for (int i = 1; i < data.length; i++) {
+            HttpRequest request = new HttpRequest();
+            ByteBuffer first = ByteBuffer.wrap(data, 0, i);
+            request.addData(first);
+            Assert.assertFalse(first.hasRemaining());
+            ByteBuffer second = ByteBuffer.wrap(data, i, data.length - i);
+            request.addData(second);
+            Assert.assertFalse(second.hasRemaining());
+            assertRequest(request);
+        }
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] data = REQUEST.getBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        HttpRequest request = new HttpRequest();
+        request.addData(buffer);
+        assertRequest(request);
+    }
+
+    @Test
+    public void testWellKnownNames() {
+        HttpRequest request = new HttpRequest();
+        request.addData(REQUEST.getBytes());
+        Assert.assertSame(HttpHeader.HOST, request.getHeader(HttpHeader.HOST).getHeaderName());
+        Assert.assertSame(HttpHeader.USER_AGENT, request.getHeader(HttpHeader.USER_AGENT).getHeaderName());
+        Assert.assertSame(HttpHeader.CONTENT_LENGTH, request.getHeader(HttpHeader.CONTENT_LENGTH).getHeaderName());
+        Assert.assertSame(HttpVersion.VERSION_1_1, request.getHttpVersion());
+        Assert.assertEquals("X-Custom-Header", request.getHeader("x-custom-header").getHeaderName());
+    }
+
+    @Test
+    public void testResponseFirstLine() {
+        HttpResponse response = new HttpResponse();
+        response.addData(("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n").getBytes());
+        Assert.assertTrue(response.isComplete());
+        Assert.assertEquals(HttpResponseCode.NOT_FOUND, response.getResponseCode());
+        Assert.assertEquals("Not Found", response.getReasonPhrase());
+    }
+
+    @Test
+    public void testFirstLineLimit() {
+        HttpParser parser = new HttpParser(16, 1024, 10);
+        Assert.assertFalse(parser.parse(ByteBuffer.wrap("GET /0123456789".getBytes())));
+        assertParserException(parser, "ABCDEF", HttpResponseCode.REQUEST_URI_TOO_LARGE);
+    }
+
+    @Test
+    public void testHeadersLimits() {
+        assertParserException(new HttpParser(1024, 32, 10),
+                "GET / HTTP/1.1\r\nHost: localhost\r\nUser-Agent: 0123456789\r\n",
+                HttpResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE);
+        assertParserException(new HttpParser(1024, 1024, 2),
+                "GET / HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\n\r\n",
+                HttpResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE);
+    }
+
+    @Test
+    public void testMalformedRequests() {
+        assertParserException(new HttpParser(), "GET\r\n\r\n", HttpResponseCode.BAD_REQUEST);
+        assertParserException(new HttpParser(), "GET / HTTP/1.1\r\nMalformed\r\n\r\n", HttpResponseCode.BAD_REQUEST);
+        assertParserException(new HttpParser(), "GET / HTTP/1.1\r\n folded\r\n\r\n", HttpResponseCode.BAD_REQUEST);
+
+        try {
+            new HttpRequest().addData("GET / HTTP/1.1\r\nContent-Length: -1\r\n\r\n".getBytes());
+            Assert.fail("Invalid content length");
+        } catch (HttpParserException ex) {
+            Assert.assertEquals(HttpResponseCode.BAD_REQUEST, ex.getResponseCode());
+        }
+
+        try {
+            new HttpRequest().addData("FETCH / HTTP/1.1\r\n\r\n".getBytes());
+            Assert.fail("Invalid method");
+        } catch (HttpParserException ex) {
+            Assert.assertEquals(HttpResponseCode.NOT_IMPLEMENTED, ex.getResponseCode());
+        }
+    }
+
+    private void assertParserException(HttpParser parser, String data, Integer responseCode) {
+        try {
+            parser.parse(ByteBuffer.wrap(data.getBytes()));
+            Assert.fail("Parser exception expected");
+        } catch (HttpParserException ex) {
+            Assert.assertEquals(responseCode, ex.getResponseCode());
+        }
+    }
+
+    private void assertRequest(HttpRequest request) {
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals(HttpMethod.POST, request.getMethod());
+        Assert.assertEquals("/path/to/resource", request.getContext());
+        Assert.assertEquals(3, request.getPathParts().size());
+        Assert.assertEquals("value", request.getParameter("name"));
+        Assert.assertTrue(request.getParameters().containsKey("flag"));
+        Assert.assertEquals("localhost:8080", request.getHeader(HttpHeader.HOST).getHeaderValue());
+        Assert.assertEquals("custom value", request.getHeader("X-Custom-Header").getHeaderValue());
+        Assert.assertEquals("first second", request.getHeader("X-Folded").getHeaderValue());
+        Assert.assertEquals("Hello World", new String(request.getBody()));
+    }
+}
@@ -0,0 +1,196 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author javaito
+ */
+public class HttpPipeliningTest {
+
+    private static final String PIPELINE =
+            "GET /echo?id=1 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n\r\n" +
+            "POST /echo?id=2 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Content-Length: 5\r\n\r\n" +
+            "Hello" +
+            "POST /echo?id=3 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Transfer-Encoding: chunked\r\n\r\n" +
+            "5;ext=1\r\nWorld\r\n1\r\n!\r\n0\r\nTrailer: value\r\n\r\n";
+
+    private static Integer port;
+
+    @BeforeClass
+    public static void startServer() {
+        port = InetPortProvider.getTcpPort(9180);
+        HttpServer server = new HttpServer(port);
+        server.setKeepAliveMaxRequests(4);
+        server.addContext(new Context("/echo") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody((request.getParameter("id") + ":" + new String(request.getBody())).getBytes());
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @Test
+    public void testSplitBuffer() {
+        List<HttpRequest> requests = parse(ByteBuffer.wrap(PIPELINE.getBytes()));
+        assertRequests(requests);
+    }
+
+    @Test
+    public void testByteByByte() {
+        List<HttpRequest> requests = new ArrayList<>();
+        HttpRequest request = new HttpRequest();
+        for(byte value : PIPELINE.getBytes()) {
+            request.addData(new byte[]{value});
+            if(request.isComplete()) {
+                requests.add(request);
+                request = new HttpRequest();
+            }
+        }
+        assertRequests(requests);
+    }
+
+    @Test
+    public void testPipelinedResponsesOrder() throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(PIPELINE.getBytes());
+            InputStream inputStream = socket.getInputStream();
+            Assert.assertTrue(readResponse(inputStream).endsWith("1:"));
+            Assert.assertTrue(readResponse(inputStream).endsWith("2:Hello"));
+            Assert.assertTrue(readResponse(inputStream).endsWith("3:World!"));
+        }
+    }
+
+    @Test
+    public void testMaxRequestsByConnection() throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(PIPELINE.getBytes());
+            socket.getOutputStream().write(PIPELINE.getBytes());
+            InputStream inputStream = socket.getInputStream();
+            for (int i = 0; i < 3; i++) {
+                readResponse(inputStream);
+            }
+            String last = readResponse(inputStream);
+            Assert.assertTrue(last.contains(HttpHeader.CONNECTION + ": " + HttpHeader.CLOSE));
+            Assert.assertEquals(-1, inputStream.read());
+        }
+    }
+
+    @Test
+    public void testDefaultPersistentConnections() throws Exception {
+        String close = HttpHeader.CONNECTION + ": " + HttpHeader.CLOSE;
+        String keepAlive = HttpHeader.CONNECTION + ": " + HttpHeader.KEEP_ALIVE;
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET /echo?id=1 HTTP/1.1\r\n" +
+                    "Host: localhost\r\n\r\n" +
+                    "GET /echo?id=2 HTTP/1.1\r\n" +
+                    "Host: localhost\r\n\r\n" +
+                    "GET /echo?id=3 HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Connection: close\r\n\r\n").getBytes());
+            InputStream inputStream = socket.getInputStream();
+            String response = readResponse(inputStream);
+            Assert.assertTrue(response.endsWith("1:"));
+            Assert.assertFalse(response.contains(close));
+            response = readResponse(inputStream);
+            Assert.assertTrue(response.endsWith("2:"));
+            Assert.assertFalse(response.contains(close));
+            response = readResponse(inputStream);
+            Assert.assertTrue(response.endsWith("3:"));
+            Assert.assertTrue(response.contains(close));
+            Assert.assertEquals(-1, inputStream.read());
+        }
+
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET /echo?id=1 HTTP/1.0\r\n" +
+                    "Connection: keep-alive\r\n\r\n" +
+                    "GET /echo?id=2 HTTP/1.0\r\n\r\n").getBytes());
+            InputStream inputStream = socket.getInputStream();
+            String response = readResponse(inputStream);
+            Assert.assertTrue(response.endsWith("1:"));
+            Assert.assertTrue(response.contains(keepAlive));
+            response = readResponse(inputStream);
+            Assert.assertTrue(response.endsWith("2:"));
+            Assert.assertTrue(response.contains(close));
+            Assert.assertEquals(-1, inputStream.read());
+        }
+    }
+
+    @Test
+    public void testMalformedRequestRejected() throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET /echo?id=1 HTTP/1.1\r\n" +
+                    "Connection: keep-alive\r\n\r\n" +
+                    "GET /echo?id=2 HTTP/1.1\r\n" +
+                    "Malformed header\r\n\r\n").getBytes());
+            InputStream inputStream = socket.getInputStream();
+            Assert.assertTrue(readResponse(inputStream).endsWith("1:"));
+            String rejection = readResponse(inputStream);
+            Assert.assertTrue(rejection.startsWith(HttpVersion.VERSION_1_1 + " " + HttpResponseCode.BAD_REQUEST));
+            Assert.assertTrue(rejection.contains(HttpHeader.CONNECTION + ": " + HttpHeader.CLOSE));
+            Assert.assertEquals(-1, inputStream.read());
+        }
+    }
+
+    private List<HttpRequest> parse(ByteBuffer buffer) {
+        List<HttpRequest> requests = new ArrayList<>();
+        while(buffer.hasRemaining()) {
+            HttpRequest request = new HttpRequest();
+            request.addData(buffer);
+            Assert.assertTrue(request.isComplete());
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private void assertRequests(List<HttpRequest> requests) {
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(HttpMethod.GET, requests.get(0).getMethod());
+        Assert.assertEquals("1", requests.get(0).getParameter("id"));
+        Assert.assertEquals("Hello", new String(requests.get(1).getBody()));
+        Assert.assertEquals("3", requests.get(2).getParameter("id"));
+        Assert.assertEquals("World!", new String(requests.get(2).getBody()));
+    }
+
+    private String readResponse(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int contentLength = -1;
+        int value;
+        while(contentLength < 0 && (value = inputStream.read()) >= 0) {
+            out.write(value);
+            String data = out.toString();
+            if(data.endsWith("\r\n\r\n")) {
+                for(String line : data.split("\r\n")) {
+                    if(line.toLowerCase().startsWith(HttpHeader.CONTENT_LENGTH.toLowerCase() + ":")) {
+                        contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            out.write(inputStream.read());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @author javaito
+ */
+public class HttpResponseCompressorTest {
+
+    @Test
+    public void testNegotiation() {
+        Assert.assertEquals(HttpHeader.GZIP, negotiate("gzip, deflate, br"));
+        Assert.assertEquals(HttpHeader.DEFLATE, negotiate("gzip;q=0.5, deflate"));
+        Assert.assertEquals(HttpHeader.GZIP, negotiate("*;q=0.3"));
+        Assert.assertEquals(HttpHeader.DEFLATE, negotiate("GZIP;q=0, *"));
+        Assert.assertNull(negotiate("identity"));
+        Assert.assertNull(negotiate("gzip;q=0, deflate;q=0"));
+        Assert.assertNull(negotiate("br"));
+        Assert.assertNull(HttpResponseCompressor.negotiate(null));
+    }
+
+    @Test
+    public void testCompressionAndCache() throws Exception {
+        HttpResponseCompressor compressor = createCompressor(1024 * 1024);
+        byte[] body = createJson(200);
+
+        HttpResponse response = compressor.compress(request("gzip"), response(body, "application/json; charset=utf-8", "v1"));
+        Assert.assertEquals(HttpHeader.GZIP, response.getHeader(HttpHeader.CONTENT_ENCODING).getHeaderValue());
+        Assert.assertEquals(HttpHeader.ACCEPT_ENCODING, response.getHeader(HttpHeader.VARY).getHeaderValue());
+        Assert.assertEquals(Integer.toString(response.getBody().length), response.getHeader(HttpHeader.CONTENT_LENGTH).getHeaderValue());
+        Assert.assertTrue(response.getBody().length < body.length / 4);
+        Assert.assertArrayEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(response.getBody()))));
+        Assert.assertEquals(1, compressor.getCacheMisses());
+
+        response = compressor.compress(request("gzip"), response(body, "application/json", "v1"));
+        Assert.assertArrayEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(response.getBody()))));
+        Assert.assertEquals(1, compressor.getCacheHits());
+
+        response = compressor.compress(request("deflate"), response(body, "application/json", "v1"));
+        Assert.assertArrayEquals(body, read(new InflaterInputStream(new ByteArrayInputStream(response.getBody()))));
+        Assert.assertEquals(2, compressor.getCacheMisses());
+
+        //Small bodies and not compressible types are not compressed.
+        response = compressor.compress(request("gzip"), response(createJson(1), "application/json", null));
+        Assert.assertFalse(response.containsHeader(HttpHeader.CONTENT_ENCODING));
+        response = compressor.compress(request("gzip"), response(body, "image/png", null));
+        Assert.assertFalse(response.containsHeader(HttpHeader.CONTENT_ENCODING));
+        Assert.assertFalse(response.containsHeader(HttpHeader.VARY));
+    }
+
+    @Test
+    public void testEncodedEntityTags() {
+        HttpResponseCompressor compressor = createCompressor(1024 * 1024);
+        byte[] body = createJson(200);
+
+        HttpResponse response = compressor.compress(request("gzip"), response(body, "application/json", "\"v1\""));
+        Assert.assertEquals("\"v1-gzip\"", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+        response = compressor.compress(request("deflate"), response(body, "application/json", "W/\"v1\""));
+        Assert.assertEquals("W/\"v1-deflate\"", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+        response = compressor.compress(request("identity"), response(body, "application/json", "\"v1\""));
+        Assert.assertEquals("\"v1\"", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+        Assert.assertEquals("v1", HttpResponseCompressor.getIdentityTag("v1-gzip"));
+        Assert.assertEquals("v1", HttpResponseCompressor.getIdentityTag("v1"));
+
+        //The not modified response has the tag validated by the client.
+        HttpRequest request = request("gzip");
+        request.addHeader(new HttpHeader(HttpHeader.IF_NONE_MATCH, "\"other\", \"v1-gzip\""));
+        response = compressor.compress(request, notModified("\"v1\""));
+        Assert.assertEquals("\"v1-gzip\"", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+        Assert.assertEquals(HttpHeader.ACCEPT_ENCODING, response.getHeader(HttpHeader.VARY).getHeaderValue());
+        request = request("gzip");
+        request.addHeader(new HttpHeader(HttpHeader.IF_NONE_MATCH, "\"v1\""));
+        response = compressor.compress(request, notModified("\"v1\""));
+        Assert.assertEquals("\"v1\"", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+    }
+
+    @Test
+    public void testCacheBound() {
+        HttpResponseCompressor compressor = createCompressor(4096);
+        for (int i = 0; i < 100; i++) {
+            compressor.compress(request("gzip"), response(createJson(100 + i), "application/json", "v" + i));
+            Assert.assertTrue(compressor.getCacheSize() <= 4096);
+        }
+        Assert.assertTrue(compressor.getCacheSize() > 0);
+        compressor.compress(request("gzip"), response(createJson(199), "application/json", "v99"));
+        Assert.assertEquals(1, compressor.getCacheHits());
+    }
+
+    @Test
+    public void testPrecompressedVariant() throws Exception {
+        Path file = Files.createTempFile("hcjf_compressor", ".js");
+        Path gzipFile = file.resolveSibling(file.getFileName() + ".gz");
+        try {
+            Files.write(file, createJson(100));
+            Files.write(gzipFile, new byte[]{1, 2, 3});
+            HttpFileResponse fileResponse = new HttpFileResponse(file, Files.size(file));
+            fileResponse.setResponseCode(HttpResponseCode.OK);
+            fileResponse.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, "application/javascript"));
+            fileResponse.addHeader(new HttpHeader(HttpHeader.E_TAG, "checksum"));
+            fileResponse.addEncodedVariant(HttpHeader.GZIP, gzipFile);
+
+            HttpResponse response = createCompressor(1024).compress(request("gzip"), fileResponse);
+            Assert.assertTrue(response instanceof HttpFileResponse);
+            Assert.assertEquals(gzipFile, ((HttpFileResponse) response).getPath());
+            Assert.assertEquals("3", response.getHeader(HttpHeader.CONTENT_LENGTH).getHeaderValue());
+            Assert.assertEquals(HttpHeader.GZIP, response.getHeader(HttpHeader.CONTENT_ENCODING).getHeaderValue());
+            Assert.assertEquals("checksum-gzip", response.getHeader(HttpHeader.E_TAG).getHeaderValue());
+            Assert.assertEquals("checksum", fileResponse.getHeader(HttpHeader.E_TAG).getHeaderValue());
+
+            response = createCompressor(1024).compress(request("deflate"), fileResponse);
+            Assert.assertFalse(response instanceof HttpFileResponse);
+            Assert.assertArrayEquals(createJson(100), read(new InflaterInputStream(new ByteArrayInputStream(response.getBody()))));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(gzipFile);
+        }
+    }
+
+    private String negotiate(String acceptEncoding) {
+        return HttpResponseCompressor.negotiate(new HttpHeader(HttpHeader.ACCEPT_ENCODING, acceptEncoding));
+    }
+
+    private HttpResponseCompressor createCompressor(long cacheSize) {
+        return new HttpResponseCompressor(true, 256, 1024 * 1024, 6,
+                Arrays.asList("text/*", "application/json", "application/javascript"), cacheSize);
+    }
+
+    private HttpRequest request(String acceptEncoding) {
+        HttpRequest request = new HttpRequest("/resource", HttpMethod.GET);
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, acceptEncoding));
+        return request;
+    }
+
+    private HttpResponse response(byte[] body, String contentType, String eTag) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, contentType));
+        if(eTag != null) {
+            response.addHeader(new HttpHeader(HttpHeader.E_TAG, eTag));
+        }
+        response.setBody(body);
+        return response;
+    }
+
+    private HttpResponse notModified(String eTag) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.NOT_MODIFIED);
+        response.addHeader(new HttpHeader(HttpHeader.E_TAG, eTag));
+        return response;
+    }
+
+    static byte[] createJson(int items) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if(i > 0) {
+                builder.append(",");
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).
+                    append("\",\"active\":").append(i % 2 == 0).append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        return builder.append("]").toString().getBytes();
+    }
+
+    private byte[] read(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while((read = inputStream.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
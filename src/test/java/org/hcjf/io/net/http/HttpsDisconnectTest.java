@@ -0,0 +1,51 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.HttpsLoadTestSuit;
+import org.hcjf.io.net.InetPortProvider;
+import org.hcjf.io.net.MultiReactorTestSuit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.net.Socket;
+
+/**
+ * @author javaito
+ */
+public class HttpsDisconnectTest {
+
+    private static final int CONNECTIONS = 5;
+    private static final byte[] REQUEST = ("GET /bench HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: keep-alive\r\n\r\n").getBytes();
+
+    @Test
+    public void testClosedConnections() throws Exception {
+        Integer port = InetPortProvider.getTcpPort(10610);
+        HttpsServer server = HttpsLoadTestSuit.startServer(port, HttpsLoadTestSuit.createKeyStore());
+        SSLContext context = HttpsLoadTestSuit.createClientContext();
+
+        for (int i = 0; i < CONNECTIONS * 2; i++) {
+            Socket plainSocket = new Socket("localhost", port);
+            plainSocket.setSoTimeout(5000);
+            SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(plainSocket, "localhost", port, false);
+            socket.getOutputStream().write(REQUEST);
+            Assert.assertTrue(new String(MultiReactorTestSuit.readResponse(socket.getInputStream())).endsWith("OK"));
+            Assert.assertTrue(server.getSessionsWithState() > 0);
+            if(i % 2 == 0) {
+                //Closed with the close notify message.
+                socket.close();
+            }
+            //Closed without the close notify message.
+            plainSocket.close();
+        }
+
+        //The state of the keep-alive sessions is removed when the client closes the connections.
+        long deadline = System.currentTimeMillis() + 5000;
+        while(server.getSessionsWithState() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, server.getSessionsWithState());
+    }
+}
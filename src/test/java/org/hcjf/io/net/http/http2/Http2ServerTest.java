@@ -0,0 +1,244 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.hcjf.io.net.http.*;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * @author javaito
+ */
+public class Http2ServerTest {
+
+    private static final int LARGE_BODY_SIZE = 200000;
+
+    private static Integer port;
+
+    @BeforeClass
+    public static void startServer() {
+        port = InetPortProvider.getTcpPort(10280);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/echo") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody((request.getParameter("id") + ":" + request.getMethod() + ":" +
+                        request.getHeader(HttpHeader.HOST).getHeaderValue() + ":" +
+                        new String(request.getBody())).getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/large") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                byte[] body = new byte[LARGE_BODY_SIZE];
+                for (int i = 0; i < body.length; i++) {
+                    body[i] = (byte) ('a' + (i % 26));
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(body);
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @Test
+    public void testHpackRoundTrip() {
+        HpackEncoder encoder = new HpackEncoder(4096);
+        HpackDecoder decoder = new HpackDecoder(4096);
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        headers.add(new AbstractMap.SimpleEntry<>(":method", "GET"));
+        headers.add(new AbstractMap.SimpleEntry<>(":path", "/resource?name=value"));
+        headers.add(new AbstractMap.SimpleEntry<>("custom-key", "custom-value"));
+        headers.add(new AbstractMap.SimpleEntry<>("authorization", "Bearer 0123456789"));
+        byte[] first = encoder.encode(headers);
+        byte[] second = encoder.encode(headers);
+        Assert.assertTrue(second.length < first.length);
+        for(byte[] block : new byte[][]{first, second}) {
+            List<Map.Entry<String, String>> decoded = new ArrayList<>();
+            decoder.decode(ByteBuffer.wrap(block), (n, v) -> decoded.add(new AbstractMap.SimpleEntry<>(n, v)));
+            Assert.assertEquals(headers, decoded);
+        }
+    }
+
+    @Test
+    public void testMultiplexedStreams() throws Exception {
+        try(Socket socket = new Socket("localhost", port)) {
+            OutputStream outputStream = socket.getOutputStream();
+            DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+            HpackEncoder encoder = new HpackEncoder(4096);
+            HpackDecoder decoder = new HpackDecoder(4096);
+
+            outputStream.write(Http2Frame.CONNECTION_PREFACE);
+            outputStream.write(Http2Frame.create(Http2Frame.SETTINGS, 0, 0));
+            writeRequest(outputStream, encoder, 1, "GET", "/echo?id=1", null);
+            writeRequest(outputStream, encoder, 3, "POST", "/echo?id=3", "Hello");
+            writeRequest(outputStream, encoder, 5, "GET", "/large", null);
+            outputStream.flush();
+
+            Map<Integer, String> statuses = new HashMap<>();
+            Map<Integer, ByteArrayOutputStream> bodies = new HashMap<>();
+            Set<Integer> ended = new HashSet<>();
+            ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+            while(ended.size() < 3) {
+                int length = (inputStream.readUnsignedByte() << 16) | inputStream.readUnsignedShort();
+                int type = inputStream.readUnsignedByte();
+                int flags = inputStream.readUnsignedByte();
+                int streamId = inputStream.readInt() & Integer.MAX_VALUE;
+                byte[] payload = new byte[length];
+                inputStream.readFully(payload);
+                switch (type) {
+                    case Http2Frame.SETTINGS: {
+                        if((flags & Http2Frame.FLAG_ACK) == 0) {
+                            outputStream.write(Http2Frame.create(Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0));
+                        }
+                        break;
+                    }
+                    case Http2Frame.HEADERS:
+                    case Http2Frame.CONTINUATION: {
+                        headerBlock.write(payload);
+                        if((flags & Http2Frame.FLAG_END_HEADERS) != 0) {
+                            decoder.decode(ByteBuffer.wrap(headerBlock.toByteArray()), (n, v) -> {
+                                if(n.equals(":status")) {
+                                    statuses.put(streamId, v);
+                                }
+                            });
+                            headerBlock.reset();
+                        }
+                        break;
+                    }
+                    case Http2Frame.DATA: {
+                        bodies.computeIfAbsent(streamId, k -> new ByteArrayOutputStream()).write(payload);
+                        if(length > 0) {
+                            outputStream.write(Http2Frame.createInt(Http2Frame.WINDOW_UPDATE, 0, length));
+                            outputStream.write(Http2Frame.createInt(Http2Frame.WINDOW_UPDATE, streamId, length));
+                        }
+                        break;
+                    }
+                    case Http2Frame.RST_STREAM:
+                    case Http2Frame.GOAWAY: {
+                        Assert.fail("Unexpected frame " + type);
+                    }
+                }
+                if((type == Http2Frame.DATA || type == Http2Frame.HEADERS) &&
+                        (flags & Http2Frame.FLAG_END_STREAM) != 0) {
+                    ended.add(streamId);
+                }
+            }
+
+            Assert.assertEquals("200", statuses.get(1));
+            Assert.assertEquals("1:GET:localhost:", bodies.get(1).toString());
+            Assert.assertEquals("200", statuses.get(3));
+            Assert.assertEquals("3:POST:localhost:Hello", bodies.get(3).toString());
+            Assert.assertEquals("200", statuses.get(5));
+            byte[] large = bodies.get(5).toByteArray();
+            Assert.assertEquals(LARGE_BODY_SIZE, large.length);
+            Assert.assertEquals('a' + ((LARGE_BODY_SIZE - 1) % 26), large[LARGE_BODY_SIZE - 1]);
+        }
+    }
+
+    @Test
+    public void testHeaderBlockLimit() {
+        List<byte[]> frames = new ArrayList<>();
+        List<Http2ErrorCode> errors = new ArrayList<>();
+        Http2Settings settings = new Http2Settings();
+        settings.setMaxHeaderListSize(1024);
+        Http2Connection connection = new Http2Connection(createHandler(frames, errors), settings, 1000, 4096);
+        connection.onData(ByteBuffer.wrap(Http2Frame.CONNECTION_PREFACE));
+
+        //The continuation frames are rejected before accumulate more than the max header list size.
+        byte[] fragment = new byte[600];
+        connection.onData(ByteBuffer.wrap(Http2Frame.create(Http2Frame.HEADERS, 0, 1, fragment, 0, fragment.length)));
+        Assert.assertFalse(connection.isClosed());
+        connection.onData(ByteBuffer.wrap(Http2Frame.create(Http2Frame.CONTINUATION, 0, 1, fragment, 0, fragment.length)));
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertEquals(Collections.singletonList(Http2ErrorCode.ENHANCE_YOUR_CALM), errors);
+        Assert.assertTrue(containsFrame(frames, Http2Frame.GOAWAY, 0));
+    }
+
+    @Test
+    public void testBodyLimit() {
+        List<byte[]> frames = new ArrayList<>();
+        List<Http2ErrorCode> errors = new ArrayList<>();
+        Http2Connection connection = new Http2Connection(createHandler(frames, errors), new Http2Settings(), 1000, 1000);
+        connection.onData(ByteBuffer.wrap(Http2Frame.CONNECTION_PREFACE));
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        headers.add(new AbstractMap.SimpleEntry<>(":method", "POST"));
+        headers.add(new AbstractMap.SimpleEntry<>(":scheme", "http"));
+        headers.add(new AbstractMap.SimpleEntry<>(":path", "/echo"));
+        byte[] block = new HpackEncoder(4096).encode(headers);
+        connection.onData(ByteBuffer.wrap(Http2Frame.create(Http2Frame.HEADERS, Http2Frame.FLAG_END_HEADERS, 1, block, 0, block.length)));
+
+        //The window of the stream is replenished while the body is under the limit.
+        byte[] data = new byte[600];
+        connection.onData(ByteBuffer.wrap(Http2Frame.create(Http2Frame.DATA, 0, 1, data, 0, data.length)));
+        Assert.assertTrue(containsFrame(frames, Http2Frame.WINDOW_UPDATE, 1));
+        Assert.assertFalse(containsFrame(frames, Http2Frame.RST_STREAM, 1));
+
+        //The stream is cancelled when the body exceeds the limit, the connection keeps open.
+        frames.clear();
+        connection.onData(ByteBuffer.wrap(Http2Frame.create(Http2Frame.DATA, 0, 1, data, 0, data.length)));
+        Assert.assertFalse(containsFrame(frames, Http2Frame.WINDOW_UPDATE, 1));
+        Assert.assertTrue(containsFrame(frames, Http2Frame.RST_STREAM, 1));
+        Assert.assertFalse(connection.isClosed());
+        Assert.assertEquals(0, connection.getStreamCount());
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    private Http2Connection.Handler createHandler(List<byte[]> frames, List<Http2ErrorCode> errors) {
+        return new Http2Connection.Handler() {
+            @Override
+            public void write(byte[] data, boolean waitFor) {
+                frames.add(data);
+            }
+
+            @Override
+            public void onRequest(Http2Stream stream) {
+                Assert.fail("Unexpected request");
+            }
+
+            @Override
+            public void onClose(Http2ErrorCode errorCode, String message) {
+                errors.add(errorCode);
+            }
+        };
+    }
+
+    private boolean containsFrame(List<byte[]> frames, int type, int streamId) {
+        boolean result = false;
+        for(byte[] frame : frames) {
+            ByteBuffer header = ByteBuffer.wrap(frame);
+            if((header.get(3) & 0xff) == type && (header.getInt(5) & Integer.MAX_VALUE) == streamId) {
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    private void writeRequest(OutputStream outputStream, HpackEncoder encoder, int streamId,
+                              String method, String path, String body) throws Exception {
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        headers.add(new AbstractMap.SimpleEntry<>(":method", method));
+        headers.add(new AbstractMap.SimpleEntry<>(":scheme", "http"));
+        headers.add(new AbstractMap.SimpleEntry<>(":authority", "localhost"));
+        headers.add(new AbstractMap.SimpleEntry<>(":path", path));
+        byte[] block = encoder.encode(headers);
+        int flags = Http2Frame.FLAG_END_HEADERS | (body == null ? Http2Frame.FLAG_END_STREAM : 0);
+        outputStream.write(Http2Frame.create(Http2Frame.HEADERS, flags, streamId, block, 0, block.length));
+        if(body != null) {
+            byte[] data = body.getBytes();
+            outputStream.write(Http2Frame.create(Http2Frame.DATA, Http2Frame.FLAG_END_STREAM, streamId, data, 0, data.length));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.hcjf.io.net.http.pipeline;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.hcjf.io.net.NetSession;
+import org.hcjf.io.net.http.*;
+import org.hcjf.service.ServiceSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author javaito
+ */
+public class HttpPipelineResponseTest {
+
+    @Test
+    public void testChunkedFraming() {
+        byte[] content = createContent(100000);
+        ChunkedChannelHttpPipelineResponse response = new ChunkedChannelHttpPipelineResponse(
+                Channels.newChannel(new ByteArrayInputStream(content)), 4096);
+        byte[] encoded = readAll(response);
+        Assert.assertTrue(new String(encoded, StandardCharsets.ISO_8859_1).startsWith("1000\r\n"));
+        Assert.assertTrue(new String(encoded, StandardCharsets.ISO_8859_1).endsWith("\r\n0\r\n\r\n"));
+        Assert.assertArrayEquals(content, decodeChunked(encoded));
+
+        //The empty reads are not written as chunks because the empty chunk is the end of the body.
+        ChunkedHttpPipelineResponse delayedResponse = new ChunkedHttpPipelineResponse(16) {
+
+            private int counter;
+
+            @Override
+            protected int readPipeline(byte[] buffer) {
+                int result;
+                switch (counter++) {
+                    case 0: result = 0; break;
+                    case 1: buffer[0] = 'a'; result = 1; break;
+                    case 2: result = 0; break;
+                    case 3: Arrays.fill(buffer, (byte) 'b'); result = buffer.length; break;
+                    default: result = -1;
+                }
+                return result;
+            }
+        };
+        Assert.assertEquals("1\r\na\r\n10\r\nbbbbbbbbbbbbbbbb\r\n0\r\n\r\n", new String(readAll(delayedResponse)));
+    }
+
+    @Test
+    public void testChannelLength() {
+        byte[] content = createContent(10000);
+        ChannelHttpPipelineResponse response = new ChannelHttpPipelineResponse(
+                Channels.newChannel(new ByteArrayInputStream(content)), 6000, 1024);
+        Assert.assertArrayEquals(Arrays.copyOf(content, 6000), readAll(response));
+
+        ChannelHttpPipelineResponse emptyResponse = new ChannelHttpPipelineResponse(
+                Channels.newChannel(new ByteArrayInputStream(new byte[0])), 0, 1024);
+        Assert.assertEquals(0, emptyResponse.read());
+        Assert.assertEquals(-1, emptyResponse.read());
+
+        ChannelHttpPipelineResponse shortResponse = new ChannelHttpPipelineResponse(
+                Channels.newChannel(new ByteArrayInputStream(content)), 20000, 1024);
+        try {
+            readAll(shortResponse);
+            Assert.fail("The channel is shorter than the length");
+        } catch (UncheckedIOException ex) {
+        }
+    }
+
+    @Test
+    public void testServerTransfer() throws Exception {
+        //Both bodies are larger than the high watermark of the output queue.
+        byte[] content = createContent(8 * 1024 * 1024);
+        Path file = Files.createTempFile("hcjf_pipeline", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, content);
+
+        Integer port = InetPortProvider.getTcpPort(10180);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/region") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                try {
+                    HttpResponse response = new HttpFileResponse(FileChannel.open(file, StandardOpenOption.READ), 1000, 6 * 1024 * 1024);
+                    response.setResponseCode(HttpResponseCode.OK);
+                    return response;
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        server.addContext(new Context("/chunked") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                try {
+                    HttpResponse response = new ChunkedChannelHttpPipelineResponse(FileChannel.open(file, StandardOpenOption.READ), 16384);
+                    response.setResponseCode(HttpResponseCode.OK);
+                    return response;
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        server.start();
+
+        HttpResponse response = new HttpClient(new URL("http://localhost:" + port + "/region")).request();
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 1000, 1000 + 6 * 1024 * 1024), response.getBody());
+
+        response = new HttpClient(new URL("http://localhost:" + port + "/chunked")).request();
+        Assert.assertEquals(HttpHeader.CHUNKED, response.getHeader(HttpHeader.TRANSFER_ENCODING).getHeaderValue());
+        Assert.assertArrayEquals(content, response.getBody());
+    }
+
+    @Test
+    public void testSuspendedTransfer() throws Exception {
+        byte[] content = createContent(8 * 1024 * 1024);
+        Integer port = InetPortProvider.getTcpPort(10480);
+        AtomicReference<NetSession> serverSession = new AtomicReference<>();
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/suspended") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                serverSession.set(ServiceSession.getCurrentSession());
+                HttpResponse response = new ChunkedChannelHttpPipelineResponse(
+                        Channels.newChannel(new ByteArrayInputStream(content)), 16384);
+                response.setResponseCode(HttpResponseCode.OK);
+                return response;
+            }
+        });
+        server.start();
+
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(8192);
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.getOutputStream().write("GET /suspended HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+
+            //The client doesn't read, then the transfer must be suspended at the high watermark.
+            Thread.sleep(1000);
+            NetSession session = serverSession.get();
+            Assert.assertNotNull(session);
+            Assert.assertFalse(session.isWritable());
+            Assert.assertTrue("Output queue: " + session.getOutputQueueBytes(),
+                    session.getOutputQueueBytes() <= session.getHighWatermarkBytes() + 32768);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream inputStream = socket.getInputStream();
+            byte[] buffer = new byte[65536];
+            int size;
+            while((size = inputStream.read(buffer)) >= 0) {
+                out.write(buffer, 0, size);
+            }
+            byte[] data = out.toByteArray();
+            int headerEnd = new String(data, StandardCharsets.ISO_8859_1).indexOf("\r\n\r\n") + 4;
+            Assert.assertArrayEquals(content, decodeChunked(Arrays.copyOfRange(data, headerEnd, data.length)));
+        }
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] readAll(HttpPipelineResponse response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while(response.read() >= 0) {
+            ByteBuffer mainBuffer = response.getMainBuffer();
+            out.write(mainBuffer.array(), response.getDataOffset(), mainBuffer.position() - response.getDataOffset());
+        }
+        response.onEnd();
+        return out.toByteArray();
+    }
+
+    private static byte[] decodeChunked(byte[] encoded) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int index = 0;
+        while(true) {
+            int lineEnd = index;
+            while(encoded[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            int size = Integer.parseInt(new String(encoded, index, lineEnd - index), 16);
+            index = lineEnd + 2;
+            if(size == 0) {
+                break;
+            }
+            out.write(encoded, index, size);
+            index += size + 2;
+        }
+        return out.toByteArray();
+    }
+}
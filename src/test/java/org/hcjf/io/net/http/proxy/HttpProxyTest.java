@@ -0,0 +1,196 @@
+package org.hcjf.io.net.http.proxy;
+
+import org.hcjf.io.net.InetPortProvider;
+import org.hcjf.io.net.http.*;
+import org.hcjf.io.net.http.pipeline.ChunkedHttpPipelineResponse;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author javaito
+ */
+public class HttpProxyTest {
+
+    private static final int CHUNKS = 64;
+    private static final int CHUNK_SIZE = 8192;
+    private static final int LARGE_CHUNKS = 1024;
+
+    private static Integer proxyPort;
+    private static LoadBalancer loadBalancer;
+
+    @BeforeClass
+    public static void startServers() throws Exception {
+        Integer firstPort = startUpstream("first", 9780);
+        Integer secondPort = startUpstream("second", 9880);
+        loadBalancer = new LoadBalancer(LoadBalancer.Strategy.ROUND_ROBIN,
+                new URL("http://localhost:" + firstPort), new URL("http://localhost:" + secondPort));
+
+        proxyPort = InetPortProvider.getTcpPort(9980);
+        HttpProxy proxy = new HttpProxy(proxyPort);
+        proxy.addRule(new RedirectionRule("/upstream/.*", loadBalancer));
+        proxy.start();
+    }
+
+    private static Integer startUpstream(String name, Integer basePort) {
+        Integer port = InetPortProvider.getTcpPort(basePort);
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context("/upstream/name") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(name.getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/upstream/echo") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(request.getBody());
+                return response;
+            }
+        });
+        server.addContext(new Context("/upstream/chunked") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return createChunkedResponse(CHUNKS);
+            }
+        });
+        server.addContext(new Context("/upstream/large") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return createChunkedResponse(LARGE_CHUNKS);
+            }
+        });
+        server.start();
+        return port;
+    }
+
+    private static HttpResponse createChunkedResponse(int chunks) {
+        return new ChunkedHttpPipelineResponse(CHUNK_SIZE) {
+
+            private int counter;
+
+            {
+                setResponseCode(HttpResponseCode.OK);
+            }
+
+            @Override
+            protected int readPipeline(byte[] buffer) {
+                int result = -1;
+                if(counter < chunks) {
+                    Arrays.fill(buffer, (byte) ('a' + (counter++ % 26)));
+                    result = buffer.length;
+                }
+                return result;
+            }
+        };
+    }
+
+    private HttpClient createClient(String path) throws Exception {
+        HttpClient client = new HttpClient(new URL("http://localhost:" + proxyPort + path));
+        client.setReadTimeout(30000L);
+        return client;
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        String previous = null;
+        for (int i = 0; i < 6; i++) {
+            HttpResponse response = createClient("/upstream/name").request();
+            Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+            String name = new String(response.getBody());
+            Assert.assertNotEquals(previous, name);
+            previous = name;
+        }
+        for(LoadBalancer.Upstream upstream : loadBalancer.getUpstreams()) {
+            Assert.assertEquals(0, upstream.getActiveRequests());
+        }
+    }
+
+    @Test
+    public void testStreamingBodies() throws Exception {
+        byte[] body = new byte[2 * 1024 * 1024];
+        new Random(1).nextBytes(body);
+        HttpClient client = createClient("/upstream/echo");
+        client.setHttpMethod(HttpMethod.POST);
+        client.setBody(body);
+        HttpResponse response = client.request();
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+        Assert.assertArrayEquals(body, response.getBody());
+
+        response = createClient("/upstream/chunked").request();
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+        Assert.assertEquals(HttpHeader.CHUNKED, response.getHeader(HttpHeader.TRANSFER_ENCODING).getHeaderValue());
+        Assert.assertEquals(CHUNKS * CHUNK_SIZE, response.getBody().length);
+        Assert.assertEquals('a', response.getBody()[0]);
+        Assert.assertEquals('b', response.getBody()[CHUNK_SIZE]);
+    }
+
+    @Test
+    public void testLargeStreamingBody() throws Exception {
+        //The body is larger than the high watermark of the output queue, then the transfer
+        //of the proxy is suspended and resumed many times.
+        HttpResponse response = createClient("/upstream/large").request();
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+        byte[] body = response.getBody();
+        Assert.assertEquals(LARGE_CHUNKS * CHUNK_SIZE, body.length);
+        for (int i = 0; i < LARGE_CHUNKS; i++) {
+            Assert.assertEquals((byte) ('a' + (i % 26)), body[i * CHUNK_SIZE]);
+            Assert.assertEquals((byte) ('a' + (i % 26)), body[(i + 1) * CHUNK_SIZE - 1]);
+        }
+
+        //The connection keeps working after the transfer.
+        response = createClient("/upstream/name").request();
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+    }
+
+    @Test
+    public void testRuleIndex() throws Exception {
+        URL url = new URL("http://localhost");
+        RedirectionRule versionRule = new RedirectionRule("/api/v1/.*", url);
+        RedirectionRule apiRule = new RedirectionRule("^/api/.*$", url);
+        RedirectionRule prefixRule = new RedirectionRule("/files.*", url);
+        HttpProxyRule genericRule = new HttpProxyRule() {
+            @Override
+            public boolean evaluate(HttpRequest request) {
+                return request.getContext().endsWith(".json");
+            }
+
+            @Override
+            public ProxyTask getTask() {
+                return null;
+            }
+        };
+        Assert.assertEquals("/api", versionRule.getContextKey());
+        Assert.assertEquals("/api", apiRule.getContextKey());
+        Assert.assertNull(prefixRule.getContextKey());
+        Assert.assertEquals("/status", new RedirectionRule("/status", url).getContextKey());
+
+        HttpProxy proxy = new HttpProxy(InetPortProvider.getTcpPort(10080));
+        proxy.addRule(versionRule);
+        proxy.addRule(genericRule);
+        proxy.addRule(apiRule);
+        proxy.addRule(prefixRule);
+
+        Assert.assertSame(versionRule, proxy.findRule(createRequest("/api/v1/users")));
+        Assert.assertSame(genericRule, proxy.findRule(createRequest("/api/v2/users.json")));
+        Assert.assertSame(apiRule, proxy.findRule(createRequest("/api/v2/users")));
+        Assert.assertSame(prefixRule, proxy.findRule(createRequest("/files2/image.png")));
+        Assert.assertSame(genericRule, proxy.findRule(createRequest("/other/data.json")));
+        Assert.assertNull(proxy.findRule(createRequest("/other/data")));
+    }
+
+    private HttpRequest createRequest(String context) {
+        HttpRequest request = new HttpRequest(context, HttpMethod.GET);
+        request.setContext(context);
+        return request;
+    }
+}
@@ -0,0 +1,59 @@
+package org.hcjf.layers;
+
+import org.hcjf.properties.SystemProperties;
+import org.hcjf.service.ServiceSession;
+import org.hcjf.service.ServiceThread;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * Measures the cost of a call over a layer proxy compared with the direct call to the
+ * layer instance, the calls are executed into a service thread with session like the
+ * calls of the services. The dispatch engine is selected with the property
+ * hcjf.layers.dispatch.generated.invokers (true: generated invokers, false: reflection).
+ * Usage: LayerDispatchBenchmarkTestSuit [iterations]
+ * @author javaito
+ */
+public class LayerDispatchBenchmarkTestSuit {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        Layers.publishLayer(LayersTest.StatefulCounterLayer.class);
+        LayersTest.CounterLayerInterface direct = new LayersTest.StatefulCounterLayer();
+        LayersTest.CounterLayerInterface proxy = Layers.get(
+                LayersTest.CounterLayerInterface.class, LayersTest.StatefulCounterLayer.NAME);
+        System.out.printf("Generated invokers: %s\r\n",
+                SystemProperties.getBoolean(SystemProperties.Layer.DISPATCH_GENERATED_INVOKERS));
+
+        ServiceThread thread = new ServiceThread(() -> {
+            ((ServiceThread) Thread.currentThread()).setSession(new ServiceSession(UUID.randomUUID()));
+            run("Direct call", iterations, () -> direct.add(1, 2));
+            run("Proxy call", iterations, () -> proxy.add(1, 2));
+        });
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(String name, int iterations, Task task) {
+        int check = 0;
+        for (int i = 0; i < iterations; i++) {
+            check += task.run();
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            check += task.run();
+        }
+        time = System.nanoTime() - time;
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.printf("%-12s %8.1f ns/call %8.1f allocated bytes/call (%d)\r\n",
+                name, (double) time / iterations, (double) allocated / iterations, check);
+    }
+
+    private interface Task {
+        int run();
+    }
+}
@@ -0,0 +1,157 @@
+package org.hcjf.layers;
+
+import org.hcjf.service.ServiceSession;
+import org.hcjf.service.ServiceThread;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author javaito
+ */
+public class LayerFanOutTest {
+
+    private static final long DELAY = 300;
+
+    @BeforeClass
+    public static void publish() {
+        Layers.publishLayer(FirstSourceLayer.class);
+        Layers.publishLayer(SecondSourceLayer.class);
+        Layers.publishLayer(SlowSourceLayer.class);
+        Layers.publishLayer(FailedSourceLayer.class);
+        //Starts the invocation service before measuring the invocations.
+        Layers.fanOut(SourceLayerInterface.class, L -> true, LayerInterface::getImplName, 10000);
+    }
+
+    @Test
+    public void testFanOut() {
+        long time = System.currentTimeMillis();
+        FanOutResult<Collection<String>> result = Layers.fanOut(SourceLayerInterface.class,
+                L -> L.getImplName().startsWith("fast"), L -> L.read("key"), 10000);
+        time = System.currentTimeMillis() - time;
+        Assert.assertTrue(result.isComplete());
+        Assert.assertEquals(2, result.getResults().size());
+        Assert.assertTrue("Sequential invocations: " + time, time < DELAY * 2);
+        Collection<String> merged = result.merge((A, B) -> {
+            Collection<String> collection = new ArrayList<>(A);
+            collection.addAll(B);
+            return collection;
+        });
+        Assert.assertEquals(2, merged.size());
+        Assert.assertTrue(merged.contains("fast-first:key"));
+        Assert.assertTrue(merged.contains("fast-second:key"));
+    }
+
+    @Test
+    public void testFanOutFailures() {
+        long time = System.currentTimeMillis();
+        FanOutResult<Collection<String>> result = Layers.fanOut(SourceLayerInterface.class,
+                L -> true, L -> L.read("key"), DELAY * 2);
+        time = System.currentTimeMillis() - time;
+        Assert.assertFalse(result.isComplete());
+        Assert.assertEquals(2, result.getResults().size());
+        Assert.assertEquals(2, result.getFailures().size());
+        Assert.assertTrue(result.getFailures().get(SlowSourceLayer.NAME) instanceof TimeoutException);
+        Assert.assertNotNull(result.getFailures().get(FailedSourceLayer.NAME));
+        Assert.assertTrue("Timeout not respected: " + time, time < SlowSourceLayer.SLOW_DELAY);
+    }
+
+    @Test
+    public void testAsyncSession() throws Exception {
+        ServiceSession session = new ServiceSession(UUID.randomUUID());
+        AtomicReference<CompletableFuture<UUID>> future = new AtomicReference<>();
+        ServiceThread thread = new ServiceThread(() -> {
+            ((ServiceThread) Thread.currentThread()).setSession(session);
+            future.set(Layers.getAsync(SourceLayerInterface.class, FirstSourceLayer.NAME).call(SourceLayerInterface::getSessionId));
+        });
+        thread.start();
+        thread.join();
+        Assert.assertEquals(session.getId(), future.get().get(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Collection<String>> first = Layers.getAsync(SourceLayerInterface.class, FirstSourceLayer.NAME).call(L -> L.read("a"));
+        CompletableFuture<Collection<String>> second = Layers.getAsync(SourceLayerInterface.class, SecondSourceLayer.NAME).call(L -> L.read("b"));
+        Assert.assertEquals("fast-first:a", first.get(10, TimeUnit.SECONDS).iterator().next());
+        Assert.assertEquals("fast-second:b", second.get(10, TimeUnit.SECONDS).iterator().next());
+    }
+
+    public interface SourceLayerInterface extends LayerInterface {
+
+        Collection<String> read(String key);
+
+        default UUID getSessionId() {
+            return ServiceSession.getCurrentSession().getId();
+        }
+
+    }
+
+    public static abstract class SourceLayer extends Layer implements SourceLayerInterface {
+
+        private final long delay;
+
+        public SourceLayer(String implName, long delay) {
+            super(implName);
+            this.delay = delay;
+        }
+
+        @Override
+        public Collection<String> read(String key) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return Collections.singletonList(getImplName() + ":" + key);
+        }
+    }
+
+    public static class FirstSourceLayer extends SourceLayer {
+
+        private static final String NAME = "fast-first";
+
+        public FirstSourceLayer() {
+            super(NAME, DELAY);
+        }
+    }
+
+    public static class SecondSourceLayer extends SourceLayer {
+
+        private static final String NAME = "fast-second";
+
+        public SecondSourceLayer() {
+            super(NAME, DELAY);
+        }
+    }
+
+    public static class SlowSourceLayer extends SourceLayer {
+
+        private static final String NAME = "slow";
+        private static final long SLOW_DELAY = 5000;
+
+        public SlowSourceLayer() {
+            super(NAME, SLOW_DELAY);
+        }
+    }
+
+    public static class FailedSourceLayer extends SourceLayer {
+
+        private static final String NAME = "failed";
+
+        public FailedSourceLayer() {
+            super(NAME, 0);
+        }
+
+        @Override
+        public Collection<String> read(String key) {
+            throw new IllegalStateException("Source not available");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.hcjf.layers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the layer lookup (Layers.get) with a growing number of
+ * concurrent threads, for a stateful and a stateless implementation.
+ * Usage: LayersBenchmarkTestSuit [duration millis]
+ * @author javaito
+ */
+public class LayersBenchmarkTestSuit {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        Layers.publishLayer(LayersTest.StatefulCounterLayer.class);
+        Layers.publishLayer(LayersTest.StatelessCounterLayer.class);
+
+        for(String implName : new String[]{LayersTest.StatefulCounterLayer.NAME, LayersTest.StatelessCounterLayer.NAME}) {
+            //Warm up
+            run(implName, 4, duration);
+            for(int threads : THREADS) {
+                long operations = run(implName, threads, duration);
+                System.out.printf("%-18s %3d threads %12.0f lookups/s\r\n",
+                        implName, threads, operations * 1000.0 / duration);
+            }
+        }
+    }
+
+    private static long run(String implName, int threads, long duration) throws Exception {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch end = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while(System.currentTimeMillis() < deadline[0]) {
+                        for (int j = 0; j < 1000; j++) {
+                            Layers.get(LayersTest.CounterLayerInterface.class, implName);
+                        }
+                        count += 1000;
+                    }
+                    operations.add(count);
+                } catch (InterruptedException ex) {
+                } finally {
+                    end.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        deadline[0] = System.currentTimeMillis() + duration;
+        start.countDown();
+        end.await();
+        return operations.sum();
+    }
+}
@@ -0,0 +1,220 @@
+package org.hcjf.layers;
+
+import org.hcjf.service.ServiceSession;
+import org.hcjf.service.ServiceThread;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * @author javaito
+ */
+public class LayersTest {
+
+    @BeforeClass
+    public static void publish() {
+        Layers.publishLayer(StatefulCounterLayer.class);
+        Layers.publishLayer(StatelessCounterLayer.class);
+        Layers.publishLayer(InterceptedCounterLayer.class);
+        Layers.publishLayer(DeniedCounterLayer.class);
+    }
+
+    @Test
+    public void testStatefulInstance() {
+        CounterLayerInterface first = Layers.get(CounterLayerInterface.class, StatefulCounterLayer.NAME);
+        CounterLayerInterface second = Layers.get(CounterLayerInterface.class, "stateful-alias");
+        Assert.assertSame(first, second);
+        int value = first.next();
+        Assert.assertEquals(value + 1, second.next());
+    }
+
+    @Test
+    public void testStatelessInstance() {
+        CounterLayerInterface first = Layers.get(CounterLayerInterface.class, StatelessCounterLayer.NAME);
+        CounterLayerInterface second = Layers.get(CounterLayerInterface.class, StatelessCounterLayer.NAME);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, first.next());
+        Assert.assertEquals(1, second.next());
+    }
+
+    @Test
+    public void testPublicationAfterLookup() {
+        Layers.get(CounterLayerInterface.class, StatefulCounterLayer.NAME);
+        try {
+            Layers.get(CounterLayerInterface.class, LateCounterLayer.NAME);
+            Assert.fail("The layer is not published");
+        } catch (IllegalArgumentException ex) {
+        }
+        Layers.publishLayer(LateCounterLayer.class);
+        Assert.assertEquals(LateCounterLayer.NAME,
+                Layers.get(CounterLayerInterface.class, LateCounterLayer.NAME).getImplName());
+        Assert.assertEquals(LateCounterLayer.NAME,
+                Layers.get(CounterLayerInterface.class, L -> L.getImplName().equals(LateCounterLayer.NAME)).getImplName());
+    }
+
+    @Test
+    public void testDispatch() {
+        CounterLayerInterface layer = Layers.get(CounterLayerInterface.class, StatefulCounterLayer.NAME);
+        Assert.assertEquals(7, layer.add(3, 4));
+        Assert.assertEquals(StatefulCounterLayer.NAME, layer.getImplName());
+        try {
+            layer.fail("error");
+            Assert.fail("Exception expected");
+        } catch (UndeclaredThrowableException ex) {
+            Assert.assertTrue(ex.getCause() instanceof InvocationTargetException);
+            Assert.assertEquals("error", ex.getCause().getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testProxyInterceptor() {
+        CounterLayerInterface layer = Layers.get(CounterLayerInterface.class, InterceptedCounterLayer.NAME);
+        Assert.assertEquals(-1, layer.next());
+        Assert.assertEquals(5, layer.add(2, 3));
+        Assert.assertEquals(2, InterceptedCounterLayer.afterInvocations);
+    }
+
+    @Test(expected = SecurityException.class)
+    public void testAccessDenied() {
+        Layers.get(CounterLayerInterface.class, DeniedCounterLayer.NAME).next();
+    }
+
+    @Test
+    public void testLayerStack() throws Exception {
+        Class<?>[][] stack = new Class<?>[2][];
+        ServiceThread thread = new ServiceThread(() -> {
+            ((ServiceThread) Thread.currentThread()).setSession(new ServiceSession(UUID.randomUUID()));
+            stack[0] = Layers.get(CounterLayerInterface.class, StatefulCounterLayer.NAME).getLayerStack();
+            stack[1] = ((ServiceThread) Thread.currentThread()).getLayerStack();
+        });
+        thread.start();
+        thread.join();
+        Assert.assertEquals(1, stack[0].length);
+        Assert.assertEquals(StatefulCounterLayer.class, stack[0][0]);
+        Assert.assertEquals(0, stack[1].length);
+    }
+
+    public interface CounterLayerInterface extends LayerInterface {
+        int next();
+
+        default int add(int first, int second) {
+            return first + second;
+        }
+
+        default void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        default Class<?>[] getLayerStack() {
+            return ((ServiceThread) Thread.currentThread()).getLayerStack();
+        }
+    }
+
+    public static class StatefulCounterLayer extends Layer implements CounterLayerInterface {
+
+        public static final String NAME = "stateful-counter";
+
+        private int counter;
+
+        public StatefulCounterLayer() {
+            super(NAME, true);
+        }
+
+        @Override
+        public Set<String> getAliases() {
+            return Collections.singleton("stateful-alias");
+        }
+
+        @Override
+        public synchronized int next() {
+            return ++counter;
+        }
+    }
+
+    public static class StatelessCounterLayer extends Layer implements CounterLayerInterface {
+
+        public static final String NAME = "stateless-counter";
+
+        private int counter;
+
+        public StatelessCounterLayer() {
+            super(NAME, false);
+        }
+
+        @Override
+        public int next() {
+            return ++counter;
+        }
+    }
+
+    public static class InterceptedCounterLayer extends Layer implements CounterLayerInterface {
+
+        public static final String NAME = "intercepted-counter";
+
+        private static int afterInvocations;
+
+        public InterceptedCounterLayer() {
+            super(NAME, true);
+        }
+
+        @Override
+        public LayerProxy getProxy() {
+            return new LayerProxy() {
+                @Override
+                public ProxyInterceptor onBeforeInvoke(Method method, Object... params) {
+                    return method.getName().equals("next") ? new ProxyInterceptor(true, -1) : null;
+                }
+
+                @Override
+                public void onAfterInvoke(Method method, Object result, Object... params) {
+                    afterInvocations++;
+                }
+            };
+        }
+
+        @Override
+        public int next() {
+            return 0;
+        }
+    }
+
+    public static class DeniedCounterLayer extends Layer implements CounterLayerInterface {
+
+        public static final String NAME = "denied-counter";
+
+        public DeniedCounterLayer() {
+            super(NAME, true);
+        }
+
+        @Override
+        protected Access checkAccess() {
+            return new Access(false, "Denied");
+        }
+
+        @Override
+        public int next() {
+            return 0;
+        }
+    }
+
+    public static class LateCounterLayer extends Layer implements CounterLayerInterface {
+
+        public static final String NAME = "late-counter";
+
+        public LateCounterLayer() {
+            super(NAME, true);
+        }
+
+        @Override
+        public int next() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.hcjf.layers.cache;
+
+import org.hcjf.layers.Layers;
+import org.hcjf.layers.crud.CrudLayer;
+import org.hcjf.layers.crud.CrudLayerInterface;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author javaito
+ */
+public class LayerCacheTest {
+
+    @BeforeClass
+    public static void publish() {
+        Layers.publishLayer(CachedCrudLayer.class);
+    }
+
+    @Test
+    public void testCrudRead() {
+        @SuppressWarnings("unchecked")
+        CrudLayerInterface<CachedResource> layer = Layers.get(CrudLayerInterface.class, CachedCrudLayer.NAME);
+        layer.create(new CachedResource(1, "first"));
+        int reads = CachedCrudLayer.reads.get();
+        Assert.assertEquals("first", layer.read(1).name);
+        Assert.assertEquals("first", layer.read(1).name);
+        Assert.assertNull(layer.read(2));
+        Assert.assertNull(layer.read(2));
+        Assert.assertEquals(reads + 2, CachedCrudLayer.reads.get());
+
+        MethodCache methodCache = LayerCache.get(CachedCrudLayer.class).getMethodCache("read", Object.class);
+        Assert.assertEquals(2, methodCache.getHitCount());
+        Assert.assertEquals(0.5, methodCache.getHitRatio(), 0.0);
+
+        layer.update(new CachedResource(1, "updated"));
+        Assert.assertEquals("updated", layer.read(1).name);
+        Assert.assertEquals(reads + 3, CachedCrudLayer.reads.get());
+        Assert.assertTrue(methodCache.getInvalidationCount() >= 1);
+    }
+
+    @Test
+    public void testLruEviction() {
+        MethodCache methodCache = new MethodCache("lru", 0, 2, Cached.Eviction.LRU, false);
+        put(methodCache, "a");
+        put(methodCache, "b");
+        Assert.assertEquals("a", get(methodCache, "a"));
+        put(methodCache, "c");
+        Assert.assertEquals("a", get(methodCache, "a"));
+        Assert.assertSame(MethodCache.MISS, get(methodCache, "b"));
+        Assert.assertEquals("c", get(methodCache, "c"));
+        Assert.assertEquals(1, methodCache.getEvictionCount());
+    }
+
+    @Test
+    public void testLfuEviction() {
+        MethodCache methodCache = new MethodCache("lfu", 0, 2, Cached.Eviction.LFU, false);
+        put(methodCache, "a");
+        put(methodCache, "b");
+        get(methodCache, "b");
+        get(methodCache, "b");
+        get(methodCache, "a");
+        put(methodCache, "c");
+        Assert.assertSame(MethodCache.MISS, get(methodCache, "a"));
+        Assert.assertEquals("b", get(methodCache, "b"));
+        put(methodCache, "d");
+        Assert.assertSame(MethodCache.MISS, get(methodCache, "c"));
+        Assert.assertEquals("b", get(methodCache, "b"));
+        Assert.assertEquals(2, methodCache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        MethodCache methodCache = new MethodCache("ttl", 20, 10, Cached.Eviction.LRU, false);
+        put(methodCache, "a");
+        Assert.assertEquals("a", get(methodCache, "a"));
+        Thread.sleep(50);
+        Assert.assertSame(MethodCache.MISS, get(methodCache, "a"));
+        Assert.assertEquals(1, methodCache.getExpirationCount());
+        Assert.assertEquals(0, methodCache.getSize());
+    }
+
+    @Test
+    public void testKeys() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        MethodCache shared = new MethodCache("shared", 0, 10, Cached.Eviction.LRU, false);
+        Assert.assertEquals(shared.createKey(first, new Object[]{1, new int[]{2}}),
+                shared.createKey(second, new Object[]{1, new int[]{2}}));
+        MethodCache scoped = new MethodCache("scoped", 0, 10, Cached.Eviction.LRU, true);
+        Assert.assertNotEquals(scoped.createKey(first, new Object[]{1}), scoped.createKey(second, new Object[]{1}));
+        Assert.assertEquals(scoped.createKey(first, new Object[]{1}), scoped.createKey(first, new Object[]{1}));
+    }
+
+    @Test
+    public void testStaleGeneration() {
+        MethodCache methodCache = new MethodCache("generation", 0, 10, Cached.Eviction.LRU, false);
+        long generation = methodCache.getGeneration();
+        methodCache.invalidate();
+        methodCache.put(methodCache.createKey(null, new Object[]{"a"}), "a", generation);
+        Assert.assertEquals(0, methodCache.getSize());
+    }
+
+    private void put(MethodCache methodCache, String value) {
+        methodCache.put(methodCache.createKey(null, new Object[]{value}), value, methodCache.getGeneration());
+    }
+
+    private Object get(MethodCache methodCache, String value) {
+        return methodCache.get(methodCache.createKey(null, new Object[]{value}));
+    }
+
+    public static class CachedResource {
+
+        private final Object id;
+        private final String name;
+
+        public CachedResource(Object id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public static class CachedCrudLayer extends CrudLayer<CachedResource> {
+
+        private static final String NAME = "cached-crud";
+        private static final AtomicInteger reads = new AtomicInteger();
+        private static final Map<Object, CachedResource> storage = new ConcurrentHashMap<>();
+
+        public CachedCrudLayer() {
+            super(NAME);
+        }
+
+        @Override
+        public CachedResource create(CachedResource object) {
+            storage.put(object.id, object);
+            return object;
+        }
+
+        @Override
+        @Cached(maxSize = 100)
+        public CachedResource read(Object id) {
+            reads.incrementAndGet();
+            return storage.get(id);
+        }
+
+        @Override
+        public CachedResource update(CachedResource object) {
+            storage.put(object.id, object);
+            return object;
+        }
+    }
+}
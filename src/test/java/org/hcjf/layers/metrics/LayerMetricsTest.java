@@ -0,0 +1,208 @@
+package org.hcjf.layers.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.hcjf.io.net.http.HttpMethod;
+import org.hcjf.io.net.http.HttpRequest;
+import org.hcjf.io.net.http.HttpResponse;
+import org.hcjf.io.net.http.LayerMetricsContext;
+import org.hcjf.layers.Layer;
+import org.hcjf.layers.LayerInterface;
+import org.hcjf.layers.Layers;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author javaito
+ */
+public class LayerMetricsTest {
+
+    @BeforeClass
+    public static void publish() {
+        Layers.publishLayer(MeasuredLayer.class);
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        long total = 0;
+        for (long value = 1; value <= 100000; value++) {
+            int index = LatencyHistogram.index(value * 1000);
+            buckets.incrementAndGet(index);
+            total += value * 1000;
+        }
+        histogram.add(buckets, total, 100000000L);
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(50000500.0, histogram.getMean(), 0.0);
+        assertNear(50000000, histogram.getValueAtPercentile(50.0));
+        assertNear(99000000, histogram.getValueAtPercentile(99.0));
+        Assert.assertEquals(100000000L, histogram.getValueAtPercentile(100.0));
+
+        for (long value : new long[]{0, 1, 31, 32, 33, 1000, 123456789, LatencyHistogram.MAX_TRACKABLE_VALUE}) {
+            long highestValue = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            Assert.assertTrue(highestValue >= value);
+            Assert.assertTrue(highestValue - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testInvocations() throws InterruptedException {
+        MeasuredLayerInterface layer = Layers.get(MeasuredLayerInterface.class, MeasuredLayer.NAME);
+        LayerMetrics.setEnabled(true);
+        try {
+            Thread[] threads = new Thread[4];
+            CountDownLatch latch = new CountDownLatch(threads.length);
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        layer.echo(j);
+                    }
+                    latch.countDown();
+                });
+                threads[i].start();
+            }
+            latch.await();
+            for (int i = 0; i < 10; i++) {
+                try {
+                    layer.fail();
+                    Assert.fail("Exception expected");
+                } catch (RuntimeException ex) {
+                }
+            }
+        } finally {
+            LayerMetrics.setEnabled(false);
+        }
+        layer.echo(0);
+
+        Collection<MethodMetrics> echoMetrics = LayerMetrics.getMetrics(MeasuredLayerInterface.class, MeasuredLayer.NAME, "echo");
+        Assert.assertEquals(1, echoMetrics.size());
+        MethodMetrics metrics = echoMetrics.iterator().next();
+        Assert.assertEquals(4000, metrics.getInvocationCount());
+        Assert.assertEquals(0, metrics.getErrorCount());
+        Assert.assertEquals(4000, metrics.getLatency().getCount());
+        Assert.assertTrue(metrics.getLatency().getValueAtPercentile(99.0) <= metrics.getLatency().getMax());
+
+        MethodMetrics failMetrics = LayerMetrics.getMetrics(MeasuredLayerInterface.class, MeasuredLayer.NAME, "fail").iterator().next();
+        Assert.assertEquals(10, failMetrics.getInvocationCount());
+        Assert.assertEquals(10, failMetrics.getErrorCount());
+
+        HttpRequest request = new HttpRequest("/metrics", HttpMethod.GET);
+        request.addHttpParameter("layer", MeasuredLayerInterface.class.getSimpleName());
+        HttpResponse response = new LayerMetricsContext("metrics").onContext(request);
+        JsonArray jsonMetrics = new Gson().fromJson(new String(response.getBody()), JsonObject.class)
+                .getAsJsonArray("metrics");
+        Assert.assertEquals(2, jsonMetrics.size());
+        long invocations = 0;
+        for (int i = 0; i < jsonMetrics.size(); i++) {
+            JsonObject jsonMethodMetrics = jsonMetrics.get(i).getAsJsonObject();
+            Assert.assertEquals(MeasuredLayer.NAME, jsonMethodMetrics.get("implName").getAsString());
+            invocations += jsonMethodMetrics.get("invocations").getAsLong();
+        }
+        Assert.assertEquals(4010, invocations);
+    }
+
+    @Test
+    public void testEndedThreads() throws InterruptedException {
+        MeasuredLayerInterface layer = Layers.get(MeasuredLayerInterface.class, MeasuredLayer.NAME);
+        LayerMetrics.setEnabled(true);
+        try {
+            for (int i = 0; i < 50; i++) {
+                Thread thread = new Thread(() -> {
+                    for (int j = 0; j < 10; j++) {
+                        layer.increment(j);
+                    }
+                });
+                thread.start();
+                thread.join();
+            }
+        } finally {
+            LayerMetrics.setEnabled(false);
+        }
+
+        MethodMetrics metrics = LayerMetrics.getMetrics(MeasuredLayerInterface.class, MeasuredLayer.NAME, "increment").iterator().next();
+        Assert.assertEquals(500, metrics.getInvocationCount());
+        Assert.assertEquals(500, metrics.getLatency().getCount());
+        Assert.assertEquals(0, metrics.getRecorderCount());
+    }
+
+    @Test
+    public void testImplementationNames() {
+        MeasuredLayerInterface first = (MeasuredLayerInterface) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MeasuredLayerInterface.class}, new RenamedLayer("renamed-first"));
+        MeasuredLayerInterface second = (MeasuredLayerInterface) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MeasuredLayerInterface.class}, new RenamedLayer("renamed-second"));
+        LayerMetrics.setEnabled(true);
+        try {
+            first.echo(1);
+            second.echo(2);
+            second.echo(3);
+        } finally {
+            LayerMetrics.setEnabled(false);
+        }
+
+        Assert.assertEquals(1, LayerMetrics.getMetrics(MeasuredLayerInterface.class, "renamed-first", "echo")
+                .iterator().next().getInvocationCount());
+        Assert.assertEquals(2, LayerMetrics.getMetrics(MeasuredLayerInterface.class, "renamed-second", "echo")
+                .iterator().next().getInvocationCount());
+    }
+
+    private void assertNear(long expected, long value) {
+        Assert.assertTrue(value + " is not near to " + expected, Math.abs(value - expected) <= expected / 16);
+    }
+
+    public interface MeasuredLayerInterface extends LayerInterface {
+
+        int echo(int value);
+
+        int fail();
+
+        int increment(int value);
+
+    }
+
+    public static class MeasuredLayer extends Layer implements MeasuredLayerInterface {
+
+        private static final String NAME = "measured";
+
+        public MeasuredLayer() {
+            super(NAME);
+        }
+
+        @Override
+        public int echo(int value) {
+            return value;
+        }
+
+        @Override
+        public int fail() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public int increment(int value) {
+            return value + 1;
+        }
+    }
+
+    public static class RenamedLayer extends MeasuredLayer {
+
+        private final String name;
+
+        public RenamedLayer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getImplName() {
+            return name;
+        }
+    }
+}